@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Progress of a batch index update operation, saved periodically so that the operation can be resumed after a
+ * restart. The positions refer to the order of the paths in the {@link UpdateSet}, so the size of the checkpoint
+ * doesn't depend on the number of paths or batches. A hash of the paths already processed is kept too, so a
+ * checkpoint is only used to resume an update of the same paths.
+ *
+ * <p>When the indexer finishes, the checkpoint is kept as completed so that resuming an update that several indexers
+ * were processing doesn't repeat the work of the indexers that had already finished.</p>
+ *
+ * @since 4.2.0
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchCheckpoint {
+
+    protected String indexId;
+    protected String indexerName;
+    protected long updatesProcessed;
+    protected long deletesProcessed;
+    protected long updatesHash;
+    protected long deletesHash;
+    protected long batchesProcessed;
+    protected boolean completed;
+    protected long timestamp;
+
+    public BatchCheckpoint() {
+    }
+
+    public BatchCheckpoint(String indexId, String indexerName) {
+        this.indexId = indexId;
+        this.indexerName = indexerName;
+    }
+
+    @JsonProperty("index_id")
+    public String getIndexId() {
+        return indexId;
+    }
+
+    public void setIndexId(String indexId) {
+        this.indexId = indexId;
+    }
+
+    @JsonProperty("indexer_name")
+    public String getIndexerName() {
+        return indexerName;
+    }
+
+    public void setIndexerName(String indexerName) {
+        this.indexerName = indexerName;
+    }
+
+    /**
+     * Returns the number of update paths (from the start of the update set) already processed
+     */
+    @JsonProperty("updates_processed")
+    public long getUpdatesProcessed() {
+        return updatesProcessed;
+    }
+
+    public void setUpdatesProcessed(long updatesProcessed) {
+        this.updatesProcessed = updatesProcessed;
+    }
+
+    /**
+     * Returns the number of delete paths (from the start of the update set) already processed
+     */
+    @JsonProperty("deletes_processed")
+    public long getDeletesProcessed() {
+        return deletesProcessed;
+    }
+
+    public void setDeletesProcessed(long deletesProcessed) {
+        this.deletesProcessed = deletesProcessed;
+    }
+
+    /**
+     * Returns the hash of the update paths already processed
+     */
+    @JsonProperty("updates_hash")
+    public long getUpdatesHash() {
+        return updatesHash;
+    }
+
+    public void setUpdatesHash(long updatesHash) {
+        this.updatesHash = updatesHash;
+    }
+
+    /**
+     * Returns the hash of the delete paths already processed
+     */
+    @JsonProperty("deletes_hash")
+    public long getDeletesHash() {
+        return deletesHash;
+    }
+
+    public void setDeletesHash(long deletesHash) {
+        this.deletesHash = deletesHash;
+    }
+
+    /**
+     * Returns the number of update and delete batches already processed
+     */
+    @JsonProperty("batches_processed")
+    public long getBatchesProcessed() {
+        return batchesProcessed;
+    }
+
+    public void setBatchesProcessed(long batchesProcessed) {
+        this.batchesProcessed = batchesProcessed;
+    }
+
+    /**
+     * Indicates if the indexer already processed all the paths of the update set
+     */
+    @JsonProperty("completed")
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * Returns the time in millis of the last save of the checkpoint
+     */
+    @JsonProperty("timestamp")
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Adds a batch of update paths to the ones already processed
+     */
+    public void addProcessedUpdates(Collection<String> paths) {
+        updatesProcessed += paths.size();
+        updatesHash = hash(updatesHash, paths);
+        batchesProcessed++;
+    }
+
+    /**
+     * Adds a batch of delete paths to the ones already processed
+     */
+    public void addProcessedDeletes(Collection<String> paths) {
+        deletesProcessed += paths.size();
+        deletesHash = hash(deletesHash, paths);
+        batchesProcessed++;
+    }
+
+    /**
+     * Indicates if the paths already processed are the first paths of the given update set, which means the update
+     * can be resumed from this checkpoint
+     */
+    public boolean matches(UpdateSet updateSet) {
+        return matches(updateSet.getUpdatePathsIterator(), updatesProcessed, updatesHash) &&
+               matches(updateSet.getDeletePathsIterator(), deletesProcessed, deletesHash);
+    }
+
+    protected boolean matches(Iterator<String> paths, long count, long expectedHash) {
+        long hash = 0;
+        for (long i = 0; i < count; i++) {
+            if (!paths.hasNext()) {
+                return false;
+            }
+            hash = hash(hash, paths.next());
+        }
+        return hash == expectedHash;
+    }
+
+    protected long hash(long hash, Collection<String> paths) {
+        for (String path : paths) {
+            hash = hash(hash, path);
+        }
+        return hash;
+    }
+
+    protected long hash(long hash, String path) {
+        return 31 * hash + path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchCheckpoint{" +
+               "indexId='" + indexId + '\'' +
+               ", indexerName='" + indexerName + '\'' +
+               ", updatesProcessed=" + updatesProcessed +
+               ", deletesProcessed=" + deletesProcessed +
+               ", batchesProcessed=" + batchesProcessed +
+               ", completed=" + completed +
+               '}';
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch;
+
+import org.craftercms.search.batch.exception.BatchIndexingException;
+
+/**
+ * Stores the {@link BatchCheckpoint}s of the batch indexers.
+ *
+ * @since 4.2.0
+ */
+public interface BatchCheckpointStore {
+
+    /**
+     * Loads the last checkpoint saved for the given index and indexer.
+     *
+     * @param indexId       the ID of the index
+     * @param indexerName   the name of the indexer
+     * @return the checkpoint, or null if there's none
+     */
+    BatchCheckpoint load(String indexId, String indexerName) throws BatchIndexingException;
+
+    /**
+     * Saves the given checkpoint, replacing any previous one for the same index and indexer.
+     *
+     * @param checkpoint    the checkpoint to save
+     */
+    void save(BatchCheckpoint checkpoint) throws BatchIndexingException;
+
+    /**
+     * Deletes the checkpoint for the given index and indexer, if any.
+     *
+     * @param indexId       the ID of the index
+     * @param indexerName   the name of the indexer
+     */
+    void delete(String indexId, String indexerName) throws BatchIndexingException;
+
+}
@@ -39,4 +39,35 @@ public interface BatchIndexer {
     void updateIndex(String indexId, String siteName, ContentStoreService contentStoreService,
                      Context context, UpdateSet updateSet, UpdateStatus updateStatus) throws BatchIndexingException;
 
+    /**
+     * Resumes an update of the specified search index that was interrupted (e.g. by a restart), starting from the last
+     * checkpoint saved for the index. The update set should provide the paths in the same order as the one used in
+     * the interrupted update, otherwise a full update is performed. Indexers that don't support checkpoints always
+     * perform a full update.
+     *
+     * @param indexId               the ID of the index, or null to use a default index
+     * @param siteName              the name of the site the files belong to
+     * @param contentStoreService   the content store service used to retrieve the files and content to index
+     * @param context               the context of the file store being used
+     * @param updateSet             the set of files to update/delete
+     * @param updateStatus          status object used to track index updates and deletes
+     * @since 4.2.0
+     */
+    default void resumeIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                             Context context, UpdateSet updateSet,
+                             UpdateStatus updateStatus) throws BatchIndexingException {
+        updateIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus);
+    }
+
+    /**
+     * Discards the progress kept to resume an update of the specified search index. Indexers keep the progress after
+     * they finish, so that a resumed update skips the indexers that already finished, which means this should be
+     * called once all the indexers of the update are done.
+     *
+     * @param indexId               the ID of the index, or null to use a default index
+     * @since 4.2.0
+     */
+    default void clearCheckpoint(String indexId) throws BatchIndexingException {
+    }
+
 }
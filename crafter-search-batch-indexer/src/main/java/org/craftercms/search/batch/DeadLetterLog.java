@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+
+/**
+ * Keeps track of the index operations that failed even after being retried, so that they can be replayed later
+ * without a full reindex.
+ *
+ * @since 4.2.0
+ */
+public interface DeadLetterLog {
+
+    /**
+     * Records a failed operation.
+     *
+     * @param indexId   the ID of the index
+     * @param siteName  the name of the site
+     * @param path      the path of the file
+     * @param delete    true if the operation was a delete, false if it was an update
+     * @param reason    the reason of the failure
+     */
+    void record(String indexId, String siteName, String path, boolean delete, String reason)
+            throws BatchIndexingException;
+
+    /**
+     * Returns the failed operations for the given index and site as an {@link UpdateSet}. If a path failed more than
+     * once, the last operation wins.
+     *
+     * @param indexId   the ID of the index
+     * @param siteName  the name of the site
+     * @return the update set, empty if there are no failed operations
+     */
+    UpdateSet getUpdateSet(String indexId, String siteName) throws BatchIndexingException;
+
+    /**
+     * Removes all the failed operations of the given paths.
+     *
+     * @param indexId   the ID of the index
+     * @param siteName  the name of the site
+     * @param paths     the paths to remove
+     */
+    void remove(String indexId, String siteName, Collection<String> paths) throws BatchIndexingException;
+
+    /**
+     * Replays the failed operations for the given index and site using the given indexers. The paths that don't fail
+     * again are removed from the log.
+     *
+     * @param indexId               the ID of the index
+     * @param siteName              the name of the site
+     * @param contentStoreService   the content store service used to retrieve the files and content to index
+     * @param context               the context of the file store being used
+     * @param indexers              the indexers to use
+     * @return the status of the replay
+     */
+    default UpdateStatus replay(String indexId, String siteName, ContentStoreService contentStoreService,
+                                Context context, List<BatchIndexer> indexers) throws BatchIndexingException {
+        UpdateSet updateSet = getUpdateSet(indexId, siteName);
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        for (BatchIndexer indexer : indexers) {
+            indexer.updateIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus);
+        }
+        for (BatchIndexer indexer : indexers) {
+            indexer.clearCheckpoint(indexId);
+        }
+
+        Set<String> failedPaths = new HashSet<>(updateStatus.getFailedUpdates());
+        failedPaths.addAll(updateStatus.getFailedDeletes());
+
+        List<String> replayedPaths = new ArrayList<>(updateSet.getUpdatePaths());
+        replayedPaths.addAll(updateSet.getDeletePaths());
+        replayedPaths.removeAll(failedPaths);
+
+        remove(indexId, siteName, replayedPaths);
+
+        return updateStatus;
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch;
+
+/**
+ * Decides if a failed index operation should be retried.
+ *
+ * @since 4.2.0
+ */
+public interface FailureClassifier {
+
+    /**
+     * Indicates if the given error is transient (like a timeout or a temporary rejection from the server), meaning
+     * that the same operation could succeed if it's retried.
+     *
+     * @param error the error thrown by the operation
+     * @return true if the error is transient, false if it's permanent
+     */
+    boolean isTransient(Throwable error);
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.collections4.IteratorUtils;
+
+/**
+ * {@link UpdateSet} that produces the paths lazily, so that very large sets (like the full reindex of a big site)
+ * don't need to be loaded in memory before the indexing starts. The update details are looked up on demand using an
+ * optional {@link UpdateDetailProvider}.
+ *
+ * <p>Note: {@link #getUpdatePaths()} and {@link #getDeletePaths()} load all the paths in memory, indexers should use
+ * {@link #getUpdatePathsIterator()} and {@link #getDeletePathsIterator()} instead.</p>
+ *
+ * @since 4.2.0
+ */
+public class StreamingUpdateSet extends UpdateSet {
+
+    /**
+     * The source of the paths to add or update
+     */
+    protected final Iterable<String> updatePathsSource;
+
+    /**
+     * The source of the paths to delete
+     */
+    protected final Iterable<String> deletePathsSource;
+
+    /**
+     * The provider used to look up the update details of each path
+     */
+    protected final UpdateDetailProvider updateDetailProvider;
+
+    public StreamingUpdateSet(Iterable<String> updatePathsSource, Iterable<String> deletePathsSource) {
+        this(updatePathsSource, deletePathsSource, null);
+    }
+
+    /**
+     * Creates a new instance. The sources can be backed by a {@link java.util.stream.Stream} (e.g.
+     * {@code stream::iterator}), but in that case the update set can only be consumed once.
+     *
+     * @param updatePathsSource the source of the paths to add or update
+     * @param deletePathsSource the source of the paths to delete
+     * @param updateDetailProvider the provider used to look up the update details, can be null
+     */
+    public StreamingUpdateSet(Iterable<String> updatePathsSource, Iterable<String> deletePathsSource,
+                              UpdateDetailProvider updateDetailProvider) {
+        super(null, null);
+
+        this.updatePathsSource = updatePathsSource;
+        this.deletePathsSource = deletePathsSource;
+        this.updateDetailProvider = updateDetailProvider;
+    }
+
+    @Override
+    public List<String> getUpdatePaths() {
+        return IteratorUtils.toList(getUpdatePathsIterator());
+    }
+
+    @Override
+    public List<String> getDeletePaths() {
+        return IteratorUtils.toList(getDeletePathsIterator());
+    }
+
+    @Override
+    public Iterator<String> getUpdatePathsIterator() {
+        return updatePathsSource != null ? updatePathsSource.iterator() : Collections.emptyIterator();
+    }
+
+    @Override
+    public Iterator<String> getDeletePathsIterator() {
+        return deletePathsSource != null ? deletePathsSource.iterator() : Collections.emptyIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UpdateDetail getUpdateDetail(String file) {
+        if (updateDetailProvider != null) {
+            return updateDetailProvider.getUpdateDetail(file);
+        } else {
+            return super.getUpdateDetail(file);
+        }
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package org.craftercms.search.batch;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -40,4 +42,24 @@ public class UpdateSet extends AbstractUpdateDetailProvider {
         return deletePaths;
     }
 
+    /**
+     * Returns an iterator for the paths to add or update. Indexers should prefer this method over
+     * {@link #getUpdatePaths()} because subclasses might produce the paths lazily.
+     *
+     * @since 4.2.0
+     */
+    public Iterator<String> getUpdatePathsIterator() {
+        return updatePaths != null ? updatePaths.iterator() : Collections.emptyIterator();
+    }
+
+    /**
+     * Returns an iterator for the paths to delete. Indexers should prefer this method over
+     * {@link #getDeletePaths()} because subclasses might produce the paths lazily.
+     *
+     * @since 4.2.0
+     */
+    public Iterator<String> getDeletePathsIterator() {
+        return deletePaths != null ? deletePaths.iterator() : Collections.emptyIterator();
+    }
+
 }
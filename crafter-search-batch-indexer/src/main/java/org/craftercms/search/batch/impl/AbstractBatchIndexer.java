@@ -27,8 +27,6 @@ import org.craftercms.core.service.Context;
 import org.craftercms.search.batch.BatchIndexer;
 import org.craftercms.search.batch.UpdateSet;
 import org.craftercms.search.batch.UpdateStatus;
-import org.craftercms.search.batch.exception.BatchIndexingException;
-import org.craftercms.search.metadata.impl.AbstractMetadataCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +35,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author avasquez
  */
-public abstract class AbstractBatchIndexer extends AbstractMetadataCollector implements BatchIndexer {
+public abstract class AbstractBatchIndexer extends AbstractChunkedBatchIndexer {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractBatchIndexer.class);
 
@@ -53,31 +51,40 @@ public abstract class AbstractBatchIndexer extends AbstractMetadataCollector imp
     }
 
     @Override
-    public void updateIndex(String indexId, String siteName, ContentStoreService contentStoreService,
-                            Context context, UpdateSet updateSet, UpdateStatus updateStatus) throws BatchIndexingException {
-        for (String path : updateSet.getUpdatePaths()) {
+    protected void doUpdates(String indexId, String siteName, ContentStoreService contentStoreService,
+                             Context context, UpdateSet updateSet, List<String> updatePaths,
+                             UpdateStatus updateStatus) {
+        for (String path : updatePaths) {
             if (include(path)) {
                 try {
                     Map<String, Object> metadata = collectMetadata(path, contentStoreService, context);
-                    doSingleFileUpdate(indexId, siteName, contentStoreService, context, path, false,
-                        updateSet.getUpdateDetail(path), updateStatus, metadata);
+                    executeWithRetries(siteName, path, () ->
+                        doSingleFileUpdate(indexId, siteName, contentStoreService, context, path, false,
+                            updateSet.getUpdateDetail(path), updateStatus, metadata));
                 } catch (Exception e) {
                     logger.error("Error while trying to perform update of file {}:{}", siteName, path, e);
 
                     updateStatus.addFailedUpdate(path);
+                    recordFailure(indexId, siteName, path, false, e.getMessage());
                 }
             }
         }
+    }
 
-        for (String path : updateSet.getDeletePaths()) {
+    @Override
+    protected void doDeletes(String indexId, String siteName, ContentStoreService contentStoreService,
+                             Context context, List<String> deletePaths, UpdateStatus updateStatus) {
+        for (String path : deletePaths) {
             if (include(path)) {
                 try {
-                    doSingleFileUpdate(indexId, siteName, contentStoreService, context, path, true, null,
-                        updateStatus, Collections.emptyMap());
+                    executeWithRetries(siteName, path, () ->
+                        doSingleFileUpdate(indexId, siteName, contentStoreService, context, path, true, null,
+                            updateStatus, Collections.emptyMap()));
                 } catch (Exception e) {
                     logger.error("Error while trying to perform delete of file {}:{}", siteName, path, e);
 
                     updateStatus.addFailedDelete(path);
+                    recordFailure(indexId, siteName, path, true, e.getMessage());
                 }
             }
         }
@@ -31,8 +31,6 @@ import org.craftercms.search.batch.BatchIndexer;
 import org.craftercms.search.batch.UpdateDetail;
 import org.craftercms.search.batch.UpdateSet;
 import org.craftercms.search.batch.UpdateStatus;
-import org.craftercms.search.batch.exception.BatchIndexingException;
-import org.craftercms.search.metadata.impl.AbstractMetadataCollector;
 import org.dom4j.Document;
 import org.dom4j.Element;
 import org.dom4j.Namespace;
@@ -63,8 +61,7 @@ import static org.craftercms.search.commons.utils.MapUtils.mergeMaps;
  *
  * @author avasquez
  */
-public abstract class AbstractBinaryFileWithMetadataBatchIndexer
-    extends AbstractMetadataCollector implements BatchIndexer {
+public abstract class AbstractBinaryFileWithMetadataBatchIndexer extends AbstractChunkedBatchIndexer {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractBinaryFileWithMetadataBatchIndexer.class);
 
@@ -153,16 +150,8 @@ public abstract class AbstractBinaryFileWithMetadataBatchIndexer
     }
 
     @Override
-    public void updateIndex(String indexId, String siteName,
-                            ContentStoreService contentStoreService, Context context, UpdateSet updateSet,
-                            UpdateStatus updateStatus) throws BatchIndexingException {
-        doUpdates(indexId, siteName, contentStoreService, context, updateSet, updateStatus);
-        doDeletes(indexId, siteName, contentStoreService, context, updateSet.getDeletePaths(), updateStatus);
-    }
-
     protected void doUpdates(String indexId, String siteName, ContentStoreService contentStoreService, Context context,
-                             UpdateSet updateSet, UpdateStatus updateStatus) {
-        List<String> updatePaths = updateSet.getUpdatePaths();
+                             UpdateSet updateSet, List<String> updatePaths, UpdateStatus updateStatus) {
         Set<String> metadataUpdatePaths = new LinkedHashSet<>();
 
         for (String path : updatePaths) {
@@ -232,6 +221,7 @@ public abstract class AbstractBinaryFileWithMetadataBatchIndexer
     protected abstract void doDelete(final String indexId, final String siteName, final String previousBinaryPath,
                                      final UpdateStatus updateStatus);
 
+    @Override
     protected void doDeletes(String indexId, String siteName, ContentStoreService contentStoreService, Context context,
                              List<String> deletePaths, UpdateStatus updateStatus) {
         for (String path : deletePaths) {
@@ -318,26 +308,38 @@ public abstract class AbstractBinaryFileWithMetadataBatchIndexer
                                             String binaryPath, Map<String, Object> metadata,
                                             UpdateDetail updateDetail, UpdateStatus updateStatus) {
         try {
-            // Check if the binary file is stored remotely
-            if (remoteFileResolver != null && isRemoteBinary(binaryPath)) {
-                logger.debug("Indexing remote file {}", binaryPath);
+            executeWithRetries(siteName, binaryPath, () -> {
+                // Check if the binary file is stored remotely
+                if (remoteFileResolver != null && isRemoteBinary(binaryPath)) {
+                    logger.debug("Indexing remote file {}", binaryPath);
 
-                RemoteFile remoteFile = remoteFileResolver.resolve(binaryPath);
-                doUpdateContent(indexId, siteName, binaryPath, remoteFile.toResource(), metadata, updateDetail,
-                                updateStatus);
-            } else {
-                Content binaryContent = contentStoreService.findContent(context, binaryPath);
-                if (binaryContent == null) {
-                    logger.debug("No binary file found @ {}:{}. Empty content will be used for the update", siteName,
-                                 binaryPath);
-
-                    binaryContent = new EmptyContent();
+                    RemoteFile remoteFile = remoteFileResolver.resolve(binaryPath);
+                    doUpdateContent(indexId, siteName, binaryPath, remoteFile.toResource(), metadata, updateDetail,
+                                    updateStatus);
+                } else {
+                    Content binaryContent = contentStoreService.findContent(context, binaryPath);
+                    if (binaryContent == null) {
+                        logger.debug("No binary file found @ {}:{}. Empty content will be used for the update",
+                                     siteName, binaryPath);
+
+                        binaryContent = new EmptyContent();
+                    }
+                    doUpdateContent(indexId, siteName, binaryPath, binaryContent, metadata, updateDetail, updateStatus);
                 }
-                doUpdateContent(indexId, siteName, binaryPath, binaryContent, metadata, updateDetail, updateStatus);
-            }
+            });
         } catch (Exception e) {
             logger.error("Error when trying to send index update with metadata for binary file {}:{}", siteName,
                          binaryPath, e);
+
+            // Replaying the metadata file updates all its binaries, so the failure is reported and recorded for the
+            // metadata file instead of the binary. This way a replay that fails again keeps the entry in the log
+            Object metadataPath = metadata != null ? metadata.get(metadataPathFieldName) : null;
+            String failedPath = metadataPath != null ? metadataPath.toString() : binaryPath;
+
+            if (!updateStatus.getFailedUpdates().contains(failedPath)) {
+                updateStatus.addFailedUpdate(failedPath);
+            }
+            recordFailure(indexId, siteName, failedPath, false, e.getMessage());
         }
     }
 
@@ -353,26 +355,32 @@ public abstract class AbstractBinaryFileWithMetadataBatchIndexer
                                 Context context, String binaryPath, UpdateDetail updateDetail,
                                 UpdateStatus updateStatus) {
         try {
-            // Check if the binary file is stored remotely
-            if (remoteFileResolver != null && isRemoteBinary(binaryPath)) {
-                logger.info("Indexing remote file {}", binaryPath);
+            executeWithRetries(siteName, binaryPath, () -> {
+                // Check if the binary file is stored remotely
+                if (remoteFileResolver != null && isRemoteBinary(binaryPath)) {
+                    logger.info("Indexing remote file {}", binaryPath);
 
-                RemoteFile remoteFile = remoteFileResolver.resolve(binaryPath);
+                    RemoteFile remoteFile = remoteFileResolver.resolve(binaryPath);
 
-                Map<String, Object> metadata = collectRemoteAssetMetadata(binaryPath);
-                doUpdateContent(indexId, siteName, binaryPath, remoteFile.toResource(), metadata, updateDetail, updateStatus);
-            } else {
-                Content binaryContent = contentStoreService.findContent(context, binaryPath);
-                if (binaryContent != null && binaryContent.getLength() > 0) {
-                    Map<String, Object> metadata = collectMetadata(binaryPath, contentStoreService, context);
-                    doUpdateContent(indexId, siteName, binaryPath, binaryContent, metadata, updateDetail,
+                    Map<String, Object> metadata = collectRemoteAssetMetadata(binaryPath);
+                    doUpdateContent(indexId, siteName, binaryPath, remoteFile.toResource(), metadata, updateDetail,
                                     updateStatus);
                 } else {
-                    logger.debug("No binary file found @ {}:{}. Skipping update", siteName, binaryPath);
+                    Content binaryContent = contentStoreService.findContent(context, binaryPath);
+                    if (binaryContent != null && binaryContent.getLength() > 0) {
+                        Map<String, Object> metadata = collectMetadata(binaryPath, contentStoreService, context);
+                        doUpdateContent(indexId, siteName, binaryPath, binaryContent, metadata, updateDetail,
+                                        updateStatus);
+                    } else {
+                        logger.debug("No binary file found @ {}:{}. Skipping update", siteName, binaryPath);
+                    }
                 }
-            }
+            });
         } catch (Exception e) {
             logger.error("Error when trying to send index update for binary file {}:{}", siteName, binaryPath, e);
+
+            updateStatus.addFailedUpdate(binaryPath);
+            recordFailure(indexId, siteName, binaryPath, false, e.getMessage());
         }
     }
 
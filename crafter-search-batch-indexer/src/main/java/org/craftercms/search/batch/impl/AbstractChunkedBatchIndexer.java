@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch.impl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.BatchCheckpoint;
+import org.craftercms.search.batch.BatchCheckpointStore;
+import org.craftercms.search.batch.BatchIndexer;
+import org.craftercms.search.batch.DeadLetterLog;
+import org.craftercms.search.batch.FailureClassifier;
+import org.craftercms.search.batch.UpdateSet;
+import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+import org.craftercms.search.metadata.impl.AbstractMetadataCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.commons.collections4.IteratorUtils.skippingIterator;
+import static org.craftercms.search.batch.utils.IndexingUtils.partition;
+
+/**
+ * Base class for {@link BatchIndexer}s that consume the {@link UpdateSet} in chunks of bounded size, so that the
+ * memory used doesn't depend on the number of paths in the set. All the update chunks are processed before the
+ * delete chunks.
+ *
+ * <p>If a {@link BatchCheckpointStore} is provided, the progress is saved every {@code checkpointInterval} chunks so
+ * that an interrupted update can be continued with
+ * {@link #resumeIndex(String, String, ContentStoreService, Context, UpdateSet, UpdateStatus)}. The last checkpoint
+ * is kept after the indexer finishes, until {@link #clearCheckpoint(String)} is called once all the indexers of the
+ * update are done.</p>
+ *
+ * @since 4.2.0
+ */
+public abstract class AbstractChunkedBatchIndexer extends AbstractMetadataCollector implements BatchIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractChunkedBatchIndexer.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_DELAY = 500;
+    public static final long DEFAULT_MAX_RETRY_DELAY = 10000;
+    public static final long DEFAULT_MAX_RETRY_TIME = 30000;
+
+    /**
+     * The max number of paths processed at a time
+     */
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * The store used to save the checkpoints, if null the updates can't be resumed
+     */
+    protected BatchCheckpointStore checkpointStore;
+
+    /**
+     * The number of batches processed between checkpoints
+     */
+    protected int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    /**
+     * The name used to identify the checkpoints of the indexer, defaults to the simple class name
+     */
+    protected String indexerName;
+
+    /**
+     * The classifier used to decide which failed operations should be retried
+     */
+    protected FailureClassifier failureClassifier = new DefaultFailureClassifier();
+
+    /**
+     * The max number of retries for operations that failed with a transient error
+     */
+    protected int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * The base delay in milliseconds between retries, doubled after each one
+     */
+    protected long retryDelay = DEFAULT_RETRY_DELAY;
+
+    /**
+     * The max delay in milliseconds between retries
+     */
+    protected long maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+
+    /**
+     * The max time in milliseconds spent retrying a single operation, no retry is started after it
+     */
+    protected long maxRetryTime = DEFAULT_MAX_RETRY_TIME;
+
+    /**
+     * The log where the operations that still fail after the retries are recorded, can be null
+     */
+    protected DeadLetterLog deadLetterLog;
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setCheckpointStore(BatchCheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public void setIndexerName(String indexerName) {
+        this.indexerName = indexerName;
+    }
+
+    public void setFailureClassifier(FailureClassifier failureClassifier) {
+        this.failureClassifier = failureClassifier;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public void setMaxRetryDelay(long maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    public void setMaxRetryTime(long maxRetryTime) {
+        this.maxRetryTime = maxRetryTime;
+    }
+
+    public void setDeadLetterLog(DeadLetterLog deadLetterLog) {
+        this.deadLetterLog = deadLetterLog;
+    }
+
+    @Override
+    public void updateIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                            Context context, UpdateSet updateSet,
+                            UpdateStatus updateStatus) throws BatchIndexingException {
+        // Any previous checkpoint is obsolete since this is a new update
+        deleteCheckpoint(indexId);
+
+        doUpdateIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus,
+                      new BatchCheckpoint(indexId, getIndexerName()));
+    }
+
+    @Override
+    public void resumeIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                            Context context, UpdateSet updateSet,
+                            UpdateStatus updateStatus) throws BatchIndexingException {
+        BatchCheckpoint checkpoint = loadCheckpoint(indexId);
+        if (checkpoint != null && !checkpoint.matches(updateSet)) {
+            logger.warn("The checkpoint for index {} and indexer {} doesn't match the update set, performing full " +
+                        "update", indexId, getIndexerName());
+
+            checkpoint = null;
+        }
+
+        if (checkpoint != null && checkpoint.isCompleted()) {
+            logger.info("Update of index {} already completed by indexer {}", indexId, getIndexerName());
+            return;
+        } else if (checkpoint != null) {
+            logger.info("Resuming update of index {} from {}", indexId, checkpoint);
+        } else {
+            logger.info("No checkpoint found for index {} and indexer {}, performing full update", indexId,
+                        getIndexerName());
+
+            checkpoint = new BatchCheckpoint(indexId, getIndexerName());
+        }
+
+        doUpdateIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus, checkpoint);
+    }
+
+    protected void doUpdateIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                                 Context context, UpdateSet updateSet, UpdateStatus updateStatus,
+                                 BatchCheckpoint checkpoint) throws BatchIndexingException {
+        int completedBatches = 0;
+
+        Iterator<String> updatePaths = skippingIterator(updateSet.getUpdatePathsIterator(),
+                                                        checkpoint.getUpdatesProcessed());
+        Iterator<List<String>> updateBatches = partition(updatePaths, batchSize);
+        while (updateBatches.hasNext()) {
+            List<String> batch = updateBatches.next();
+
+            logger.debug("Processing batch of {} updates for index {}", batch.size(), indexId);
+
+            doUpdates(indexId, siteName, contentStoreService, context, updateSet, batch, updateStatus);
+
+            checkpoint.addProcessedUpdates(batch);
+
+            saveCheckpoint(checkpoint, ++completedBatches);
+        }
+
+        Iterator<String> deletePaths = skippingIterator(updateSet.getDeletePathsIterator(),
+                                                        checkpoint.getDeletesProcessed());
+        Iterator<List<String>> deleteBatches = partition(deletePaths, batchSize);
+        while (deleteBatches.hasNext()) {
+            List<String> batch = deleteBatches.next();
+
+            logger.debug("Processing batch of {} deletes for index {}", batch.size(), indexId);
+
+            doDeletes(indexId, siteName, contentStoreService, context, batch, updateStatus);
+
+            checkpoint.addProcessedDeletes(batch);
+
+            saveCheckpoint(checkpoint, ++completedBatches);
+        }
+
+        // Keep the checkpoint until the caller clears it, so a resume of the whole update skips this indexer
+        checkpoint.setCompleted(true);
+        saveCheckpoint(checkpoint);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearCheckpoint(String indexId) {
+        deleteCheckpoint(indexId);
+    }
+
+    protected BatchCheckpoint loadCheckpoint(String indexId) {
+        if (checkpointStore != null) {
+            try {
+                return checkpointStore.load(indexId, getIndexerName());
+            } catch (BatchIndexingException e) {
+                // A corrupted checkpoint only means the update can't be resumed
+                logger.warn("Unable to load checkpoint for index {}", indexId, e);
+            }
+        }
+        return null;
+    }
+
+    protected void saveCheckpoint(BatchCheckpoint checkpoint, int completedBatches) {
+        if (completedBatches % checkpointInterval == 0) {
+            saveCheckpoint(checkpoint);
+        }
+    }
+
+    protected void saveCheckpoint(BatchCheckpoint checkpoint) {
+        if (checkpointStore != null) {
+            try {
+                checkpointStore.save(checkpoint);
+            } catch (BatchIndexingException e) {
+                // The checkpoint is only needed to resume, so the update can continue
+                logger.warn("Unable to save checkpoint for index {}", checkpoint.getIndexId(), e);
+            }
+        }
+    }
+
+    protected void deleteCheckpoint(String indexId) {
+        if (checkpointStore != null) {
+            try {
+                checkpointStore.delete(indexId, getIndexerName());
+            } catch (BatchIndexingException e) {
+                // Just like when saving, a checkpoint error shouldn't abort the update
+                logger.warn("Unable to delete checkpoint for index {}", indexId, e);
+            }
+        }
+    }
+
+    /**
+     * Executes the given operation, retrying it with jittered exponential backoff while it fails with a transient
+     * error, for at most {@code maxRetries} retries and {@code maxRetryTime} milliseconds
+     *
+     * @param siteName the site name
+     * @param path the path of the file
+     * @param operation the operation to execute
+     * @throws Exception the last error if the operation failed with a permanent error or all retries failed
+     */
+    protected void executeWithRetries(String siteName, String path, IndexingOperation operation) throws Exception {
+        long start = System.currentTimeMillis();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                operation.execute();
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries || !failureClassifier.isTransient(e)) {
+                    throw e;
+                }
+
+                long delay = getRetryDelay(attempt);
+                if (System.currentTimeMillis() - start + delay > maxRetryTime) {
+                    logger.warn("Giving up on file {}:{} after {} ms of retries", siteName, path,
+                                System.currentTimeMillis() - start);
+                    throw e;
+                }
+
+                logger.warn("Transient error processing file {}:{}, retrying in {} ms ({}/{})", siteName, path,
+                            delay, attempt + 1, maxRetries, e);
+
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the delay before the given retry attempt, a random value between half and all of the exponential delay
+     */
+    protected long getRetryDelay(int attempt) {
+        long delay = Math.min(maxRetryDelay, retryDelay << Math.min(attempt, 30));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Records a failed operation in the dead letter log, if one has been provided
+     */
+    protected void recordFailure(String indexId, String siteName, String path, boolean delete, String reason) {
+        if (deadLetterLog != null) {
+            try {
+                deadLetterLog.record(indexId, siteName, path, delete, reason);
+            } catch (Exception e) {
+                logger.error("Unable to record failed operation for file {}:{}", siteName, path, e);
+            }
+        }
+    }
+
+    protected String getIndexerName() {
+        return indexerName != null ? indexerName : getClass().getSimpleName();
+    }
+
+    /**
+     * Processes a chunk of the paths to add or update
+     *
+     * @param indexId the index ID
+     * @param siteName the site name
+     * @param contentStoreService the content store service
+     * @param context the context
+     * @param updateSet the update set, used to look up the update details
+     * @param updatePaths the paths of the chunk
+     * @param updateStatus the status to report the results
+     */
+    protected abstract void doUpdates(String indexId, String siteName, ContentStoreService contentStoreService,
+                                      Context context, UpdateSet updateSet, List<String> updatePaths,
+                                      UpdateStatus updateStatus);
+
+    /**
+     * Processes a chunk of the paths to delete
+     *
+     * @param indexId the index ID
+     * @param siteName the site name
+     * @param contentStoreService the content store service
+     * @param context the context
+     * @param deletePaths the paths of the chunk
+     * @param updateStatus the status to report the results
+     */
+    protected abstract void doDeletes(String indexId, String siteName, ContentStoreService contentStoreService,
+                                      Context context, List<String> deletePaths, UpdateStatus updateStatus);
+
+    /**
+     * An index operation for a single file that can be retried
+     */
+    @FunctionalInterface
+    protected interface IndexingOperation {
+
+        void execute() throws Exception;
+
+    }
+
+}
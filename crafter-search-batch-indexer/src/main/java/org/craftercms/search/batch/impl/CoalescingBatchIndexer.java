@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch.impl;
+
+import java.beans.ConstructorProperties;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.BatchIndexer;
+import org.craftercms.search.batch.StreamingUpdateSet;
+import org.craftercms.search.batch.UpdateDetail;
+import org.craftercms.search.batch.UpdateSet;
+import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link BatchIndexer} that merges the update sets for the same index, site and context received while an update of
+ * that index is already running, and then sends a single deduplicated {@link UpdateSet} to the actual indexer. When
+ * the same path is updated and deleted in the merged sets the last operation wins.
+ *
+ * <p>An update set received while no other update of the index is running is sent right away, as is, to the actual
+ * indexer. Otherwise its paths are read and the first caller waits for the running update to finish (up to
+ * {@code windowMillis}) and performs the merged update, the rest of the callers wait for it to finish. Each caller's
+ * {@link UpdateStatus} gets all the results of the merged update, including the ones of the paths derived from the
+ * provided paths (like binaries indexed through a metadata file).</p>
+ *
+ * @since 4.2.0
+ */
+public class CoalescingBatchIndexer implements BatchIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingBatchIndexer.class);
+
+    public static final long DEFAULT_WINDOW_MILLIS = 500;
+
+    /**
+     * The indexer that performs the actual updates
+     */
+    protected final BatchIndexer actualIndexer;
+
+    /**
+     * The max time in milliseconds that the update sets are buffered while another update of the same index is
+     * running, 0 or less disables the buffering
+     */
+    protected long windowMillis = DEFAULT_WINDOW_MILLIS;
+
+    /**
+     * The windows accepting update sets, mapped by index, site and context
+     */
+    protected final Map<List<Object>, Window> windows = new HashMap<>();
+
+    /**
+     * The windows being updated, mapped by index, site and context
+     */
+    protected final Map<List<Object>, Window> runningWindows = new HashMap<>();
+
+    @ConstructorProperties({"actualIndexer"})
+    public CoalescingBatchIndexer(BatchIndexer actualIndexer) {
+        this.actualIndexer = actualIndexer;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public void updateIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                            Context context, UpdateSet updateSet,
+                            UpdateStatus updateStatus) throws BatchIndexingException {
+        if (windowMillis <= 0) {
+            actualIndexer.updateIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus);
+            return;
+        }
+
+        // Only the update sets with the same content store and context can be merged
+        List<Object> key = Arrays.asList(indexId, siteName, contentStoreService, context);
+        Window window;
+        Window runningWindow;
+
+        synchronized (windows) {
+            if (!windows.containsKey(key) && !runningWindows.containsKey(key)) {
+                // Nothing to merge with, only register the update so the next ones are buffered
+                window = new Window(contentStoreService, context);
+                runningWindows.put(key, window);
+            } else {
+                window = null;
+            }
+        }
+
+        if (window != null) {
+            try {
+                actualIndexer.updateIndex(indexId, siteName, contentStoreService, context, updateSet,
+                                          updateStatus);
+            } finally {
+                window.finish();
+                synchronized (windows) {
+                    runningWindows.remove(key, window);
+                }
+            }
+            return;
+        }
+
+        // The paths are read before taking the lock, since the update set might need to load them
+        Operations operations = new Operations(updateSet);
+        boolean leader = false;
+
+        synchronized (windows) {
+            window = windows.get(key);
+            if (window == null) {
+                window = new Window(contentStoreService, context);
+                windows.put(key, window);
+                leader = true;
+            }
+            runningWindow = runningWindows.get(key);
+            window.add(operations);
+        }
+
+        if (leader) {
+            if (runningWindow != null) {
+                // Buffer the update sets received until the running update finishes
+                runningWindow.await(windowMillis);
+            }
+
+            synchronized (windows) {
+                windows.remove(key);
+                runningWindows.put(key, window);
+            }
+
+            try {
+                window.flush(indexId, siteName);
+            } finally {
+                synchronized (windows) {
+                    runningWindows.remove(key, window);
+                }
+            }
+        }
+
+        window.copyResults(updateStatus);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Resumed updates are never buffered. The checkpoints of coalesced updates describe the merged update set
+     * instead of the update set of each caller, so they can't be used to resume the update of a single caller: the
+     * actual indexer finds that the checkpoint doesn't match the given update set and performs a full update.
+     * Updates sent right away, while no other update of the index was running, can be resumed normally.</p>
+     */
+    @Override
+    public void resumeIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                            Context context, UpdateSet updateSet,
+                            UpdateStatus updateStatus) throws BatchIndexingException {
+        actualIndexer.resumeIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearCheckpoint(String indexId) throws BatchIndexingException {
+        actualIndexer.clearCheckpoint(indexId);
+    }
+
+    /**
+     * The deduplicated operations of one or more update sets
+     */
+    protected static class Operations {
+
+        /**
+         * The operations mapped by path, true for deletes and false for updates
+         */
+        protected final Map<String, Boolean> operations = new LinkedHashMap<>();
+
+        protected final Map<String, UpdateDetail> updateDetails = new HashMap<>();
+
+        protected Operations() {
+        }
+
+        /**
+         * Reads all the paths of the given update set, resolving the update details since the update set might not
+         * be available later
+         */
+        protected Operations(UpdateSet updateSet) {
+            for (Iterator<String> iter = updateSet.getUpdatePathsIterator(); iter.hasNext();) {
+                String path = iter.next();
+                // Remove first so the order reflects the last operation
+                operations.remove(path);
+                operations.put(path, false);
+
+                UpdateDetail updateDetail = updateSet.getUpdateDetail(path);
+                if (updateDetail != null) {
+                    updateDetails.put(path, updateDetail);
+                }
+            }
+            for (Iterator<String> iter = updateSet.getDeletePathsIterator(); iter.hasNext();) {
+                String path = iter.next();
+                operations.remove(path);
+                operations.put(path, true);
+                updateDetails.remove(path);
+            }
+        }
+
+        /**
+         * Adds the given operations, replacing the existing ones for the same paths
+         */
+        protected void add(Operations other) {
+            other.operations.forEach((path, delete) -> {
+                operations.remove(path);
+                operations.put(path, delete);
+                if (delete) {
+                    updateDetails.remove(path);
+                } else if (other.updateDetails.containsKey(path)) {
+                    updateDetails.put(path, other.updateDetails.get(path));
+                }
+            });
+        }
+
+    }
+
+    /**
+     * Update sets received for an index, site and context while another update of the index is running
+     */
+    protected class Window {
+
+        protected final Operations operations = new Operations();
+
+        protected final CompletableFuture<UpdateStatus> result = new CompletableFuture<>();
+
+        protected final ContentStoreService contentStoreService;
+
+        protected final Context context;
+
+        protected int updateSets;
+
+        protected Window(ContentStoreService contentStoreService, Context context) {
+            this.contentStoreService = contentStoreService;
+            this.context = context;
+        }
+
+        /**
+         * Adds the given operations to the window, must be called while holding the lock of the windows
+         */
+        protected void add(Operations updateSetOperations) {
+            updateSets++;
+            operations.add(updateSetOperations);
+        }
+
+        /**
+         * Marks the update of the window as finished, used when the update set was sent directly to the actual
+         * indexer
+         */
+        protected void finish() {
+            result.complete(null);
+        }
+
+        /**
+         * Waits until the update of the window finishes, successfully or not, or the timeout expires
+         */
+        protected void await(long timeoutMillis) {
+            try {
+                result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Don't wait anymore, but the buffered updates still need to be performed
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // The errors are reported to the callers of the running window
+            }
+        }
+
+        protected void flush(String indexId, String siteName) {
+            List<String> updatePaths = new ArrayList<>();
+            List<String> deletePaths = new ArrayList<>();
+            operations.operations.forEach((path, delete) -> (delete ? deletePaths : updatePaths).add(path));
+
+            logger.debug("Updating index {} with {} updates and {} deletes coalesced from {} update sets", indexId,
+                         updatePaths.size(), deletePaths.size(), updateSets);
+
+            UpdateStatus windowStatus = new UpdateStatus();
+            try {
+                actualIndexer.updateIndex(indexId, siteName, contentStoreService, context,
+                                          new StreamingUpdateSet(updatePaths, deletePaths,
+                                                                 operations.updateDetails::get),
+                                          windowStatus);
+                result.complete(windowStatus);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        protected void copyResults(UpdateStatus updateStatus) throws BatchIndexingException {
+            UpdateStatus windowStatus;
+            try {
+                windowStatus = result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BatchIndexingException("Interrupted while waiting for coalesced index update", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof BatchIndexingException) {
+                    throw (BatchIndexingException) e.getCause();
+                }
+                throw new BatchIndexingException("Error performing coalesced index update", e.getCause());
+            }
+
+            windowStatus.getSuccessfulUpdates().forEach(updateStatus::addSuccessfulUpdate);
+            windowStatus.getSuccessfulDeletes().forEach(updateStatus::addSuccessfulDelete);
+            windowStatus.getFailedUpdates().forEach(updateStatus::addFailedUpdate);
+            windowStatus.getFailedDeletes().forEach(updateStatus::addFailedDelete);
+        }
+
+    }
+
+}
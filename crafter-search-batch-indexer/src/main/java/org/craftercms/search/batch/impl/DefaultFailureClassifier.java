@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch.impl;
+
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.util.concurrent.TimeoutException;
+
+import org.craftercms.search.batch.FailureClassifier;
+
+/**
+ * Default implementation of {@link FailureClassifier} that considers network errors (timeouts, refused or reset
+ * connections) anywhere in the cause chain as transient.
+ *
+ * @since 4.2.0
+ */
+public class DefaultFailureClassifier implements FailureClassifier {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (isTransientCause(t)) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates if a single exception of the cause chain is transient
+     */
+    protected boolean isTransientCause(Throwable t) {
+        // Includes SocketTimeoutException and the connect timeouts of the HTTP clients
+        return t instanceof InterruptedIOException ||
+               // Includes ConnectException
+               t instanceof SocketException ||
+               t instanceof TimeoutException;
+    }
+
+}
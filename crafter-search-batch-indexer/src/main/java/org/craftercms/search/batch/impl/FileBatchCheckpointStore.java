@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch.impl;
+
+import java.beans.ConstructorProperties;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.craftercms.search.batch.BatchCheckpoint;
+import org.craftercms.search.batch.BatchCheckpointStore;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Implementation of {@link BatchCheckpointStore} that saves each checkpoint as a JSON file in a local folder. The
+ * files are written to a temporary file first and then moved, so a crash during a save never leaves a corrupted
+ * checkpoint.
+ *
+ * @since 4.2.0
+ */
+public class FileBatchCheckpointStore implements BatchCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileBatchCheckpointStore.class);
+
+    public static final String CHECKPOINT_FILE_EXTENSION = ".checkpoint.json";
+
+    /**
+     * The folder where the checkpoint files are stored
+     */
+    protected final Path folder;
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ConstructorProperties({"folder"})
+    public FileBatchCheckpointStore(String folder) {
+        this.folder = Paths.get(folder);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BatchCheckpoint load(String indexId, String indexerName) throws BatchIndexingException {
+        Path file = getFile(indexId, indexerName);
+        if (Files.notExists(file)) {
+            return null;
+        }
+
+        try {
+            return objectMapper.readValue(file.toFile(), BatchCheckpoint.class);
+        } catch (IOException e) {
+            throw new BatchIndexingException("Error reading checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(BatchCheckpoint checkpoint) throws BatchIndexingException {
+        Path file = getFile(checkpoint.getIndexId(), checkpoint.getIndexerName());
+        try {
+            Files.createDirectories(folder);
+
+            Path tmpFile = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+            try {
+                checkpoint.setTimestamp(System.currentTimeMillis());
+                objectMapper.writeValue(tmpFile.toFile(), checkpoint);
+
+                try {
+                    Files.move(tmpFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile, file, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+
+            logger.debug("Saved {}", checkpoint);
+        } catch (IOException e) {
+            throw new BatchIndexingException("Error writing checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(String indexId, String indexerName) throws BatchIndexingException {
+        Path file = getFile(indexId, indexerName);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new BatchIndexingException("Error deleting checkpoint file " + file, e);
+        }
+    }
+
+    protected Path getFile(String indexId, String indexerName) {
+        return folder.resolve(sanitize(indexId) + "_" + sanitize(indexerName) + CHECKPOINT_FILE_EXTENSION);
+    }
+
+    protected String sanitize(String name) {
+        return String.valueOf(name).replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.batch.impl;
+
+import java.beans.ConstructorProperties;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.craftercms.search.batch.DeadLetterLog;
+import org.craftercms.search.batch.UpdateSet;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+/**
+ * Implementation of {@link DeadLetterLog} that stores the failed operations of each index in a local file, with one
+ * JSON entry per line.
+ *
+ * @since 4.2.0
+ */
+public class FileDeadLetterLog implements DeadLetterLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDeadLetterLog.class);
+
+    public static final String DEAD_LETTER_FILE_EXTENSION = ".deadletter.jsonl";
+
+    /**
+     * The folder where the files are stored
+     */
+    protected final Path folder;
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ConstructorProperties({"folder"})
+    public FileDeadLetterLog(String folder) {
+        this.folder = Paths.get(folder);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void record(String indexId, String siteName, String path, boolean delete, String reason)
+            throws BatchIndexingException {
+        Path file = getFile(indexId);
+        try {
+            Files.createDirectories(folder);
+
+            Entry entry = new Entry();
+            entry.setTimestamp(System.currentTimeMillis());
+            entry.setSiteName(siteName);
+            entry.setPath(path);
+            entry.setDelete(delete);
+            entry.setReason(reason);
+
+            try (BufferedWriter writer = Files.newBufferedWriter(file, UTF_8, CREATE, APPEND)) {
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.newLine();
+            }
+
+            logger.info("Recorded failed {} of {}:{} in {}", delete ? "delete" : "update", siteName, path, file);
+        } catch (IOException e) {
+            throw new BatchIndexingException("Error writing dead letter file " + file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized UpdateSet getUpdateSet(String indexId, String siteName) throws BatchIndexingException {
+        // Keeps only the last operation for each path
+        Map<String, Boolean> operations = new LinkedHashMap<>();
+        for (Entry entry : readEntries(indexId)) {
+            if (siteName.equals(entry.getSiteName())) {
+                operations.remove(entry.getPath());
+                operations.put(entry.getPath(), entry.isDelete());
+            }
+        }
+
+        List<String> updatePaths = new ArrayList<>();
+        List<String> deletePaths = new ArrayList<>();
+        operations.forEach((path, delete) -> (delete ? deletePaths : updatePaths).add(path));
+
+        return new UpdateSet(updatePaths, deletePaths);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void remove(String indexId, String siteName, Collection<String> paths)
+            throws BatchIndexingException {
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        Set<String> removedPaths = new HashSet<>(paths);
+        Path file = getFile(indexId);
+        try {
+            List<String> lines = new ArrayList<>();
+            for (Entry entry : readEntries(indexId)) {
+                if (!siteName.equals(entry.getSiteName()) || !removedPaths.contains(entry.getPath())) {
+                    lines.add(objectMapper.writeValueAsString(entry));
+                }
+            }
+
+            if (lines.isEmpty()) {
+                Files.deleteIfExists(file);
+            } else {
+                Path tmpFile = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+                try {
+                    Files.write(tmpFile, lines, UTF_8);
+                    try {
+                        Files.move(tmpFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(tmpFile, file, REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(tmpFile);
+                }
+            }
+        } catch (IOException e) {
+            throw new BatchIndexingException("Error writing dead letter file " + file, e);
+        }
+    }
+
+    protected List<Entry> readEntries(String indexId) throws BatchIndexingException {
+        Path file = getFile(indexId);
+        if (Files.notExists(file)) {
+            return Collections.emptyList();
+        }
+
+        try {
+            List<Entry> entries = new ArrayList<>();
+            for (String line : Files.readAllLines(file, UTF_8)) {
+                if (!line.isBlank()) {
+                    entries.add(objectMapper.readValue(line, Entry.class));
+                }
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new BatchIndexingException("Error reading dead letter file " + file, e);
+        }
+    }
+
+    protected Path getFile(String indexId) {
+        return folder.resolve(String.valueOf(indexId).replaceAll("[^A-Za-z0-9._-]", "_") +
+                              DEAD_LETTER_FILE_EXTENSION);
+    }
+
+    /**
+     * A single failed operation
+     */
+    public static class Entry {
+
+        protected long timestamp;
+        protected String siteName;
+        protected String path;
+        protected boolean delete;
+        protected String reason;
+
+        @JsonProperty("timestamp")
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @JsonProperty("site_name")
+        public String getSiteName() {
+            return siteName;
+        }
+
+        public void setSiteName(String siteName) {
+            this.siteName = siteName;
+        }
+
+        @JsonProperty("path")
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        @JsonProperty("delete")
+        public boolean isDelete() {
+            return delete;
+        }
+
+        public void setDelete(boolean delete) {
+            this.delete = delete;
+        }
+
+        @JsonProperty("reason")
+        public String getReason() {
+            return reason;
+        }
+
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+
+    }
+
+}
@@ -17,9 +17,12 @@
 package org.craftercms.search.batch.utils;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import javax.activation.FileTypeMap;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -57,4 +60,42 @@ public abstract class IndexingUtils {
         return additionalFields;
     }
 
+    /**
+     * Returns an iterator that lazily groups the elements of the given iterator in lists of at most the given size, so
+     * that only one of those lists needs to be in memory at a time.
+     *
+     * @param iterator the source iterator
+     * @param size the max size of each list
+     * @return the iterator of lists
+     * @since 4.2.0
+     */
+    public static <T> Iterator<List<T>> partition(Iterator<T> iterator, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The partition size should be greater than 0");
+        }
+
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                List<T> partition = new ArrayList<>(Math.min(size, 1024));
+                while (partition.size() < size && iterator.hasNext()) {
+                    partition.add(iterator.next());
+                }
+
+                return partition;
+            }
+
+        };
+    }
+
 }
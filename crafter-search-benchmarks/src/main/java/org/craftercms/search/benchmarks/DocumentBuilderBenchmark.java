@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.craftercms.search.commons.service.ElementParser;
+import org.craftercms.search.commons.service.impl.AbstractDocumentBuilder;
+import org.craftercms.search.commons.service.impl.AbstractElementParser;
+import org.craftercms.search.commons.service.impl.ElementParserServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the throughput of {@link AbstractDocumentBuilder} with several indexing threads, creating a new SAX reader
+ * for each document or reusing the reader of each thread.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class DocumentBuilderBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean reuseSaxReaders;
+
+    private String xml;
+
+    private MapDocumentBuilder documentBuilder;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/samples/page.xml")) {
+            xml = new String(in.readAllBytes(), UTF_8);
+        }
+
+        MapElementParser parser = new MapElementParser();
+        parser.setFieldValueConverter((name, value) -> value);
+
+        ElementParserServiceImpl<Map<String, Object>> parserService = new ElementParserServiceImpl<>();
+        parserService.setParsers(List.<ElementParser<Map<String, Object>>>of(parser));
+
+        documentBuilder = new MapDocumentBuilder();
+        documentBuilder.setParserService(parserService);
+        documentBuilder.setFieldValueConverter((name, value) -> value);
+        documentBuilder.setReuseSaxReaders(reuseSaxReaders);
+    }
+
+    @Benchmark
+    public Object build() {
+        return documentBuilder.build("mysite", "/site/website/index.xml", xml, true);
+    }
+
+    private static class MapDocumentBuilder extends AbstractDocumentBuilder<Map<String, Object>> {
+
+        @Override
+        protected Map<String, Object> createDoc() {
+            return new HashMap<>();
+        }
+
+        @Override
+        protected void addField(Map<String, Object> doc, String fieldName, Object fieldValue) {
+            doc.put(fieldName, fieldValue);
+        }
+
+    }
+
+    private static class MapElementParser extends AbstractElementParser<Map<String, Object>> {
+
+        @Override
+        protected void addField(Map<String, Object> doc, String fieldName, Object fieldValue) {
+            doc.put(fieldName, fieldValue);
+        }
+
+    }
+
+}
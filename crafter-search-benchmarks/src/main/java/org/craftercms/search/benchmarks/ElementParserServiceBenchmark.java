@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.search.commons.service.impl.ElementParserServiceImpl;
+import org.craftercms.search.opensearch.jackson.CompactMultivaluedMap;
+import org.dom4j.DocumentException;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ElementParserServiceImpl} on its own, parsing already loaded DOM trees so the XML parsing and the
+ * document post processing are not included.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ElementParserServiceBenchmark {
+
+    @Param({ "ipad.xml", "generated:10", "generated:100", "generated:1000" })
+    public String document;
+
+    private List<Element> elements;
+
+    private ElementParserServiceImpl<Map<String, Object>> parserService;
+
+    @Setup
+    public void setUp() throws DocumentException {
+        Element root = new SAXReader().read(new StringReader(Samples.getXml(document))).getRootElement();
+
+        elements = root.elements();
+        parserService = IndexingConfiguration.createParserService(IndexingConfiguration.createFieldValueConverter());
+    }
+
+    @Benchmark
+    public Map<String, Object> parse() {
+        Map<String, Object> doc = new CompactMultivaluedMap();
+        for (Element element : elements) {
+            parserService.parse(element, StringUtils.EMPTY, doc);
+        }
+
+        return doc;
+    }
+
+}
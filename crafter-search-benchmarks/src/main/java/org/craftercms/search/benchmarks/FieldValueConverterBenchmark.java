@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.craftercms.search.commons.service.FieldValueConverter;
+import org.craftercms.search.commons.service.impl.CompositeSuffixBasedConverter;
+import org.craftercms.search.commons.service.impl.DateTimeConverter;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link CompositeSuffixBasedConverter} with the previous implementation, which scanned all the
+ * mappings and built the date formatters for every field. Uses the same mappings as the default Crafter configuration
+ * and a mix of fields similar to a regular page. The date converter is also measured on its own.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldValueConverterBenchmark {
+
+    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private static final String TIME_PATTERN = "HH:mm:ss";
+
+    /**
+     * Field names and values of a single document, most of them without a specific converter
+     */
+    private static final String[][] FIELDS = {
+        { "title_s", "Home" },
+        { "title_t", "Welcome to the home page" },
+        { "internal-name", "Home Page" },
+        { "navLabel", "Home" },
+        { "placeInNav", "true" },
+        { "disabled", "false" },
+        { "orderDefault_f", "1000.0" },
+        { "views_i", "42" },
+        { "featured_b", "true" },
+        { "author_s", "jane" },
+        { "category_smv", "news" },
+        { "keywords_t", "crafter cms search" },
+        { "createdDate_dt", "2023-05-01T10:15:30.000-0600" },
+        { "lastModifiedDate_dt", "2023-05-02T08:00:00.000-0600" },
+        { "openingTime_to", "09:30:00" },
+        { "image_s", "/static-assets/images/home.png" }
+    };
+
+    private FieldValueConverter cachedConverter;
+
+    private FieldValueConverter legacyConverter;
+
+    private FieldValueConverter dateTimeConverter;
+
+    @Setup
+    public void setUp() {
+        Map<String, FieldValueConverter> mappings = new LinkedHashMap<>();
+        mappings.put("_html", (name, value) -> value);
+        mappings.put("_dt", newDateTimeConverter(DATE_TIME_PATTERN));
+        mappings.put("_to", newDateTimeConverter(TIME_PATTERN));
+
+        CompositeSuffixBasedConverter converter = new CompositeSuffixBasedConverter();
+        converter.setConverterMappings(mappings);
+        cachedConverter = converter;
+
+        Map<String, FieldValueConverter> legacyMappings = new LinkedHashMap<>();
+        legacyMappings.put("_html", (name, value) -> value);
+        legacyMappings.put("_dt", new LegacyDateTimeConverter(DATE_TIME_PATTERN));
+        legacyMappings.put("_to", new LegacyDateTimeConverter(TIME_PATTERN));
+        legacyConverter = new LegacySuffixBasedConverter(legacyMappings);
+
+        dateTimeConverter = newDateTimeConverter(DATE_TIME_PATTERN);
+    }
+
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+        convertDocument(cachedConverter, blackhole);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        convertDocument(legacyConverter, blackhole);
+    }
+
+    @Benchmark
+    public Object dateTime() {
+        return dateTimeConverter.convert("createdDate_dt", "2023-05-01T10:15:30.000-0600");
+    }
+
+    private void convertDocument(FieldValueConverter converter, Blackhole blackhole) {
+        for (String[] field : FIELDS) {
+            blackhole.consume(converter.convert(field[0], field[1]));
+        }
+    }
+
+    private static DateTimeConverter newDateTimeConverter(String pattern) {
+        DateTimeConverter converter = new DateTimeConverter();
+        converter.setDateTimeFieldPattern(pattern);
+        return converter;
+    }
+
+    /**
+     * Copy of the converter before the field names were cached
+     */
+    private static class LegacySuffixBasedConverter implements FieldValueConverter {
+
+        private final Map<String, FieldValueConverter> converterMappings;
+
+        LegacySuffixBasedConverter(Map<String, FieldValueConverter> converterMappings) {
+            this.converterMappings = converterMappings;
+        }
+
+        @Override
+        public Object convert(String name, String value) {
+            for (Map.Entry<String, FieldValueConverter> entry : converterMappings.entrySet()) {
+                if (name.endsWith(entry.getKey())) {
+                    return entry.getValue().convert(name, value);
+                }
+            }
+            return value;
+        }
+
+    }
+
+    /**
+     * Copy of the date converter before the formatters were precompiled
+     */
+    private static class LegacyDateTimeConverter implements FieldValueConverter {
+
+        private final String pattern;
+
+        LegacyDateTimeConverter(String pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public Object convert(String name, String value) {
+            return ISODateTimeFormat.dateTime().print(DateTimeFormat.forPattern(pattern).withZoneUTC()
+                                                                    .parseDateTime(value));
+        }
+
+    }
+
+}
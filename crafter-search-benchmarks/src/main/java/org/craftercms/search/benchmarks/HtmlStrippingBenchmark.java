@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.craftercms.search.commons.service.impl.HtmlStrippingConverter;
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Safelist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares the {@link HtmlStrippingConverter} with the previous implementation based on {@code Jsoup.clean}, using
+ * a rich text field like the ones produced by the Studio RTE.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlStrippingBenchmark {
+
+    /**
+     * The number of times the sample is repeated in the field, to compare small and large bodies
+     */
+    @Param({ "1", "10" })
+    public int repetitions;
+
+    private String html;
+
+    private HtmlStrippingConverter converter;
+
+    @Setup
+    public void setUp() throws IOException {
+        String sample;
+        try (InputStream in = getClass().getResourceAsStream("/samples/rich-text.html")) {
+            sample = new String(in.readAllBytes(), UTF_8);
+        }
+
+        html = sample.repeat(repetitions);
+        converter = new HtmlStrippingConverter();
+    }
+
+    @Benchmark
+    public Object converter() {
+        return converter.convert("body_html", html);
+    }
+
+    @Benchmark
+    public Object jsoupClean() {
+        return Jsoup.clean(html, Safelist.none());
+    }
+
+}
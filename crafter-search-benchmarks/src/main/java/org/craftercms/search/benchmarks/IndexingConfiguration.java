@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.craftercms.search.commons.service.ElementParser;
+import org.craftercms.search.commons.service.FieldValueConverter;
+import org.craftercms.search.commons.service.impl.CompositeSuffixBasedConverter;
+import org.craftercms.search.commons.service.impl.DateTimeConverter;
+import org.craftercms.search.commons.service.impl.ElementParserServiceImpl;
+import org.craftercms.search.commons.service.impl.HtmlStrippingConverter;
+import org.craftercms.search.commons.service.impl.TokenizedElementParser;
+import org.craftercms.search.opensearch.impl.ItemListElementParser;
+import org.craftercms.search.opensearch.impl.OpenSearchDocumentBuilder;
+import org.craftercms.search.opensearch.impl.OpenSearchElementParserImpl;
+
+/**
+ * Creates the indexing components with the same configuration used by Crafter, so the benchmarks measure the real
+ * chain of parsers and converters.
+ *
+ * @since 4.2.0
+ */
+public abstract class IndexingConfiguration {
+
+    public static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    public static final String TIME_PATTERN = "HH:mm:ss";
+
+    public static FieldValueConverter createFieldValueConverter() {
+        Map<String, FieldValueConverter> mappings = new LinkedHashMap<>();
+        mappings.put("_html", new HtmlStrippingConverter());
+        mappings.put("_dt", createDateTimeConverter(DATE_TIME_PATTERN));
+        mappings.put("_to", createDateTimeConverter(TIME_PATTERN));
+
+        CompositeSuffixBasedConverter converter = new CompositeSuffixBasedConverter();
+        converter.setConverterMappings(mappings);
+
+        return converter;
+    }
+
+    public static DateTimeConverter createDateTimeConverter(String pattern) {
+        DateTimeConverter converter = new DateTimeConverter();
+        converter.setDateTimeFieldPattern(pattern);
+
+        return converter;
+    }
+
+    public static ElementParserServiceImpl<Map<String, Object>> createParserService(
+            FieldValueConverter fieldValueConverter) {
+        OpenSearchElementParserImpl elementParser = new OpenSearchElementParserImpl();
+        elementParser.setFieldValueConverter(fieldValueConverter);
+
+        ElementParserServiceImpl<Map<String, Object>> parserService = new ElementParserServiceImpl<>();
+        parserService.setParsers(List.<ElementParser<Map<String, Object>>>of(new ItemListElementParser(),
+                                                                             new TokenizedElementParser<>(),
+                                                                             elementParser));
+        parserService.setCopyFields(Map.of(".+_html", "_raw"));
+
+        return parserService;
+    }
+
+    public static OpenSearchDocumentBuilder createDocumentBuilder() {
+        FieldValueConverter fieldValueConverter = createFieldValueConverter();
+
+        OpenSearchDocumentBuilder documentBuilder = new OpenSearchDocumentBuilder();
+        documentBuilder.setPublishingDateFieldName("crafterPublishedDate");
+        documentBuilder.setPublishingDateAltFieldName("crafterPublishedDate_dt");
+        documentBuilder.setFieldValueConverter(fieldValueConverter);
+        documentBuilder.setParserService(createParserService(fieldValueConverter));
+        documentBuilder.setCopyFields(Map.of(".+_html", "_raw"));
+
+        return documentBuilder;
+    }
+
+}
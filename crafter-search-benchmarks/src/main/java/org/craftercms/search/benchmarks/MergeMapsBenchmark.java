@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.craftercms.search.commons.utils.MapUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link MapUtils#mergeMaps(Map, Map)} with the previous implementation, which copied both maps into a new
+ * sorted map, merging the additional fields of a binary or remote document into a built document.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeMapsBenchmark {
+
+    @Param({ "ipad.xml", "generated:100" })
+    public String document;
+
+    private Map<String, Object> doc;
+
+    private Map<String, Object> additionalFields;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        doc = IndexingConfiguration.createDocumentBuilder().build("mysite", "/site/website/index.xml",
+                                                                  Samples.getXml(document), true);
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("author_s", "jane");
+        metadata.put("keywords_smv", List.of("crafter", "search"));
+
+        additionalFields = new HashMap<>();
+        additionalFields.put("content-type", "/page/entry");
+        additionalFields.put("contentLength", 1024L);
+        additionalFields.put("tags_smv", List.of("imported", "remote"));
+        additionalFields.put("metadata", metadata);
+        additionalFields.put("crafterSite", "mysite");
+
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public Map<String, Object> lazy() {
+        return MapUtils.mergeMaps(doc, additionalFields);
+    }
+
+    @Benchmark
+    public Map<String, Object> eager() {
+        return eagerMergeMaps(doc, additionalFields);
+    }
+
+    @Benchmark
+    public byte[] lazyAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(lazy());
+    }
+
+    @Benchmark
+    public byte[] eagerAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(eager());
+    }
+
+    /**
+     * Copy of the merge before it was replaced by a lazy view
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> eagerMergeMaps(Map<String, Object> a, Map<String, Object> b) {
+        var map = new TreeMap<>(a);
+        b.forEach((key, value) -> map.merge(key, value, (oldValue, newValue) -> {
+            if (oldValue instanceof Map && newValue instanceof Map) {
+                return eagerMergeMaps((Map<String, Object>) oldValue, (Map<String, Object>) newValue);
+            } else if (oldValue instanceof Map || newValue instanceof Map) {
+                return oldValue;
+            } else if (oldValue instanceof List && newValue instanceof List) {
+                var list = new ArrayList<>((List<Object>) oldValue);
+                list.addAll((List<Object>) newValue);
+                return list;
+            } else if (oldValue instanceof List) {
+                var list = new ArrayList<>((List<Object>) oldValue);
+                list.add(newValue);
+                return list;
+            } else if (newValue instanceof List) {
+                var list = new ArrayList<>((List<Object>) newValue);
+                list.add(oldValue);
+                return list;
+            } else {
+                return newValue;
+            }
+        }));
+
+        return map;
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.craftercms.search.opensearch.jackson.CompactMultivaluedMap;
+import org.craftercms.search.opensearch.jackson.MixedMultivaluedMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link CompactMultivaluedMap} with the deprecated {@link MixedMultivaluedMap}, adding the fields of a
+ * document where some keys have a single value and others up to {@code maxValues} values, and then serializing it.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class MultivaluedMapBenchmark {
+
+    private static final int FIELDS = 50;
+
+    @Param({ "compact", "mixed" })
+    public String implementation;
+
+    /**
+     * The max number of values of a single field, similar to the size of a repeat group
+     */
+    @Param({ "1", "10", "100" })
+    public int maxValues;
+
+    private String[] keys;
+
+    private String[] values;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        int count = 0;
+        for (int i = 0; i < FIELDS; i++) {
+            count += getValueCount(i);
+        }
+
+        keys = new String[count];
+        values = new String[count];
+
+        // Values of the same field are not contiguous, just like in a repeat group
+        int position = 0;
+        for (int value = 0; value < maxValues; value++) {
+            for (int field = 0; field < FIELDS; field++) {
+                if (value < getValueCount(field)) {
+                    keys[position] = "field" + field + "_s";
+                    values[position] = "Value " + value + " of field " + field;
+                    position++;
+                }
+            }
+        }
+
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public Map<String, Object> put() {
+        Map<String, Object> map = createMap();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+
+        return map;
+    }
+
+    @Benchmark
+    public byte[] putAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(put());
+    }
+
+    private Map<String, Object> createMap() {
+        return "compact".equals(implementation) ? new CompactMultivaluedMap() : new MixedMultivaluedMap();
+    }
+
+    /**
+     * One of every five fields is multivalued
+     */
+    private int getValueCount(int field) {
+        return field % 5 == 0 ? maxValues : 1;
+    }
+
+}
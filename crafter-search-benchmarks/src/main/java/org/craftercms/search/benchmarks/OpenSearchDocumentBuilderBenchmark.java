@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.craftercms.search.opensearch.impl.OpenSearchDocumentBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link OpenSearchDocumentBuilder#build(String, String, String, boolean)} with the parsers and converters
+ * used by Crafter, for the sample documents and for generated descriptors with large repeat groups.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenSearchDocumentBuilderBenchmark {
+
+    @Param({ "component.xml", "ipad.xml", "test.xml", "generated:10", "generated:100", "generated:1000" })
+    public String document;
+
+    private String xml;
+
+    private OpenSearchDocumentBuilder documentBuilder;
+
+    @Setup
+    public void setUp() {
+        xml = Samples.getXml(document);
+        documentBuilder = IndexingConfiguration.createDocumentBuilder();
+    }
+
+    @Benchmark
+    public Map<String, Object> build() {
+        return documentBuilder.build("mysite", "/site/website/index.xml", xml, true);
+    }
+
+}
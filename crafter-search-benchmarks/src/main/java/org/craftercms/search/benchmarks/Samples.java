@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Provides the documents used by the benchmarks: the sample documents of the integration tests, under {@code /docs},
+ * and generated descriptors with large repeat groups.
+ *
+ * @since 4.2.0
+ */
+public abstract class Samples {
+
+    /**
+     * Prefix of the names of generated descriptors, followed by the number of items, e.g. {@code generated:1000}
+     */
+    public static final String GENERATED_PREFIX = "generated:";
+
+    /**
+     * Returns the XML of the given document, either a file under {@code /docs} or a generated descriptor
+     *
+     * @param name the name of the file or {@code generated:<items>}
+     * @return the XML of the document
+     */
+    public static String getXml(String name) {
+        if (name.startsWith(GENERATED_PREFIX)) {
+            return generateDescriptor(Integer.parseInt(StringUtils.removeStart(name, GENERATED_PREFIX)));
+        }
+
+        return new String(getBytes("/docs/" + name), UTF_8);
+    }
+
+    /**
+     * Returns the content of the given classpath resource
+     */
+    public static byte[] getBytes(String path) {
+        try (InputStream in = Samples.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Sample '" + path + "' not found");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read sample '" + path + "'", e);
+        }
+    }
+
+    /**
+     * Generates a page descriptor with a repeat group of the given size. Each item has the same kind of fields as the
+     * real descriptors: tokenized strings, rich text, dates, multivalued fields, a nested component, an item list
+     * and a field that is not indexable.
+     *
+     * @param items the number of items in the repeat group
+     * @return the XML of the descriptor
+     */
+    public static String generateDescriptor(int items) {
+        StringBuilder xml = new StringBuilder(512 + items * 1024);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+           .append("<page>\n")
+           .append("  <content-type>/page/article</content-type>\n")
+           .append("  <display-template>/templates/web/article.ftl</display-template>\n")
+           .append("  <objectId>8d7f21fa-5e09-00aa-8340-853b7db302da</objectId>\n")
+           .append("  <internal-name>Generated article</internal-name>\n")
+           .append("  <title_s tokenized=\"true\">Generated article with ").append(items).append(" items</title_s>\n")
+           .append("  <createdDate_dt>2023-05-01T10:15:30.000Z</createdDate_dt>\n")
+           .append("  <lastModifiedDate_dt>2023-05-02T08:00:00.000Z</lastModifiedDate_dt>\n")
+           .append("  <body_html><![CDATA[<h2>Generated</h2><p>An article with <strong>many</strong> items &amp; ")
+           .append("sections.</p>]]></body_html>\n")
+           .append("  <sections_o>\n");
+
+        for (int i = 0; i < items; i++) {
+            xml.append("    <item>\n")
+               .append("      <title_s tokenized=\"true\">Section ").append(i).append("</title_s>\n")
+               .append("      <order_i>").append(i).append("</order_i>\n")
+               .append("      <date_dt>2023-05-").append(String.format("%02d", i % 28 + 1))
+               .append("T08:00:00.000Z</date_dt>\n")
+               .append("      <body_html><![CDATA[<p>Paragraph <em>").append(i).append("</em> of the ")
+               .append("<a href=\"/articles\">generated</a> article.</p><ul><li>First</li><li>Second</li></ul>")
+               .append("]]></body_html>\n")
+               .append("      <tags_o>\n")
+               .append("        <item><key>tag").append(i % 10).append("</key><value_smv>Tag ").append(i % 10)
+               .append("</value_smv></item>\n")
+               .append("        <item><key>common</key><value_smv>Common</value_smv></item>\n")
+               .append("      </tags_o>\n")
+               .append("      <image_o item-list=\"true\">\n")
+               .append("        <item><url_s>/static-assets/images/").append(i).append(".jpg</url_s></item>\n")
+               .append("      </image_o>\n")
+               .append("      <component>\n")
+               .append("        <content-type>/component/card</content-type>\n")
+               .append("        <objectId>card-").append(i).append("</objectId>\n")
+               .append("        <label_s>Card ").append(i).append("</label_s>\n")
+               .append("      </component>\n")
+               .append("      <notes indexable=\"false\">Internal notes</notes>\n")
+               .append("    </item>\n");
+        }
+
+        xml.append("  </sections_o>\n")
+           .append("</page>\n");
+
+        return xml.toString();
+    }
+
+}
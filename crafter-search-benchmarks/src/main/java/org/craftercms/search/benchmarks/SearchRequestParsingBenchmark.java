@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.craftercms.search.opensearch.impl.AbstractOpenSearchWrapper;
+import org.opensearch.action.search.SearchRequest;
+import org.opensearch.common.settings.Settings;
+import org.opensearch.common.xcontent.XContentFactory;
+import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.core.xcontent.DeprecationHandler;
+import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.core.xcontent.XContentParser;
+import org.opensearch.search.SearchModule;
+import org.opensearch.search.builder.SearchSourceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the parsing of a search request received as a map by {@link AbstractOpenSearchWrapper} with the previous
+ * implementation, which wrote the map as JSON and built a new {@link SearchModule} for every request.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchRequestParsingBenchmark {
+
+    private Map<String, Object> request;
+
+    private ParsingWrapper wrapper;
+
+    @Setup
+    public void setUp() {
+        request = Map.of(
+            "query", Map.of(
+                "bool", Map.of(
+                    "must", List.of(
+                        Map.of("match", Map.of("title_t", "crafter search")),
+                        Map.of("range", Map.of("date_dt", Map.of("gte", "now-1y")))
+                    ),
+                    "filter", List.of(
+                        Map.of("term", Map.of("content-type", "/page/article")),
+                        Map.of("terms", Map.of("tags_smv", List.of("news", "blog", "events")))
+                    )
+                )
+            ),
+            "aggs", Map.of(
+                "tags", Map.of("terms", Map.of("field", "tags_smv", "size", 10))
+            ),
+            "sort", List.of(Map.of("date_dt", "desc")),
+            "from", 0,
+            "size", 20
+        );
+        wrapper = new ParsingWrapper();
+    }
+
+    @Benchmark
+    public SearchSourceBuilder legacy() throws IOException {
+        String json = new ObjectMapper().writeValueAsString(request);
+        NamedXContentRegistry registry = new NamedXContentRegistry(
+                new SearchModule(Settings.EMPTY, List.of()).getNamedXContents());
+
+        try (XContentParser parser = XContentFactory.xContent(XContentType.JSON)
+                .createParser(registry, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            return SearchSourceBuilder.fromXContent(parser);
+        }
+    }
+
+    @Benchmark
+    public SearchSourceBuilder cached() throws IOException {
+        try (XContentParser parser = wrapper.createParser(request)) {
+            return SearchSourceBuilder.fromXContent(parser);
+        }
+    }
+
+    /**
+     * Wrapper without a client, only used to access the parsing of the requests
+     */
+    private static class ParsingWrapper extends AbstractOpenSearchWrapper {
+
+        private ParsingWrapper() {
+            super(null);
+        }
+
+        @Override
+        protected XContentParser createParser(Map<String, Object> request) throws IOException {
+            return super.createParser(request);
+        }
+
+        @Override
+        protected void updateIndex(SearchRequest request) {
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.craftercms.search.opensearch.impl.tika.TikaDocumentParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Measures {@link TikaDocumentParser#parseToXml(String, Resource, Map)} for the sample binary files, extracting only
+ * the metadata or also the content.
+ *
+ * @since 4.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TikaDocumentParserBenchmark {
+
+    @Param({ "notes.txt", "crafter-wp-7-reasons.pdf", "crafter-wp-wem-v2.pdf" })
+    public String file;
+
+    /**
+     * The max number of characters of content to extract, 0 extracts only the metadata
+     */
+    @Param({ "0", "100000" })
+    public int charLimit;
+
+    private byte[] content;
+
+    private Map<String, Object> additionalFields;
+
+    private TikaDocumentParser documentParser;
+
+    @Setup
+    public void setUp() {
+        content = Samples.getBytes("/docs/" + file);
+        additionalFields = Map.of("crafterSite", "mysite", "localId", "/static-assets/docs/" + file);
+
+        documentParser = new TikaDocumentParser(List.of());
+        documentParser.setCharLimit(charLimit);
+    }
+
+    @Benchmark
+    public String parseToXml() {
+        return documentParser.parseToXml(file, new ByteArrayResource(content), additionalFields);
+    }
+
+}
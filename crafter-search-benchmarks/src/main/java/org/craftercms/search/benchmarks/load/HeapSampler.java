@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples the used heap in a background thread to find its high-water mark during a run.
+ *
+ * @since 4.2.0
+ */
+public class HeapSampler implements AutoCloseable {
+
+    public static final long DEFAULT_INTERVAL = 10;
+
+    protected final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+    protected final Thread thread;
+
+    protected volatile boolean running = true;
+
+    protected volatile long maxUsed;
+
+    /**
+     * Starts sampling the heap every {@link #DEFAULT_INTERVAL} milliseconds
+     */
+    public HeapSampler() {
+        thread = new Thread(this::sample, "heap-sampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the max used heap seen so far, in bytes
+     */
+    public long getMaxUsed() {
+        return Math.max(maxUsed, memoryBean.getHeapMemoryUsage().getUsed());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    protected void sample() {
+        while (running) {
+            maxUsed = Math.max(maxUsed, memoryBean.getHeapMemoryUsage().getUsed());
+            try {
+                Thread.sleep(DEFAULT_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.BatchIndexer;
+import org.craftercms.search.batch.StreamingUpdateSet;
+import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.benchmarks.IndexingConfiguration;
+import org.craftercms.search.opensearch.OpenSearchService;
+import org.craftercms.search.opensearch.batch.OpenSearchBinaryFileBatchIndexer;
+import org.craftercms.search.opensearch.batch.OpenSearchBinaryFileWithMetadataBatchIndexer;
+import org.craftercms.search.opensearch.batch.OpenSearchXmlFileBatchIndexer;
+import org.craftercms.search.opensearch.impl.OpenSearchServiceImpl;
+import org.craftercms.search.opensearch.impl.tika.TikaDocumentParser;
+import org.craftercms.search.opensearch.spring.OpenSearchClientFactory;
+import org.opensearch.client.opensearch.OpenSearchClient;
+
+/**
+ * Load harness that runs the real batch indexers, with the real document building and client, against a
+ * {@link StubOpenSearchServer}, so the whole indexing path can be measured on a single machine without a cluster.
+ * <p>Run it with:</p>
+ * <pre>
+ * java -cp target/benchmarks.jar org.craftercms.search.benchmarks.load.IndexingLoadHarness [--option=value ...]
+ * </pre>
+ * <p>Options (defaults in parentheses):</p>
+ * <ul>
+ *     <li>{@code indexers}: comma separated list of {@code xml}, {@code binary} and {@code metadata} (all)</li>
+ *     <li>{@code pages}: number of pages for the XML indexer (1000)</li>
+ *     <li>{@code deletes}: number of pages deleted by the XML indexer (0)</li>
+ *     <li>{@code pageItems}: items in the repeat group of each page (10)</li>
+ *     <li>{@code binaries}: number of binaries for the binary indexer (100)</li>
+ *     <li>{@code binaryFiles}: sample files used for the binaries ({@code notes.txt,crafter-wp-7-reasons.pdf})</li>
+ *     <li>{@code metadata}: number of metadata files for the metadata indexer (20)</li>
+ *     <li>{@code binariesPerMetadata}: binaries referenced by each metadata file (3)</li>
+ *     <li>{@code charLimit}: max characters of content extracted from binaries (0)</li>
+ *     <li>{@code batchSize}: batch size of the indexers (100)</li>
+ *     <li>{@code bulk}: use bulk requests in the XML indexer (false)</li>
+ *     <li>{@code latency} and {@code jitter}: latency added to every request, in milliseconds (0)</li>
+ *     <li>{@code errorRate}: probability of a request failing with a 503 (0)</li>
+ *     <li>{@code itemErrorRate}: probability of a bulk item failing with a 429 (0)</li>
+ *     <li>{@code retryDelay}: base delay of the indexer retries, in milliseconds (10)</li>
+ *     <li>{@code warmup} and {@code runs}: number of warmup and measured runs (1 and 3)</li>
+ * </ul>
+ * For each run and indexer it reports the indexed documents per second, the requests per document by endpoint, the
+ * p50/p99 latency of each service operation and of the server, and the heap high-water mark.
+ *
+ * @since 4.2.0
+ */
+public class IndexingLoadHarness {
+
+    public static final String INDEX_ID = "load";
+    public static final String SITE_NAME = "load";
+
+    public static final String INDEXER_XML = "xml";
+    public static final String INDEXER_BINARY = "binary";
+    public static final String INDEXER_METADATA = "metadata";
+
+    protected static final Map<String, String> DEFAULT_OPTIONS = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_OPTIONS.put("indexers", INDEXER_XML + "," + INDEXER_BINARY + "," + INDEXER_METADATA);
+        DEFAULT_OPTIONS.put("pages", "1000");
+        DEFAULT_OPTIONS.put("deletes", "0");
+        DEFAULT_OPTIONS.put("pageItems", "10");
+        DEFAULT_OPTIONS.put("binaries", "100");
+        DEFAULT_OPTIONS.put("binaryFiles", "notes.txt,crafter-wp-7-reasons.pdf");
+        DEFAULT_OPTIONS.put("metadata", "20");
+        DEFAULT_OPTIONS.put("binariesPerMetadata", "3");
+        DEFAULT_OPTIONS.put("charLimit", "0");
+        DEFAULT_OPTIONS.put("batchSize", "100");
+        DEFAULT_OPTIONS.put("bulk", "false");
+        DEFAULT_OPTIONS.put("latency", "0");
+        DEFAULT_OPTIONS.put("jitter", "0");
+        DEFAULT_OPTIONS.put("errorRate", "0");
+        DEFAULT_OPTIONS.put("itemErrorRate", "0");
+        DEFAULT_OPTIONS.put("retryDelay", "10");
+        DEFAULT_OPTIONS.put("warmup", "1");
+        DEFAULT_OPTIONS.put("runs", "3");
+    }
+
+    protected final Map<String, String> options;
+
+    protected final StubOpenSearchServer server = new StubOpenSearchServer();
+
+    protected final SyntheticSite site;
+
+    protected final ContentStoreService contentStoreService;
+
+    protected final Context context = SyntheticSite.createContext();
+
+    protected TimedOpenSearchService timedService;
+
+    protected OpenSearchClient client;
+
+    public IndexingLoadHarness(Map<String, String> options) {
+        this.options = options;
+        this.site = new SyntheticSite(getInt("pageItems"), Arrays.asList(get("binaryFiles").split(",")),
+                                      getInt("binariesPerMetadata"));
+        this.contentStoreService = site.createContentStoreService();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULT_OPTIONS);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option '" + arg + "', expected --name=value");
+            }
+
+            String name = arg.substring(2, arg.indexOf('='));
+            if (!DEFAULT_OPTIONS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option '" + name + "', valid options are " +
+                                                   DEFAULT_OPTIONS.keySet());
+            }
+
+            options.put(name, arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new IndexingLoadHarness(options).run();
+    }
+
+    public void run() throws Exception {
+        System.out.println("Options: " + options);
+
+        server.setLatency(getInt("latency"));
+        server.setJitter(getInt("jitter"));
+        server.setErrorRate(Double.parseDouble(get("errorRate")));
+        server.setItemErrorRate(Double.parseDouble(get("itemErrorRate")));
+
+        String url = server.start();
+        try {
+            client = OpenSearchClientFactory.createClient(new String[] { url }, null, null, -1, -1, -1, false);
+
+            TikaDocumentParser documentParser = new TikaDocumentParser(Collections.emptyList());
+            documentParser.setCharLimit(getInt("charLimit"));
+
+            timedService = TimedOpenSearchService.wrap(
+                new OpenSearchServiceImpl(IndexingConfiguration.createDocumentBuilder(), documentParser, client));
+
+            Map<String, BatchIndexer> indexers = createIndexers(timedService.getService());
+
+            int warmup = getInt("warmup");
+            int runs = getInt("runs");
+            for (int run = 0; run < warmup + runs; run++) {
+                String label = run < warmup ? "warmup " + (run + 1) : "run " + (run - warmup + 1);
+                for (Map.Entry<String, BatchIndexer> indexer : indexers.entrySet()) {
+                    runIndexer(label, indexer.getKey(), indexer.getValue());
+                }
+            }
+        } finally {
+            if (client != null) {
+                client._transport().close();
+            }
+            server.close();
+        }
+    }
+
+    protected Map<String, BatchIndexer> createIndexers(OpenSearchService searchService) {
+        int batchSize = getInt("batchSize");
+        long retryDelay = getInt("retryDelay");
+        Map<String, BatchIndexer> indexers = new LinkedHashMap<>();
+
+        for (String name : get("indexers").split(",")) {
+            switch (name.trim()) {
+                case INDEXER_XML:
+                    OpenSearchXmlFileBatchIndexer xmlIndexer =
+                        new OpenSearchXmlFileBatchIndexer(null, null, searchService, false);
+                    xmlIndexer.setBulkIndexing(Boolean.parseBoolean(get("bulk")));
+                    xmlIndexer.setBatchSize(batchSize);
+                    xmlIndexer.setRetryDelay(retryDelay);
+                    indexers.put(INDEXER_XML, xmlIndexer);
+                    break;
+                case INDEXER_BINARY:
+                    OpenSearchBinaryFileBatchIndexer binaryIndexer =
+                        new OpenSearchBinaryFileBatchIndexer(searchService);
+                    binaryIndexer.setBatchSize(batchSize);
+                    binaryIndexer.setRetryDelay(retryDelay);
+                    indexers.put(INDEXER_BINARY, binaryIndexer);
+                    break;
+                case INDEXER_METADATA:
+                    OpenSearchBinaryFileWithMetadataBatchIndexer metadataIndexer =
+                        new OpenSearchBinaryFileWithMetadataBatchIndexer(searchService);
+                    metadataIndexer.setMetadataPathPatterns(List.of("^" + SyntheticSite.METADATA_PATH + ".*\\.xml$"));
+                    metadataIndexer.setChildBinaryPathPatterns(List.of("^" + SyntheticSite.BINARIES_PATH + ".*"));
+                    metadataIndexer.setReferenceXPaths(List.of("//file"));
+                    metadataIndexer.setIncludePropertyPatterns(List.of("copyright.*"));
+                    metadataIndexer.setBatchSize(batchSize);
+                    metadataIndexer.setRetryDelay(retryDelay);
+                    indexers.put(INDEXER_METADATA, metadataIndexer);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown indexer '" + name + "'");
+            }
+        }
+
+        return indexers;
+    }
+
+    protected void runIndexer(String label, String name, BatchIndexer indexer) throws Exception {
+        List<String> updatePaths;
+        List<String> deletePaths = Collections.emptyList();
+        switch (name) {
+            case INDEXER_XML:
+                updatePaths = site.getPagePaths(getInt("pages"));
+                deletePaths = site.getPagePaths(getInt("deletes"));
+                break;
+            case INDEXER_BINARY:
+                updatePaths = site.getBinaryPaths(getInt("binaries"));
+                break;
+            default:
+                updatePaths = site.getMetadataPaths(getInt("metadata"));
+        }
+
+        System.gc();
+        server.reset();
+        timedService.reset();
+
+        UpdateStatus updateStatus = new UpdateStatus();
+        long start;
+        long elapsed;
+        long maxHeap;
+        try (HeapSampler heapSampler = new HeapSampler()) {
+            start = System.nanoTime();
+            indexer.updateIndex(INDEX_ID, SITE_NAME, contentStoreService, context,
+                                new StreamingUpdateSet(updatePaths, deletePaths), updateStatus);
+            elapsed = System.nanoTime() - start;
+            maxHeap = heapSampler.getMaxUsed();
+        }
+
+        report(label, name, updateStatus, elapsed, maxHeap);
+    }
+
+    protected void report(String label, String name, UpdateStatus updateStatus, long elapsed, long maxHeap) {
+        int docs = updateStatus.getAttemptedUpdatesAndDeletes();
+        double seconds = elapsed / 1_000_000_000.0;
+
+        System.out.printf("%n[%s] %s indexer: %d docs (%d failed) in %.2f s, %.1f docs/s, heap high-water %d MB%n",
+                          label, name, docs, updateStatus.getFailedUpdatesAndDeletes(), seconds, docs / seconds,
+                          maxHeap / (1024 * 1024));
+
+        List<String> requests = new ArrayList<>();
+        server.getRequestCounts().forEach((endpoint, count) -> requests.add(
+            String.format("%s=%d (%.2f/doc)", endpoint, count, docs > 0 ? (double) count / docs : 0)));
+        System.out.printf("  requests: %d total, %.2f/doc, %d failed, %d failed bulk items: %s%n",
+                          server.getTotalRequests(), docs > 0 ? (double) server.getTotalRequests() / docs : 0,
+                          server.getFailedRequests(), server.getFailedItems(), String.join(", ", requests));
+
+        timedService.getRecorders().forEach((operation, recorder) -> System.out.printf(
+            "  %s: %d calls, p50 %.2f ms, p99 %.2f ms%n", operation, recorder.getCount(),
+            recorder.getPercentile(50), recorder.getPercentile(99)));
+
+        LatencyRecorder serverLatency = server.getLatencyRecorder();
+        System.out.printf("  server: p50 %.2f ms, p99 %.2f ms%n", serverLatency.getPercentile(50),
+                          serverLatency.getPercentile(99));
+    }
+
+    protected String get(String name) {
+        return options.get(name);
+    }
+
+    protected int getInt(String name) {
+        return Integer.parseInt(get(name));
+    }
+
+}
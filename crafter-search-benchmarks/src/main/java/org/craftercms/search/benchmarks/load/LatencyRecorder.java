@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks.load;
+
+import java.util.Arrays;
+
+/**
+ * Records latencies, in nanoseconds, and calculates their percentiles. All the values are kept so the percentiles
+ * are exact, which is fine for the number of requests of a load run.
+ *
+ * @since 4.2.0
+ */
+public class LatencyRecorder {
+
+    private long[] values = new long[1024];
+
+    private int count;
+
+    public synchronized void record(long nanos) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = nanos;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+    }
+
+    /**
+     * Returns the given percentile of the recorded latencies
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds, or 0 if nothing was recorded
+     */
+    public synchronized double getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+
+        return sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+    }
+
+}
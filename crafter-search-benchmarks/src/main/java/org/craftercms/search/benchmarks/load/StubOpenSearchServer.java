@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks.load;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Local HTTP server that answers the requests sent by the indexing path like an OpenSearch cluster would, without
+ * storing anything:
+ * <ul>
+ *     <li>{@code _doc} index and delete requests always succeed</li>
+ *     <li>{@code _bulk} requests return one item per action</li>
+ *     <li>{@code _search} requests return no hits, with a scroll id when a scroll is requested</li>
+ *     <li>scroll and clear scroll requests, and {@code _refresh}</li>
+ * </ul>
+ * Every request can be delayed with a fixed latency plus a random jitter, and fail with a {@code 503} with the
+ * configured probability. Bulk items can also fail individually with a {@code 429}.
+ *
+ * @since 4.2.0
+ */
+public class StubOpenSearchServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubOpenSearchServer.class);
+
+    public static final String ENDPOINT_DOC = "_doc";
+    public static final String ENDPOINT_BULK = "_bulk";
+    public static final String ENDPOINT_SEARCH = "_search";
+    public static final String ENDPOINT_SCROLL = "_search/scroll";
+    public static final String ENDPOINT_REFRESH = "_refresh";
+    public static final String ENDPOINT_OTHER = "other";
+
+    private static final String SHARDS = "{\"total\":1,\"successful\":1,\"failed\":0}";
+    private static final String SEARCH_SHARDS = "{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0}";
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * The fixed latency added to every request, in milliseconds
+     */
+    protected long latency;
+
+    /**
+     * The max random latency added to every request, in milliseconds
+     */
+    protected long jitter;
+
+    /**
+     * The probability of a request failing with a 503
+     */
+    protected double errorRate;
+
+    /**
+     * The probability of a single bulk item failing with a 429
+     */
+    protected double itemErrorRate;
+
+    protected final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+
+    protected final AtomicLong failedRequests = new AtomicLong();
+
+    protected final AtomicLong failedItems = new AtomicLong();
+
+    protected final AtomicLong seqNo = new AtomicLong();
+
+    protected final LatencyRecorder latencyRecorder = new LatencyRecorder();
+
+    protected HttpServer server;
+
+    protected ExecutorService executor;
+
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public void setJitter(long jitter) {
+        this.jitter = jitter;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setItemErrorRate(double itemErrorRate) {
+        this.itemErrorRate = itemErrorRate;
+    }
+
+    /**
+     * Starts the server in a random local port
+     *
+     * @return the URL of the server
+     */
+    public String start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        logger.info("Stub OpenSearch server listening on {}", url);
+
+        return url;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of requests received for each endpoint
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        requestCounts.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+        return counts;
+    }
+
+    public long getTotalRequests() {
+        return requestCounts.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    public long getFailedItems() {
+        return failedItems.get();
+    }
+
+    /**
+     * Returns the time spent by the server on each request, including the injected latency
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Clears the counters and the recorded latencies
+     */
+    public void reset() {
+        requestCounts.clear();
+        failedRequests.set(0);
+        failedItems.set(0);
+        latencyRecorder.reset();
+    }
+
+    protected void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            String endpoint = getEndpoint(path);
+
+            requestCounts.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+
+            delay();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failedRequests.incrementAndGet();
+                discard(exchange.getRequestBody());
+                send(exchange, 503, "{\"error\":{\"type\":\"unavailable_shards_exception\"," +
+                                    "\"reason\":\"Injected error\"},\"status\":503}");
+                return;
+            }
+
+            switch (endpoint) {
+                case ENDPOINT_BULK:
+                    handleBulk(exchange, getIndex(path));
+                    break;
+                case ENDPOINT_DOC:
+                    discard(exchange.getRequestBody());
+                    handleDoc(exchange, method, path);
+                    break;
+                case ENDPOINT_SEARCH:
+                    discard(exchange.getRequestBody());
+                    boolean scroll = query != null && query.contains("scroll=");
+                    send(exchange, 200, getSearchResponse(scroll));
+                    break;
+                case ENDPOINT_SCROLL:
+                    discard(exchange.getRequestBody());
+                    if ("DELETE".equals(method)) {
+                        send(exchange, 200, "{\"succeeded\":true,\"num_freed\":1}");
+                    } else {
+                        send(exchange, 200, getSearchResponse(true));
+                    }
+                    break;
+                case ENDPOINT_REFRESH:
+                    send(exchange, 200, "{\"_shards\":" + SHARDS + "}");
+                    break;
+                default:
+                    discard(exchange.getRequestBody());
+                    send(exchange, 200, "{\"acknowledged\":true}");
+            }
+        } catch (Exception e) {
+            logger.error("Error handling request {}", exchange.getRequestURI(), e);
+        } finally {
+            latencyRecorder.record(System.nanoTime() - start);
+        }
+    }
+
+    protected void handleDoc(HttpExchange exchange, String method, String path) throws IOException {
+        String[] segments = path.split("/");
+        String index = segments[1];
+        String id = segments.length > 3 ? segments[3] : "";
+        String result = "DELETE".equals(method) ? "deleted" : "created";
+
+        send(exchange, 200, "{\"_index\":\"" + index + "\",\"_id\":\"" + id + "\",\"_version\":1," +
+                            "\"result\":\"" + result + "\",\"_shards\":" + SHARDS + ",\"_seq_no\":" +
+                            seqNo.incrementAndGet() + ",\"_primary_term\":1}");
+    }
+
+    /**
+     * Answers a bulk request, reading only the action lines of the body and skipping the sources
+     */
+    protected void handleBulk(HttpExchange exchange, String defaultIndex) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        boolean errors = false;
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(body)) {
+            generator.writeStartObject();
+            generator.writeNumberField("took", 1);
+            generator.writeArrayFieldStart("items");
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                                                                                  UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+
+                    JsonNode action = objectMapper.readTree(line);
+                    String type = action.fieldNames().next();
+                    JsonNode metadata = action.get(type);
+                    String index = metadata.has("_index") ? metadata.get("_index").asText() : defaultIndex;
+                    String id = metadata.has("_id") ? metadata.get("_id").asText() : "";
+
+                    if (!"delete".equals(type)) {
+                        // The next line is the source of the document
+                        reader.readLine();
+                    }
+
+                    generator.writeStartObject();
+                    generator.writeObjectFieldStart(type);
+                    generator.writeStringField("_index", index);
+                    generator.writeStringField("_id", id);
+
+                    if (itemErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < itemErrorRate) {
+                        errors = true;
+                        failedItems.incrementAndGet();
+
+                        generator.writeNumberField("status", 429);
+                        generator.writeObjectFieldStart("error");
+                        generator.writeStringField("type", "es_rejected_execution_exception");
+                        generator.writeStringField("reason", "Injected error");
+                        generator.writeEndObject();
+                    } else {
+                        generator.writeNumberField("status", "delete".equals(type) ? 200 : 201);
+                        generator.writeStringField("result", "delete".equals(type) ? "deleted" : "created");
+                        generator.writeNumberField("_version", 1);
+                        generator.writeNumberField("_seq_no", seqNo.incrementAndGet());
+                        generator.writeNumberField("_primary_term", 1);
+                        generator.writeFieldName("_shards");
+                        generator.writeRawValue(SHARDS);
+                    }
+
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                }
+            }
+
+            generator.writeEndArray();
+            generator.writeBooleanField("errors", errors);
+            generator.writeEndObject();
+        }
+
+        send(exchange, 200, body.toString(UTF_8));
+    }
+
+    protected String getSearchResponse(boolean scroll) {
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":" + SEARCH_SHARDS + "," +
+               (scroll ? "\"_scroll_id\":\"stub-scroll\"," : "") +
+               "\"hits\":{\"total\":{\"value\":0,\"relation\":\"eq\"},\"max_score\":null,\"hits\":[]}}";
+    }
+
+    protected void delay() throws InterruptedException {
+        long delay = latency;
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    protected void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    protected static String getEndpoint(String path) {
+        if (path.contains("/_search/scroll")) {
+            return ENDPOINT_SCROLL;
+        } else if (path.endsWith("/_bulk")) {
+            return ENDPOINT_BULK;
+        } else if (path.endsWith("/_search")) {
+            return ENDPOINT_SEARCH;
+        } else if (path.contains("/_doc/")) {
+            return ENDPOINT_DOC;
+        } else if (path.endsWith("/_refresh")) {
+            return ENDPOINT_REFRESH;
+        } else {
+            return ENDPOINT_OTHER;
+        }
+    }
+
+    protected static String getIndex(String path) {
+        String[] segments = path.split("/");
+        return segments.length > 2 ? segments[1] : "";
+    }
+
+    /**
+     * Reads the whole stream, only used to discard request bodies
+     */
+    protected static void discard(InputStream in) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.core.exception.PathNotFoundException;
+import org.craftercms.core.processors.ItemProcessor;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.search.benchmarks.Samples;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+
+/**
+ * In memory content of a synthetic site, exposed through a {@link ContentStoreService} so it can be indexed by the
+ * real batch indexers. There are three kinds of files, identified by their number:
+ * <ul>
+ *     <li>Pages: generated descriptors with a repeat group of the configured size</li>
+ *     <li>Binaries: copies of the sample files, which are parsed by Tika</li>
+ *     <li>Metadata: descriptors that reference several binaries, like the ones of the metadata indexer</li>
+ * </ul>
+ * Only the paths are generated in advance, the content of each file is created when it's requested. Descriptors are
+ * parsed again on every request, just like a content store without cache would do.
+ *
+ * @since 4.2.0
+ */
+public class SyntheticSite {
+
+    public static final String PAGES_PATH = "/site/website/";
+    public static final String BINARIES_PATH = "/static-assets/documents/";
+    public static final String METADATA_PATH = "/site/documents/";
+
+    /**
+     * The XML of all the pages, only the path changes between them
+     */
+    protected final String pageXml;
+
+    /**
+     * The content of the sample binary files, by name
+     */
+    protected final Map<String, byte[]> binaries = new LinkedHashMap<>();
+
+    protected final String[] binaryNames;
+
+    protected final int binariesPerMetadata;
+
+    /**
+     * Creates the site
+     *
+     * @param pageItems the number of items in the repeat group of each page
+     * @param binaryNames the names of the sample files to use for the binaries, in rotation
+     * @param binariesPerMetadata the number of binaries referenced by each metadata file
+     */
+    public SyntheticSite(int pageItems, List<String> binaryNames, int binariesPerMetadata) {
+        this.pageXml = Samples.generateDescriptor(pageItems);
+        this.binaryNames = binaryNames.toArray(new String[0]);
+        this.binariesPerMetadata = binariesPerMetadata;
+
+        for (String name : binaryNames) {
+            binaries.put(name, Samples.getBytes("/docs/" + name));
+        }
+    }
+
+    /**
+     * Returns the paths of the given number of pages, generated when they are read
+     */
+    public List<String> getPagePaths(int count) {
+        return generatePaths(count, i -> PAGES_PATH + "page-" + i + "/index.xml");
+    }
+
+    /**
+     * Returns the paths of the given number of binaries, generated when they are read
+     */
+    public List<String> getBinaryPaths(int count) {
+        return generatePaths(count, this::getBinaryPath);
+    }
+
+    /**
+     * Returns the paths of the given number of metadata files, generated when they are read
+     */
+    public List<String> getMetadataPaths(int count) {
+        return generatePaths(count, i -> METADATA_PATH + "metadata-" + i + ".xml");
+    }
+
+    /**
+     * Creates a {@link ContentStoreService} that serves the files of the site. Only the methods used by the batch
+     * indexers are supported.
+     */
+    public ContentStoreService createContentStoreService() {
+        return (ContentStoreService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                            new Class<?>[] { ContentStoreService.class },
+                                                            (proxy, method, args) -> invoke(method, args));
+    }
+
+    /**
+     * Creates an empty {@link Context}, the site doesn't need any of its properties
+     */
+    public static Context createContext() {
+        return (Context) Proxy.newProxyInstance(SyntheticSite.class.getClassLoader(),
+                                                new Class<?>[] { Context.class },
+                                                (proxy, method, args) -> {
+                                                    if ("toString".equals(method.getName())) {
+                                                        return "SyntheticSiteContext";
+                                                    }
+                                                    return getDefaultValue(method.getReturnType());
+                                                });
+    }
+
+    protected Object invoke(Method method, Object[] args) throws DocumentException {
+        String name = method.getName();
+        switch (name) {
+            case "getItem":
+            case "findItem":
+                String itemPath = getArgument(args, String.class);
+                Item item = findItem(getArgument(args, Context.class), itemPath,
+                                     getArgument(args, ItemProcessor.class));
+                if (item == null && "getItem".equals(name)) {
+                    throw new PathNotFoundException("No item found @ " + itemPath);
+                }
+                return item;
+            case "getContent":
+            case "findContent":
+                String contentPath = getArgument(args, String.class);
+                Content content = findContent(contentPath);
+                if (content == null && "getContent".equals(name)) {
+                    throw new PathNotFoundException("No content found @ " + contentPath);
+                }
+                return content;
+            case "exists":
+                String path = getArgument(args, String.class);
+                return findContent(path) != null || getXml(path) != null;
+            case "toString":
+                return "SyntheticSiteContentStoreService";
+            case "hashCode":
+                return System.identityHashCode(this);
+            case "equals":
+                return args[0] == this;
+            default:
+                throw new UnsupportedOperationException("Method " + name + " is not supported");
+        }
+    }
+
+    protected Item findItem(Context context, String path, ItemProcessor processor) throws DocumentException {
+        String xml = getXml(path);
+        if (xml == null) {
+            return null;
+        }
+
+        SAXReader reader = new SAXReader();
+        Document document = reader.read(new StringReader(xml));
+
+        Item item = new Item();
+        item.setDescriptorUrl(path);
+        item.setDescriptorDom(document);
+
+        return processor != null ? processor.process(context, null, item) : item;
+    }
+
+    protected Content findContent(String path) {
+        if (!path.startsWith(BINARIES_PATH)) {
+            return null;
+        }
+
+        byte[] bytes = binaries.get(StringUtils.substringAfter(StringUtils.removeStart(path, BINARIES_PATH), "-"));
+        return bytes != null ? new ByteArrayContent(bytes) : null;
+    }
+
+    protected String getXml(String path) {
+        if (path.startsWith(PAGES_PATH)) {
+            return pageXml;
+        } else if (path.startsWith(METADATA_PATH)) {
+            int index = Integer.parseInt(StringUtils.substringBetween(path, "metadata-", ".xml"));
+            return getMetadataXml(index);
+        } else {
+            return null;
+        }
+    }
+
+    protected String getMetadataXml(int index) {
+        StringBuilder xml = new StringBuilder("<metadata>")
+            .append("<copyright><company>CrafterCMS</company><text>All rights reserved</text>")
+            .append("<year>2023</year></copyright>")
+            .append("<files>");
+        for (int i = 0; i < binariesPerMetadata; i++) {
+            xml.append("<file>").append(getBinaryPath(index * binariesPerMetadata + i)).append("</file>");
+        }
+
+        return xml.append("</files></metadata>").toString();
+    }
+
+    protected String getBinaryPath(int index) {
+        return BINARIES_PATH + index + "-" + binaryNames[index % binaryNames.length];
+    }
+
+    /**
+     * Returns the first argument of the given type, or null if there is none
+     */
+    protected static <T> T getArgument(Object[] args, Class<T> type) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (type.isInstance(arg)) {
+                    return type.cast(arg);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    protected static List<String> generatePaths(int count, IntFunction<String> generator) {
+        return new AbstractList<>() {
+
+            @Override
+            public String get(int index) {
+                return generator.apply(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+
+        };
+    }
+
+    protected static Object getDefaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Content backed by a byte array
+     */
+    protected static class ByteArrayContent implements Content {
+
+        protected final byte[] bytes;
+
+        protected final long lastModified = System.currentTimeMillis();
+
+        protected ByteArrayContent(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public long getLength() {
+            return bytes.length;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+    }
+
+}
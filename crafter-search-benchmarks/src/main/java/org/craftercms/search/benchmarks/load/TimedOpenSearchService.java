@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.benchmarks.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.craftercms.search.opensearch.OpenSearchService;
+
+/**
+ * Wraps an {@link OpenSearchService} to record the latency of each operation as seen by the batch indexers, grouped
+ * by method name.
+ *
+ * @since 4.2.0
+ */
+public class TimedOpenSearchService implements InvocationHandler {
+
+    protected final OpenSearchService target;
+
+    protected final ConcurrentMap<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+
+    protected TimedOpenSearchService(OpenSearchService target) {
+        this.target = target;
+    }
+
+    /**
+     * Creates the timed proxy for the given service
+     *
+     * @param target the service to time
+     * @return the handler, use {@link #getService()} to get the proxy
+     */
+    public static TimedOpenSearchService wrap(OpenSearchService target) {
+        return new TimedOpenSearchService(target);
+    }
+
+    public OpenSearchService getService() {
+        return (OpenSearchService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                          new Class<?>[] { OpenSearchService.class }, this);
+    }
+
+    /**
+     * Returns the recorded latencies by method name
+     */
+    public Map<String, LatencyRecorder> getRecorders() {
+        return new TreeMap<>(recorders);
+    }
+
+    public void reset() {
+        recorders.clear();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(target, args);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            recorders.computeIfAbsent(method.getName(), key -> new LatencyRecorder())
+                     .record(System.nanoTime() - start);
+        }
+    }
+
+}
@@ -39,4 +39,38 @@ public interface ElementParser<T> {
     boolean parse(Element element, String fieldName, String parentFieldName, T doc,
                   ElementParserService<T> parserService);
 
+    /**
+     * Parses the given element, which can be an alias: the same element parsed with another name (like the
+     * tokenized field of an element) through {@link ElementParserService#parse(Element, String, String, Object)}.
+     * By default aliases are parsed like any other element.
+     *
+     * @param element           the element to parse
+     * @param fieldName         the field name that should be used for the main field
+     * @param parentFieldName   the field name of the parent element
+     * @param doc               the document to add the generated fields
+     * @param parserService     the parser service used normally to parse sub elements
+     * @param alias             true if the element is being parsed with a name other than its own
+     *
+     * @return true if the element was parsed or handled, false otherwise
+     *
+     * @since 4.2.0
+     */
+    default boolean parse(Element element, String fieldName, String parentFieldName, T doc,
+                          ElementParserService<T> parserService, boolean alias) {
+        return parse(element, fieldName, parentFieldName, doc, parserService);
+    }
+
+    /**
+     * Returns the name of the attribute that an element needs to have for this parser to handle it. The parser
+     * service uses it to skip the parser for any element without the attribute, so it should only be returned by
+     * parsers that always return false for those elements.
+     *
+     * @return the name of the attribute, or null if the parser can handle any element
+     *
+     * @since 4.2.0
+     */
+    default String getRequiredAttributeName() {
+        return null;
+    }
+
 }
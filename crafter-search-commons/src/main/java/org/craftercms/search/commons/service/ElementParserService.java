@@ -34,4 +34,19 @@ public interface ElementParserService<T> {
      */
     void parse(Element element, String parentFieldName, T doc);
 
+    /**
+     * Parses the given element as if its name was {@code elementName}, so the same element can generate fields with
+     * several names. Implementations should not copy or modify the element, the default implementation creates a
+     * copy for backwards compatibility.
+     *
+     * @param element           the element to parse
+     * @param elementName       the name to use instead of the name of the element
+     * @param parentFieldName   the field name of the parent
+     * @param doc               the document to add the generated fields
+     * @since 4.2.0
+     */
+    default void parse(Element element, String elementName, String parentFieldName, T doc) {
+        parse(element.createCopy(elementName), parentFieldName, doc);
+    }
+
 }
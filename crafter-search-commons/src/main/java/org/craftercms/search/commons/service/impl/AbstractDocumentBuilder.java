@@ -20,8 +20,10 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
@@ -68,6 +70,28 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
     protected List<DocumentPostProcessor<T>> postProcessors;
     protected Map<String, String> copyFields;
 
+    /**
+     * The parser service used to build the documents, a copy of {@link #parserService} with the copy fields of this
+     * builder when supported
+     */
+    protected ElementParserService<T> documentParserService;
+
+    /**
+     * The compiled copy fields, only used when the parser service can't add them while parsing
+     */
+    protected Map<Pattern, String> compiledCopyFields;
+
+    /**
+     * Indicates if each thread should reuse its {@link SAXReader} instead of creating a new one for every document.
+     * The reader of a thread keeps a reference to the last document it parsed until the next one is parsed.
+     */
+    protected boolean reuseSaxReaders = true;
+
+    /**
+     * The reader of each thread, created with {@link #createSAXReader()} so it has the same XXE protections
+     */
+    protected final ThreadLocal<SAXReader> saxReaders = ThreadLocal.withInitial(this::createSAXReader);
+
     public AbstractDocumentBuilder() {
         idFieldName = DEFAULT_ID_FIELD_NAME;
         rootIdFieldName = DEFAULT_ROOT_ID_FIELD_NAME;
@@ -104,6 +128,7 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
     @Required
     public void setParserService(ElementParserService<T> parserService) {
         this.parserService = parserService;
+        configureCopyFields();
     }
 
     @Required
@@ -117,6 +142,11 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
 
     public void setCopyFields(final Map<String, String> copyFields) {
         this.copyFields = copyFields;
+        configureCopyFields();
+    }
+
+    public void setReuseSaxReaders(boolean reuseSaxReaders) {
+        this.reuseSaxReaders = reuseSaxReaders;
     }
 
     protected abstract T createDoc();
@@ -125,7 +155,7 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
 
     @SuppressWarnings("unchecked")
     public T build(String site, String id, String xml, boolean ignoreRootInFieldNames) throws DocumentBuildException {
-        SAXReader reader = createSAXReader();
+        SAXReader reader = getSAXReader();
         T doc = createDoc();
         String finalId = site + ":" + id;
 
@@ -149,14 +179,14 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
 
         Element rootElement = document.getRootElement();
 
-        if(MapUtils.isNotEmpty(copyFields)) {
+        if(MapUtils.isNotEmpty(compiledCopyFields)) {
             addCopyFields(rootElement);
         }
 
         // Start the recursive call to build the document
         List<Element> children = rootElement.elements();
         for (Element child : children) {
-            parserService.parse(child, ignoreRootInFieldNames? null : rootElement.getName(), doc);
+            documentParserService.parse(child, ignoreRootInFieldNames? null : rootElement.getName(), doc);
         }
 
         postProcess(doc);
@@ -164,13 +194,32 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
         return doc;
     }
 
+    /**
+     * Copy fields are added by {@link ElementParserServiceImpl} while parsing, without copying the elements. For
+     * other parser services the copies are added to the DOM before parsing. The parser service is never modified,
+     * since it can be shared by several builders.
+     */
+    protected void configureCopyFields() {
+        compiledCopyFields = null;
+        documentParserService = parserService;
+
+        if (MapUtils.isNotEmpty(copyFields)) {
+            if (parserService instanceof ElementParserServiceImpl) {
+                documentParserService = ((ElementParserServiceImpl<T>) parserService).withCopyFields(copyFields);
+            } else {
+                compiledCopyFields = new LinkedHashMap<>();
+                copyFields.forEach((regex, suffix) -> compiledCopyFields.put(Pattern.compile(regex), suffix));
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     protected void addCopyFields(Element element) {
         if(element.hasContent()) {
             if (element.isTextOnly()) {
                 String elementName = element.getName();
-                for (Map.Entry<String, String> entry : copyFields.entrySet()) {
-                    if (elementName.matches(entry.getKey())) {
+                for (Map.Entry<Pattern, String> entry : compiledCopyFields.entrySet()) {
+                    if (entry.getKey().matcher(elementName).matches()) {
                         Element copy = element.createCopy(elementName + entry.getValue());
                         element.getParent().add(copy);
                     }
@@ -219,6 +268,14 @@ public abstract class AbstractDocumentBuilder<T> implements DocumentBuilder<T> {
         }
     }
 
+    /**
+     * Returns the reader to parse a document, which is reused by the current thread if {@code reuseSaxReaders} is
+     * enabled. Creating a new reader means looking up and configuring a new {@code XMLReader} each time.
+     */
+    protected SAXReader getSAXReader() {
+        return reuseSaxReaders ? saxReaders.get() : createSAXReader();
+    }
+
     protected SAXReader createSAXReader() {
         SAXReader reader = new SAXReader();
         reader.setEncoding(CharEncoding.UTF_8);
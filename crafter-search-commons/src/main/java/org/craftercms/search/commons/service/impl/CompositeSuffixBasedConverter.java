@@ -16,6 +16,8 @@
 package org.craftercms.search.commons.service.impl;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.collections4.MapUtils;
 import org.craftercms.search.commons.service.FieldValueConverter;
@@ -25,36 +27,72 @@ import org.craftercms.search.commons.service.FieldValueConverter;
  * mappings. For example, if a field ends with _dt, this converter can delegate to a {@link DateTimeConverter} to
  * convert the field.
  *
+ * <p>The converter resolved for each field name is cached, so the mappings are only scanned the first time a field
+ * name is seen. The cache is bounded by {@code maxCachedFieldNames}, once full the converter for new field names is
+ * resolved on every call.</p>
+ *
  * @author avasquez
  */
 public class CompositeSuffixBasedConverter implements FieldValueConverter {
 
+    public static final int DEFAULT_MAX_CACHED_FIELD_NAMES = 10000;
+
+    /**
+     * Placeholder cached for the field names that don't have a converter, since the cache doesn't accept nulls
+     */
+    private static final FieldValueConverter NO_CONVERTER = (name, value) -> value;
+
     private Map<String, FieldValueConverter> converterMappings;
     private FieldValueConverter defaultConverter;
+    private int maxCachedFieldNames = DEFAULT_MAX_CACHED_FIELD_NAMES;
+
+    private final ConcurrentMap<String, FieldValueConverter> resolvedConverters = new ConcurrentHashMap<>();
 
     public void setConverterMappings(Map<String, FieldValueConverter> converterMappings) {
         this.converterMappings = converterMappings;
+        this.resolvedConverters.clear();
     }
 
     public void setDefaultConverter(FieldValueConverter defaultConverter) {
         this.defaultConverter = defaultConverter;
+        this.resolvedConverters.clear();
+    }
+
+    public void setMaxCachedFieldNames(int maxCachedFieldNames) {
+        this.maxCachedFieldNames = maxCachedFieldNames;
     }
 
     @Override
     public Object convert(String name, String value) {
+        return getConverter(name).convert(name, value);
+    }
+
+    /**
+     * Returns the converter for the given field name, from the cache if it has already been resolved.
+     */
+    protected FieldValueConverter getConverter(String name) {
+        FieldValueConverter converter = resolvedConverters.get(name);
+        if (converter == null) {
+            converter = resolveConverter(name);
+            // The size is not exact under concurrent updates, but it's enough to keep the cache from growing forever
+            if (resolvedConverters.size() < maxCachedFieldNames) {
+                resolvedConverters.putIfAbsent(name, converter);
+            }
+        }
+
+        return converter;
+    }
+
+    protected FieldValueConverter resolveConverter(String name) {
         if (MapUtils.isNotEmpty(converterMappings)) {
             for (Map.Entry<String, FieldValueConverter> entry : converterMappings.entrySet()) {
                 if (name.endsWith(entry.getKey())) {
-                    return entry.getValue().convert(name, value);
+                    return entry.getValue();
                 }
             }
         }
 
-        if (defaultConverter != null) {
-            return defaultConverter.convert(name, value);
-        } else {
-            return value;
-        }
+        return defaultConverter != null ? defaultConverter : NO_CONVERTER;
     }
 
 }
@@ -28,19 +28,24 @@ import org.springframework.beans.factory.annotation.Required;
  */
 public class DateTimeConverter implements FieldValueConverter {
 
+    private static final DateTimeFormatter OUTGOING_FORMATTER = ISODateTimeFormat.dateTime();
+
     private String dateTimeFieldPattern;
 
+    /**
+     * Formatter for {@code dateTimeFieldPattern}, built only once since the formatters are immutable and thread safe
+     */
+    private DateTimeFormatter incomingFormatter;
+
     @Required
     public void setDateTimeFieldPattern(String dateTimeFieldPattern) {
         this.dateTimeFieldPattern = dateTimeFieldPattern;
+        this.incomingFormatter = DateTimeFormat.forPattern(dateTimeFieldPattern).withZoneUTC();
     }
 
     @Override
     public Object convert(String name, String value) {
-        DateTimeFormatter incomingFormatter = DateTimeFormat.forPattern(dateTimeFieldPattern).withZoneUTC();
-        DateTimeFormatter outgoingFormatter = ISODateTimeFormat.dateTime();
-
-        return outgoingFormatter.print(incomingFormatter.parseDateTime(value));
+        return OUTGOING_FORMATTER.print(incomingFormatter.parseDateTime(value));
     }
 
 }
\ No newline at end of file
@@ -15,8 +15,13 @@
  */
 package org.craftercms.search.commons.service.impl;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.search.commons.service.ElementParser;
@@ -32,6 +37,13 @@ import org.springframework.beans.factory.annotation.Required;
  * {@link ElementParser}s. If first parser returns false (the element was not handled), it calls the second one and
  * so on. It also handles elements tagged with the "indexable" attribute. If the attribute is present, and it's
  * false, the element is not parsed.
+ * <p>Parsers that declare a {@link ElementParser#getRequiredAttributeName() required attribute} are skipped for
+ * elements without it. The parsers to try are resolved once per combination of those attributes when the parsers are
+ * set, so for each element only the presence of the attributes needs to be checked. The field names built from the
+ * parent field name and the element name are also cached, up to {@link #setMaxCachedFieldNames(int)} parents.</p>
+ * <p>Copy fields are also handled here: a text only element whose name matches one of the copy field patterns is
+ * parsed again with the name plus the configured suffix, without copying the element. Components that need their
+ * own copy fields should use {@link #withCopyFields(Map)} instead of changing the ones of a shared service.</p>
  * @param <T> the type of document for the search engine
  *
  * @author avasquez
@@ -42,51 +54,259 @@ public class ElementParserServiceImpl<T> implements ElementParserService<T> {
 
     public static final String DEFAULT_FIELD_NAME_SEPARATOR = ".";
     public static final String DEFAULT_INDEXABLE_ATTRIBUTE_NAME = "indexable";
+    public static final int DEFAULT_MAX_CACHED_FIELD_NAMES = 10000;
+
+    /**
+     * The max number of required attributes for which the parsers are resolved in advance, with more attributes all
+     * the parsers are tried for every element
+     */
+    protected static final int MAX_DISPATCH_ATTRIBUTES = 10;
 
     protected List<ElementParser<T>> parsers;
     protected String fieldNameSeparator;
     protected String indexableAttributeName;
+    protected int maxCachedFieldNames;
+
+    /**
+     * The distinct attributes required by the parsers
+     */
+    protected String[] dispatchAttributeNames = new String[0];
+
+    /**
+     * The parsers to try for each combination of required attributes, indexed by a bit mask of the attributes
+     * present in the element
+     */
+    protected List<List<ElementParser<T>>> dispatchTable = Collections.emptyList();
+
+    /**
+     * Cache of the field names, as parent field name -> element name -> field name
+     */
+    protected final ConcurrentMap<String, ConcurrentMap<String, String>> fieldNames;
+
+    /**
+     * The copy fields, compiled from the element name regex -> suffix mappings
+     */
+    protected List<CopyField> copyFields = Collections.emptyList();
 
     public ElementParserServiceImpl() {
         fieldNameSeparator = DEFAULT_FIELD_NAME_SEPARATOR;
         indexableAttributeName = DEFAULT_INDEXABLE_ATTRIBUTE_NAME;
+        maxCachedFieldNames = DEFAULT_MAX_CACHED_FIELD_NAMES;
+        fieldNames = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Creates a service with the same configuration as the given one, sharing its parsers and caches
+     */
+    protected ElementParserServiceImpl(ElementParserServiceImpl<T> service) {
+        parsers = service.parsers;
+        fieldNameSeparator = service.fieldNameSeparator;
+        indexableAttributeName = service.indexableAttributeName;
+        maxCachedFieldNames = service.maxCachedFieldNames;
+        dispatchAttributeNames = service.dispatchAttributeNames;
+        dispatchTable = service.dispatchTable;
+        fieldNames = service.fieldNames;
+        copyFields = service.copyFields;
+    }
+
+    /**
+     * Sets the parsers. The required attribute of each parser is read at this point, so it shouldn't change after.
+     */
     @Required
     public void setParsers(List<ElementParser<T>> parsers) {
         this.parsers = parsers;
+
+        compileDispatchTable();
     }
 
     public void setFieldNameSeparator(String fieldNameSeparator) {
         this.fieldNameSeparator = fieldNameSeparator;
+
+        fieldNames.clear();
+    }
+
+    /**
+     * Sets the max number of parent field names for which the field names of the children are cached
+     *
+     * @since 4.2.0
+     */
+    public void setMaxCachedFieldNames(int maxCachedFieldNames) {
+        this.maxCachedFieldNames = maxCachedFieldNames;
+
+        fieldNames.clear();
     }
 
     public String getIndexableAttributeName() {
         return indexableAttributeName;
     }
 
+    /**
+     * Sets the copy fields, as element name regex -> suffix of the copy mappings
+     *
+     * @since 4.2.0
+     */
+    public void setCopyFields(Map<String, String> copyFields) {
+        List<CopyField> compiledCopyFields = new ArrayList<>();
+        if (copyFields != null) {
+            copyFields.forEach((regex, suffix) -> compiledCopyFields.add(new CopyField(Pattern.compile(regex),
+                                                                                       suffix)));
+        }
+
+        this.copyFields = compiledCopyFields;
+    }
+
+    /**
+     * Returns a service that uses the given copy fields instead of the ones of this service. The returned service
+     * shares the parsers and caches of this one, but is not affected by later changes to its configuration.
+     *
+     * @param copyFields the copy fields, as element name regex -> suffix of the copy mappings
+     * @return the new service
+     * @since 4.2.0
+     */
+    public ElementParserServiceImpl<T> withCopyFields(Map<String, String> copyFields) {
+        ElementParserServiceImpl<T> service = new ElementParserServiceImpl<>(this);
+        service.setCopyFields(copyFields);
+
+        return service;
+    }
+
     @Override
     public void parse(Element element, String parentFieldName, T doc) {
-        String fieldName = element.getName();
+        parse(element, element.getName(), parentFieldName, doc, false);
+    }
 
-        if (StringUtils.isNotEmpty(parentFieldName)) {
-            fieldName = parentFieldName + fieldNameSeparator + fieldName;
-        }
+    @Override
+    public void parse(Element element, String elementName, String parentFieldName, T doc) {
+        parse(element, elementName, parentFieldName, doc, true);
+    }
+
+    /**
+     * Parses the given element with the given name, which is an alias of the element when {@code alias} is true
+     */
+    protected void parse(Element element, String elementName, String parentFieldName, T doc, boolean alias) {
+        String fieldName = getFieldName(parentFieldName, elementName);
+        boolean hasAttributes = element.attributeCount() > 0;
 
         // All fields are indexable unless excluded using the indexable attribute, e.g. <name indexable="false"/>.
-        if (BooleanUtils.toBoolean(element.attributeValue(indexableAttributeName), true)) {
+        if (!hasAttributes || BooleanUtils.toBoolean(element.attributeValue(indexableAttributeName), true)) {
             boolean parsed = false;
 
-            for (Iterator<ElementParser<T>> iter = parsers.iterator(); !parsed && iter.hasNext();) {
-                parsed = iter.next().parse(element, fieldName, parentFieldName, doc, this);
+            List<ElementParser<T>> candidates = hasAttributes ? getParsers(element) : dispatchTable.get(0);
+            for (int i = 0; !parsed && i < candidates.size(); i++) {
+                parsed = candidates.get(i).parse(element, fieldName, parentFieldName, doc, this, alias);
             }
 
             if (!parsed) {
                 throw new IllegalArgumentException("Unable to find parser for element '" + fieldName + "'");
             }
+
+            // Only the actual element generates copies, never another copy
+            if (!copyFields.isEmpty() && !alias && element.hasContent() && element.isTextOnly()) {
+                parseCopyFields(element, parentFieldName, doc);
+            }
         } else {
             logger.debug("Element '{}' is tagged as not indexable: it won't be added to the doc", fieldName);
         }
     }
 
+    protected String getFieldName(String parentFieldName, String elementName) {
+        if (StringUtils.isEmpty(parentFieldName)) {
+            return elementName;
+        }
+
+        ConcurrentMap<String, String> children = fieldNames.get(parentFieldName);
+        if (children == null) {
+            if (fieldNames.size() >= maxCachedFieldNames) {
+                return parentFieldName + fieldNameSeparator + elementName;
+            }
+
+            children = fieldNames.computeIfAbsent(parentFieldName, key -> new ConcurrentHashMap<>());
+        }
+
+        // The number of children of a parent is bounded by the content type, element names don't change per item
+        return children.computeIfAbsent(elementName, key -> parentFieldName + fieldNameSeparator + key);
+    }
+
+    /**
+     * Returns the parsers to try for the given element, based on the required attributes it has
+     */
+    protected List<ElementParser<T>> getParsers(Element element) {
+        if (dispatchAttributeNames.length > MAX_DISPATCH_ATTRIBUTES) {
+            return parsers;
+        }
+
+        int mask = 0;
+        for (int i = 0; i < dispatchAttributeNames.length; i++) {
+            if (element.attribute(dispatchAttributeNames[i]) != null) {
+                mask |= 1 << i;
+            }
+        }
+
+        return dispatchTable.get(mask);
+    }
+
+    protected void compileDispatchTable() {
+        List<String> attributeNames = new ArrayList<>();
+        for (ElementParser<T> parser : parsers) {
+            String attributeName = parser.getRequiredAttributeName();
+            if (attributeName != null && !attributeNames.contains(attributeName)) {
+                attributeNames.add(attributeName);
+            }
+        }
+
+        String[] names = attributeNames.toArray(new String[0]);
+        if (names.length > MAX_DISPATCH_ATTRIBUTES) {
+            logger.warn("Parsers require {} different attributes, all parsers will be tried for every element",
+                        names.length);
+
+            dispatchAttributeNames = names;
+            dispatchTable = Collections.singletonList(parsers);
+
+            return;
+        }
+
+        List<List<ElementParser<T>>> table = new ArrayList<>(1 << names.length);
+        for (int mask = 0; mask < 1 << names.length; mask++) {
+            List<ElementParser<T>> candidates = new ArrayList<>(parsers.size());
+            for (ElementParser<T> parser : parsers) {
+                String attributeName = parser.getRequiredAttributeName();
+                if (attributeName == null || (mask & (1 << attributeNames.indexOf(attributeName))) != 0) {
+                    candidates.add(parser);
+                }
+            }
+            table.add(Collections.unmodifiableList(candidates));
+        }
+
+        dispatchAttributeNames = names;
+        dispatchTable = table;
+    }
+
+    protected void parseCopyFields(Element element, String parentFieldName, T doc) {
+        String elementName = element.getName();
+        for (CopyField copyField : copyFields) {
+            if (copyField.pattern.matcher(elementName).matches()) {
+                String copyName = elementName + copyField.suffix;
+
+                logger.debug("Adding copy field '{}' of element '{}'", copyName, elementName);
+
+                parse(element, copyName, parentFieldName, doc);
+            }
+        }
+    }
+
+    /**
+     * A copy field mapping with its compiled pattern
+     */
+    protected static class CopyField {
+
+        protected final Pattern pattern;
+        protected final String suffix;
+
+        protected CopyField(Pattern pattern, String suffix) {
+            this.pattern = pattern;
+            this.suffix = suffix;
+        }
+
+    }
+
 }
@@ -16,19 +16,42 @@
 package org.craftercms.search.commons.service.impl;
 
 import org.craftercms.search.commons.service.FieldValueConverter;
+import org.craftercms.search.commons.utils.HtmlUtils;
 import org.jsoup.Jsoup;
-import org.jsoup.safety.Safelist;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * {@link FieldValueConverter} that strips all HTML tags from a field.
+ * {@link FieldValueConverter} that strips all HTML tags from a field, leaving only the text with the entities
+ * decoded. The text is extracted in a single pass by {@link HtmlUtils#extractText(String)}, and Jsoup is only used
+ * when the HTML is malformed.
+ *
+ * <p><b>Note:</b> since 4.2.0 the indexed text is decoded (e.g. {@code Fish & Chips}) instead of being escaped like
+ * the output of {@code Jsoup.clean} (e.g. {@code Fish &amp; Chips}), whitespace is collapsed and the content of
+ * the {@link HtmlUtils#RAW_TEXT_TAGS} elements is not indexed. Documents indexed by previous versions keep the
+ * escaped text until they are updated, so sites whose queries or highlights depend on the entities in
+ * {@code _html} fields should be reindexed after upgrading.</p>
  *
  * @author avasquez
  */
 public class HtmlStrippingConverter implements FieldValueConverter {
 
+    private static final Logger logger = LoggerFactory.getLogger(HtmlStrippingConverter.class);
+
     @Override
     public Object convert(String name, String value) {
-        return Jsoup.clean(value, Safelist.none());
+        String text = HtmlUtils.extractText(value);
+        if (text == null) {
+            logger.debug("Malformed HTML in field '{}', using Jsoup to extract the text", name);
+
+            Document document = Jsoup.parseBodyFragment(value);
+            document.select(String.join(",", HtmlUtils.RAW_TEXT_TAGS)).remove();
+
+            text = document.text();
+        }
+
+        return text;
     }
 
 }
@@ -30,8 +30,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Implementation of {@link ElementParser} that parses elements marked with a "tokenized" attribute. This attribute
  * indicates that the field should be tokenized and analyzed by the search engine, and by definition it isn't
- * (like _s fields) so a copy of the field is created with a field name that can actually be tokenized (like those
- * ending with _t).
+ * (like _s fields) so the element is also parsed with a field name that can actually be tokenized (like those
+ * ending with _t). The element is not copied or modified, and this parser never handles the element itself, so it's
+ * then parsed as a normal field by the next parsers.
  * @param <T> the type of document for the search engine
  *
  * @author Dejan Brkic
@@ -62,41 +63,54 @@ public class TokenizedElementParser<T> implements ElementParser<T> {
         this.fieldSuffixMappings = fieldSuffixMappings;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getRequiredAttributeName() {
+        return tokenizedAttributeName;
+    }
+
     @Override
     public boolean parse(Element element, String fieldName, String parentFieldName, T doc,
                          ElementParserService<T> parserService) {
+        return parse(element, fieldName, parentFieldName, doc, parserService, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Aliases (like the tokenized field itself) are always parsed as normal fields.</p>
+     */
+    @Override
+    public boolean parse(Element element, String fieldName, String parentFieldName, T doc,
+                         ElementParserService<T> parserService, boolean alias) {
+        if (alias) {
+            return false;
+        }
+
+        String elementName = element.getName();
+
         Attribute tokenizedAttribute = element.attribute(tokenizedAttributeName);
         if (tokenizedAttribute != null && BooleanUtils.toBoolean(tokenizedAttribute.getValue())) {
             logger.debug("Parsing element '{}' marked to tokenize", fieldName);
 
-            // Remove the attribute so that at the end the element can be parsed as a normal attribute.
-            element.remove(tokenizedAttribute);
-
-            String elementName = element.getName();
-
             for (Map.Entry<String, String> mapping : fieldSuffixMappings.entrySet()) {
                 if (elementName.endsWith(mapping.getKey())) {
                     String newElementName = StringUtils.substringBefore(elementName, mapping.getKey()) +
                                             mapping.getValue();
 
-                    Element tokenizedElement = element.createCopy(newElementName);
-
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Created new element for tokenized search: " + tokenizedElement.getName());
-                    }
+                    logger.debug("Adding field '{}' for tokenized search", newElementName);
 
-                    parserService.parse(tokenizedElement, parentFieldName, doc);
+                    // The same element is parsed with the new name, no need to copy it
+                    parserService.parse(element, newElementName, parentFieldName, doc);
 
                     break;
                 }
             }
-
-            parserService.parse(element, parentFieldName, doc);
-
-            return true;
-        } else {
-            return false;
         }
+
+        // The element itself is always parsed as a normal field by the next parsers
+        return false;
     }
 
 }
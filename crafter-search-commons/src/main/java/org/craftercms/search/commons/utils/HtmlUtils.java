@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.commons.utils;
+
+import java.util.Locale;
+import java.util.Set;
+
+import org.jsoup.nodes.Entities;
+
+/**
+ * Utility methods for HTML content.
+ *
+ * @since 4.2.0
+ */
+public class HtmlUtils {
+
+    /**
+     * The max length of an entity name or number, longer references are left as they are
+     */
+    private static final int MAX_ENTITY_LENGTH = 32;
+
+    private static final char NBSP = '\u00A0';
+
+    /**
+     * Tags that separate words, so they are replaced with a space
+     */
+    private static final Set<String> BLOCK_TAGS = Set.of(
+        "address", "article", "aside", "blockquote", "body", "br", "caption", "dd", "div", "dl", "dt", "fieldset",
+        "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "html",
+        "li", "main", "nav", "ol", "option", "p", "pre", "section", "table", "tbody", "td", "tfoot", "th", "thead",
+        "tr", "ul");
+
+    /**
+     * Tags whose content is not indexed as text
+     */
+    public static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style", "textarea", "title", "noscript",
+                                                           "template");
+
+    private HtmlUtils() {
+    }
+
+    /**
+     * Extracts the text of the given HTML in a single pass: tags, comments and the content of the
+     * {@link #RAW_TEXT_TAGS} elements are removed, entities are decoded and whitespace is collapsed, similar to
+     * Jsoup's {@code Element.text()} but without building a DOM.
+     *
+     * <p>Unlike {@code Jsoup.clean}, the text is not escaped: {@code &amp;} becomes {@code &},
+     * {@code &lt;} becomes {@code <} and so on.</p>
+     *
+     * @param html the HTML
+     * @return the text, or null if the HTML is malformed (an unterminated tag, comment or script), in which case a
+     * full parser should be used instead
+     */
+    public static String extractText(String html) {
+        int length = html.length();
+        StringBuilder text = new StringBuilder(length);
+        int i = 0;
+
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<' && isMarkupStart(html, i + 1)) {
+                i = skipMarkup(html, i, text);
+                if (i < 0) {
+                    return null;
+                }
+            } else if (c == '&') {
+                i = appendEntity(html, i, text);
+            } else {
+                appendChar(c, text);
+                i++;
+            }
+        }
+
+        int end = text.length();
+        if (end > 0 && text.charAt(end - 1) == ' ') {
+            text.setLength(end - 1);
+        }
+
+        return text.toString();
+    }
+
+    private static boolean isMarkupStart(String html, int i) {
+        if (i >= html.length()) {
+            return false;
+        }
+
+        char c = html.charAt(i);
+        return isAsciiLetter(c) || c == '/' || c == '!' || c == '?';
+    }
+
+    /**
+     * Skips the tag, comment or declaration that starts at the given index.
+     *
+     * @return the index after the markup, or -1 if it's not terminated
+     */
+    private static int skipMarkup(String html, int start, StringBuilder text) {
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end >= 0 ? end + 3 : -1;
+        }
+
+        char first = html.charAt(start + 1);
+        if (first == '!' || first == '?') {
+            int end = html.indexOf('>', start + 2);
+            return end >= 0 ? end + 1 : -1;
+        }
+
+        boolean closing = first == '/';
+        int nameStart = closing ? start + 2 : start + 1;
+        int nameEnd = nameStart;
+        while (nameEnd < html.length() && isTagNameChar(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+
+        int end = findTagEnd(html, nameEnd);
+        if (end < 0) {
+            return -1;
+        }
+
+        String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+        if (BLOCK_TAGS.contains(name)) {
+            appendChar(' ', text);
+        }
+
+        if (!closing && RAW_TEXT_TAGS.contains(name) && html.charAt(end - 1) != '/') {
+            return skipRawText(html, end + 1, name);
+        }
+
+        return end + 1;
+    }
+
+    /**
+     * Returns the index of the {@code >} that closes the tag, ignoring the ones inside quoted attribute values
+     */
+    private static int findTagEnd(String html, int start) {
+        char quote = 0;
+        for (int i = start; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            } else if (c == '<') {
+                // A new tag before the end of the current one
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Skips the content of a raw text element, including its end tag
+     */
+    private static int skipRawText(String html, int start, String name) {
+        for (int i = html.indexOf("</", start); i >= 0; i = html.indexOf("</", i + 2)) {
+            if (html.regionMatches(true, i + 2, name, 0, name.length())) {
+                int end = html.indexOf('>', i + 2 + name.length());
+                return end >= 0 ? end + 1 : -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Decodes the entity that starts at the given index, or appends the {@code &} as text if it's not a valid
+     * entity.
+     *
+     * @return the index after the entity
+     */
+    private static int appendEntity(String html, int start, StringBuilder text) {
+        int limit = Math.min(html.length(), start + MAX_ENTITY_LENGTH);
+        int semicolon = -1;
+        for (int i = start + 1; i < limit; i++) {
+            char c = html.charAt(i);
+            if (c == ';') {
+                semicolon = i;
+                break;
+            } else if (!isAsciiLetter(c) && !isAsciiDigit(c) && c != '#') {
+                break;
+            }
+        }
+
+        if (semicolon > start + 1) {
+            if (html.charAt(start + 1) == '#') {
+                int codePoint = parseCodePoint(html, start + 2, semicolon);
+                if (codePoint > 0) {
+                    if (Character.isBmpCodePoint(codePoint)) {
+                        appendChar((char) codePoint, text);
+                    } else {
+                        text.appendCodePoint(codePoint);
+                    }
+                    return semicolon + 1;
+                }
+            } else {
+                String value = Entities.getByName(html.substring(start + 1, semicolon));
+                if (!value.isEmpty()) {
+                    for (int i = 0; i < value.length(); i++) {
+                        appendChar(value.charAt(i), text);
+                    }
+                    return semicolon + 1;
+                }
+            }
+        }
+
+        appendChar('&', text);
+
+        return start + 1;
+    }
+
+    /**
+     * Parses a decimal or hexadecimal ({@code x} prefix) character reference
+     *
+     * @return the code point, or -1 if it's not valid
+     */
+    private static int parseCodePoint(String html, int start, int end) {
+        int radix = 10;
+        if (start < end && (html.charAt(start) == 'x' || html.charAt(start) == 'X')) {
+            radix = 16;
+            start++;
+        }
+        if (start >= end) {
+            return -1;
+        }
+
+        int codePoint = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(html.charAt(i), radix);
+            if (digit < 0) {
+                return -1;
+            }
+
+            codePoint = codePoint * radix + digit;
+            if (codePoint > Character.MAX_CODE_POINT) {
+                return -1;
+            }
+        }
+
+        return codePoint;
+    }
+
+    /**
+     * Appends the given char, collapsing all whitespace (including non-breaking spaces) into a single space and
+     * skipping leading whitespace
+     */
+    private static void appendChar(char c, StringBuilder text) {
+        if (Character.isWhitespace(c) || c == NBSP) {
+            int length = text.length();
+            if (length > 0 && text.charAt(length - 1) != ' ') {
+                text.append(' ');
+            }
+        } else {
+            text.append(c);
+        }
+    }
+
+    private static boolean isTagNameChar(char c) {
+        return isAsciiLetter(c) || isAsciiDigit(c) || c == '-' || c == ':';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+}
@@ -15,12 +15,7 @@
  */
 package org.craftercms.search.commons.utils;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-
-import static org.apache.commons.collections4.ListUtils.union;
 
 /**
  * @author joseross
@@ -28,7 +23,16 @@ import static org.apache.commons.collections4.ListUtils.union;
  */
 public abstract class MapUtils {
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Merges the given maps: keys only in one of the maps keep their value, nested maps are merged, lists are joined,
+     * a single value is added to a list and for other values the one from {@code b} wins.
+     * <p>The maps are not copied, the result is a read-only {@link MergedMap} view that resolves the merged values
+     * only when they're read.</p>
+     *
+     * @param a the map with the original values
+     * @param b the map with the new values
+     * @return the merged map, or one of the maps if the other one is empty
+     */
     public static Map<String, Object> mergeMaps(Map<String, Object> a, Map<String, Object> b) {
         if (org.apache.commons.collections.MapUtils.isEmpty(a)) {
             return b;
@@ -38,30 +42,7 @@ public abstract class MapUtils {
             return a;
         }
 
-        var map = new TreeMap<>(a);
-        b.forEach((key, value) -> map.merge(key, value, (oldValue, newValue) -> {
-            if (oldValue instanceof Map && newValue instanceof Map) {
-                return mergeMaps((Map<String, Object>) oldValue, (Map<String, Object>) newValue);
-            } else if (oldValue instanceof Map || newValue instanceof Map) {
-                // can't be merged, just return the original
-                return oldValue;
-            } else if (oldValue instanceof List && newValue instanceof List) {
-                return union((List<Object>) oldValue, (List<Object>) newValue);
-            } else if (oldValue instanceof List) {
-                var list = new LinkedList<>((List<Object>) oldValue);
-                list.add(newValue);
-                return list;
-            } else if (newValue instanceof List) {
-                var list = new LinkedList<>((List<Object>) newValue);
-                list.add(oldValue);
-                return list;
-            } else {
-                // single properties are not merged, only overwritten
-                return newValue;
-            }
-        }));
-
-        return map;
+        return new MergedMap(a, b);
     }
 
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.commons.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of two maps merged with the rules of {@link MapUtils#mergeMaps(Map, Map)}. Nothing is copied when
+ * the view is created, the merged value of a key is only resolved when it's read, for example when the map is
+ * serialized. Changes to the underlying maps are visible through the view.
+ *
+ * @since 4.2.0
+ */
+public class MergedMap extends AbstractMap<String, Object> {
+
+    /**
+     * The map with the original values
+     */
+    protected final Map<String, Object> base;
+
+    /**
+     * The map with the new values, merged on top of the original ones
+     */
+    protected final Map<String, Object> overlay;
+
+    protected Set<Entry<String, Object>> entrySet;
+
+    public MergedMap(Map<String, Object> base, Map<String, Object> overlay) {
+        this.base = base;
+        this.overlay = overlay;
+    }
+
+    @Override
+    public int size() {
+        int size = base.size();
+        for (String key : overlay.keySet()) {
+            if (!base.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return base.isEmpty() && overlay.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return base.containsKey(key) || overlay.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!overlay.containsKey(key)) {
+            return base.get(key);
+        }
+        if (!base.containsKey(key)) {
+            return overlay.get(key);
+        }
+
+        return mergeValues(base.get(key), overlay.get(key));
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Object mergeValues(Object oldValue, Object newValue) {
+        if (oldValue instanceof Map && newValue instanceof Map) {
+            return MapUtils.mergeMaps((Map<String, Object>) oldValue, (Map<String, Object>) newValue);
+        } else if (oldValue instanceof Map || newValue instanceof Map) {
+            // can't be merged, just return the original
+            return oldValue;
+        } else if (oldValue instanceof List && newValue instanceof List) {
+            List<Object> oldList = (List<Object>) oldValue;
+            List<Object> newList = (List<Object>) newValue;
+            List<Object> list = new ArrayList<>(oldList.size() + newList.size());
+            list.addAll(oldList);
+            list.addAll(newList);
+            return list;
+        } else if (oldValue instanceof List) {
+            List<Object> list = new ArrayList<>((List<Object>) oldValue);
+            list.add(newValue);
+            return list;
+        } else if (newValue instanceof List) {
+            List<Object> list = new ArrayList<>((List<Object>) newValue);
+            list.add(oldValue);
+            return list;
+        } else {
+            // single properties are not merged, only overwritten
+            return newValue;
+        }
+    }
+
+    protected class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return MergedMap.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+    }
+
+    /**
+     * Iterates the entries of the base map, merged with the overlay ones, and then the entries only in the overlay
+     */
+    protected class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        protected final Iterator<Entry<String, Object>> baseIterator = base.entrySet().iterator();
+
+        protected final Iterator<Entry<String, Object>> overlayIterator = overlay.entrySet().iterator();
+
+        protected Entry<String, Object> next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = findNext();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Entry<String, Object> entry = next;
+            next = null;
+
+            return entry;
+        }
+
+        protected Entry<String, Object> findNext() {
+            if (baseIterator.hasNext()) {
+                Entry<String, Object> entry = baseIterator.next();
+                String key = entry.getKey();
+                if (overlay.containsKey(key)) {
+                    return new SimpleImmutableEntry<>(key, mergeValues(entry.getValue(), overlay.get(key)));
+                }
+                return entry;
+            }
+
+            while (overlayIterator.hasNext()) {
+                Entry<String, Object> entry = overlayIterator.next();
+                if (!base.containsKey(entry.getKey())) {
+                    return entry;
+                }
+            }
+
+            return null;
+        }
+
+    }
+
+}
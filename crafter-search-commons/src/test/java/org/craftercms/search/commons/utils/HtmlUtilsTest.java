@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.commons.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link HtmlUtils}.
+ */
+public class HtmlUtilsTest {
+
+    @Test
+    public void testTagsAreRemoved() {
+        assertEquals("Hello world", HtmlUtils.extractText("<span class=\"greeting\">Hello</span> <b>world</b>"));
+        assertEquals("a > b", HtmlUtils.extractText("<a title=\"x > y\">a > b</a>"));
+        assertEquals("1 < 2", HtmlUtils.extractText("1 < 2"));
+    }
+
+    @Test
+    public void testEntitiesAreDecoded() {
+        assertEquals("Fish & Chips", HtmlUtils.extractText("Fish &amp; Chips"));
+        assertEquals("© 2023 €", HtmlUtils.extractText("&copy; 2023 &euro;"));
+        assertEquals("AB 😀", HtmlUtils.extractText("&#65;&#x42; &#x1F600;"));
+        assertEquals("a b", HtmlUtils.extractText("a&nbsp;&nbsp;b"));
+    }
+
+    @Test
+    public void testInvalidEntitiesAreKept() {
+        assertEquals("AT&T", HtmlUtils.extractText("AT&T"));
+        assertEquals("&unknown; &#xZZ; &#;", HtmlUtils.extractText("&unknown; &#xZZ; &#;"));
+        assertEquals("& a", HtmlUtils.extractText("& a"));
+    }
+
+    @Test
+    public void testScriptAndStyleAreRemoved() {
+        assertEquals("before after",
+                     HtmlUtils.extractText("before <script>if (a < b) { alert('</p>'); }</script>after"));
+        assertEquals("text", HtmlUtils.extractText("<STYLE type=\"text/css\">p > b { color: red }</STYLE>text"));
+        assertEquals("text", HtmlUtils.extractText("<script src=\"app.js\"/>text"));
+    }
+
+    @Test
+    public void testOtherRawTextElementsAreRemoved() {
+        assertEquals("text", HtmlUtils.extractText("<title>Page</title>text"));
+        assertEquals("before after", HtmlUtils.extractText("before <textarea>a <b>draft</b></textarea>after"));
+        assertEquals("text", HtmlUtils.extractText("<noscript><p>Enable JavaScript</p></noscript>text"));
+        assertEquals("text", HtmlUtils.extractText("<template><li>{{item}}</li></template>text"));
+    }
+
+    @Test
+    public void testCommentsAreRemoved() {
+        assertEquals("ab", HtmlUtils.extractText("a<!-- <p>not text</p> -->b"));
+        assertEquals("text", HtmlUtils.extractText("<!DOCTYPE html><?xml version=\"1.0\"?>text"));
+    }
+
+    @Test
+    public void testCdataIsRemoved() {
+        assertEquals("ab", HtmlUtils.extractText("<p>a<![CDATA[not text]]>b</p>"));
+    }
+
+    @Test
+    public void testWhitespaceIsCollapsed() {
+        assertEquals("a b c", HtmlUtils.extractText("  a \n\t b\r\n   c  "));
+        assertEquals("", HtmlUtils.extractText(" \n "));
+        assertEquals("", HtmlUtils.extractText(""));
+    }
+
+    @Test
+    public void testBlockElementsSeparateWords() {
+        assertEquals("Title First Second",
+                     HtmlUtils.extractText("<h1>Title</h1><ul><li>First</li><li>Second</li></ul>"));
+        assertEquals("line one line two", HtmlUtils.extractText("line one<br/>line two"));
+        assertEquals("bold", HtmlUtils.extractText("<b>bo</b><i>ld</i>"));
+    }
+
+    @Test
+    public void testMalformedHtmlReturnsNull() {
+        assertNull(HtmlUtils.extractText("text <p class=\"open"));
+        assertNull(HtmlUtils.extractText("text <div <p>more</p>"));
+        assertNull(HtmlUtils.extractText("text <!-- unterminated comment"));
+        assertNull(HtmlUtils.extractText("text <script>var a = 1;"));
+        assertNull(HtmlUtils.extractText("text <!DOCTYPE html"));
+    }
+
+    @Test
+    public void testUnclosedElementsAreKept() {
+        assertEquals("first second", HtmlUtils.extractText("<p>first<p>second"));
+        assertEquals("text", HtmlUtils.extractText("<div><span>text"));
+    }
+
+}
@@ -16,8 +16,11 @@
 
 package org.craftercms.search.opensearch;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.craftercms.search.opensearch.exception.OpenSearchException;
 import org.craftercms.core.service.Content;
@@ -102,6 +105,107 @@ public interface OpenSearchService extends AutoCloseable {
      */
     void delete(String indexName, String siteId, String docId) throws OpenSearchException;
 
+    /**
+     * Builds the document that would be indexed for the given xml file
+     * @param siteId the name of the site
+     * @param docId the id of the document
+     * @param xml the content of the document
+     * @param additionalFields additional fields to index
+     * @return the document
+     * @throws OpenSearchException if there is any error during the operation
+     * @since 4.2.0
+     */
+    Map<String, Object> buildDocument(String siteId, String docId, String xml, Map<String, Object> additionalFields)
+            throws OpenSearchException;
+
+    /**
+     * Performs the given deletes and then the given index operations, grouping them in bulk requests when supported
+     * @param indexName the name of the index
+     * @param siteId the id of the site
+     * @param docs the documents to index, mapped by their ids
+     * @param deleteDocIds the ids of the documents to delete
+     * @return the ids of the documents that could not be indexed or deleted, mapped to the reason of the failure
+     * @throws OpenSearchException if there is any error during the operation
+     * @since 4.2.0
+     */
+    default Map<String, String> bulk(String indexName, String siteId, Map<String, Map<String, Object>> docs,
+                                     Collection<String> deleteDocIds) throws OpenSearchException {
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (String docId : deleteDocIds) {
+            try {
+                delete(indexName, siteId, docId);
+            } catch (OpenSearchException e) {
+                failures.put(docId, e.getMessage());
+            }
+        }
+        docs.forEach((docId, doc) -> {
+            try {
+                index(indexName, siteId, docId, doc);
+            } catch (OpenSearchException e) {
+                failures.put(docId, e.getMessage());
+            }
+        });
+        return failures;
+    }
+
+    /**
+     * Asynchronous version of {@link #index(String, String, String, Map)}. The default implementation executes the
+     * operation in the calling thread.
+     * @param indexName the name of the index
+     * @param siteId the id of the site
+     * @param docId the id of the document
+     * @param doc the document
+     * @return the future completed when the document has been indexed
+     * @since 4.2.0
+     */
+    default CompletableFuture<Void> indexAsync(String indexName, String siteId, String docId,
+                                               Map<String, Object> doc) {
+        try {
+            index(indexName, siteId, docId, doc);
+            return CompletableFuture.completedFuture(null);
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #delete(String, String, String)}. The default implementation executes the
+     * operation in the calling thread.
+     * @param indexName the name of the index
+     * @param siteId the id of the site
+     * @param docId the id of the document
+     * @return the future completed when the document has been deleted
+     * @since 4.2.0
+     */
+    default CompletableFuture<Void> deleteAsync(String indexName, String siteId, String docId) {
+        try {
+            delete(indexName, siteId, docId);
+            return CompletableFuture.completedFuture(null);
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #bulk(String, String, Map, Collection)}. The default implementation executes
+     * the operations in the calling thread.
+     * @param indexName the name of the index
+     * @param siteId the id of the site
+     * @param docs the documents to index, mapped by their ids
+     * @param deleteDocIds the ids of the documents to delete
+     * @return the future for the ids of the documents that could not be indexed or deleted, mapped to the reason
+     * @since 4.2.0
+     */
+    default CompletableFuture<Map<String, String>> bulkAsync(String indexName, String siteId,
+                                                             Map<String, Map<String, Object>> docs,
+                                                             Collection<String> deleteDocIds) {
+        try {
+            return CompletableFuture.completedFuture(bulk(indexName, siteId, docs, deleteDocIds));
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Performs a refresh for a given index
      * @param indexName the name of the index
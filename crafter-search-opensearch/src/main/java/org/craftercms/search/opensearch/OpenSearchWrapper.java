@@ -22,6 +22,7 @@ import org.opensearch.action.search.SearchRequest;
 import org.opensearch.action.search.SearchResponse;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.Collections.emptyMap;
 
@@ -137,4 +138,28 @@ public interface OpenSearchWrapper {
         return search(request, parameters, RequestOptions.DEFAULT);
     }
 
+    /**
+     * Performs a search operation without blocking the calling thread. The default implementation executes the
+     * search synchronously and returns a completed future.
+     * @param request the search request
+     * @param options the request options
+     * @return the future for the search response
+     */
+    default CompletableFuture<SearchResponse> searchAsync(SearchRequest request, RequestOptions options) {
+        try {
+            return CompletableFuture.completedFuture(search(request, options));
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Performs a search operation without blocking the calling thread
+     * @param request the search request
+     * @return the future for the search response
+     */
+    default CompletableFuture<SearchResponse> searchAsync(SearchRequest request) {
+        return searchAsync(request, RequestOptions.DEFAULT);
+    }
+
 }
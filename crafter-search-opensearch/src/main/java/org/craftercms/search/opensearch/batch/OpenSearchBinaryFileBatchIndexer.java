@@ -39,6 +39,7 @@ public class OpenSearchBinaryFileBatchIndexer extends AbstractBinaryFileBatchInd
     @ConstructorProperties({"searchService"})
     public OpenSearchBinaryFileBatchIndexer(final OpenSearchService searchService) {
         this.searchService = searchService;
+        this.failureClassifier = new OpenSearchFailureClassifier();
     }
 
     @Override
@@ -45,6 +45,7 @@ public class OpenSearchBinaryFileWithMetadataBatchIndexer extends AbstractBinary
     @ConstructorProperties({"searchService"})
     public OpenSearchBinaryFileWithMetadataBatchIndexer(final OpenSearchService searchService) {
         this.searchService = searchService;
+        this.failureClassifier = new OpenSearchFailureClassifier();
     }
 
     @Override
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.batch;
+
+import org.craftercms.search.batch.impl.DefaultFailureClassifier;
+import org.opensearch.client.ResponseException;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+
+/**
+ * Extension of {@link DefaultFailureClassifier} that also considers transient the temporary unavailability of the
+ * OpenSearch cluster (HTTP 502, 503 and 504).
+ *
+ * <p>Rejections (HTTP 429) are not considered transient because they are already retried with backoff by the
+ * {@link org.craftercms.search.opensearch.impl.AdaptiveWriteController}, retrying them again would only multiply
+ * the time spent on a single document.</p>
+ *
+ * @since 4.2.0
+ */
+public class OpenSearchFailureClassifier extends DefaultFailureClassifier {
+
+    @Override
+    protected boolean isTransientCause(Throwable t) {
+        if (t instanceof OpenSearchException) {
+            return isTransientStatus(((OpenSearchException) t).status());
+        } else if (t instanceof ResponseException) {
+            return isTransientStatus(((ResponseException) t).getResponse().getStatusLine().getStatusCode());
+        }
+        return super.isTransientCause(t);
+    }
+
+    protected boolean isTransientStatus(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+}
@@ -17,6 +17,9 @@
 package org.craftercms.search.opensearch.batch;
 
 import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -26,10 +29,14 @@ import org.craftercms.core.service.Context;
 import org.craftercms.search.opensearch.OpenSearchAdminService;
 import org.craftercms.search.opensearch.OpenSearchService;
 import org.craftercms.search.batch.UpdateDetail;
+import org.craftercms.search.batch.UpdateSet;
 import org.craftercms.search.batch.UpdateStatus;
 import org.craftercms.search.batch.impl.AbstractXmlFileBatchIndexer;
 import org.craftercms.search.locale.LocaleExtractor;
 
+import static org.craftercms.search.batch.utils.IndexingUtils.getAdditionalFields;
+import static org.craftercms.search.commons.utils.MapUtils.mergeMaps;
+
 /**
  * Implementation of {@link AbstractXmlFileBatchIndexer} for OpenSearch
  * @author joseross
@@ -47,6 +54,11 @@ public class OpenSearchXmlFileBatchIndexer extends AbstractXmlFileBatchIndexer {
      */
     protected final OpenSearchService searchService;
 
+    /**
+     * Indicates if the documents of each batch should be sent using bulk requests
+     */
+    protected boolean bulkIndexing = false;
+
     @ConstructorProperties({"searchAdminService", "localeExtractor", "searchService",
             "enableTranslation"})
     public OpenSearchXmlFileBatchIndexer(final OpenSearchAdminService searchAdminService,
@@ -57,6 +69,11 @@ public class OpenSearchXmlFileBatchIndexer extends AbstractXmlFileBatchIndexer {
         this.localeExtractor = localeExtractor;
         this.searchService = searchService;
         this.enableTranslation = enableTranslation;
+        this.failureClassifier = new OpenSearchFailureClassifier();
+    }
+
+    public void setBulkIndexing(boolean bulkIndexing) {
+        this.bulkIndexing = bulkIndexing;
     }
 
     @Override
@@ -68,18 +85,124 @@ public class OpenSearchXmlFileBatchIndexer extends AbstractXmlFileBatchIndexer {
         } else {
             String xml = processXml(siteName, contentStoreService, context, path);
 
-            if (enableTranslation) {
-                // get the locale for the item
-                Locale locale = localeExtractor.extract(context, path);
-                if (locale != null) {
-                    // check if locale specific index indexExists
-                    searchAdminService.createIndex(indexId, locale);
-                    // update the index name
-                    indexId += "-" + LocaleUtils.toString(locale);
+            doUpdate(getIndexId(indexId, context, path), siteName, path, xml, updateDetail, updateStatus, metadata);
+        }
+    }
+
+    @Override
+    protected void doUpdates(String indexId, String siteName, ContentStoreService contentStoreService,
+                             Context context, UpdateSet updateSet, List<String> updatePaths,
+                             UpdateStatus updateStatus) {
+        if (!bulkIndexing) {
+            super.doUpdates(indexId, siteName, contentStoreService, context, updateSet, updatePaths, updateStatus);
+            return;
+        }
+
+        // Documents of the batch grouped by index, since each locale can have its own index
+        Map<String, Map<String, Map<String, Object>>> docsByIndex = new LinkedHashMap<>();
+        for (String path : updatePaths) {
+            if (include(path)) {
+                try {
+                    Map<String, Object> metadata = collectMetadata(path, contentStoreService, context);
+                    String xml = processXml(siteName, contentStoreService, context, path);
+                    Map<String, Object> doc = searchService.buildDocument(siteName, path, xml,
+                            mergeMaps(metadata, getAdditionalFields(updateSet.getUpdateDetail(path))));
+
+                    docsByIndex.computeIfAbsent(getIndexId(indexId, context, path), k -> new LinkedHashMap<>())
+                               .put(path, doc);
+                } catch (Exception e) {
+                    logger.error("Error while trying to perform update of file {}:{}", siteName, path, e);
+
+                    updateStatus.addFailedUpdate(path);
+                    recordFailure(indexId, siteName, path, false, e.getMessage());
+                }
+            }
+        }
+
+        docsByIndex.forEach((index, docs) -> {
+            Map<String, String> failures;
+            try {
+                failures = searchService.bulk(index, siteName, docs, Collections.emptyList());
+            } catch (Exception e) {
+                logger.error("Error while trying to perform bulk update of {} files in site {}", docs.size(),
+                             siteName, e);
+
+                for (String path : docs.keySet()) {
+                    updateStatus.addFailedUpdate(path);
+                    recordFailure(indexId, siteName, path, false, e.getMessage());
+                }
+                return;
+            }
+
+            for (String path : docs.keySet()) {
+                if (failures.containsKey(path)) {
+                    logger.error("Error while trying to perform update of file {}:{}: {}", siteName, path,
+                                 failures.get(path));
+
+                    updateStatus.addFailedUpdate(path);
+                    recordFailure(indexId, siteName, path, false, failures.get(path));
+                } else {
+                    updateStatus.addSuccessfulUpdate(path);
                 }
             }
-            doUpdate(indexId, siteName, path, xml, updateDetail, updateStatus, metadata);
+        });
+    }
+
+    @Override
+    protected void doDeletes(String indexId, String siteName, ContentStoreService contentStoreService,
+                             Context context, List<String> deletePaths, UpdateStatus updateStatus) {
+        if (!bulkIndexing) {
+            super.doDeletes(indexId, siteName, contentStoreService, context, deletePaths, updateStatus);
+            return;
+        }
+
+        List<String> paths = deletePaths.stream().filter(this::include).toList();
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> failures;
+        try {
+            failures = searchService.bulk(indexId, siteName, Collections.emptyMap(), paths);
+        } catch (Exception e) {
+            logger.error("Error while trying to perform bulk delete of {} files in site {}", paths.size(),
+                         siteName, e);
+
+            for (String path : paths) {
+                updateStatus.addFailedDelete(path);
+                recordFailure(indexId, siteName, path, true, e.getMessage());
+            }
+            return;
+        }
+
+        for (String path : paths) {
+            if (failures.containsKey(path)) {
+                logger.error("Error while trying to perform delete of file {}:{}: {}", siteName, path,
+                             failures.get(path));
+
+                updateStatus.addFailedDelete(path);
+                recordFailure(indexId, siteName, path, true, failures.get(path));
+            } else {
+                updateStatus.addSuccessfulDelete(path);
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the index for the given path, creating the locale specific index if needed
+     */
+    protected String getIndexId(String indexId, Context context, String path) {
+        if (enableTranslation) {
+            // get the locale for the item
+            Locale locale = localeExtractor.extract(context, path);
+            if (locale != null) {
+                // check if locale specific index indexExists
+                searchAdminService.createIndex(indexId, locale);
+                // update the index name
+                return indexId + "-" + LocaleUtils.toString(locale);
+            }
         }
+        return indexId;
     }
 
     @Override
@@ -22,7 +22,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.lang.RegexUtils;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.BatchCheckpoint;
 import org.craftercms.search.batch.UpdateSet;
+import org.craftercms.search.batch.exception.BatchIndexingException;
 import org.craftercms.search.opensearch.OpenSearchService;
 import org.craftercms.search.opensearch.batch.OpenSearchBinaryFileWithMetadataBatchIndexer;
 import org.craftercms.search.batch.UpdateStatus;
@@ -36,9 +38,12 @@ import static org.craftercms.search.commons.utils.MapUtils.mergeMaps;
 
 /**
  * Implementation of {@link OpenSearchBinaryFileWithMetadataBatchIndexer} for OpenSearch of authoring.
- * Override method {@link org.craftercms.search.batch.impl.AbstractBinaryFileWithMetadataBatchIndexer#doUpdates(String, String, ContentStoreService, Context, UpdateSet, UpdateStatus)}
+ * Override method {@link org.craftercms.search.batch.impl.AbstractBinaryFileWithMetadataBatchIndexer#doUpdates(String, String, ContentStoreService, Context, UpdateSet, List, UpdateStatus)}
  * and method {@link org.craftercms.search.batch.impl.AbstractBinaryFileWithMetadataBatchIndexer#doDeletes(String, String, ContentStoreService, Context, List, UpdateStatus)}
  * to support authoring binary indexing
+ *
+ * <p>The binaries already updated or deleted through a metadata file are tracked for the whole update, not just the
+ * current chunk, so that they are not indexed again when their paths show up in a later chunk.</p>
  * @author Phil Nguyen
  */
 public class AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer extends OpenSearchBinaryFileWithMetadataBatchIndexer {
@@ -47,26 +52,54 @@ public class AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer extends OpenS
     protected List<String> binaryPathPatterns;
     protected List<String> binarySearchablePathPatterns;
 
+    /**
+     * The binary paths already handled by the update running in the current thread, across all of its chunks
+     */
+    protected final ThreadLocal<Set<String>> handledBinaryPaths = new ThreadLocal<>();
+
     public AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer(final OpenSearchService openSearchService) {
         super(openSearchService);
     }
 
+    @Override
+    protected void doUpdateIndex(String indexId, String siteName, ContentStoreService contentStoreService,
+                                 Context context, UpdateSet updateSet, UpdateStatus updateStatus,
+                                 BatchCheckpoint checkpoint) throws BatchIndexingException {
+        handledBinaryPaths.set(new HashSet<>());
+        try {
+            super.doUpdateIndex(indexId, siteName, contentStoreService, context, updateSet, updateStatus, checkpoint);
+        } finally {
+            handledBinaryPaths.remove();
+        }
+    }
+
     @Override
     protected void doUpdates(String indexId, String siteName, ContentStoreService contentStoreService, Context context,
-                             UpdateSet updateSet, UpdateStatus updateStatus) {
+                             UpdateSet updateSet, List<String> updatePaths, UpdateStatus updateStatus) {
         Set<String> metadataUpdatePaths = new LinkedHashSet<>();
         Set<String> binaryUpdatePaths = new LinkedHashSet<>();
         Set<String> binarySearchablePaths = new LinkedHashSet<>();
+        Set<String> handledPaths = handledBinaryPaths.get();
+
+        if (handledPaths == null) {
+            // Not called from doUpdateIndex, so the chunk is the whole update
+            handledPaths = new HashSet<>();
+        }
 
-        buildUpdatePaths(updateSet, metadataUpdatePaths, binarySearchablePaths, binaryUpdatePaths);
+        buildUpdatePaths(updatePaths, metadataUpdatePaths, binarySearchablePaths, binaryUpdatePaths);
 
         updateMetadataPaths(indexId, siteName, contentStoreService, context, updateSet, updateStatus,
-                metadataUpdatePaths, binaryUpdatePaths);
+                metadataUpdatePaths, binaryUpdatePaths, handledPaths);
 
         addBinariesFromSearchablePaths(siteName, contentStoreService, context, binarySearchablePaths, binaryUpdatePaths);
 
+        // Skip the binaries already updated or deleted in this or a previous chunk
+        binaryUpdatePaths.removeAll(handledPaths);
+
         updateBinaryPaths(indexId, siteName, contentStoreService, context, updateSet, updateStatus,
                 binaryUpdatePaths);
+
+        handledPaths.addAll(binaryUpdatePaths);
     }
 
     @Override
@@ -83,14 +116,13 @@ public class AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer extends OpenS
 
     /**
      * Build index paths by type of binary or metadata
-     * @param updateSet indexing update set
+     * @param updatePaths paths to update
      * @param metadataUpdatePaths metadata paths set
      * @param binarySearchablePaths binary searchable paths set
      * @param binaryUpdatePaths binary paths set
      */
-    private void buildUpdatePaths(UpdateSet updateSet, Set<String> metadataUpdatePaths,
+    private void buildUpdatePaths(List<String> updatePaths, Set<String> metadataUpdatePaths,
                                         Set<String> binarySearchablePaths, Set<String> binaryUpdatePaths) {
-        List<String> updatePaths = updateSet.getUpdatePaths();
         for (String path : updatePaths) {
             if (isMetadata(path)) {
                 metadataUpdatePaths.add(path);
@@ -112,10 +144,12 @@ public class AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer extends OpenS
      * @param updateStatus update status
      * @param metadataUpdatePaths metadata paths to be indexed
      * @param binaryUpdatePaths binary paths to be updated
+     * @param handledBinaryPaths binary paths already updated or deleted during the whole update
      */
     private void updateMetadataPaths(String indexId, String siteName, ContentStoreService contentStoreService,
                                      Context context, UpdateSet updateSet, UpdateStatus updateStatus,
-                                     Set<String> metadataUpdatePaths, Set<String> binaryUpdatePaths) {
+                                     Set<String> metadataUpdatePaths, Set<String> binaryUpdatePaths,
+                                     Set<String> handledBinaryPaths) {
         for (String metadataPath : metadataUpdatePaths) {
             Collection<String> newBinaryPaths = Collections.emptyList();
             List<String> previousBinaryPaths = searchBinaryPathsFromMetadataPath(indexId, siteName, metadataPath);
@@ -130,12 +164,17 @@ public class AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer extends OpenS
             updatePreviousBinaries(indexId, siteName, metadataPath, previousBinaryPaths, newBinaryPaths,
                     binaryUpdatePaths, context, contentStoreService, updateSet.getUpdateDetail(metadataPath), updateStatus);
 
+            if (isNotEmpty(previousBinaryPaths)) {
+                handledBinaryPaths.addAll(previousBinaryPaths);
+            }
+
             // Index the new associated binaries
             if (isNotEmpty(newBinaryPaths)) {
                 Map<String, Object> metadata = extractMetadata(metadataPath, metadataDoc);
 
                 for (String newBinaryPath : newBinaryPaths) {
                     binaryUpdatePaths.remove(newBinaryPath);
+                    handledBinaryPaths.add(newBinaryPath);
 
                     Map<String, Object> additionalFields = collectMetadata(metadataPath, contentStoreService, context);
                     Map<String, Object> mergedMetadata = mergeMaps(metadata, additionalFields);
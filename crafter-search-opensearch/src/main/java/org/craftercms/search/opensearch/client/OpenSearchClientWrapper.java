@@ -22,7 +22,10 @@ import org.opensearch.client.opensearch.core.SearchResponse;
 import org.opensearch.client.util.ObjectBuilder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 import static java.util.Collections.emptyMap;
@@ -67,4 +70,63 @@ public interface OpenSearchClientWrapper {
         return search(SearchRequest.of(function), documentClass, parameters);
     }
 
+    /**
+     * Executes all the given requests, using a single call to the cluster when possible
+     */
+    default <T> List<SearchResponseItem<T>> searchAll(List<SearchRequest> requests, Class<T> documentClass) {
+        return searchAll(requests, documentClass, emptyMap());
+    }
+
+    /**
+     * Executes all the given requests, using a single call to the cluster when possible. The error of each request
+     * is returned in its own item.
+     */
+    default <T> List<SearchResponseItem<T>> searchAll(List<SearchRequest> requests, Class<T> documentClass,
+                                                      Map<String, Object> parameters) {
+        List<SearchResponseItem<T>> items = new ArrayList<>(requests.size());
+        for (SearchRequest request : requests) {
+            try {
+                items.add(new SearchResponseItem<>(search(request, documentClass, parameters)));
+            } catch (OpenSearchException e) {
+                items.add(new SearchResponseItem<>(e));
+            } catch (IOException e) {
+                items.add(new SearchResponseItem<>(new OpenSearchException(null, "Error executing search", e)));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Executes the given request without blocking the calling thread
+     */
+    default <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> documentClass) {
+        return searchAsync(request, documentClass, emptyMap());
+    }
+
+    /**
+     * Executes the given request without blocking the calling thread. The default implementation executes the
+     * request synchronously and returns a completed future.
+     */
+    default <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> documentClass,
+                                                                 Map<String, Object> parameters) {
+        try {
+            return CompletableFuture.completedFuture(search(request, documentClass, parameters));
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new OpenSearchException(null, "Error executing search", e));
+        }
+    }
+
+    /**
+     * Executes the given request without blocking the calling thread, always sending it to the cluster even if an
+     * identical search is already in progress. The default implementation calls
+     * {@link #searchAsync(SearchRequest, Class, Map)}.
+     */
+    default <T> CompletableFuture<SearchResponse<T>> searchAsyncUncoalesced(SearchRequest request,
+                                                                            Class<T> documentClass,
+                                                                            Map<String, Object> parameters) {
+        return searchAsync(request, documentClass, parameters);
+    }
+
 }
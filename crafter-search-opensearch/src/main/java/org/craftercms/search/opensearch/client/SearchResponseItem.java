@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.client;
+
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.opensearch.client.opensearch.core.SearchResponse;
+
+/**
+ * The result of one of the requests executed by {@link OpenSearchClientWrapper#searchAll}, that contains either the
+ * response or the error of that request
+ *
+ * @param <T> the type of the documents
+ * @since 4.2.0
+ */
+public class SearchResponseItem<T> {
+
+    private final SearchResponse<T> response;
+
+    private final OpenSearchException error;
+
+    public SearchResponseItem(SearchResponse<T> response) {
+        this.response = response;
+        this.error = null;
+    }
+
+    public SearchResponseItem(OpenSearchException error) {
+        this.response = null;
+        this.error = error;
+    }
+
+    /**
+     * Indicates if the request was executed successfully
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Returns the response of the request
+     *
+     * @throws OpenSearchException if the request failed
+     */
+    public SearchResponse<T> getResponse() throws OpenSearchException {
+        if (error != null) {
+            throw error;
+        }
+        return response;
+    }
+
+    /**
+     * Returns the error of the request, or null if it was executed successfully
+     */
+    public OpenSearchException getError() {
+        return error;
+    }
+
+}
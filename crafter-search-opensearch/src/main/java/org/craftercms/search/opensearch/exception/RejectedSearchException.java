@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.exception;
+
+/**
+ * Exception thrown when a search is not sent to the cluster because the concurrency limit was reached or the circuit
+ * breaker is open
+ *
+ * @since 4.2.0
+ */
+public class RejectedSearchException extends OpenSearchException {
+
+    public enum Reason {
+        CONCURRENCY_LIMIT,
+        CIRCUIT_OPEN
+    }
+
+    protected final Reason reason;
+
+    public RejectedSearchException(String indexId, String msg, Reason reason) {
+        super(indexId, msg);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+}
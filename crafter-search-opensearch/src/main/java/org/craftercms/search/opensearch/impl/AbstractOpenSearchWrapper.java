@@ -17,9 +17,11 @@
 package org.craftercms.search.opensearch.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.apache.commons.lang3.ArrayUtils;
 import org.craftercms.search.opensearch.OpenSearchWrapper;
 import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.exception.RejectedSearchException;
 import org.opensearch.action.search.SearchRequest;
 import org.opensearch.action.search.SearchResponse;
 import org.opensearch.action.support.IndicesOptions;
@@ -27,10 +29,13 @@ import org.opensearch.client.Node;
 import org.opensearch.client.RequestOptions;
 import org.opensearch.client.RestHighLevelClient;
 import org.opensearch.common.settings.Settings;
+import org.opensearch.core.action.ActionListener;
 import org.opensearch.core.xcontent.DeprecationHandler;
 import org.opensearch.core.xcontent.NamedXContentRegistry;
+import org.opensearch.core.xcontent.XContentParser;
 import org.opensearch.common.xcontent.XContentFactory;
 import org.opensearch.common.xcontent.XContentType;
+import org.opensearch.common.xcontent.json.JsonXContentParser;
 import org.opensearch.index.query.BoolQueryBuilder;
 import org.opensearch.index.query.QueryStringQueryBuilder;
 import org.opensearch.search.SearchModule;
@@ -41,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.collections4.MapUtils.isNotEmpty;
@@ -68,14 +74,35 @@ public abstract class AbstractOpenSearchWrapper implements OpenSearchWrapper {
      */
     protected String[] filterQueries;
 
+    /**
+     * The registry with the parsers for all queries and aggregations, built only once since it's expensive
+     */
+    protected final NamedXContentRegistry xContentRegistry;
+
+    /**
+     * The mapper used to convert the requests received as maps
+     */
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * The limiter for the searches in flight, optional
+     */
+    protected AdaptiveSearchLimiter searchLimiter;
+
     public AbstractOpenSearchWrapper(final RestHighLevelClient client) {
         this.client = client;
+        this.xContentRegistry = new NamedXContentRegistry(
+                new SearchModule(Settings.EMPTY, Collections.emptyList()).getNamedXContents());
     }
 
     public void setFilterQueries(final String[] filterQueries) {
         this.filterQueries = filterQueries;
     }
 
+    public void setSearchLimiter(final AdaptiveSearchLimiter searchLimiter) {
+        this.searchLimiter = searchLimiter;
+    }
+
     /**
      * Updates the value of the index for the given request
      *
@@ -124,26 +151,103 @@ public abstract class AbstractOpenSearchWrapper implements OpenSearchWrapper {
                     .collect(toList());
             logger.debug("Executing search request for urls {}", urls);
         }
+
+        AdaptiveSearchLimiter.Permit permit = null;
+        if (searchLimiter != null) {
+            try {
+                permit = searchLimiter.acquire(request.indices()[0]);
+            } catch (RejectedSearchException e) {
+                return getFallbackResponse(request, e);
+            }
+        }
+
         try {
-            return client.search(request, options);
+            SearchResponse response = client.search(request, options);
+            if (permit != null) {
+                permit.onSuccess();
+            }
+            return response;
         } catch (Exception e) {
+            if (permit != null) {
+                permit.onError(e);
+            }
             throw new OpenSearchException(request.indices()[0], "Error executing search request", e);
         }
     }
 
+    /**
+     * Returns the response for a search rejected by the limiter. By default the exception is thrown, subclasses can
+     * override it to return a stale or partial response instead.
+     *
+     * @param request the rejected request
+     * @param e the exception for the rejection
+     * @return the response to return to the caller
+     */
+    protected SearchResponse getFallbackResponse(final SearchRequest request, final RejectedSearchException e) {
+        throw e;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<SearchResponse> searchAsync(final SearchRequest request, final RequestOptions options) {
+        logger.debug("Original async search request: {}", request);
+        updateIndex(request);
+        updateFilters(request);
+        logger.debug("Updated async search request: {}", request);
+
+        AdaptiveSearchLimiter.Permit permit;
+        if (searchLimiter != null) {
+            try {
+                permit = searchLimiter.acquire(request.indices()[0]);
+            } catch (RejectedSearchException e) {
+                try {
+                    return CompletableFuture.completedFuture(getFallbackResponse(request, e));
+                } catch (RuntimeException fallbackError) {
+                    return CompletableFuture.failedFuture(fallbackError);
+                }
+            }
+        } else {
+            permit = null;
+        }
+
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        ActionListener<SearchResponse> listener = ActionListener.wrap(future::complete, e ->
+            future.completeExceptionally(
+                    new OpenSearchException(request.indices()[0], "Error executing search request", e)));
+        try {
+            client.searchAsync(request, options, listener);
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+
+        if (permit == null) {
+            return future;
+        }
+        return future.whenComplete((response, error) -> {
+            if (error == null) {
+                permit.onSuccess();
+            } else {
+                permit.onError(error);
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public SearchResponse search(final Map<String, Object> request, final Map<String, Object> parameters,
                                  final RequestOptions options) {
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            String json = mapper.writeValueAsString(request);
-            return search(json, parameters, options);
+        SearchSourceBuilder builder;
+        try (XContentParser parser = createParser(request)) {
+            builder = SearchSourceBuilder.fromXContent(parser);
         } catch (IOException e) {
             throw new OpenSearchException(null, "Error parsing request " + request, e);
         }
+
+        return doSearch(builder, parameters, options);
     }
 
     /**
@@ -152,28 +256,55 @@ public abstract class AbstractOpenSearchWrapper implements OpenSearchWrapper {
     @Override
     public SearchResponse search(final String request, final Map<String, Object> parameters,
                                  final RequestOptions options) {
-        SearchModule module = new SearchModule(Settings.EMPTY, Collections.emptyList());
-        try {
-            SearchSourceBuilder builder =
-                    SearchSourceBuilder.fromXContent(XContentFactory.xContent(XContentType.JSON)
-                            .createParser(new NamedXContentRegistry(module.getNamedXContents()),
-                                    DeprecationHandler.THROW_UNSUPPORTED_OPERATION, request));
+        SearchSourceBuilder builder;
+        try (XContentParser parser = XContentFactory.xContent(XContentType.JSON)
+                .createParser(xContentRegistry, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, request)) {
+            builder = SearchSourceBuilder.fromXContent(parser);
+        } catch (IOException e) {
+            throw new OpenSearchException(null, "Error parsing request " + request, e);
+        }
 
-            SearchRequest searchRequest = new SearchRequest();
-            searchRequest.source(builder);
+        return doSearch(builder, parameters, options);
+    }
 
-            if (isNotEmpty(parameters)) {
-                if (parameters.containsKey(PARAM_NAME_INDEX)) {
-                    searchRequest.indices(parameters.get(PARAM_NAME_INDEX).toString().split(","));
-                }
-                searchRequest.searchType((String) parameters.get(PARAM_NAME_SEARCH_TYPE));
-                searchRequest.indicesOptions(IndicesOptions.fromMap(parameters, DEFAULT_INDICES_OPTIONS));
-            }
+    /**
+     * Executes a search request with the given source and parameters
+     *
+     * @param builder the source of the request
+     * @param parameters the parameters of the request (index, search type and indices options)
+     * @param options the request options
+     * @return the search response
+     */
+    protected SearchResponse doSearch(final SearchSourceBuilder builder, final Map<String, Object> parameters,
+                                      final RequestOptions options) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.source(builder);
 
-            return search(searchRequest, options);
-        } catch (IOException e) {
-            throw new OpenSearchException(null, "Error parsing request " + request, e);
+        if (isNotEmpty(parameters)) {
+            if (parameters.containsKey(PARAM_NAME_INDEX)) {
+                searchRequest.indices(parameters.get(PARAM_NAME_INDEX).toString().split(","));
+            }
+            searchRequest.searchType((String) parameters.get(PARAM_NAME_SEARCH_TYPE));
+            searchRequest.indicesOptions(IndicesOptions.fromMap(parameters, DEFAULT_INDICES_OPTIONS));
         }
+
+        return search(searchRequest, options);
+    }
+
+    /**
+     * Creates a parser that reads the given request directly from the Jackson tokens of the map, without writing
+     * it as JSON first
+     *
+     * @param request the request
+     * @return the parser
+     * @throws IOException if the request can't be converted
+     */
+    protected XContentParser createParser(final Map<String, Object> request) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+        objectMapper.writeValue(buffer, request);
+
+        return new JsonXContentParser(xContentRegistry, DeprecationHandler.THROW_UNSUPPORTED_OPERATION,
+                                      buffer.asParser());
     }
 
 }
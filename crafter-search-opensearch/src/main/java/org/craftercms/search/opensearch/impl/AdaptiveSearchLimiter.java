@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.craftercms.search.opensearch.exception.RejectedSearchException;
+import org.opensearch.OpenSearchStatusException;
+import org.opensearch.client.ResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Protects the cluster and the callers when the cluster degrades, by failing searches fast instead of letting them
+ * pile up until the socket timeout:
+ * <ul>
+ *     <li>The number of searches in flight is limited. The limit grows additively while the latency stays under the
+ *     target, and is reduced multiplicatively (AIMD) when it goes over the target or the cluster fails</li>
+ *     <li>A circuit breaker opens when the ratio of failed searches goes over a threshold. While it's open all
+ *     searches are rejected, after the open duration a single search is sent to probe the cluster and the breaker
+ *     is closed again if it succeeds. If the probe doesn't finish within the probe timeout its permit is released
+ *     and the next search is sent as a new probe</li>
+ * </ul>
+ * Only errors from the cluster count as failures (I/O errors, rejections and 5xx responses), not invalid requests.
+ * Searches that can't be sent throw a {@link RejectedSearchException}.
+ *
+ * <p>A single instance should be shared by all the searches to the same cluster.</p>
+ *
+ * @since 4.2.0
+ */
+public class AdaptiveSearchLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveSearchLimiter.class);
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 2;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final long DEFAULT_TARGET_LATENCY = 1000;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final int DEFAULT_MIN_CALLS = 20;
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    public static final long DEFAULT_OPEN_DURATION = TimeUnit.SECONDS.toMillis(10);
+    public static final long DEFAULT_PROBE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * The min number of searches in flight
+     */
+    protected int minLimit = DEFAULT_MIN_LIMIT;
+
+    /**
+     * The max number of searches in flight
+     */
+    protected int maxLimit = DEFAULT_MAX_LIMIT;
+
+    /**
+     * The target latency for each search in milliseconds
+     */
+    protected long targetLatency = DEFAULT_TARGET_LATENCY;
+
+    /**
+     * The factor applied to the limit when a search is over the target latency or fails
+     */
+    protected double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+    /**
+     * The ratio of failed searches that opens the circuit breaker
+     */
+    protected double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+    /**
+     * The min number of searches in the current window before the failure rate is checked
+     */
+    protected int minCalls = DEFAULT_MIN_CALLS;
+
+    /**
+     * The number of searches after which the failure rate starts again
+     */
+    protected int windowSize = DEFAULT_WINDOW_SIZE;
+
+    /**
+     * The time in milliseconds the circuit breaker stays open before probing the cluster
+     */
+    protected long openDuration = DEFAULT_OPEN_DURATION;
+
+    /**
+     * The time in milliseconds after which a probe search that didn't finish is abandoned
+     */
+    protected long probeTimeout = DEFAULT_PROBE_TIMEOUT;
+
+    protected final Lock lock = new ReentrantLock();
+
+    protected double limit = DEFAULT_INITIAL_LIMIT;
+
+    protected int inFlight;
+
+    protected State state = State.CLOSED;
+
+    protected long openedAt;
+
+    /**
+     * The permit of the search probing the cluster while the breaker is half open
+     */
+    protected Permit probePermit;
+
+    protected int calls;
+
+    protected int failures;
+
+    protected final LongAdder rejectedByLimit = new LongAdder();
+
+    protected final LongAdder rejectedByBreaker = new LongAdder();
+
+    public void setInitialLimit(int initialLimit) {
+        this.limit = initialLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public void setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public void setMinCalls(int minCalls) {
+        this.minCalls = minCalls;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public void setProbeTimeout(long probeTimeout) {
+        this.probeTimeout = probeTimeout;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of searches rejected because of the concurrency limit
+     */
+    public long getRejectedByLimit() {
+        return rejectedByLimit.sum();
+    }
+
+    /**
+     * Returns the number of searches rejected because the circuit breaker was open
+     */
+    public long getRejectedByBreaker() {
+        return rejectedByBreaker.sum();
+    }
+
+    /**
+     * Gets a permit to send a search, that needs to be completed with the outcome of the search
+     *
+     * @param indexId the index of the search, used for the exception
+     * @return the permit
+     * @throws RejectedSearchException if the concurrency limit was reached or the circuit breaker is open
+     */
+    public Permit acquire(String indexId) throws RejectedSearchException {
+        lock.lock();
+        try {
+            boolean probe = false;
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openDuration) {
+                    rejectedByBreaker.increment();
+                    throw new RejectedSearchException(indexId, "Circuit breaker is open",
+                                                      RejectedSearchException.Reason.CIRCUIT_OPEN);
+                }
+                logger.info("Circuit breaker is half open, sending a search to probe the cluster");
+                state = State.HALF_OPEN;
+                probe = true;
+            } else if (state == State.HALF_OPEN) {
+                if (System.nanoTime() - probePermit.start < TimeUnit.MILLISECONDS.toNanos(probeTimeout)) {
+                    // Only the probe is sent until the breaker is closed again
+                    rejectedByBreaker.increment();
+                    throw new RejectedSearchException(indexId, "Circuit breaker is half open",
+                                                      RejectedSearchException.Reason.CIRCUIT_OPEN);
+                }
+                logger.warn("Probe search didn't finish after {} ms, sending another one", probeTimeout);
+                release(probePermit);
+                probe = true;
+            }
+
+            if (!probe && inFlight >= (int) limit) {
+                rejectedByLimit.increment();
+                throw new RejectedSearchException(indexId, "Too many searches in flight (" + inFlight + ")",
+                                                  RejectedSearchException.Reason.CONCURRENCY_LIMIT);
+            }
+
+            inFlight++;
+            Permit permit = new Permit();
+            if (probe) {
+                probePermit = permit;
+            }
+
+            return permit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void onSuccess(Permit permit, long latency) {
+        lock.lock();
+        try {
+            if (!release(permit)) {
+                return;
+            }
+            if (permit == probePermit) {
+                logger.info("Probe search succeeded, closing the circuit breaker");
+                close();
+            }
+
+            if (latency <= targetLatency) {
+                // Adds one search in flight once as many searches as the limit have been under the target
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            } else {
+                logger.debug("Search took {} ms, over the target of {} ms", latency, targetLatency);
+                decrease();
+            }
+
+            record(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void onFailure(Permit permit) {
+        lock.lock();
+        try {
+            if (!release(permit)) {
+                return;
+            }
+            decrease();
+
+            if (permit == probePermit) {
+                logger.warn("Probe search failed, opening the circuit breaker again");
+                open();
+            } else {
+                record(true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void onIgnore(Permit permit) {
+        lock.lock();
+        try {
+            if (!release(permit)) {
+                return;
+            }
+            if (permit == probePermit) {
+                // The request was invalid, so the cluster was not really probed
+                state = State.OPEN;
+                openedAt = 0;
+                probePermit = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the given permit if it wasn't released before, must be called while holding the lock
+     *
+     * @return true if the permit was released, false if it was already released (like an abandoned probe)
+     */
+    protected boolean release(Permit permit) {
+        if (permit.released) {
+            return false;
+        }
+        permit.released = true;
+        inFlight--;
+        return true;
+    }
+
+    protected void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    protected void record(boolean failure) {
+        if (state != State.CLOSED) {
+            return;
+        }
+
+        calls++;
+        if (failure) {
+            failures++;
+        }
+
+        if (calls >= minCalls && (double) failures / calls >= failureRateThreshold) {
+            logger.warn("{} of the last {} searches failed, opening the circuit breaker", failures, calls);
+            open();
+        } else if (calls >= windowSize) {
+            calls = 0;
+            failures = 0;
+        }
+    }
+
+    protected void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probePermit = null;
+        calls = 0;
+        failures = 0;
+    }
+
+    protected void close() {
+        state = State.CLOSED;
+        probePermit = null;
+        calls = 0;
+        failures = 0;
+    }
+
+    /**
+     * Indicates if the given exception (or any of its causes) means the cluster failed, instead of the request
+     * being invalid
+     */
+    public static boolean isClusterFailure(Throwable throwable) {
+        if (AdaptiveWriteController.isRejection(throwable)) {
+            return true;
+        }
+
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof ResponseException) {
+                return ((ResponseException) t).getResponse().getStatusLine().getStatusCode() >= 500;
+            }
+            if (t instanceof org.opensearch.client.opensearch._types.OpenSearchException) {
+                return ((org.opensearch.client.opensearch._types.OpenSearchException) t).status() >= 500;
+            }
+            if (t instanceof OpenSearchStatusException) {
+                return ((OpenSearchStatusException) t).status().getStatus() >= 500;
+            }
+            if (t instanceof IOException) {
+                return true;
+            }
+
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A permit to send a single search
+     */
+    public class Permit {
+
+        protected final long start = System.nanoTime();
+
+        /**
+         * Indicates if the permit was already released, guarded by the lock of the limiter
+         */
+        protected boolean released;
+
+        protected Permit() {
+        }
+
+        /**
+         * Releases the permit after a successful search
+         */
+        public void onSuccess() {
+            AdaptiveSearchLimiter.this.onSuccess(this, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        /**
+         * Releases the permit after a failed search
+         */
+        public void onError(Throwable error) {
+            if (isClusterFailure(error)) {
+                onFailure(this);
+            } else {
+                onIgnore(this);
+            }
+        }
+
+    }
+
+}
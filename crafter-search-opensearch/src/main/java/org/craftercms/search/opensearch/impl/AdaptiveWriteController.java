@@ -0,0 +1,585 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opensearch.client.ResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Controls the write requests sent to OpenSearch based on the feedback from the cluster:
+ * <ul>
+ *     <li>The bulk size and the number of requests in flight grow additively while the latency stays under the
+ *     target, and are halved when it goes over the target or the cluster rejects a request</li>
+ *     <li>Rejected requests (HTTP 429 or {@code es_rejected_execution_exception}) are retried with exponential
+ *     backoff</li>
+ *     <li>The number of documents sent per second never goes over the configured cap</li>
+ * </ul>
+ * A single instance should be shared by all the writes to the same cluster. Requests can be executed blocking the
+ * calling thread or asynchronously, in which case waiting for the limits and the backoff never blocks a thread.
+ *
+ * @since 4.2.0
+ */
+public class AdaptiveWriteController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveWriteController.class);
+
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    public static final String REJECTED_EXECUTION_ERROR_TYPE = "rejected_execution_exception";
+
+    public static final int DEFAULT_INITIAL_BULK_SIZE = 100;
+    public static final int DEFAULT_MIN_BULK_SIZE = 10;
+    public static final int DEFAULT_MAX_BULK_SIZE = 1000;
+    public static final int DEFAULT_BULK_SIZE_INCREMENT = 20;
+    public static final int DEFAULT_INITIAL_IN_FLIGHT_REQUESTS = 2;
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 8;
+    public static final long DEFAULT_TARGET_LATENCY = 1000;
+    public static final long DEFAULT_INITIAL_BACKOFF = 100;
+    public static final long DEFAULT_MAX_BACKOFF = 30000;
+    public static final int DEFAULT_MAX_RETRIES = 8;
+    public static final int DEFAULT_MAX_DOCS_PER_SECOND = 0;
+
+    /**
+     * The min number of operations per bulk request
+     */
+    protected int minBulkSize = DEFAULT_MIN_BULK_SIZE;
+
+    /**
+     * The max number of operations per bulk request
+     */
+    protected int maxBulkSize = DEFAULT_MAX_BULK_SIZE;
+
+    /**
+     * The number of operations added to the bulk size after each request under the target latency
+     */
+    protected int bulkSizeIncrement = DEFAULT_BULK_SIZE_INCREMENT;
+
+    /**
+     * The max number of write requests in flight at the same time
+     */
+    protected int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+
+    /**
+     * The target latency for each request in milliseconds
+     */
+    protected long targetLatency = DEFAULT_TARGET_LATENCY;
+
+    /**
+     * The backoff in milliseconds before the first retry of a rejected request
+     */
+    protected long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+
+    /**
+     * The max backoff in milliseconds between retries of a rejected request
+     */
+    protected long maxBackoff = DEFAULT_MAX_BACKOFF;
+
+    /**
+     * The max number of retries of a rejected request
+     */
+    protected int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * The max number of documents sent per second, 0 or less means no limit
+     */
+    protected volatile int maxDocsPerSecond = DEFAULT_MAX_DOCS_PER_SECOND;
+
+    /**
+     * The executor used to resume the asynchronous requests waiting for a permit, so that the next request is not
+     * prepared and sent by the I/O thread that delivered the previous response
+     */
+    protected Executor executor = ForkJoinPool.commonPool();
+
+    protected final Lock lock = new ReentrantLock();
+
+    protected final Condition permitReleased = lock.newCondition();
+
+    /**
+     * The asynchronous requests waiting for a request in flight to complete
+     */
+    protected final Deque<CompletableFuture<Void>> asyncWaiters = new ArrayDeque<>();
+
+    protected int bulkSize = DEFAULT_INITIAL_BULK_SIZE;
+
+    protected int inFlightLimit = DEFAULT_INITIAL_IN_FLIGHT_REQUESTS;
+
+    protected int inFlightRequests;
+
+    protected int successesSinceLimitChange;
+
+    /**
+     * The documents that can be sent without waiting, NaN until the first request so that the bucket starts full
+     */
+    protected double availableDocs = Double.NaN;
+
+    protected long lastRefillTime = System.nanoTime();
+
+    public void setInitialBulkSize(int initialBulkSize) {
+        this.bulkSize = initialBulkSize;
+    }
+
+    public void setMinBulkSize(int minBulkSize) {
+        this.minBulkSize = minBulkSize;
+    }
+
+    public void setMaxBulkSize(int maxBulkSize) {
+        this.maxBulkSize = maxBulkSize;
+    }
+
+    public void setBulkSizeIncrement(int bulkSizeIncrement) {
+        this.bulkSizeIncrement = bulkSizeIncrement;
+    }
+
+    public void setInitialInFlightRequests(int initialInFlightRequests) {
+        this.inFlightLimit = initialInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public void setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public void setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Sets the max number of documents sent per second. Can be changed at any time, for example to use a lower
+     * value during business hours.
+     */
+    public void setMaxDocsPerSecond(int maxDocsPerSecond) {
+        this.maxDocsPerSecond = maxDocsPerSecond;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the number of operations that should be sent in the next bulk request
+     */
+    public int getBulkSize() {
+        lock.lock();
+        try {
+            return Math.max(1, Math.min(bulkSize, maxBulkSize));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlightLimit() {
+        lock.lock();
+        try {
+            return inFlightLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Executes the given write request, waiting if needed for the in-flight and rate limits, and retrying it with
+     * exponential backoff if it's rejected by the cluster.
+     *
+     * @param docCount the number of documents in the request
+     * @param request the request to execute
+     * @return the result of the request
+     * @throws Exception if the request fails or is still rejected after all the retries
+     */
+    public <T> T execute(int docCount, Callable<T> request) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            Exception rejection;
+
+            acquire(docCount);
+
+            long start = System.nanoTime();
+            try {
+                T result = request.call();
+
+                onCompleted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+                return result;
+            } catch (Exception e) {
+                if (!isRejection(e)) {
+                    throw e;
+                }
+                rejection = e;
+            } finally {
+                release();
+            }
+
+            if (!backOff(attempt)) {
+                throw rejection;
+            }
+        }
+    }
+
+    /**
+     * Executes the given asynchronous write request, with the same limits and retries of
+     * {@link #execute(int, Callable)} but without blocking the calling thread.
+     *
+     * @param docCount the number of documents in the request
+     * @param request the request to execute, returns the future for the response
+     * @return the future for the result of the request
+     */
+    public <T> CompletableFuture<T> executeAsync(int docCount, Callable<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executeAsync(docCount, request, 0, result);
+        return result;
+    }
+
+    /**
+     * Executes an asynchronous bulk request, with the same limits and retries of
+     * {@link #executeAsync(int, Callable)}. The number of documents is decided with the current bulk size only once
+     * the request can be sent, so a request that had to wait for the in-flight limit uses the size adjusted with all
+     * the responses received in the meantime.
+     *
+     * @param maxDocCount the max number of documents in the request
+     * @param request the function that receives the number of documents to send and returns the request, which is
+     *                also used for the retries
+     * @return the future for the result of the request
+     */
+    public <T> CompletableFuture<T> executeBulkAsync(int maxDocCount,
+                                                     IntFunction<Callable<CompletableFuture<T>>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        acquirePermitAsync().thenAccept(ignored -> {
+            int docCount = Math.min(maxDocCount, getBulkSize());
+            Callable<CompletableFuture<T>> sizedRequest;
+            try {
+                sizedRequest = request.apply(docCount);
+            } catch (RuntimeException e) {
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+            executeAsync(docCount, sizedRequest, 0, result, reserveAsync(docCount));
+        });
+        return result;
+    }
+
+    protected <T> void executeAsync(int docCount, Callable<CompletableFuture<T>> request, int attempt,
+                                    CompletableFuture<T> result) {
+        executeAsync(docCount, request, attempt, result, acquireAsync(docCount));
+    }
+
+    /**
+     * Executes the request once the given permit is acquired, retrying it if it's rejected
+     */
+    protected <T> void executeAsync(int docCount, Callable<CompletableFuture<T>> request, int attempt,
+                                    CompletableFuture<T> result, CompletableFuture<Void> permit) {
+        permit.thenCompose(acquired -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> response;
+            try {
+                response = request.call();
+            } catch (Exception e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            return response.whenComplete((value, error) -> {
+                // The limits are updated before the permit is passed to the next request, that might be sized now
+                if (error == null) {
+                    onCompleted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                release();
+            });
+        }).whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                    error.getCause() : error;
+            if (!isRejection(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            backOffAsync(attempt).thenAccept(retry -> {
+                if (retry) {
+                    executeAsync(docCount, request, attempt + 1, result);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        });
+    }
+
+    /**
+     * Reduces the load after a rejection and waits before the given retry attempt.
+     *
+     * @param attempt the number of the attempt that was rejected, starting at 0
+     * @return true if the request should be retried, false if the max number of retries has been reached
+     */
+    public boolean backOff(int attempt) {
+        decrease();
+
+        if (attempt >= maxRetries) {
+            return false;
+        }
+
+        long backoff = getBackoff(attempt);
+
+        logger.debug("Request rejected by the cluster, retrying in {} ms", backoff);
+
+        try {
+            Thread.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #backOff(int)}, the returned future is completed after the backoff
+     */
+    public CompletableFuture<Boolean> backOffAsync(int attempt) {
+        decrease();
+
+        if (attempt >= maxRetries) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        long backoff = getBackoff(attempt);
+
+        logger.debug("Request rejected by the cluster, retrying in {} ms", backoff);
+
+        return CompletableFuture.supplyAsync(() -> true,
+                                             CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS));
+    }
+
+    protected long getBackoff(int attempt) {
+        return Math.min(maxBackoff, initialBackoff << Math.min(attempt, 30));
+    }
+
+    protected void acquire(int docCount) throws InterruptedException {
+        long waitNanos;
+
+        lock.lock();
+        try {
+            while (inFlightRequests >= inFlightLimit) {
+                permitReleased.await();
+            }
+            inFlightRequests++;
+
+            waitNanos = reserve(docCount);
+        } finally {
+            lock.unlock();
+        }
+
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns a future that is completed once the request can be sent, without blocking the calling thread
+     */
+    protected CompletableFuture<Void> acquireAsync(int docCount) {
+        return acquirePermitAsync().thenCompose(ignored -> reserveAsync(docCount));
+    }
+
+    /**
+     * Returns a future that is completed once there is room for a new request in flight, without blocking the
+     * calling thread. The permit must be returned with {@link #release()}.
+     */
+    protected CompletableFuture<Void> acquirePermitAsync() {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            if (inFlightRequests < inFlightLimit && asyncWaiters.isEmpty()) {
+                inFlightRequests++;
+                permit.complete(null);
+            } else {
+                asyncWaiters.add(permit);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return permit;
+    }
+
+    /**
+     * Reserves the given number of documents from the rate limit, returns a future that is completed once they can
+     * be sent
+     */
+    protected CompletableFuture<Void> reserveAsync(int docCount) {
+        long waitNanos;
+        lock.lock();
+        try {
+            waitNanos = reserve(docCount);
+        } finally {
+            lock.unlock();
+        }
+
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos,
+                                                                                      TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Reserves the given number of documents from the rate limit, must be called while holding the lock
+     *
+     * @return the time to wait in nanoseconds before sending the documents
+     */
+    protected long reserve(int docCount) {
+        int rate = maxDocsPerSecond;
+        if (rate <= 0) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        if (Double.isNaN(availableDocs)) {
+            availableDocs = rate;
+        } else {
+            availableDocs = Math.min(rate, availableDocs + (now - lastRefillTime) * rate / 1e9);
+        }
+        lastRefillTime = now;
+
+        // The docs are reserved even if not available yet, the next requests will wait for them
+        availableDocs -= docCount;
+        if (availableDocs < 0) {
+            return (long) (-availableDocs * 1e9 / rate);
+        }
+        return 0;
+    }
+
+    protected void release() {
+        CompletableFuture<Void> waiter = null;
+
+        lock.lock();
+        try {
+            inFlightRequests--;
+            // The permit goes directly to the next asynchronous request, if any
+            if (!asyncWaiters.isEmpty() && inFlightRequests < inFlightLimit) {
+                waiter = asyncWaiters.poll();
+                inFlightRequests++;
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (waiter != null) {
+            waiter.completeAsync(() -> null, executor);
+        }
+    }
+
+    protected void onCompleted(long latency) {
+        if (latency <= targetLatency) {
+            increase();
+        } else {
+            logger.debug("Write request took {} ms, over the target of {} ms", latency, targetLatency);
+
+            decrease();
+        }
+    }
+
+    protected void increase() {
+        lock.lock();
+        try {
+            bulkSize = Math.min(maxBulkSize, bulkSize + bulkSizeIncrement);
+
+            // Only add a request in flight once all the current ones have been under the target
+            if (++successesSinceLimitChange >= inFlightLimit && inFlightLimit < maxInFlightRequests) {
+                inFlightLimit++;
+                successesSinceLimitChange = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void decrease() {
+        lock.lock();
+        try {
+            bulkSize = Math.max(minBulkSize, bulkSize / 2);
+            inFlightLimit = Math.max(1, inFlightLimit / 2);
+            successesSinceLimitChange = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indicates if the given status and error type correspond to a rejection from the cluster
+     */
+    public static boolean isRejection(int status, String errorType) {
+        return status == HTTP_TOO_MANY_REQUESTS || StringUtils.contains(errorType, REJECTED_EXECUTION_ERROR_TYPE);
+    }
+
+    /**
+     * Indicates if the given exception (or any of its causes) corresponds to a rejection from the cluster
+     */
+    public static boolean isRejection(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof org.opensearch.client.opensearch._types.OpenSearchException) {
+                var e = (org.opensearch.client.opensearch._types.OpenSearchException) t;
+                if (isRejection(e.status(), e.error() != null ? e.error().type() : null)) {
+                    return true;
+                }
+            } else if (t instanceof ResponseException) {
+                var e = (ResponseException) t;
+                if (isRejection(e.getResponse().getStatusLine().getStatusCode(), e.getMessage())) {
+                    return true;
+                }
+            } else if (StringUtils.contains(t.getMessage(), REJECTED_EXECUTION_ERROR_TYPE)) {
+                return true;
+            }
+
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+}
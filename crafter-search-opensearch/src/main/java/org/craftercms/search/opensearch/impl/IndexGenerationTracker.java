@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a generation counter for each index, increased every time the index is written to or refreshed, so the
+ * results of previous searches can be detected as stale. A global counter is also increased for every write, it's
+ * used for searches on wildcards or on all the indices.
+ *
+ * <p>The same instance needs to be shared by the {@link OpenSearchServiceImpl} and the search result cache, and both
+ * need to use the same names (usually the aliases) for the indices.</p>
+ *
+ * @since 4.2.0
+ */
+public class IndexGenerationTracker {
+
+    public static final String ALL_INDICES = "_all";
+
+    protected final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    protected final AtomicLong globalGeneration = new AtomicLong();
+
+    /**
+     * Increases the generation of the given index
+     *
+     * @param indexName the name of the index
+     */
+    public void increment(String indexName) {
+        generations.computeIfAbsent(indexName, name -> new AtomicLong()).incrementAndGet();
+        globalGeneration.incrementAndGet();
+    }
+
+    /**
+     * Returns the current generation of the given index
+     *
+     * @param indexName the name of the index
+     * @return the generation, 0 if the index has never been written to
+     */
+    public long getGeneration(String indexName) {
+        if (indexName.contains("*") || ALL_INDICES.equals(indexName)) {
+            return globalGeneration.get();
+        }
+
+        AtomicLong generation = generations.get(indexName);
+        return generation != null ? generation.get() : 0;
+    }
+
+    /**
+     * Returns a generation for the given indices, that changes every time any of them is written to
+     *
+     * @param indexNames the names of the indices, empty for all indices
+     * @return the combined generation
+     */
+    public long getGeneration(Collection<String> indexNames) {
+        if (indexNames.isEmpty()) {
+            return globalGeneration.get();
+        }
+
+        // Generations only increase, so the sum changes every time one of them changes
+        long generation = 0;
+        for (String indexName : indexNames) {
+            generation += getGeneration(indexName);
+        }
+        return generation;
+    }
+
+}
@@ -41,6 +41,14 @@ public class ItemListElementParser implements ElementParser<Map<String, Object>>
         this.attributeName = attributeName;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getRequiredAttributeName() {
+        return attributeName;
+    }
+
     @Override
     public boolean parse(Element element, String fieldName, String parentFieldName, Map<String, Object> doc,
                          ElementParserService<Map<String, Object>> parserService) {
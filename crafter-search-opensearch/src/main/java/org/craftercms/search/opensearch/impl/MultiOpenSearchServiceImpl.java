@@ -19,9 +19,18 @@ package org.craftercms.search.opensearch.impl;
 
 import org.craftercms.search.opensearch.DocumentParser;
 import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.jackson.JsonDocument;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.transport.OpenSearchTransport;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Extension of {@link OpenSearchServiceImpl} that handles multiple OpenSearch clusters
@@ -36,11 +45,38 @@ public class MultiOpenSearchServiceImpl extends OpenSearchServiceImpl {
      */
     protected final OpenSearchClient[] writeClients;
 
+    /**
+     * Asynchronous clients for write-related operations, sharing the transport of {@link #writeClients}
+     */
+    protected final OpenSearchAsyncClient[] writeAsyncClients;
+
+    /**
+     * Write controllers for each cluster, indexed by the transport of {@link #writeClients}
+     */
+    protected final Map<OpenSearchTransport, AdaptiveWriteController> writeControllers = new IdentityHashMap<>();
+
     public MultiOpenSearchServiceImpl(final OpenSearchDocumentBuilder documentBuilder,
                                       final DocumentParser documentParser, final OpenSearchClient readClient,
                                       final OpenSearchClient[] writeClients) {
         super(documentBuilder, documentParser, readClient);
         this.writeClients = writeClients;
+        this.writeAsyncClients = new OpenSearchAsyncClient[writeClients.length];
+        for (int i = 0; i < writeClients.length; i++) {
+            writeAsyncClients[i] = createAsyncClient(writeClients[i]);
+            writeControllers.put(writeClients[i]._transport(), new AdaptiveWriteController());
+        }
+    }
+
+    /**
+     * Sets the write controllers for each cluster, in the same order as the write clients
+     */
+    public void setWriteControllers(final AdaptiveWriteController[] writeControllers) {
+        if (writeControllers.length != writeClients.length) {
+            throw new IllegalArgumentException("A write controller is required for each write client");
+        }
+        for (int i = 0; i < writeClients.length; i++) {
+            this.writeControllers.put(writeClients[i]._transport(), writeControllers[i]);
+        }
     }
 
     /**
@@ -60,9 +96,73 @@ public class MultiOpenSearchServiceImpl extends OpenSearchServiceImpl {
     @Override
     public void index(final String indexName, final String siteName, final String docId, final Map<String, Object> doc)
             throws OpenSearchException {
+        JsonDocument jsonDoc = serializeDocument(indexName, docId, doc);
         for (OpenSearchClient client : writeClients) {
-            doIndex(client, indexName, siteName, docId, doc);
+            doIndex(client, indexName, siteName, docId, jsonDoc);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> deleteAsync(final String indexName, final String siteName, final String docId) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(writeAsyncClients.length);
+        for (OpenSearchAsyncClient client : writeAsyncClients) {
+            futures.add(doDeleteAsync(client, indexName, siteName, docId));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> indexAsync(final String indexName, final String siteName, final String docId,
+                                              final Map<String, Object> doc) {
+        JsonDocument jsonDoc;
+        try {
+            jsonDoc = serializeDocument(indexName, docId, doc);
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
         }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(writeAsyncClients.length);
+        for (OpenSearchAsyncClient client : writeAsyncClients) {
+            futures.add(doIndexAsync(client, indexName, siteName, docId, jsonDoc));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Map<String, String>> bulkAsync(final String indexName, final String siteName,
+                                                            final Map<String, Map<String, Object>> docs,
+                                                            final Collection<String> deleteDocIds) {
+        Map<String, String> failures = new LinkedHashMap<>();
+        // The documents are serialized only once for all the clients
+        Map<String, JsonDocument> jsonDocs = serializeDocuments(indexName, docs, failures);
+        List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>(writeAsyncClients.length);
+        for (OpenSearchAsyncClient client : writeAsyncClients) {
+            futures.add(doBulkAsync(client, indexName, siteName, jsonDocs, deleteDocIds));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(result -> {
+                    futures.forEach(future -> future.join().forEach(failures::putIfAbsent));
+                    return failures;
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Each cluster has its own controller, so a slow or overloaded cluster doesn't reduce the load on the
+     * others.</p>
+     */
+    @Override
+    protected AdaptiveWriteController getWriteController(OpenSearchTransport transport) {
+        return writeControllers.getOrDefault(transport, writeController);
     }
 
     @Override
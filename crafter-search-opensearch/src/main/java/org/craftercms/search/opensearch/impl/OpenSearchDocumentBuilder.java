@@ -20,7 +20,7 @@ import java.util.Map;
 
 import org.craftercms.search.commons.service.DocumentBuilder;
 import org.craftercms.search.commons.service.impl.AbstractDocumentBuilder;
-import org.craftercms.search.opensearch.jackson.MixedMultivaluedMap;
+import org.craftercms.search.opensearch.jackson.CompactMultivaluedMap;
 
 /**
  * Implementation of {@link DocumentBuilder} for OpenSearch
@@ -30,7 +30,7 @@ public class OpenSearchDocumentBuilder extends AbstractDocumentBuilder<Map<Strin
 
     @Override
     protected Map<String, Object> createDoc() {
-        return new MixedMultivaluedMap();
+        return new CompactMultivaluedMap();
     }
 
     @Override
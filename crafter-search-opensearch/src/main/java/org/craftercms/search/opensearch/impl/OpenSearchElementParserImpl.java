@@ -22,7 +22,7 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.search.commons.service.ElementParserService;
 import org.craftercms.search.commons.service.impl.AbstractElementParser;
-import org.craftercms.search.opensearch.jackson.MixedMultivaluedMap;
+import org.craftercms.search.opensearch.jackson.CompactMultivaluedMap;
 import org.dom4j.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,7 +47,7 @@ public class OpenSearchElementParserImpl extends AbstractElementParser<Map<Strin
 
                 addField(doc, fieldName, fieldValue);
             } else {
-                Map<String, Object> map = new MixedMultivaluedMap();
+                Map<String, Object> map = new CompactMultivaluedMap();
                 List<Element> children = element.elements();
                 for (Element child : children) {
                     parserService.parse(child, StringUtils.EMPTY, map);
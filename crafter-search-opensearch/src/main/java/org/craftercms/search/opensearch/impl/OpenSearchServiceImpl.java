@@ -16,6 +16,8 @@
 
 package org.craftercms.search.opensearch.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -24,19 +26,33 @@ import org.craftercms.search.commons.utils.ContentResource;
 import org.craftercms.search.opensearch.DocumentParser;
 import org.craftercms.search.opensearch.OpenSearchService;
 import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.jackson.JsonDocument;
+import org.craftercms.search.opensearch.jackson.JsonDocumentWriter;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.BulkResponse;
 import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.opensearch.client.transport.OpenSearchTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 
 import java.beans.ConstructorProperties;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.craftercms.search.commons.utils.MapUtils.mergeMaps;
 
@@ -70,6 +86,11 @@ public class OpenSearchServiceImpl implements OpenSearchService {
      */
     protected final OpenSearchClient openSearchClient;
 
+    /**
+     * The asynchronous client, that shares the transport and connections of {@link #openSearchClient}
+     */
+    protected final OpenSearchAsyncClient openSearchAsyncClient;
+
     /**
      * The name of the field for full ids
      */
@@ -85,6 +106,21 @@ public class OpenSearchServiceImpl implements OpenSearchService {
      */
     protected String scrollTimeout = DEFAULT_SCROLL_TIMEOUT;
 
+    /**
+     * The controller for the write requests
+     */
+    protected AdaptiveWriteController writeController = new AdaptiveWriteController();
+
+    /**
+     * The writer used to serialize the documents only once before sending them
+     */
+    protected JsonDocumentWriter jsonDocumentWriter;
+
+    /**
+     * The tracker increased on every write, used to invalidate the cached search results
+     */
+    protected IndexGenerationTracker generationTracker = new IndexGenerationTracker();
+
     @ConstructorProperties({"documentBuilder", "documentParser", "OpenSearchClient"})
     public OpenSearchServiceImpl(final OpenSearchDocumentBuilder documentBuilder,
                                  final DocumentParser documentParser,
@@ -92,6 +128,8 @@ public class OpenSearchServiceImpl implements OpenSearchService {
         this.documentBuilder = documentBuilder;
         this.documentParser = documentParser;
         this.openSearchClient = openSearchClient;
+        this.openSearchAsyncClient = createAsyncClient(openSearchClient);
+        this.jsonDocumentWriter = new JsonDocumentWriter(getObjectMapper(openSearchClient));
     }
 
     public void setLocalIdFieldName(final String localIdFieldName) {
@@ -106,6 +144,18 @@ public class OpenSearchServiceImpl implements OpenSearchService {
         this.scrollTimeout = scrollTimeout;
     }
 
+    public void setWriteController(final AdaptiveWriteController writeController) {
+        this.writeController = writeController;
+    }
+
+    public void setJsonDocumentWriter(final JsonDocumentWriter jsonDocumentWriter) {
+        this.jsonDocumentWriter = jsonDocumentWriter;
+    }
+
+    public void setGenerationTracker(final IndexGenerationTracker generationTracker) {
+        this.generationTracker = generationTracker;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -187,24 +237,38 @@ public class OpenSearchServiceImpl implements OpenSearchService {
      */
     @Override
     public void index(final String indexName, final String siteName, final String docId, final Map<String, Object> doc) {
-        doIndex(openSearchClient, indexName, siteName, docId, doc);
+        doIndex(openSearchClient, indexName, siteName, docId, serializeDocument(indexName, docId, doc));
     }
 
     /**
-     * Performs the index operation using the given OpenSearch client
+     * Serializes the given document, so it can be sent to several clusters while being serialized only once
+     */
+    protected JsonDocument serializeDocument(String indexName, String docId, Map<String, Object> doc)
+            throws OpenSearchException {
+        try {
+            return jsonDocumentWriter.write(doc);
+        } catch (IOException e) {
+            throw new OpenSearchException(indexName, "Error indexing document " + docId, e);
+        }
+    }
+
+    /**
+     * Performs the index operation for an already serialized document using the given OpenSearch client
      */
     protected void doIndex(OpenSearchClient client, String indexName, String siteName, String docId,
-                           Map<String, Object> doc) {
+                           JsonDocument jsonDoc) {
         try {
             doDelete(client, indexName, siteName, docId);
             logger.debug("[{}] Indexing document {}", indexName, docId);
-            client.index(r -> r
+            getWriteController(client._transport()).execute(1, () -> client.index(r -> r
                     .index(indexName)
                     .id(getId(docId))
-                    .document(doc)
-            );
+                    .document(jsonDoc)
+            ));
         } catch (Exception e) {
             throw new OpenSearchException(indexName, "Error indexing document " + docId, e);
+        } finally {
+            generationTracker.increment(indexName);
         }
     }
 
@@ -214,9 +278,17 @@ public class OpenSearchServiceImpl implements OpenSearchService {
     @Override
     public void index(final String indexName, final String siteName, final String docId, final String xml,
                       final Map<String, Object> additionalFields) throws OpenSearchException {
+        index(indexName, siteName, docId, buildDocument(siteName, docId, xml, additionalFields));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> buildDocument(final String siteName, final String docId, final String xml,
+                                             final Map<String, Object> additionalFields) throws OpenSearchException {
         Map<String, Object> doc = documentBuilder.build(siteName, docId, xml, true);
-        Map<String, Object> mergedDoc = mergeMaps(doc, additionalFields);
-        index(indexName, siteName, docId, mergedDoc);
+        return mergeMaps(doc, additionalFields);
     }
 
     /**
@@ -265,15 +337,327 @@ public class OpenSearchServiceImpl implements OpenSearchService {
     protected void doDelete(OpenSearchClient client, String indexName, String siteName, String docId) {
         logger.debug("[{}] Deleting document {}", indexName, docId);
         try {
-            client.delete(r -> r
+            getWriteController(client._transport()).execute(1, () -> client.delete(r -> r
                     .index(indexName)
                     .id(getId(docId))
-            );
+            ));
         } catch (Exception e) {
             throw new OpenSearchException(indexName, "Error deleting document " + docId, e);
+        } finally {
+            generationTracker.increment(indexName);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>The bulk requests are sent asynchronously, so the write controller can keep several of them in flight, and
+     * the calling thread waits until all of them complete.</p>
+     */
+    @Override
+    public Map<String, String> bulk(final String indexName, final String siteName,
+                                    final Map<String, Map<String, Object>> docs,
+                                    final Collection<String> deleteDocIds) throws OpenSearchException {
+        try {
+            return bulkAsync(indexName, siteName, docs, deleteDocIds).join();
+        } catch (CompletionException e) {
+            throw new OpenSearchException(indexName, "Error executing bulk request", unwrap(e));
+        }
+    }
+
+    /**
+     * Serializes the given documents, the ones that can't be serialized are added to the failures
+     */
+    protected Map<String, JsonDocument> serializeDocuments(String indexName, Map<String, Map<String, Object>> docs,
+                                                           Map<String, String> failures) {
+        Map<String, JsonDocument> jsonDocs = new LinkedHashMap<>();
+        docs.forEach((docId, doc) -> {
+            try {
+                jsonDocs.put(docId, jsonDocumentWriter.write(doc));
+            } catch (IOException e) {
+                logger.error("[{}] Error serializing document {}", indexName, docId, e);
+                failures.put(docId, e.getMessage());
+            }
+        });
+        return jsonDocs;
+    }
+
+    /**
+     * Adds the bulk operations for the given deletes and then the given documents
+     */
+    protected void addBulkOperations(String indexName, Map<String, JsonDocument> docs,
+                                     Collection<String> deleteDocIds, List<BulkOperation> operations,
+                                     List<String> docIds) {
+        for (String docId : deleteDocIds) {
+            operations.add(BulkOperation.of(o -> o
+                    .delete(d -> d
+                            .index(indexName)
+                            .id(getId(docId))
+                    )
+            ));
+            docIds.add(docId);
+        }
+        docs.forEach((docId, doc) -> {
+            operations.add(BulkOperation.of(o -> o
+                    .index(i -> i
+                            .index(indexName)
+                            .id(getId(docId))
+                            .document(doc)
+                    )
+            ));
+            docIds.add(docId);
+        });
+    }
+
+    /**
+     * Adds the operations rejected by the cluster to the given lists, so they can be retried, and the other failed
+     * operations to the failures
+     */
+    protected void collectFailures(String indexName, BulkResponse response, List<BulkOperation> operations,
+                                   List<String> docIds, List<BulkOperation> rejectedOperations,
+                                   List<String> rejectedDocIds, Map<String, String> failures) {
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            if (item.error() != null) {
+                if (AdaptiveWriteController.isRejection(item.status(), item.error().type())) {
+                    rejectedOperations.add(operations.get(i));
+                    rejectedDocIds.add(docIds.get(i));
+                } else {
+                    logger.error("[{}] Error in bulk operation for document {}: {}", indexName, docIds.get(i),
+                                 item.error().reason());
+                    failures.put(docIds.get(i), item.error().reason());
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> indexAsync(final String indexName, final String siteName, final String docId,
+                                              final Map<String, Object> doc) {
+        JsonDocument jsonDoc;
+        try {
+            jsonDoc = serializeDocument(indexName, docId, doc);
+        } catch (OpenSearchException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return doIndexAsync(openSearchAsyncClient, indexName, siteName, docId, jsonDoc);
+    }
+
+    /**
+     * Performs the index operation for an already serialized document using the given asynchronous OpenSearch client
+     */
+    protected CompletableFuture<Void> doIndexAsync(OpenSearchAsyncClient client, String indexName, String siteName,
+                                                   String docId, JsonDocument jsonDoc) {
+        return doDeleteAsync(client, indexName, siteName, docId)
+                .thenCompose(deleted -> {
+                    logger.debug("[{}] Indexing document {}", indexName, docId);
+                    return getWriteController(client._transport()).executeAsync(1, () -> client.index(r -> r
+                            .index(indexName)
+                            .id(getId(docId))
+                            .document(jsonDoc)
+                    ));
+                })
+                .handle((response, error) -> {
+                    generationTracker.increment(indexName);
+                    if (error != null) {
+                        throw new OpenSearchException(indexName, "Error indexing document " + docId,
+                                                      unwrap(error));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> deleteAsync(final String indexName, final String siteName, final String docId) {
+        return doDeleteAsync(openSearchAsyncClient, indexName, siteName, docId);
+    }
+
+    /**
+     * Performs the delete operation using the given asynchronous OpenSearch client
+     */
+    protected CompletableFuture<Void> doDeleteAsync(OpenSearchAsyncClient client, String indexName, String siteName,
+                                                    String docId) {
+        logger.debug("[{}] Deleting document {}", indexName, docId);
+        return getWriteController(client._transport()).executeAsync(1, () -> client.delete(r -> r
+                        .index(indexName)
+                        .id(getId(docId))
+                ))
+                .handle((response, error) -> {
+                    generationTracker.increment(indexName);
+                    if (error != null) {
+                        throw new OpenSearchException(indexName, "Error deleting document " + docId,
+                                                      unwrap(error));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Map<String, String>> bulkAsync(final String indexName, final String siteName,
+                                                            final Map<String, Map<String, Object>> docs,
+                                                            final Collection<String> deleteDocIds) {
+        Map<String, String> failures = new LinkedHashMap<>();
+        Map<String, JsonDocument> jsonDocs = serializeDocuments(indexName, docs, failures);
+        return doBulkAsync(openSearchAsyncClient, indexName, siteName, jsonDocs, deleteDocIds)
+                .thenApply(bulkFailures -> {
+                    bulkFailures.forEach(failures::putIfAbsent);
+                    return failures;
+                });
+    }
+
+    /**
+     * Performs the bulk operations using the given asynchronous OpenSearch client. The operations are split in bulk
+     * requests as they are sent, the write controller defines the size of each one and limits how many of them are
+     * in flight.
+     */
+    protected CompletableFuture<Map<String, String>> doBulkAsync(OpenSearchAsyncClient client, String indexName,
+                                                                 String siteName, Map<String, JsonDocument> docs,
+                                                                 Collection<String> deleteDocIds) {
+        List<BulkOperation> operations = new ArrayList<>(docs.size() + deleteDocIds.size());
+        List<String> docIds = new ArrayList<>(docs.size() + deleteDocIds.size());
+        addBulkOperations(indexName, docs, deleteDocIds, operations, docIds);
+
+        Map<String, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        return doBulkRequestsAsync(client, indexName, operations, docIds, failures)
+                .handle((result, error) -> {
+                    generationTracker.increment(indexName);
+                    synchronized (failures) {
+                        return new LinkedHashMap<>(failures);
+                    }
+                });
+    }
+
+    /**
+     * Sends the given operations in bulk requests. Each request is sized by the write controller once it can be
+     * sent, and the request for the remaining operations is queued right after that, so several requests can be in
+     * flight at the same time.
+     *
+     * @return the future completed once all the requests have completed
+     */
+    protected CompletableFuture<Void> doBulkRequestsAsync(OpenSearchAsyncClient client, String indexName,
+                                                          List<BulkOperation> operations, List<String> docIds,
+                                                          Map<String, String> failures) {
+        if (operations.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        AtomicInteger chunkSize = new AtomicInteger();
+        CompletableFuture<Void> remaining = new CompletableFuture<>();
+        CompletableFuture<Void> request = getWriteController(client._transport())
+                .executeBulkAsync(operations.size(), size -> {
+                    chunkSize.set(size);
+                    doBulkRequestsAsync(client, indexName, operations.subList(size, operations.size()),
+                                        docIds.subList(size, docIds.size()), failures)
+                            .whenComplete((result, error) -> remaining.complete(null));
+
+                    List<BulkOperation> chunk = operations.subList(0, size);
+                    logger.debug("[{}] Sending bulk request with {} operations", indexName, size);
+                    return () -> client.bulk(r -> r
+                            .operations(chunk)
+                    );
+                })
+                .<CompletableFuture<Void>>handle((response, error) -> {
+                    int size = chunkSize.get();
+                    if (size == 0) {
+                        // The request failed before being sized, so none of the operations were sent
+                        size = operations.size();
+                        remaining.complete(null);
+                    }
+                    return onBulkResponse(client, indexName, operations.subList(0, size), docIds.subList(0, size),
+                                          failures, 0, response, error);
+                })
+                .thenCompose(next -> next);
+
+        return CompletableFuture.allOf(request, remaining);
+    }
+
+    /**
+     * Sends a single bulk request asynchronously, retrying the operations rejected by the cluster
+     */
+    protected CompletableFuture<Void> doBulkRequestAsync(OpenSearchAsyncClient client, String indexName,
+                                                         List<BulkOperation> operations, List<String> docIds,
+                                                         Map<String, String> failures, int attempt) {
+        logger.debug("[{}] Sending bulk request with {} operations", indexName, operations.size());
+        return getWriteController(client._transport()).executeAsync(operations.size(), () -> client.bulk(r -> r
+                        .operations(operations)
+                ))
+                .<CompletableFuture<Void>>handle((response, error) ->
+                        onBulkResponse(client, indexName, operations, docIds, failures, attempt, response, error))
+                .thenCompose(next -> next);
+    }
+
+    /**
+     * Adds the failures of a bulk request, and retries the operations rejected by the cluster
+     *
+     * @return the future completed once all the retries have completed
+     */
+    protected CompletableFuture<Void> onBulkResponse(OpenSearchAsyncClient client, String indexName,
+                                                     List<BulkOperation> operations, List<String> docIds,
+                                                     Map<String, String> failures, int attempt, BulkResponse response,
+                                                     Throwable error) {
+        if (error != null) {
+            logger.error("[{}] Error executing bulk request", indexName, unwrap(error));
+            for (String docId : docIds) {
+                failures.put(docId, unwrap(error).getMessage());
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<BulkOperation> rejectedOperations = new ArrayList<>();
+        List<String> rejectedDocIds = new ArrayList<>();
+        collectFailures(indexName, response, operations, docIds, rejectedOperations, rejectedDocIds, failures);
+
+        if (rejectedOperations.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return getWriteController(client._transport()).backOffAsync(attempt).thenCompose(retry -> {
+            if (!retry) {
+                logger.error("[{}] {} bulk operations still rejected after all the retries", indexName,
+                             rejectedOperations.size());
+                rejectedDocIds.forEach(docId -> failures.put(docId, "Rejected by the cluster"));
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            return doBulkRequestAsync(client, indexName, rejectedOperations, rejectedDocIds, failures, attempt + 1);
+        });
+    }
+
+    /**
+     * Returns the cause of an exception thrown by a completion stage
+     */
+    protected Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Returns the write controller for the cluster of the given transport, by default the same controller is used
+     * for all the writes.
+     */
+    protected AdaptiveWriteController getWriteController(OpenSearchTransport transport) {
+        return writeController;
+    }
+
+    /**
+     * Creates the asynchronous client that shares the transport of the given client, so the same connection pool
+     * and I/O threads are used for both
+     */
+    protected OpenSearchAsyncClient createAsyncClient(OpenSearchClient client) {
+        return client != null ? new OpenSearchAsyncClient(client._transport()) : null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -293,6 +677,9 @@ public class OpenSearchServiceImpl implements OpenSearchService {
             );
         } catch (IOException e) {
             throw new OpenSearchException(indexName, "Error flushing index", e);
+        } finally {
+            // Written documents are only visible for searches after the refresh
+            generationTracker.increment(indexName);
         }
     }
 
@@ -306,6 +693,21 @@ public class OpenSearchServiceImpl implements OpenSearchService {
         return DigestUtils.md5Hex(path);
     }
 
+    /**
+     * Returns the object mapper used by the given client, so the documents are serialized with the same
+     * configuration
+     */
+    protected ObjectMapper getObjectMapper(OpenSearchClient client) {
+        if (client != null && client._transport() != null &&
+            client._transport().jsonpMapper() instanceof JacksonJsonpMapper) {
+            return ((JacksonJsonpMapper) client._transport().jsonpMapper()).objectMapper();
+        }
+
+        return new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
     @Override
     public void close() throws Exception {
         openSearchClient._transport().close();
@@ -20,11 +20,15 @@ import jakarta.json.stream.JsonParser;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.craftercms.search.opensearch.client.OpenSearchClientWrapper;
+import org.craftercms.search.opensearch.client.SearchResponseItem;
+import org.craftercms.search.opensearch.impl.AdaptiveSearchLimiter;
 import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.exception.RejectedSearchException;
 import org.craftercms.search.opensearch.exception.TooManyNestedClausesSearchException;
 import org.opensearch.client.ResponseException;
 import org.opensearch.client.json.JsonpMapper;
 import org.opensearch.client.json.jackson.JacksonJsonProvider;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.ErrorCause;
 import org.opensearch.client.opensearch._types.ErrorResponse;
@@ -33,14 +37,26 @@ import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch.core.SearchRequest;
 import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.util.ApiTypeHelper;
 import org.opensearch.client.util.ObjectBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -64,29 +80,582 @@ public abstract class AbstractOpenSearchClientWrapper implements OpenSearchClien
     public static final String PARAM_NAME_INDEX = "index";
     public static final String PARAM_NAME_SEARCH_TYPE = "search_type";
 
+    public static final long DEFAULT_MAX_COALESCING_WAIT = TimeUnit.SECONDS.toMillis(10);
+
     /**
      * The OpenSearch client
      */
     protected final OpenSearchClient client;
 
+    /**
+     * The asynchronous OpenSearch client, sharing the transport and connections of {@link #client}
+     */
+    protected final OpenSearchAsyncClient asyncClient;
+
     /**
      * The filter queries to apply to all searches
      */
     protected String[] filterQueries;
 
+    /**
+     * The parser used to convert the filter queries to structured queries
+     */
+    protected FilterQueryParser filterQueryParser = new FilterQueryParser();
+
+    /**
+     * The filter queries already parsed, shared by all searches since queries are immutable
+     */
+    protected List<Query> parsedFilterQueries = List.of();
+
+    /**
+     * Indicates if identical concurrent searches should share a single request. The callers get the same response
+     * instance, so they should not modify it.
+     */
+    protected boolean coalesceSearches;
+
+    /**
+     * The max time in milliseconds to wait for the response of an identical search, after that the search is
+     * executed separately
+     */
+    protected long maxCoalescingWait = DEFAULT_MAX_COALESCING_WAIT;
+
+    /**
+     * The searches currently executing, by request key
+     */
+    protected final ConcurrentMap<String, CompletableFuture<SearchResponse<?>>> inFlightSearches =
+            new ConcurrentHashMap<>();
+
+    protected final LongAdder coalescedSearches = new LongAdder();
+
+    protected final LongAdder coalescingTimeouts = new LongAdder();
+
+    /**
+     * Indicates if concurrent searches should be sent together with {@code _msearch}
+     */
+    protected boolean batchSearches;
+
+    /**
+     * The batcher used for {@code _msearch} calls
+     */
+    protected final SearchBatcher searchBatcher;
+
+    /**
+     * The limiter for the searches in flight, optional
+     */
+    protected AdaptiveSearchLimiter searchLimiter;
+
+    /**
+     * Indicates if searches that fail with too many nested clauses should be rewritten or split
+     */
+    protected boolean rewriteNestedClauses;
+
+    /**
+     * The rewriter used for searches with too many nested clauses
+     */
+    protected NestedClausesRewriter nestedClausesRewriter = new NestedClausesRewriter();
+
     public AbstractOpenSearchClientWrapper(OpenSearchClient client) {
         this.client = client;
+        this.asyncClient = client != null ? new OpenSearchAsyncClient(client._transport()) : null;
+        this.searchBatcher = new SearchBatcher(client);
     }
 
     public void setFilterQueries(final String[] filterQueries) {
         this.filterQueries = filterQueries;
+        parseFilterQueries();
+    }
+
+    /**
+     * Sets the regex that matches the fields that are not analyzed, so their values in the filter queries can be
+     * compared with exact terms
+     */
+    public void setExactFieldPattern(final String exactFieldPattern) {
+        this.filterQueryParser = new FilterQueryParser(exactFieldPattern);
+        parseFilterQueries();
+    }
+
+    public void setCoalesceSearches(final boolean coalesceSearches) {
+        this.coalesceSearches = coalesceSearches;
+    }
+
+    public void setMaxCoalescingWait(final long maxCoalescingWait) {
+        this.maxCoalescingWait = maxCoalescingWait;
+    }
+
+    public void setBatchSearches(final boolean batchSearches) {
+        this.batchSearches = batchSearches;
+    }
+
+    /**
+     * Sets the time in milliseconds that a search waits for other searches to send them together
+     */
+    public void setBatchWindow(final long batchWindow) {
+        searchBatcher.setBatchWindow(batchWindow);
+    }
+
+    public void setMaxBatchSize(final int maxBatchSize) {
+        searchBatcher.setMaxBatchSize(maxBatchSize);
+    }
+
+    public void setSearchLimiter(final AdaptiveSearchLimiter searchLimiter) {
+        this.searchLimiter = searchLimiter;
+    }
+
+    public void setRewriteNestedClauses(final boolean rewriteNestedClauses) {
+        this.rewriteNestedClauses = rewriteNestedClauses;
+    }
+
+    /**
+     * Sets the max number of clauses of a split disjunction sent in each search
+     */
+    public void setMaxClausesPerSearch(final int maxClausesPerSearch) {
+        nestedClausesRewriter.setMaxClausesPerSearch(maxClausesPerSearch);
+    }
+
+    /**
+     * Sets the {@code index.max_result_window} of the indices, searches that need more hits are not split
+     */
+    public void setMaxResultWindow(final int maxResultWindow) {
+        nestedClausesRewriter.setMaxResultWindow(maxResultWindow);
+    }
+
+    public SearchBatcher getSearchBatcher() {
+        return searchBatcher;
+    }
+
+    /**
+     * Returns the number of searches that got the response of an identical search
+     */
+    public long getCoalescedSearches() {
+        return coalescedSearches.sum();
+    }
+
+    /**
+     * Returns the number of searches that waited too long for an identical search and were executed separately
+     */
+    public long getCoalescingTimeouts() {
+        return coalescingTimeouts.sum();
+    }
+
+    protected void parseFilterQueries() {
+        if (ArrayUtils.isEmpty(filterQueries)) {
+            parsedFilterQueries = List.of();
+            return;
+        }
+
+        parsedFilterQueries = Stream.of(filterQueries)
+                                    .map(filterQuery -> {
+                                        Query query = filterQueryParser.parse(filterQuery);
+                                        logger.debug("Parsed filter query '{}' as {}", filterQuery, query);
+                                        return query;
+                                    })
+                                    .collect(toList());
     }
 
     @Override
     public <T> SearchResponse<T> search(SearchRequest request, Class<T> docClass, Map<String, Object> parameters)
             throws IOException, OpenSearchException {
         try {
-            return client.search(new SearchRequestWrapper(request, parameters).build(), docClass);
+            return coalesceSearch(request, docClass, parameters);
+        } catch (RejectedSearchException e) {
+            return getFallbackResponse(request, docClass, parameters, e);
+        }
+    }
+
+    /**
+     * Executes the search, sharing the response with identical concurrent searches if enabled
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> SearchResponse<T> coalesceSearch(SearchRequest request, Class<T> docClass,
+                                                   Map<String, Object> parameters)
+            throws IOException, OpenSearchException {
+        if (!coalesceSearches || request.scroll() != null) {
+            return doSearch(request, docClass, parameters);
+        }
+
+        String key = SearchRequestUtils.getKey(request, docClass, parameters, client._transport().jsonpMapper());
+        CompletableFuture<SearchResponse<?>> future = new CompletableFuture<>();
+        CompletableFuture<SearchResponse<?>> existingFuture = inFlightSearches.putIfAbsent(key, future);
+        if (existingFuture == null) {
+            try {
+                SearchResponse<T> response = doSearch(request, docClass, parameters);
+                future.complete(response);
+                return response;
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlightSearches.remove(key, future);
+            }
+        }
+
+        logger.debug("Waiting for the response of an identical search");
+        try {
+            SearchResponse<?> response = existingFuture.get(maxCoalescingWait, TimeUnit.MILLISECONDS);
+            coalescedSearches.increment();
+            return (SearchResponse<T>) response;
+        } catch (TimeoutException e) {
+            logger.debug("Identical search didn't finish after {}ms, executing the search", maxCoalescingWait);
+            coalescingTimeouts.increment();
+            return doSearch(request, docClass, parameters);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenSearchException(null, "Interrupted while waiting for an identical search", e);
+        } catch (ExecutionException e) {
+            coalescedSearches.increment();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new OpenSearchException(null, "Error executing search", cause);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Identical concurrent searches are coalesced just like in the synchronous method, but the searches are never
+     * added to {@code _msearch} batches and searches that fail with too many nested clauses are not rewritten, since
+     * that would block the calling thread.</p>
+     */
+    @Override
+    public <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> docClass,
+                                                                Map<String, Object> parameters) {
+        return withFallback(coalesceSearchAsync(request, docClass, parameters), request, docClass, parameters);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> CompletableFuture<SearchResponse<T>> searchAsyncUncoalesced(SearchRequest request, Class<T> docClass,
+                                                                           Map<String, Object> parameters) {
+        return withFallback(doSearchAsync(request, docClass, parameters), request, docClass, parameters);
+    }
+
+    /**
+     * Returns a future that completes with the fallback response if the given search is rejected by the limiter
+     */
+    protected <T> CompletableFuture<SearchResponse<T>> withFallback(CompletableFuture<SearchResponse<T>> future,
+                                                                    SearchRequest request, Class<T> docClass,
+                                                                    Map<String, Object> parameters) {
+        return future.exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                    error.getCause() : error;
+            if (cause instanceof RejectedSearchException) {
+                return getFallbackResponse(request, docClass, parameters, (RejectedSearchException) cause);
+            }
+            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+        });
+    }
+
+    /**
+     * Executes the search asynchronously, sharing the response with identical concurrent searches if enabled
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> CompletableFuture<SearchResponse<T>> coalesceSearchAsync(SearchRequest request, Class<T> docClass,
+                                                                           Map<String, Object> parameters) {
+        if (!coalesceSearches || request.scroll() != null) {
+            return doSearchAsync(request, docClass, parameters);
+        }
+
+        String key = SearchRequestUtils.getKey(request, docClass, parameters, client._transport().jsonpMapper());
+        CompletableFuture<SearchResponse<?>> future = new CompletableFuture<>();
+        CompletableFuture<SearchResponse<?>> existingFuture = inFlightSearches.putIfAbsent(key, future);
+        if (existingFuture == null) {
+            doSearchAsync(request, docClass, parameters).whenComplete((response, error) -> {
+                inFlightSearches.remove(key, future);
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(response);
+                }
+            });
+            return future.thenApply(response -> (SearchResponse<T>) response);
+        }
+
+        coalescedSearches.increment();
+        return existingFuture.thenApply(response -> (SearchResponse<T>) response);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Requests that can't be sent with {@code _msearch} are executed separately.</p>
+     */
+    @Override
+    public <T> List<SearchResponseItem<T>> searchAll(List<SearchRequest> requests, Class<T> docClass,
+                                                      Map<String, Object> parameters) {
+        List<SearchRequest> batchableRequests = new ArrayList<>(requests.size());
+        List<SearchRequest> updatedRequests = new ArrayList<>(requests.size());
+        for (SearchRequest request : requests) {
+            SearchRequest updatedRequest = applyUpdates(request, parameters);
+            if (SearchBatcher.isBatchable(updatedRequest)) {
+                batchableRequests.add(updatedRequest);
+            }
+            updatedRequests.add(updatedRequest);
+        }
+
+        Iterator<SearchResponseItem<T>> batchedItems = searchAllBatched(batchableRequests, docClass).iterator();
+        List<SearchResponseItem<T>> items = new ArrayList<>(requests.size());
+        for (SearchRequest request : updatedRequests) {
+            if (SearchBatcher.isBatchable(request)) {
+                items.add(batchedItems.next());
+            } else {
+                try {
+                    items.add(new SearchResponseItem<>(execute(request, docClass)));
+                } catch (OpenSearchException e) {
+                    items.add(new SearchResponseItem<>(e));
+                } catch (IOException e) {
+                    items.add(new SearchResponseItem<>(new OpenSearchException(null, "Error executing search", e)));
+                }
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * Executes the given requests with a single {@code _msearch} call, that counts as a single search for the limiter
+     */
+    protected <T> List<SearchResponseItem<T>> searchAllBatched(List<SearchRequest> requests, Class<T> docClass) {
+        if (searchLimiter == null || requests.isEmpty()) {
+            return searchBatcher.searchAll(requests, docClass);
+        }
+
+        AdaptiveSearchLimiter.Permit permit;
+        try {
+            permit = searchLimiter.acquire(getIndexId(requests.get(0)));
+        } catch (RejectedSearchException e) {
+            List<SearchResponseItem<T>> items = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                items.add(new SearchResponseItem<>(e));
+            }
+            return items;
+        }
+
+        List<SearchResponseItem<T>> items = searchBatcher.searchAll(requests, docClass);
+        Optional<SearchResponseItem<T>> success = items.stream().filter(SearchResponseItem::isSuccessful).findAny();
+        if (success.isPresent()) {
+            permit.onSuccess();
+        } else {
+            permit.onError(items.get(0).getError());
+        }
+
+        return items;
+    }
+
+    /**
+     * Executes the search, after applying the updates for the given parameters
+     */
+    protected <T> SearchResponse<T> doSearch(SearchRequest request, Class<T> docClass, Map<String, Object> parameters)
+            throws IOException, OpenSearchException {
+        SearchRequest updatedRequest = applyUpdates(request, parameters);
+        AdaptiveSearchLimiter.Permit permit = searchLimiter != null ?
+                searchLimiter.acquire(getIndexId(updatedRequest)) : null;
+        try {
+            SearchResponse<T> response;
+            if (batchSearches && SearchBatcher.isBatchable(updatedRequest)) {
+                try {
+                    response = searchBatcher.search(updatedRequest, docClass);
+                } catch (TooManyNestedClausesSearchException e) {
+                    response = rewriteAndExecute(updatedRequest, docClass, e);
+                }
+            } else {
+                response = execute(updatedRequest, docClass);
+            }
+            if (permit != null) {
+                permit.onSuccess();
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            if (permit != null) {
+                permit.onError(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the response for a search rejected by the limiter. By default the exception is thrown, subclasses can
+     * override it to return a stale or partial response instead.
+     *
+     * @param request the rejected request
+     * @param docClass the class of the documents
+     * @param parameters the parameters of the search
+     * @param e the exception for the rejection
+     * @return the response to return to the caller
+     */
+    protected <T> SearchResponse<T> getFallbackResponse(SearchRequest request, Class<T> docClass,
+                                                        Map<String, Object> parameters, RejectedSearchException e) {
+        throw e;
+    }
+
+    /**
+     * Returns the first index of the request, used to identify it in the exceptions
+     */
+    protected String getIndexId(SearchRequest request) {
+        return request.index().isEmpty() ? null : request.index().get(0);
+    }
+
+    /**
+     * Executes the search asynchronously, after applying the updates for the given parameters
+     */
+    protected <T> CompletableFuture<SearchResponse<T>> doSearchAsync(SearchRequest request, Class<T> docClass,
+                                                                     Map<String, Object> parameters) {
+        CompletableFuture<SearchResponse<T>> future;
+        AdaptiveSearchLimiter.Permit permit = null;
+        try {
+            SearchRequest updatedRequest = applyUpdates(request, parameters);
+            if (searchLimiter != null) {
+                permit = searchLimiter.acquire(getIndexId(updatedRequest));
+            }
+            future = asyncClient.search(updatedRequest, docClass);
+        } catch (IOException e) {
+            if (permit != null) {
+                permit.onError(e);
+            }
+            return CompletableFuture.failedFuture(new OpenSearchException(null, "Error executing search", e));
+        } catch (RuntimeException e) {
+            if (permit != null) {
+                permit.onError(e);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (permit != null) {
+            // The permit is released first, even if the mapping of the error fails
+            AdaptiveSearchLimiter.Permit searchPermit = permit;
+            future = future.whenComplete((response, error) -> {
+                if (error == null) {
+                    searchPermit.onSuccess();
+                } else {
+                    searchPermit.onError(error);
+                }
+            });
+        }
+
+        return future.handle((response, error) -> {
+            if (error == null) {
+                return response;
+            }
+            throw getSearchError(error);
+        });
+    }
+
+    /**
+     * Returns the exception for a failed asynchronous search, with the same mapping of errors used by
+     * {@link #execute(SearchRequest, Class)}
+     */
+    protected RuntimeException getSearchError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ResponseException) {
+            try {
+                String errorType = getErrorRootCauseType((ResponseException) cause);
+                if (TOO_MANY_NESTED_CLAUSES_ERROR.equalsIgnoreCase(errorType)) {
+                    return new TooManyNestedClausesSearchException(null, cause.getMessage(), cause);
+                }
+            } catch (IOException e) {
+                logger.debug("Error reading the response of a failed search", e);
+            }
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new OpenSearchException(null, "Error executing search", cause);
+    }
+
+    /**
+     * Returns a copy of the request with the updates for the given parameters, or the same request if there are no
+     * updates
+     */
+    protected SearchRequest applyUpdates(SearchRequest request, Map<String, Object> parameters) {
+        RequestUpdates updates = getRequestUpdates(request, parameters);
+        if (updates.isEmpty()) {
+            return request;
+        }
+        return new SearchRequestWrapper(request, updates).build();
+    }
+
+    /**
+     * Executes a single search request, that already has all the updates
+     */
+    protected <T> SearchResponse<T> execute(SearchRequest request, Class<T> docClass)
+            throws IOException, OpenSearchException {
+        try {
+            return send(request, docClass);
+        } catch (TooManyNestedClausesSearchException e) {
+            return rewriteAndExecute(request, docClass, e);
+        }
+    }
+
+    /**
+     * Executes a search that failed with too many nested clauses again, after replacing the term queries with terms
+     * queries or splitting it in several searches sent with {@code _msearch}. If the search can't be rewritten or
+     * rewriting is not enabled the original exception is thrown.
+     */
+    protected <T> SearchResponse<T> rewriteAndExecute(SearchRequest request, Class<T> docClass,
+                                                      TooManyNestedClausesSearchException e)
+            throws IOException, OpenSearchException {
+        Query query = request.query();
+        if (!rewriteNestedClauses || query == null || request.scroll() != null) {
+            throw e;
+        }
+
+        Query rewrittenQuery = nestedClausesRewriter.rewriteTerms(query);
+        if (rewrittenQuery != query) {
+            logger.debug("Retrying search with term queries rewritten as terms queries");
+            try {
+                return send(withQuery(request, rewrittenQuery).build(), docClass);
+            } catch (TooManyNestedClausesSearchException rewrittenError) {
+                e = rewrittenError;
+            }
+        }
+
+        if (!nestedClausesRewriter.canMerge(request)) {
+            throw e;
+        }
+
+        List<Query> queries = nestedClausesRewriter.split(rewrittenQuery, nestedClausesRewriter.needsScores(request));
+        if (queries.isEmpty()) {
+            throw e;
+        }
+
+        logger.debug("Splitting search with too many nested clauses in {} searches", queries.size());
+        int size = nestedClausesRewriter.getSize(request);
+        List<SearchRequest> requests = new ArrayList<>(queries.size());
+        for (Query splitQuery : queries) {
+            requests.add(withQuery(request, splitQuery).from(0).size(size).build());
+        }
+
+        List<SearchResponse<T>> responses = new ArrayList<>(requests.size());
+        for (SearchResponseItem<T> item : searchBatcher.searchAll(requests, docClass)) {
+            responses.add(item.getResponse());
+        }
+
+        return nestedClausesRewriter.merge(request, responses);
+    }
+
+    /**
+     * Returns a builder for a copy of the request with the given query
+     */
+    protected SearchRequest.Builder withQuery(SearchRequest request, Query query) {
+        RequestUpdates updates = new RequestUpdates();
+        updates.setQuery(query);
+        return new SearchRequestWrapper(request, updates);
+    }
+
+    /**
+     * Sends a single search request to the cluster
+     */
+    protected <T> SearchResponse<T> send(SearchRequest request, Class<T> docClass)
+            throws IOException, OpenSearchException {
+        try {
+            return client.search(request, docClass);
         } catch (ResponseException e) {
             String errorType = getErrorRootCauseType(e);
             if (TOO_MANY_NESTED_CLAUSES_ERROR.equalsIgnoreCase(errorType)) {
@@ -161,7 +730,7 @@ public abstract class AbstractOpenSearchClientWrapper implements OpenSearchClien
      * @param updates the request updates
      */
     protected void updateQuery(SearchRequest request, Map<String, Object> parameters, RequestUpdates updates) {
-        if(ArrayUtils.isEmpty(filterQueries)) {
+        if (parsedFilterQueries.isEmpty()) {
             logger.debug("No additional filter queries configured");
             return;
         }
@@ -178,14 +747,7 @@ public abstract class AbstractOpenSearchClientWrapper implements OpenSearchClien
             }
         }
 
-        for(String filterQuery : filterQueries) {
-            logger.debug("Adding filter query: {}", filterQuery);
-            builder.filter(f -> f
-                .queryString(q -> q
-                    .query(filterQuery)
-                )
-            );
-        }
+        builder.filter(parsedFilterQueries);
 
         updates.query = Query.of(q -> q
             .bool(builder.build())
@@ -248,66 +810,100 @@ public abstract class AbstractOpenSearchClientWrapper implements OpenSearchClien
             this.ignoreUnavailable = ignoreUnavailable;
         }
 
+        /**
+         * Indicates if there are no updates, so the original request can be used unchanged
+         */
+        public boolean isEmpty() {
+            return index == null && indicesBoost == null && query == null && searchType == null &&
+                   ignoreUnavailable == null;
+        }
+
     }
 
+    /**
+     * Copy of a search request with the given updates. Only the properties that are set in the original request are
+     * copied, so the lists and maps that are not used are not allocated again.
+     */
     public class SearchRequestWrapper extends SearchRequest.Builder {
 
         public SearchRequestWrapper(SearchRequest request, Map<String, Object> parameters) {
+            this(request, getRequestUpdates(request, parameters));
+        }
+
+        public SearchRequestWrapper(SearchRequest request, RequestUpdates updates) {
             // make a copy of the original request
-            source(request.source());
-            aggregations(request.aggregations());
-            allowNoIndices(request.allowNoIndices());
-            allowPartialSearchResults(request.allowPartialSearchResults());
-            analyzeWildcard(request.analyzeWildcard());
-            analyzer(request.analyzer());
-            batchedReduceSize(request.batchedReduceSize());
-            ccsMinimizeRoundtrips(request.ccsMinimizeRoundtrips());
-            collapse(request.collapse());
-            defaultOperator(request.defaultOperator());
-            df(request.df());
-            docvalueFields(request.docvalueFields());
-            expandWildcards(request.expandWildcards());
-            explain(request.explain());
-            fields(request.fields());
-            from(request.from());
-            highlight(request.highlight());
-            ignoreThrottled(request.ignoreThrottled());
-            lenient(request.lenient());
-            maxConcurrentShardRequests(request.maxConcurrentShardRequests());
-            minCompatibleShardNode(request.minCompatibleShardNode());
-            minScore(request.minScore());
-            postFilter(request.postFilter());
-            preFilterShardSize(request.preFilterShardSize());
-            preference(request.preference());
-            profile(request.profile());
-            q(request.q());
-            requestCache(request.requestCache());
-            rescore(request.rescore());
-            routing(request.routing());
-            runtimeMappings(request.runtimeMappings());
-            scriptFields(request.scriptFields());
-            scroll(request.scroll());
-            searchAfter(request.searchAfter());
-            seqNoPrimaryTerm(request.seqNoPrimaryTerm());
-            size(request.size());
-            slice(request.slice());
-            sort(request.sort());
-            stats(request.stats());
-            storedFields(request.storedFields());
-            suggest(request.suggest());
-            terminateAfter(request.terminateAfter());
-            timeout(request.timeout());
-            trackScores(request.trackScores());
-            trackTotalHits(request.trackTotalHits());
-            version(request.version());
+            copy(request.source(), this::source);
+            copy(request.aggregations(), this::aggregations);
+            copy(request.allowNoIndices(), this::allowNoIndices);
+            copy(request.allowPartialSearchResults(), this::allowPartialSearchResults);
+            copy(request.analyzeWildcard(), this::analyzeWildcard);
+            copy(request.analyzer(), this::analyzer);
+            copy(request.batchedReduceSize(), this::batchedReduceSize);
+            copy(request.ccsMinimizeRoundtrips(), this::ccsMinimizeRoundtrips);
+            copy(request.collapse(), this::collapse);
+            copy(request.defaultOperator(), this::defaultOperator);
+            copy(request.df(), this::df);
+            copy(request.docvalueFields(), this::docvalueFields);
+            copy(request.expandWildcards(), this::expandWildcards);
+            copy(request.explain(), this::explain);
+            copy(request.fields(), this::fields);
+            copy(request.from(), this::from);
+            copy(request.highlight(), this::highlight);
+            copy(request.ignoreThrottled(), this::ignoreThrottled);
+            copy(request.lenient(), this::lenient);
+            copy(request.maxConcurrentShardRequests(), this::maxConcurrentShardRequests);
+            copy(request.minCompatibleShardNode(), this::minCompatibleShardNode);
+            copy(request.minScore(), this::minScore);
+            copy(request.postFilter(), this::postFilter);
+            copy(request.preFilterShardSize(), this::preFilterShardSize);
+            copy(request.preference(), this::preference);
+            copy(request.profile(), this::profile);
+            copy(request.q(), this::q);
+            copy(request.requestCache(), this::requestCache);
+            copy(request.rescore(), this::rescore);
+            copy(request.routing(), this::routing);
+            copy(request.runtimeMappings(), this::runtimeMappings);
+            copy(request.scriptFields(), this::scriptFields);
+            copy(request.scroll(), this::scroll);
+            copy(request.searchAfter(), this::searchAfter);
+            copy(request.seqNoPrimaryTerm(), this::seqNoPrimaryTerm);
+            copy(request.size(), this::size);
+            copy(request.slice(), this::slice);
+            copy(request.sort(), this::sort);
+            copy(request.stats(), this::stats);
+            copy(request.storedFields(), this::storedFields);
+            copy(request.suggest(), this::suggest);
+            copy(request.terminateAfter(), this::terminateAfter);
+            copy(request.timeout(), this::timeout);
+            copy(request.trackScores(), this::trackScores);
+            copy(request.trackTotalHits(), this::trackTotalHits);
+            copy(request.version(), this::version);
 
             // override values
-            RequestUpdates updates = getRequestUpdates(request, parameters);
-            ignoreUnavailable(Optional.ofNullable(updates.ignoreUnavailable).orElse(request.ignoreUnavailable()));
-            index(Optional.ofNullable(updates.index).orElse(request.index()));
-            indicesBoost(Optional.ofNullable(updates.indicesBoost).orElse(request.indicesBoost()));
-            query(Optional.ofNullable(updates.query).orElse(request.query()));
-            searchType(Optional.ofNullable(updates.searchType).orElse(request.searchType()));
+            copy(Optional.ofNullable(updates.ignoreUnavailable).orElse(request.ignoreUnavailable()),
+                 this::ignoreUnavailable);
+            copy(Optional.ofNullable(updates.index).orElse(request.index()), this::index);
+            copy(Optional.ofNullable(updates.indicesBoost).orElse(request.indicesBoost()), this::indicesBoost);
+            copy(Optional.ofNullable(updates.query).orElse(request.query()), this::query);
+            copy(Optional.ofNullable(updates.searchType).orElse(request.searchType()), this::searchType);
+        }
+
+        private <V> void copy(V value, Consumer<V> setter) {
+            if (value != null) {
+                setter.accept(value);
+            }
+        }
+
+        private <V> void copy(List<V> values, Consumer<List<V>> setter) {
+            if (ApiTypeHelper.isDefined(values)) {
+                setter.accept(values);
+            }
+        }
+
+        private <K, V> void copy(Map<K, V> values, Consumer<Map<K, V>> setter) {
+            if (ApiTypeHelper.isDefined(values)) {
+                setter.accept(values);
+            }
         }
 
     }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.beans.ConstructorProperties;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.craftercms.search.opensearch.client.OpenSearchClientWrapper;
+import org.craftercms.search.opensearch.client.SearchResponseItem;
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.exception.RejectedSearchException;
+import org.craftercms.search.opensearch.impl.IndexGenerationTracker;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link OpenSearchClientWrapper} that caches the responses of another wrapper in a
+ * {@link SearchResultCache}. The key of each response is the normalized request (the JSON of the body plus the
+ * parameters sent in the URL), the parameters and the document class.
+ *
+ * <p>Entries are invalidated when any of the searched indices is written to, using the generations of the
+ * {@link IndexGenerationTracker} shared with the service that writes to the indices. Responses are cached serialized,
+ * so each caller gets its own copy and the memory used is known. Scroll requests are never cached.</p>
+ *
+ * <p>When the delegate rejects a search because the cluster is overloaded (see {@link RejectedSearchException}), the
+ * last cached response is returned even if it's stale, as long as the cache still keeps it.</p>
+ *
+ * <p>The async and batched searches use the cache too: cached responses are returned right away and only the
+ * searches without one are sent to the delegate. Async searches are cached when they complete, without blocking the
+ * calling thread.</p>
+ *
+ * @since 4.2.0
+ */
+public class CachingOpenSearchClientWrapper implements OpenSearchClientWrapper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingOpenSearchClientWrapper.class);
+
+    /**
+     * The wrapper that executes the searches
+     */
+    protected final OpenSearchClientWrapper delegate;
+
+    /**
+     * The mapper used to serialize the requests and responses
+     */
+    protected final JsonpMapper mapper;
+
+    /**
+     * The cache for the responses
+     */
+    protected final SearchResultCache cache;
+
+    /**
+     * The tracker for the generations of the indices
+     */
+    protected final IndexGenerationTracker generationTracker;
+
+    @ConstructorProperties({"delegate", "client", "cache", "generationTracker"})
+    public CachingOpenSearchClientWrapper(OpenSearchClientWrapper delegate, OpenSearchClient client,
+                                          SearchResultCache cache, IndexGenerationTracker generationTracker) {
+        this.delegate = delegate;
+        this.mapper = client._transport().jsonpMapper();
+        this.cache = cache;
+        this.generationTracker = generationTracker;
+    }
+
+    public SearchResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> SearchResponse<T> search(SearchRequest request, Class<T> documentClass,
+                                        Map<String, Object> parameters) throws IOException, OpenSearchException {
+        if (request.scroll() != null) {
+            return delegate.search(request, documentClass, parameters);
+        }
+
+        // The generation needs to be read before the search, so a write during the search makes the entry stale
+        long generation = generationTracker.getGeneration(SearchRequestUtils.getIndices(request, parameters));
+        String key = SearchRequestUtils.getKey(request, documentClass, parameters, mapper);
+
+        byte[] cachedResponse = cache.get(key, generation);
+        if (cachedResponse != null) {
+            logger.debug("Found cached response for request {}", key);
+            return deserialize(cachedResponse, documentClass);
+        }
+
+        SearchResponse<T> response;
+        try {
+            response = delegate.search(request, documentClass, parameters);
+        } catch (RejectedSearchException e) {
+            SearchResponse<T> staleResponse = getStaleResponse(key, documentClass);
+            if (staleResponse == null) {
+                throw e;
+            }
+            return staleResponse;
+        }
+
+        cacheResponse(key, generation, response);
+
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Cached responses are returned in a completed future, otherwise the response is cached when the search
+     * completes.</p>
+     */
+    @Override
+    public <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> documentClass,
+                                                                Map<String, Object> parameters) {
+        return searchAsync(request, documentClass, parameters, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Cached responses are returned in a completed future, otherwise the response is cached when the search
+     * completes.</p>
+     */
+    @Override
+    public <T> CompletableFuture<SearchResponse<T>> searchAsyncUncoalesced(SearchRequest request,
+                                                                           Class<T> documentClass,
+                                                                           Map<String, Object> parameters) {
+        return searchAsync(request, documentClass, parameters, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Only the requests without a cached response are sent to the delegate, in a single call.</p>
+     */
+    @Override
+    public <T> List<SearchResponseItem<T>> searchAll(List<SearchRequest> requests, Class<T> documentClass,
+                                                     Map<String, Object> parameters) {
+        List<SearchResponseItem<T>> items = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<SearchRequest> uncachedRequests = new ArrayList<>();
+        List<Integer> uncachedIndexes = new ArrayList<>();
+        String[] keys = new String[requests.size()];
+        long[] generations = new long[requests.size()];
+
+        for (int i = 0; i < requests.size(); i++) {
+            SearchRequest request = requests.get(i);
+            if (request.scroll() == null) {
+                generations[i] = generationTracker.getGeneration(SearchRequestUtils.getIndices(request,
+                                                                                               parameters));
+                keys[i] = SearchRequestUtils.getKey(request, documentClass, parameters, mapper);
+
+                byte[] cachedResponse = cache.get(keys[i], generations[i]);
+                if (cachedResponse != null) {
+                    logger.debug("Found cached response for request {}", keys[i]);
+                    items.set(i, new SearchResponseItem<>(deserialize(cachedResponse, documentClass)));
+                    continue;
+                }
+            }
+
+            uncachedRequests.add(request);
+            uncachedIndexes.add(i);
+        }
+
+        if (!uncachedRequests.isEmpty()) {
+            List<SearchResponseItem<T>> uncachedItems = delegate.searchAll(uncachedRequests, documentClass,
+                                                                           parameters);
+            for (int j = 0; j < uncachedItems.size(); j++) {
+                int i = uncachedIndexes.get(j);
+                SearchResponseItem<T> item = uncachedItems.get(j);
+                if (keys[i] != null) {
+                    if (item.isSuccessful()) {
+                        cacheResponse(keys[i], generations[i], item.getResponse());
+                    } else if (item.getError() instanceof RejectedSearchException) {
+                        SearchResponse<T> staleResponse = getStaleResponse(keys[i], documentClass);
+                        if (staleResponse != null) {
+                            item = new SearchResponseItem<>(staleResponse);
+                        }
+                    }
+                }
+                items.set(i, item);
+            }
+        }
+
+        return items;
+    }
+
+    /**
+     * Executes the given request without blocking, using the cached response if there is one
+     */
+    protected <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> documentClass,
+                                                                   Map<String, Object> parameters,
+                                                                   boolean coalesce) {
+        if (request.scroll() != null) {
+            return sendAsync(request, documentClass, parameters, coalesce);
+        }
+
+        // The generation needs to be read before the search, so a write during the search makes the entry stale
+        long generation = generationTracker.getGeneration(SearchRequestUtils.getIndices(request, parameters));
+        String key = SearchRequestUtils.getKey(request, documentClass, parameters, mapper);
+
+        byte[] cachedResponse = cache.get(key, generation);
+        if (cachedResponse != null) {
+            logger.debug("Found cached response for request {}", key);
+            return CompletableFuture.completedFuture(deserialize(cachedResponse, documentClass));
+        }
+
+        return sendAsync(request, documentClass, parameters, coalesce).handle((response, error) -> {
+            if (error == null) {
+                cacheResponse(key, generation, response);
+                return CompletableFuture.completedFuture(response);
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                              error.getCause() : error;
+            if (cause instanceof RejectedSearchException) {
+                SearchResponse<T> staleResponse = getStaleResponse(key, documentClass);
+                if (staleResponse != null) {
+                    return CompletableFuture.completedFuture(staleResponse);
+                }
+            }
+            return CompletableFuture.<SearchResponse<T>>failedFuture(cause);
+        }).thenCompose(Function.identity());
+    }
+
+    protected <T> CompletableFuture<SearchResponse<T>> sendAsync(SearchRequest request, Class<T> documentClass,
+                                                                 Map<String, Object> parameters, boolean coalesce) {
+        if (coalesce) {
+            return delegate.searchAsync(request, documentClass, parameters);
+        } else {
+            return delegate.searchAsyncUncoalesced(request, documentClass, parameters);
+        }
+    }
+
+    /**
+     * Caches the given response, unless it's incomplete (timed out or with failed shards)
+     */
+    protected void cacheResponse(String key, long generation, SearchResponse<?> response) {
+        if (!Boolean.TRUE.equals(response.timedOut()) && response.shards().failed().intValue() == 0) {
+            cache.put(key, generation, serialize(response));
+        }
+    }
+
+    /**
+     * Returns the last cached response for the given key even if it's stale, used when a search is rejected
+     */
+    protected <T> SearchResponse<T> getStaleResponse(String key, Class<T> documentClass) {
+        byte[] staleResponse = cache.getStale(key);
+        if (staleResponse == null) {
+            return null;
+        }
+
+        logger.debug("Search was rejected, returning stale response for request {}", key);
+        return deserialize(staleResponse, documentClass);
+    }
+
+    protected byte[] serialize(SearchResponse<?> response) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(output)) {
+            response.serialize(generator, mapper);
+        }
+        return output.toByteArray();
+    }
+
+    protected <T> SearchResponse<T> deserialize(byte[] response, Class<T> documentClass) {
+        JsonpDeserializer<SearchResponse<T>> deserializer =
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(documentClass));
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(response))) {
+            return deserializer.deserialize(parser, mapper);
+        }
+    }
+
+}
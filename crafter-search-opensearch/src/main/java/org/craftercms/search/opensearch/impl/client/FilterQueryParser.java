@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.opensearch.client.json.JsonData;
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch._types.query_dsl.RangeQuery;
+
+/**
+ * Parses the filter queries configured for all searches, written in the {@code query_string} syntax, into structured
+ * queries that are cheaper to parse and can be cached by OpenSearch. Only a conservative subset of the syntax is
+ * converted, any other query is kept as a {@code query_string} query:
+ * <ul>
+ *     <li>{@code field:value} and {@code field:"value"} become a {@code term} query</li>
+ *     <li>{@code field:(a OR b)} becomes a {@code terms} query</li>
+ *     <li>{@code field:[a TO b]}, including {@code *} and exclusive bounds, becomes a {@code range} query</li>
+ *     <li>{@code field:*} becomes an {@code exists} query</li>
+ *     <li>Clauses prefixed with {@code -} or {@code NOT} are negated, clauses joined with {@code AND} are all
+ *     required</li>
+ * </ul>
+ * Values are only compared as exact terms for fields that are not analyzed, matched by {@link #exactFieldPattern},
+ * since a {@code query_string} query analyzes the values of text fields.
+ *
+ * @since 4.2.0
+ */
+public class FilterQueryParser {
+
+    /**
+     * Matches the keyword, numeric, boolean and date fields of the default mapping
+     */
+    public static final String DEFAULT_EXACT_FIELD_PATTERN =
+            ".+_(s|ss|smv|mvs|i|is|imv|mvi|l|ls|lmv|mvl|f|fs|fmv|mvf|d|ds|dmv|mvd|b|bs|bmv|mvb|dt|dts|to|tos)|" +
+            "crafterSite|localId|id|rootId|objectId|objectGroupId|merge-strategy|content-type|internal-name|" +
+            "file-name|display-template|disabled|disableFlattening|placeInNav";
+
+    private static final String VALUE = "(?:\"[^\"\\\\*?]*\"|[\\w.@][\\w.@-]*)";
+
+    private static final String BOUND = "(?:\"[^\"\\\\]*\"|[^\\s\"\\[\\]{}()]+)";
+
+    private static final Pattern CLAUSE = Pattern.compile(
+            "(-|NOT\\s+)?([A-Za-z_][\\w.-]*):(?:(\\*)(?=\\s|$)|" +
+            "([\\[{])\\s*(" + BOUND + ")\\s+TO\\s+(" + BOUND + ")\\s*([]}])|" +
+            "\\(\\s*(" + VALUE + "(?:\\s+OR\\s+" + VALUE + ")*)\\s*\\)|" +
+            "(" + VALUE + ")(?=\\s|$))");
+
+    private static final Pattern AND = Pattern.compile("\\s+(?:AND|&&)\\s+");
+
+    private static final Pattern TERMS_SEPARATOR = Pattern.compile("\\s+OR\\s+");
+
+    private static final Pattern RESERVED_WORDS = Pattern.compile("AND|OR|NOT|TO");
+
+    /**
+     * The fields that can be compared with exact terms
+     */
+    protected final Pattern exactFieldPattern;
+
+    public FilterQueryParser() {
+        this(DEFAULT_EXACT_FIELD_PATTERN);
+    }
+
+    public FilterQueryParser(String exactFieldPattern) {
+        this.exactFieldPattern = Pattern.compile(exactFieldPattern);
+    }
+
+    /**
+     * Parses the given filter query
+     *
+     * @param filterQuery the filter query in the {@code query_string} syntax
+     * @return the structured query, or a {@code query_string} query if it can't be converted
+     */
+    public Query parse(String filterQuery) {
+        Query query = parseClauses(filterQuery.trim());
+        if (query == null) {
+            return Query.of(q -> q.queryString(s -> s.query(filterQuery)));
+        }
+        return query;
+    }
+
+    protected Query parseClauses(String filterQuery) {
+        List<Query> filters = new ArrayList<>();
+        List<Query> mustNots = new ArrayList<>();
+
+        Matcher clause = CLAUSE.matcher(filterQuery);
+        Matcher and = AND.matcher(filterQuery);
+        int position = 0;
+        while (true) {
+            clause.region(position, filterQuery.length());
+            if (!clause.lookingAt()) {
+                return null;
+            }
+
+            Query query = parseClause(clause);
+            if (query == null) {
+                return null;
+            }
+            if (clause.group(1) != null) {
+                mustNots.add(query);
+            } else {
+                filters.add(query);
+            }
+
+            position = clause.end();
+            if (position == filterQuery.length()) {
+                break;
+            }
+
+            and.region(position, filterQuery.length());
+            if (!and.lookingAt()) {
+                return null;
+            }
+            position = and.end();
+        }
+
+        if (filters.size() == 1 && mustNots.isEmpty()) {
+            return filters.get(0);
+        }
+
+        return Query.of(q -> q.bool(BoolQuery.of(b -> b.filter(filters).mustNot(mustNots))));
+    }
+
+    protected Query parseClause(Matcher clause) {
+        String field = clause.group(2);
+        if (clause.group(3) != null) {
+            return Query.of(q -> q.exists(e -> e.field(field)));
+        }
+        if (clause.group(4) != null) {
+            return parseRange(field, clause.group(4), clause.group(5), clause.group(6), clause.group(7));
+        }
+        if (!exactFieldPattern.matcher(field).matches()) {
+            return null;
+        }
+        if (clause.group(8) != null) {
+            List<FieldValue> values = new ArrayList<>();
+            for (String value : TERMS_SEPARATOR.split(clause.group(8))) {
+                if (isReserved(value)) {
+                    return null;
+                }
+                values.add(FieldValue.of(unquote(value)));
+            }
+            return Query.of(q -> q.terms(t -> t.field(field).terms(v -> v.value(values))));
+        }
+
+        String value = clause.group(9);
+        if (isReserved(value)) {
+            return null;
+        }
+        return Query.of(q -> q.term(t -> t.field(field).value(FieldValue.of(unquote(value)))));
+    }
+
+    protected Query parseRange(String field, String start, String from, String to, String end) {
+        if (isReserved(from) || isReserved(to)) {
+            return null;
+        }
+
+        RangeQuery.Builder builder = new RangeQuery.Builder().field(field);
+        if (!"*".equals(from)) {
+            JsonData value = JsonData.of(unquote(from));
+            if ("[".equals(start)) {
+                builder.gte(value);
+            } else {
+                builder.gt(value);
+            }
+        }
+        if (!"*".equals(to)) {
+            JsonData value = JsonData.of(unquote(to));
+            if ("]".equals(end)) {
+                builder.lte(value);
+            } else {
+                builder.lt(value);
+            }
+        }
+
+        return Query.of(q -> q.range(builder.build()));
+    }
+
+    private static boolean isReserved(String value) {
+        return RESERVED_WORDS.matcher(value).matches();
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.beans.ConstructorProperties;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.craftercms.search.opensearch.client.OpenSearchClientWrapper;
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link OpenSearchClientWrapper} that sends a backup request when a search takes longer than
+ * usual, and returns the response that arrives first. The delay before the backup is a percentile of the recent
+ * response times, so only the slowest searches are hedged. The backup requests are limited by a token bucket: each
+ * search adds a fraction of a token and each backup request takes a whole one, so the ratio of hedged searches
+ * stays under the max ratio over any period of time, with short bursts limited by the size of the bucket.
+ *
+ * <p>The searches are executed with {@link OpenSearchClientWrapper#searchAsync(SearchRequest, Class, Map)}, so the
+ * delegate needs to support asynchronous searches. For {@link AbstractOpenSearchClientWrapper} this means that hedged
+ * searches are never added to {@code _msearch} batches, and searches that fail with too many nested clauses are not
+ * rewritten. The backup request is sent with
+ * {@link OpenSearchClientWrapper#searchAsyncUncoalesced(SearchRequest, Class, Map)} so it is never merged with the
+ * primary request. The backup goes through the node selector of the client again, a selector like
+ * {@link LatencyAwareNodeSelector} will usually avoid the slow node but there is no guarantee that a different node
+ * is used. Scroll requests are never hedged.</p>
+ *
+ * @since 4.2.0
+ */
+public class HedgingOpenSearchClientWrapper implements OpenSearchClientWrapper {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingOpenSearchClientWrapper.class);
+
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+    public static final long DEFAULT_INITIAL_HEDGE_DELAY = 100;
+    public static final long DEFAULT_MIN_HEDGE_DELAY = 5;
+    public static final long DEFAULT_MAX_HEDGE_DELAY = TimeUnit.SECONDS.toMillis(2);
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.1;
+    public static final int DEFAULT_MAX_HEDGE_BURST = 10;
+    public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+    /**
+     * The number of new samples after which the delay is calculated again
+     */
+    protected static final int UPDATE_INTERVAL = 64;
+
+    /**
+     * The wrapper that executes the searches
+     */
+    protected final OpenSearchClientWrapper delegate;
+
+    /**
+     * The percentile of the response times used as delay before the backup request
+     */
+    protected double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    /**
+     * The min delay in milliseconds before the backup request
+     */
+    protected long minHedgeDelay = DEFAULT_MIN_HEDGE_DELAY;
+
+    /**
+     * The max delay in milliseconds before the backup request
+     */
+    protected long maxHedgeDelay = DEFAULT_MAX_HEDGE_DELAY;
+
+    /**
+     * The max ratio of searches that can be hedged
+     */
+    protected double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    /**
+     * The max number of tokens in the bucket, which limits the backup requests that can be sent in a burst
+     */
+    protected int maxHedgeBurst = DEFAULT_MAX_HEDGE_BURST;
+
+    /**
+     * The current number of tokens in the bucket
+     */
+    protected double hedgeTokens;
+
+    /**
+     * The most recent response times in nanoseconds
+     */
+    protected final AtomicLongArray samples;
+
+    protected final AtomicLong sampleCount = new AtomicLong();
+
+    /**
+     * The current delay in nanoseconds before the backup request
+     */
+    protected volatile long hedgeDelay = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_HEDGE_DELAY);
+
+    protected final LongAdder searches = new LongAdder();
+
+    protected final LongAdder hedgedSearches = new LongAdder();
+
+    protected final LongAdder hedgeWins = new LongAdder();
+
+    public HedgingOpenSearchClientWrapper(OpenSearchClientWrapper delegate) {
+        this(delegate, DEFAULT_SAMPLE_SIZE);
+    }
+
+    @ConstructorProperties({"delegate", "sampleSize"})
+    public HedgingOpenSearchClientWrapper(OpenSearchClientWrapper delegate, int sampleSize) {
+        this.delegate = delegate;
+        this.samples = new AtomicLongArray(sampleSize);
+    }
+
+    public void setHedgePercentile(final double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public void setMinHedgeDelay(final long minHedgeDelay) {
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    public void setMaxHedgeDelay(final long maxHedgeDelay) {
+        this.maxHedgeDelay = maxHedgeDelay;
+    }
+
+    /**
+     * Sets the delay in milliseconds used before there are enough response times
+     */
+    public void setInitialHedgeDelay(final long initialHedgeDelay) {
+        this.hedgeDelay = TimeUnit.MILLISECONDS.toNanos(initialHedgeDelay);
+    }
+
+    public void setMaxHedgeRatio(final double maxHedgeRatio) {
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    public void setMaxHedgeBurst(final int maxHedgeBurst) {
+        this.maxHedgeBurst = maxHedgeBurst;
+    }
+
+    /**
+     * Returns the current delay in milliseconds before the backup request
+     */
+    public long getHedgeDelay() {
+        return TimeUnit.NANOSECONDS.toMillis(hedgeDelay);
+    }
+
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * Returns the number of searches that sent a backup request
+     */
+    public long getHedgedSearches() {
+        return hedgedSearches.sum();
+    }
+
+    /**
+     * Returns the number of searches where the backup request answered first
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Returns the ratio of searches that sent a backup request
+     */
+    public double getHedgeRate() {
+        long total = searches.sum();
+        return total > 0 ? (double) hedgedSearches.sum() / total : 0;
+    }
+
+    /**
+     * Returns the ratio of backup requests that answered first
+     */
+    public double getHedgeWinRate() {
+        long hedged = hedgedSearches.sum();
+        return hedged > 0 ? (double) hedgeWins.sum() / hedged : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> SearchResponse<T> search(SearchRequest request, Class<T> documentClass,
+                                        Map<String, Object> parameters) throws IOException, OpenSearchException {
+        if (request.scroll() != null) {
+            return delegate.search(request, documentClass, parameters);
+        }
+
+        try {
+            return searchAsync(request, documentClass, parameters).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenSearchException(null, "Interrupted while waiting for the search", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new OpenSearchException(null, "Error executing search", cause);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> CompletableFuture<SearchResponse<T>> searchAsync(SearchRequest request, Class<T> documentClass,
+                                                                Map<String, Object> parameters) {
+        if (request.scroll() != null) {
+            return delegate.searchAsync(request, documentClass, parameters);
+        }
+
+        searches.increment();
+        addHedgeTokens();
+        HedgedSearch<T> search = new HedgedSearch<>();
+
+        long start = System.nanoTime();
+        delegate.searchAsync(request, documentClass, parameters).whenComplete((response, error) -> {
+            // The primary request is always measured, even if the backup won, to keep the real distribution
+            if (error == null) {
+                addSample(System.nanoTime() - start);
+            }
+            search.complete(response, error, false);
+        });
+
+        CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (search.isDone() || !canHedge()) {
+                return;
+            }
+            if (!search.hedge()) {
+                // The search finished after the token was taken
+                returnHedgeToken();
+                return;
+            }
+
+            logger.debug("Search took more than {}ms, sending backup request", getHedgeDelay());
+            hedgedSearches.increment();
+            delegate.searchAsyncUncoalesced(request, documentClass, parameters)
+                    .whenComplete((response, error) -> search.complete(response, error, true));
+        });
+
+        return search.result;
+    }
+
+    /**
+     * Adds the tokens earned by a new search to the bucket, up to the max burst
+     */
+    protected synchronized void addHedgeTokens() {
+        hedgeTokens = Math.min(maxHedgeBurst, hedgeTokens + maxHedgeRatio);
+    }
+
+    /**
+     * Takes a token from the bucket if there is one, returns false if a new backup request would go over the max
+     * ratio
+     */
+    protected synchronized boolean canHedge() {
+        if (hedgeTokens < 1) {
+            return false;
+        }
+        hedgeTokens--;
+        return true;
+    }
+
+    /**
+     * Returns a token taken for a backup request that was not sent
+     */
+    protected synchronized void returnHedgeToken() {
+        hedgeTokens = Math.min(maxHedgeBurst, hedgeTokens + 1);
+    }
+
+    /**
+     * Adds the response time of a search, and updates the delay when enough new samples have been added
+     */
+    protected void addSample(long time) {
+        long count = sampleCount.getAndIncrement();
+        samples.set((int) (count % samples.length()), time);
+        if ((count + 1) % UPDATE_INTERVAL == 0) {
+            updateHedgeDelay((int) Math.min(count + 1, samples.length()));
+        }
+    }
+
+    /**
+     * Calculates the delay from the percentile of the current samples
+     */
+    protected void updateHedgeDelay(int size) {
+        long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = samples.get(i);
+        }
+        Arrays.sort(times);
+
+        long percentile = times[Math.min(size - 1, (int) Math.ceil(hedgePercentile * size) - 1)];
+        hedgeDelay = Math.max(TimeUnit.MILLISECONDS.toNanos(minHedgeDelay),
+                              Math.min(TimeUnit.MILLISECONDS.toNanos(maxHedgeDelay), percentile));
+
+        logger.debug("Hedge delay updated to {}ms", getHedgeDelay());
+    }
+
+    /**
+     * The state of a search that can have a backup request
+     */
+    protected class HedgedSearch<T> {
+
+        protected final CompletableFuture<SearchResponse<T>> result = new CompletableFuture<>();
+
+        protected int pendingRequests = 1;
+
+        protected Throwable error;
+
+        protected boolean isDone() {
+            return result.isDone();
+        }
+
+        /**
+         * Registers a backup request, returns false if the search already finished
+         */
+        protected synchronized boolean hedge() {
+            if (result.isDone()) {
+                return false;
+            }
+            pendingRequests++;
+            return true;
+        }
+
+        /**
+         * Completes the search with the first response, or with the first error if all the requests failed
+         */
+        protected synchronized void complete(SearchResponse<T> response, Throwable error, boolean backup) {
+            pendingRequests--;
+            if (error == null) {
+                if (result.complete(response) && backup) {
+                    hedgeWins.increment();
+                }
+                return;
+            }
+
+            if (this.error == null) {
+                this.error = error;
+            }
+            if (pendingRequests == 0) {
+                result.completeExceptionally(this.error);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.opensearch.client.Node;
+import org.opensearch.client.NodeSelector;
+import org.opensearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link NodeSelector} that skips the nodes that are answering much slower than the fastest one, so a node in a long
+ * GC pause or relocating shards stops receiving requests. The latency of each node is an exponentially weighted
+ * moving average (EWMA) of its recent response times.
+ *
+ * <p>The response times are measured by registering the selector as request and response interceptor of the HTTP
+ * client, and failed requests count as a fixed penalty through {@link #getFailureListener()}. To keep measuring the
+ * skipped nodes, one of every {@code probeRequests} requests is sent without skipping any node, so a node that
+ * recovers gets its share of requests back as soon as its average drops. The latency of a node without new
+ * measurements is also forgotten after the probe interval.</p>
+ *
+ * <p>The nodes that are not skipped are still used in the round-robin order of the {@link RestClient}.</p>
+ *
+ * @since 4.2.0
+ */
+public class LatencyAwareNodeSelector implements NodeSelector, HttpRequestInterceptor, HttpResponseInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyAwareNodeSelector.class);
+
+    public static final double DEFAULT_DECAY = 0.3;
+    public static final double DEFAULT_SLOW_NODE_FACTOR = 3;
+    public static final long DEFAULT_PROBE_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    public static final long DEFAULT_FAILURE_PENALTY = TimeUnit.SECONDS.toMillis(10);
+    public static final int DEFAULT_PROBE_REQUESTS = 20;
+
+    /**
+     * The attribute of the HTTP context with the time the request was sent
+     */
+    protected static final String START_TIME_ATTRIBUTE = LatencyAwareNodeSelector.class.getName() + ".startTime";
+
+    /**
+     * The weight of each new response time in the average, between 0 and 1
+     */
+    protected double decay = DEFAULT_DECAY;
+
+    /**
+     * How many times slower than the fastest node a node needs to be to get skipped
+     */
+    protected double slowNodeFactor = DEFAULT_SLOW_NODE_FACTOR;
+
+    /**
+     * The time in milliseconds after which the latency of a node without new measurements is forgotten
+     */
+    protected long probeInterval = DEFAULT_PROBE_INTERVAL;
+
+    /**
+     * The response time in milliseconds recorded for failed requests
+     */
+    protected long failurePenalty = DEFAULT_FAILURE_PENALTY;
+
+    /**
+     * The number of requests for each one sent without skipping the slow nodes, 0 or less to always skip them
+     */
+    protected int probeRequests = DEFAULT_PROBE_REQUESTS;
+
+    protected final AtomicLong selections = new AtomicLong();
+
+    protected final ConcurrentMap<HttpHost, NodeLatency> latencies = new ConcurrentHashMap<>();
+
+    protected final LongAdder skippedNodes = new LongAdder();
+
+    public void setDecay(final double decay) {
+        this.decay = decay;
+    }
+
+    public void setSlowNodeFactor(final double slowNodeFactor) {
+        this.slowNodeFactor = slowNodeFactor;
+    }
+
+    public void setProbeInterval(final long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    public void setFailurePenalty(final long failurePenalty) {
+        this.failurePenalty = failurePenalty;
+    }
+
+    public void setProbeRequests(final int probeRequests) {
+        this.probeRequests = probeRequests;
+    }
+
+    /**
+     * Returns the average latency in milliseconds of the given node, or {@link Double#NaN} if it's unknown
+     */
+    public double getLatency(HttpHost host) {
+        NodeLatency latency = latencies.get(host);
+        return latency != null && !latency.isExpired(System.nanoTime()) ? latency.value : Double.NaN;
+    }
+
+    /**
+     * Returns the number of times a node was skipped because it was too slow
+     */
+    public long getSkippedNodes() {
+        return skippedNodes.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void select(Iterable<Node> nodes) {
+        if (probeRequests > 0 && selections.incrementAndGet() % probeRequests == 0) {
+            // Let the slow nodes get a request so their latency is updated
+            return;
+        }
+
+        long now = System.nanoTime();
+        double fastest = Double.MAX_VALUE;
+        for (Node node : nodes) {
+            NodeLatency latency = latencies.get(node.getHost());
+            if (latency != null && !latency.isExpired(now)) {
+                fastest = Math.min(fastest, latency.value);
+            }
+        }
+
+        if (fastest == Double.MAX_VALUE) {
+            return;
+        }
+
+        // The fastest node is always under the limit, so at least one node is kept
+        double limit = Math.max(fastest, 1) * slowNodeFactor;
+        for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext();) {
+            Node node = iterator.next();
+            NodeLatency latency = latencies.get(node.getHost());
+            if (latency != null && !latency.isExpired(now) && latency.value > limit) {
+                logger.debug("Skipping node {} with latency {}ms", node.getHost(), latency.value);
+                iterator.remove();
+                skippedNodes.increment();
+            }
+        }
+    }
+
+    /**
+     * Records the time the request was sent
+     */
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        context.setAttribute(START_TIME_ATTRIBUTE, System.nanoTime());
+    }
+
+    /**
+     * Records the response time of the node that sent the response
+     */
+    @Override
+    public void process(HttpResponse response, HttpContext context) {
+        Object startTime = context.getAttribute(START_TIME_ATTRIBUTE);
+        HttpHost host = HttpCoreContext.adapt(context).getTargetHost();
+        if (startTime instanceof Long && host != null) {
+            record(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long) startTime));
+        }
+    }
+
+    /**
+     * Returns the listener that records the failures of the nodes, needs to be set in the {@link RestClient}
+     */
+    public RestClient.FailureListener getFailureListener() {
+        return new RestClient.FailureListener() {
+            @Override
+            public void onFailure(Node node) {
+                logger.debug("Request to node {} failed", node.getHost());
+                record(node.getHost(), failurePenalty);
+            }
+        };
+    }
+
+    /**
+     * Adds a response time for the given node
+     *
+     * @param host the host of the node
+     * @param time the response time in milliseconds
+     */
+    public void record(HttpHost host, long time) {
+        latencies.computeIfAbsent(host, key -> new NodeLatency()).update(time, decay);
+    }
+
+    @Override
+    public String toString() {
+        return "LATENCY_AWARE";
+    }
+
+    /**
+     * The average latency of a single node
+     */
+    protected class NodeLatency {
+
+        protected volatile double value;
+
+        protected volatile long lastUpdate;
+
+        protected synchronized void update(long time, double decay) {
+            long now = System.nanoTime();
+            value = isExpired(now) ? time : decay * time + (1 - decay) * value;
+            lastUpdate = now;
+        }
+
+        protected boolean isExpired(long now) {
+            return lastUpdate == 0 || now - lastUpdate > TimeUnit.MILLISECONDS.toNanos(probeInterval);
+        }
+
+    }
+
+}
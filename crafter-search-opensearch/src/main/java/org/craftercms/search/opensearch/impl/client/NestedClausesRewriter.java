@@ -0,0 +1,543 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch._types.ShardStatistics;
+import org.opensearch.client.opensearch._types.SortOptions;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch._types.query_dsl.TermQuery;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.search.Hit;
+import org.opensearch.client.opensearch.core.search.HitsMetadata;
+import org.opensearch.client.opensearch.core.search.TotalHits;
+import org.opensearch.client.opensearch.core.search.TotalHitsRelation;
+import org.opensearch.client.util.ApiTypeHelper;
+
+/**
+ * Rewrites queries that fail because they have too many nested clauses:
+ * <ul>
+ *     <li>{@code term} queries on the same field in the {@code should} or {@code must_not} clauses of a
+ *     {@code bool} query are replaced by a single {@code terms} query. Matching is the same, but the terms are not
+ *     scored separately</li>
+ *     <li>If that's not enough, the largest disjunction that is required for a document to match (a {@code bool}
+ *     query with only {@code should} clauses, reached only through {@code must} and {@code filter} clauses) is
+ *     split in chunks. Each chunk is searched separately and the hits are merged and sorted again</li>
+ * </ul>
+ * Scores of split searches are not comparable, so a disjunction is only split when it's in filter context (reached
+ * through a {@code filter} clause) or when the hits don't need scores (sorted only by fields, without
+ * {@code min_score} or {@code track_scores}). Searches with aggregations, suggestions, collapsing,
+ * {@code search_after}, sorts other than by field or score, or a page beyond {@code index.max_result_window} can't
+ * be split.
+ *
+ * @since 4.2.0
+ */
+public class NestedClausesRewriter {
+
+    public static final int DEFAULT_MAX_CLAUSES_PER_SEARCH = 500;
+
+    public static final int DEFAULT_SIZE = 10;
+
+    public static final int DEFAULT_MAX_RESULT_WINDOW = 10000;
+
+    protected static final String SCORE_FIELD = "_score";
+
+    protected static final String MISSING_FIRST = "_first";
+
+    /**
+     * The max number of clauses of the split disjunction in each search
+     */
+    protected int maxClausesPerSearch = DEFAULT_MAX_CLAUSES_PER_SEARCH;
+
+    /**
+     * The {@code index.max_result_window} of the indices, the max {@code from + size} of each split search
+     */
+    protected int maxResultWindow = DEFAULT_MAX_RESULT_WINDOW;
+
+    public void setMaxClausesPerSearch(int maxClausesPerSearch) {
+        this.maxClausesPerSearch = maxClausesPerSearch;
+    }
+
+    public void setMaxResultWindow(int maxResultWindow) {
+        this.maxResultWindow = maxResultWindow;
+    }
+
+    /**
+     * Replaces the {@code term} queries on the same field with {@code terms} queries
+     *
+     * @param query the query to rewrite
+     * @return the rewritten query, or the same instance if nothing could be rewritten
+     */
+    public Query rewriteTerms(Query query) {
+        if (!query.isBool()) {
+            return query;
+        }
+
+        BoolQuery bool = query.bool();
+        List<Query> must = rewriteTerms(bool.must());
+        List<Query> filter = rewriteTerms(bool.filter());
+        List<Query> should = rewriteTerms(bool.should());
+        List<Query> mustNot = rewriteTerms(bool.mustNot());
+
+        // With a min number of matches other than one, the should clauses are not a simple disjunction
+        String minimumShouldMatch = bool.minimumShouldMatch();
+        if (minimumShouldMatch == null || "1".equals(minimumShouldMatch)) {
+            should = groupTerms(should);
+        }
+        mustNot = groupTerms(mustNot);
+
+        if (must == bool.must() && filter == bool.filter() && should == bool.should() &&
+            mustNot == bool.mustNot()) {
+            return query;
+        }
+
+        return copy(bool, must, filter, should, mustNot).build()._toQuery();
+    }
+
+    /**
+     * Splits the largest required disjunction of the query in chunks
+     *
+     * @param query the query to split
+     * @param scoresNeeded if the hits are sorted or filtered by score, so only disjunctions in filter context can be
+     *                     split (see {@link #needsScores(SearchRequest)})
+     * @return the queries for each chunk, or an empty list if the query can't be split
+     */
+    public List<Query> split(Query query, boolean scoresNeeded) {
+        BoolQuery disjunction = findDisjunction(query, null, false, scoresNeeded);
+        if (disjunction == null || disjunction.should().size() <= maxClausesPerSearch) {
+            return List.of();
+        }
+
+        List<Query> chunks = new ArrayList<>();
+        List<Query> should = disjunction.should();
+        for (int from = 0; from < should.size(); from += maxClausesPerSearch) {
+            Query chunk = copy(disjunction, disjunction.must(), disjunction.filter(),
+                               should.subList(from, Math.min(should.size(), from + maxClausesPerSearch)),
+                               disjunction.mustNot()).build()._toQuery();
+            chunks.add(replace(query, disjunction, chunk));
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Indicates if the responses of the split searches for the given request can be merged
+     */
+    public boolean canMerge(SearchRequest request) {
+        if (request.scroll() != null || request.collapse() != null || request.suggest() != null ||
+            ApiTypeHelper.isDefined(request.aggregations()) || ApiTypeHelper.isDefined(request.searchAfter())) {
+            return false;
+        }
+
+        // Each split search needs to return all the hits up to the end of the requested page
+        if (getSize(request) > maxResultWindow) {
+            return false;
+        }
+
+        for (SortOptions sort : request.sort()) {
+            if (!sort.isField() && !sort.isScore()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates if the hits of the given request depend on their scores: sorted by score (the default) or filtered
+     * with {@code min_score}, or the scores are returned with {@code track_scores}
+     */
+    public boolean needsScores(SearchRequest request) {
+        if (request.minScore() != null || Boolean.TRUE.equals(request.trackScores()) || request.sort().isEmpty()) {
+            return true;
+        }
+
+        for (SortOptions sort : request.sort()) {
+            if (sort.isScore() || (sort.isField() && SCORE_FIELD.equals(sort.field().field()))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of hits each split search needs to return, so the requested page can be built
+     */
+    public int getSize(SearchRequest request) {
+        return getFrom(request) + (request.size() != null ? request.size() : DEFAULT_SIZE);
+    }
+
+    /**
+     * Merges the responses of the split searches: hits are sorted with the sort of the request, duplicates removed
+     * and the requested page returned
+     *
+     * @param request the original request
+     * @param responses the responses of the split searches
+     * @return the merged response
+     */
+    public <T> SearchResponse<T> merge(SearchRequest request, List<SearchResponse<T>> responses) {
+        List<Hit<T>> hits = new ArrayList<>();
+        long took = 0;
+        boolean timedOut = false;
+        int totalShards = 0;
+        int successfulShards = 0;
+        int failedShards = 0;
+        Double maxScore = null;
+        long maxTotal = 0;
+        boolean totalKnown = true;
+        boolean allHitsReturned = true;
+
+        for (SearchResponse<T> response : responses) {
+            hits.addAll(response.hits().hits());
+            took = Math.max(took, response.took());
+            timedOut |= response.timedOut();
+            totalShards += response.shards().total().intValue();
+            successfulShards += response.shards().successful().intValue();
+            failedShards += response.shards().failed().intValue();
+            if (response.hits().maxScore() != null) {
+                maxScore = maxScore != null ? Math.max(maxScore, response.hits().maxScore()) :
+                        response.hits().maxScore();
+            }
+
+            TotalHits total = response.hits().total();
+            if (total == null) {
+                totalKnown = false;
+            } else {
+                maxTotal = Math.max(maxTotal, total.value());
+                allHitsReturned &= total.relation() == TotalHitsRelation.Eq &&
+                                   total.value() <= response.hits().hits().size();
+            }
+        }
+
+        hits.sort(getComparator(request));
+
+        // The same document can match several chunks, only the first occurrence in sort order is kept
+        Map<String, Hit<T>> uniqueHits = new LinkedHashMap<>();
+        for (Hit<T> hit : hits) {
+            uniqueHits.putIfAbsent(hit.index() + "/" + hit.id(), hit);
+        }
+        List<Hit<T>> sortedHits = new ArrayList<>(uniqueHits.values());
+
+        int from = Math.min(getFrom(request), sortedHits.size());
+        int to = Math.min(getSize(request), sortedHits.size());
+        List<Hit<T>> page = new ArrayList<>(sortedHits.subList(from, to));
+
+        // Totals can only be exact if all the hits were returned, otherwise the max is a lower bound
+        TotalHits total = null;
+        if (totalKnown) {
+            total = new TotalHits.Builder()
+                    .value(allHitsReturned ? sortedHits.size() : Math.max(maxTotal, sortedHits.size()))
+                    .relation(allHitsReturned ? TotalHitsRelation.Eq : TotalHitsRelation.Gte)
+                    .build();
+        }
+
+        return new SearchResponse.Builder<T>()
+                .took(took)
+                .timedOut(timedOut)
+                .shards(new ShardStatistics.Builder()
+                                .total(totalShards)
+                                .successful(successfulShards)
+                                .failed(failedShards)
+                                .build())
+                .hits(new HitsMetadata.Builder<T>()
+                              .total(total)
+                              .maxScore(maxScore)
+                              .hits(page)
+                              .build())
+                .build();
+    }
+
+    protected List<Query> rewriteTerms(List<Query> queries) {
+        List<Query> rewrittenQueries = null;
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            Query rewrittenQuery = rewriteTerms(query);
+            if (rewrittenQuery != query && rewrittenQueries == null) {
+                rewrittenQueries = new ArrayList<>(queries);
+            }
+            if (rewrittenQueries != null) {
+                rewrittenQueries.set(i, rewrittenQuery);
+            }
+        }
+
+        return rewrittenQueries != null ? rewrittenQueries : queries;
+    }
+
+    /**
+     * Replaces the plain {@code term} queries on the same field with a single {@code terms} query, in the position
+     * of the first one
+     */
+    protected List<Query> groupTerms(List<Query> queries) {
+        Map<String, List<FieldValue>> valuesByField = new LinkedHashMap<>();
+        for (Query query : queries) {
+            if (isPlainTerm(query)) {
+                valuesByField.computeIfAbsent(query.term().field(), field -> new ArrayList<>())
+                             .add(query.term().value());
+            }
+        }
+
+        valuesByField.values().removeIf(values -> values.size() < 2);
+        if (valuesByField.isEmpty()) {
+            return queries;
+        }
+
+        List<Query> groupedQueries = new ArrayList<>();
+        for (Query query : queries) {
+            if (!isPlainTerm(query) || !valuesByField.containsKey(query.term().field())) {
+                groupedQueries.add(query);
+                continue;
+            }
+
+            List<FieldValue> values = valuesByField.remove(query.term().field());
+            if (values != null) {
+                String field = query.term().field();
+                groupedQueries.add(Query.of(q -> q.terms(t -> t.field(field).terms(v -> v.value(values)))));
+            }
+        }
+
+        return groupedQueries;
+    }
+
+    protected boolean isPlainTerm(Query query) {
+        if (!query.isTerm()) {
+            return false;
+        }
+
+        TermQuery term = query.term();
+        return term.boost() == null && term.queryName() == null && !Boolean.TRUE.equals(term.caseInsensitive());
+    }
+
+    /**
+     * Finds the bool query with the most should clauses that all matching documents need to match
+     *
+     * @param query the query to search
+     * @param largest the largest disjunction found so far
+     * @param filterContext if the query is in filter context, so it doesn't affect the scores
+     * @param scoresNeeded if only disjunctions in filter context can be returned
+     */
+    protected BoolQuery findDisjunction(Query query, BoolQuery largest, boolean filterContext, boolean scoresNeeded) {
+        if (!query.isBool()) {
+            return largest;
+        }
+
+        BoolQuery bool = query.bool();
+        if ((filterContext || !scoresNeeded) && isRequiredDisjunction(bool) &&
+            (largest == null || bool.should().size() > largest.should().size())) {
+            largest = bool;
+        }
+
+        // Only conjunctive clauses are followed, so splitting the disjunction splits the matching documents
+        for (Query clause : bool.must()) {
+            largest = findDisjunction(clause, largest, filterContext, scoresNeeded);
+        }
+        for (Query clause : bool.filter()) {
+            largest = findDisjunction(clause, largest, true, scoresNeeded);
+        }
+
+        return largest;
+    }
+
+    protected boolean isRequiredDisjunction(BoolQuery bool) {
+        String minimumShouldMatch = bool.minimumShouldMatch();
+        if (bool.should().isEmpty()) {
+            return false;
+        }
+        if (bool.must().isEmpty() && bool.filter().isEmpty()) {
+            return minimumShouldMatch == null || "1".equals(minimumShouldMatch);
+        }
+        return "1".equals(minimumShouldMatch);
+    }
+
+    /**
+     * Returns a copy of the query with the given bool query replaced
+     */
+    protected Query replace(Query query, BoolQuery target, Query replacement) {
+        if (!query.isBool()) {
+            return query;
+        }
+
+        BoolQuery bool = query.bool();
+        if (bool == target) {
+            return replacement;
+        }
+
+        List<Query> must = replace(bool.must(), target, replacement);
+        List<Query> filter = replace(bool.filter(), target, replacement);
+        if (must == bool.must() && filter == bool.filter()) {
+            return query;
+        }
+
+        return copy(bool, must, filter, bool.should(), bool.mustNot()).build()._toQuery();
+    }
+
+    protected List<Query> replace(List<Query> queries, BoolQuery target, Query replacement) {
+        List<Query> replacedQueries = null;
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            Query replacedQuery = replace(query, target, replacement);
+            if (replacedQuery != query) {
+                replacedQueries = new ArrayList<>(queries);
+                replacedQueries.set(i, replacedQuery);
+                break;
+            }
+        }
+
+        return replacedQueries != null ? replacedQueries : queries;
+    }
+
+    protected BoolQuery.Builder copy(BoolQuery bool, List<Query> must, List<Query> filter, List<Query> should,
+                                     List<Query> mustNot) {
+        return new BoolQuery.Builder()
+                .must(must)
+                .filter(filter)
+                .should(should)
+                .mustNot(mustNot)
+                .minimumShouldMatch(bool.minimumShouldMatch())
+                .boost(bool.boost())
+                .queryName(bool.queryName());
+    }
+
+    protected int getFrom(SearchRequest request) {
+        return request.from() != null ? request.from() : 0;
+    }
+
+    /**
+     * Returns the comparator for the sort of the request, by score if there is no sort
+     */
+    protected <T> Comparator<Hit<T>> getComparator(SearchRequest request) {
+        List<SortOptions> sorts = request.sort();
+        if (sorts.isEmpty()) {
+            return getScoreComparator();
+        }
+
+        Comparator<List<?>> comparator = getSortValuesComparator(sorts);
+        return (hit1, hit2) -> comparator.compare(hit1.sort(), hit2.sort());
+    }
+
+    /**
+     * Returns the comparator for the sort values of the hits. Missing values go last unless the sort has
+     * {@code missing: _first}, in both directions like OpenSearch does.
+     */
+    protected Comparator<List<?>> getSortValuesComparator(List<SortOptions> sorts) {
+        return (values1, values2) -> {
+            for (int i = 0; i < sorts.size(); i++) {
+                SortOptions sort = sorts.get(i);
+                Object value1 = getSortValue(values1, i);
+                Object value2 = getSortValue(values2, i);
+
+                if (value1 == null || value2 == null) {
+                    if (value1 != value2) {
+                        boolean missingFirst = isMissingFirst(sort);
+                        return (value1 == null) == missingFirst ? -1 : 1;
+                    }
+                    continue;
+                }
+
+                int result = compareSortValues(value1, value2);
+                if (result != 0) {
+                    return isDescending(sort) ? -result : result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    protected Object getSortValue(List<?> values, int index) {
+        Object value = values != null && index < values.size() ? values.get(index) : null;
+        return value instanceof FieldValue ? ((FieldValue) value)._get() : value;
+    }
+
+    protected boolean isDescending(SortOptions sort) {
+        if (sort.isScore()) {
+            return sort.score().order() != SortOrder.Asc;
+        }
+        // Sorts by score are descending by default, the rest are ascending
+        boolean score = SCORE_FIELD.equals(sort.field().field());
+        return score ? sort.field().order() != SortOrder.Asc : sort.field().order() == SortOrder.Desc;
+    }
+
+    protected boolean isMissingFirst(SortOptions sort) {
+        if (!sort.isField()) {
+            return false;
+        }
+
+        Object missing = sort.field().missing();
+        if (missing instanceof FieldValue) {
+            missing = ((FieldValue) missing)._get();
+        }
+        return missing != null && MISSING_FIRST.equals(missing.toString());
+    }
+
+    protected <T> Comparator<Hit<T>> getScoreComparator() {
+        return (hit1, hit2) -> {
+            double score1 = hit1.score() != null ? hit1.score() : Double.NEGATIVE_INFINITY;
+            double score2 = hit2.score() != null ? hit2.score() : Double.NEGATIVE_INFINITY;
+            return Double.compare(score2, score1);
+        };
+    }
+
+    /**
+     * Compares two sort values returned by OpenSearch based on their JSON type: numbers are compared numerically and
+     * strings lexically, like OpenSearch does for numeric and keyword fields. Values of different types are ordered
+     * by type (numbers, booleans, strings, others) so that the comparison is always transitive.
+     */
+    protected int compareSortValues(Object value1, Object value2) {
+        int typeOrder1 = getTypeOrder(value1);
+        int typeOrder2 = getTypeOrder(value2);
+        if (typeOrder1 != typeOrder2) {
+            return Integer.compare(typeOrder1, typeOrder2);
+        }
+
+        if (value1 instanceof Number) {
+            Number number1 = (Number) value1;
+            Number number2 = (Number) value2;
+            if (isIntegral(number1) && isIntegral(number2)) {
+                return Long.compare(number1.longValue(), number2.longValue());
+            }
+            return Double.compare(number1.doubleValue(), number2.doubleValue());
+        } else if (value1 instanceof Boolean) {
+            return Boolean.compare((Boolean) value1, (Boolean) value2);
+        }
+        return value1.toString().compareTo(value2.toString());
+    }
+
+    protected int getTypeOrder(Object value) {
+        if (value instanceof Number) {
+            return 0;
+        } else if (value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof String) {
+            return 2;
+        }
+        return 3;
+    }
+
+    protected boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short ||
+               number instanceof Byte;
+    }
+
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.json.JsonReader;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.apache.commons.collections4.CollectionUtils;
+import org.craftercms.search.opensearch.client.SearchResponseItem;
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.exception.TooManyNestedClausesSearchException;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.JsonpSerializable;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.ErrorCause;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch.core.MsearchResponse;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+import org.opensearch.client.opensearch.core.msearch.MultisearchBody;
+import org.opensearch.client.opensearch.core.msearch.MultisearchHeader;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.util.ApiTypeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes several search requests with a single {@code _msearch} call. Requests can be sent together with
+ * {@link #searchAll(List, Class)}, or one at a time with {@link #search(SearchRequest, Class)}: the first request
+ * waits for the batch window, collecting the requests with the same document class sent by other threads, and then
+ * executes all of them for the rest of the callers.
+ *
+ * <p>Only requests that don't use any of the URL parameters unsupported by {@code _msearch} can be batched, see
+ * {@link #isBatchable(SearchRequest)}. Requests with body properties not supported by {@code _msearch} are executed
+ * separately when the batch is sent.</p>
+ *
+ * @since 4.2.0
+ */
+public class SearchBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchBatcher.class);
+
+    public static final long DEFAULT_BATCH_WINDOW = 2;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+
+    /**
+     * The OpenSearch client
+     */
+    protected final OpenSearchClient client;
+
+    /**
+     * The time in milliseconds to wait for other requests before executing a batch
+     */
+    protected long batchWindow = DEFAULT_BATCH_WINDOW;
+
+    /**
+     * The max number of requests in a single {@code _msearch} call
+     */
+    protected int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * The batches collecting requests, by document class. Guarded by the map itself.
+     */
+    protected final Map<Class<?>, Batch> openBatches = new HashMap<>();
+
+    protected final LongAdder batches = new LongAdder();
+
+    protected final LongAdder batchedSearches = new LongAdder();
+
+    public SearchBatcher(OpenSearchClient client) {
+        this.client = client;
+    }
+
+    public void setBatchWindow(long batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the number of {@code _msearch} calls executed
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of requests executed as part of a {@code _msearch} call
+     */
+    public long getBatchedSearches() {
+        return batchedSearches.sum();
+    }
+
+    /**
+     * Indicates if the given request can be executed with {@code _msearch}, that only supports some of the URL
+     * parameters of a search
+     */
+    public static boolean isBatchable(SearchRequest request) {
+        return request.scroll() == null && request.q() == null && request.df() == null &&
+               request.analyzer() == null && request.analyzeWildcard() == null && request.defaultOperator() == null &&
+               request.lenient() == null && request.allowPartialSearchResults() == null &&
+               request.batchedReduceSize() == null && request.ccsMinimizeRoundtrips() == null &&
+               request.ignoreThrottled() == null && request.maxConcurrentShardRequests() == null &&
+               request.minCompatibleShardNode() == null && request.preFilterShardSize() == null;
+    }
+
+    /**
+     * Executes the given request in the next batch for the same document class
+     *
+     * @param request the request, that should be batchable
+     * @param documentClass the class of the documents
+     * @return the response of the request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> SearchResponse<T> search(SearchRequest request, Class<T> documentClass) throws OpenSearchException {
+        PendingSearch search = new PendingSearch(request);
+        Batch batch;
+        boolean leader = false;
+
+        synchronized (openBatches) {
+            batch = openBatches.get(documentClass);
+            if (batch == null) {
+                batch = new Batch();
+                openBatches.put(documentClass, batch);
+                leader = true;
+            }
+            batch.searches.add(search);
+            if (batch.searches.size() >= maxBatchSize) {
+                close(documentClass, batch);
+            }
+        }
+
+        if (leader) {
+            try {
+                awaitWindow(documentClass, batch);
+                execute(batch.searches, documentClass);
+            } finally {
+                // Never leave the other callers waiting, even after an unexpected error
+                batch.searches.stream()
+                              .filter(pending -> !pending.future.isDone())
+                              .forEach(pending -> pending.future.complete(new SearchResponseItem<T>(
+                                      new OpenSearchException(null, "Batched search not executed"))));
+            }
+        }
+
+        try {
+            return (SearchResponse<T>) search.future.get().getResponse();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenSearchException(null, "Interrupted while waiting for a batched search", e);
+        } catch (ExecutionException e) {
+            throw new OpenSearchException(null, "Error executing batched search", e.getCause());
+        }
+    }
+
+    /**
+     * Executes all the given requests, with as few {@code _msearch} calls as possible
+     *
+     * @param requests the requests, that should be batchable
+     * @param documentClass the class of the documents
+     * @return the result of each request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<SearchResponseItem<T>> searchAll(List<SearchRequest> requests, Class<T> documentClass) {
+        List<PendingSearch> searches = new ArrayList<>(requests.size());
+        for (SearchRequest request : requests) {
+            searches.add(new PendingSearch(request));
+        }
+        for (int from = 0; from < searches.size(); from += maxBatchSize) {
+            execute(searches.subList(from, Math.min(searches.size(), from + maxBatchSize)), documentClass);
+        }
+
+        List<SearchResponseItem<T>> items = new ArrayList<>(searches.size());
+        for (PendingSearch search : searches) {
+            items.add((SearchResponseItem<T>) search.future.join());
+        }
+        return items;
+    }
+
+    protected void awaitWindow(Class<?> documentClass, Batch batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindow);
+        synchronized (openBatches) {
+            try {
+                long remaining;
+                while (!batch.closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(openBatches, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close(documentClass, batch);
+            }
+        }
+    }
+
+    protected void close(Class<?> documentClass, Batch batch) {
+        if (!batch.closed) {
+            batch.closed = true;
+            openBatches.remove(documentClass, batch);
+            openBatches.notifyAll();
+        }
+    }
+
+    /**
+     * Executes the given searches with a single {@code _msearch} call, completing each one with its result. The
+     * searches that can't be converted to an {@code _msearch} item are executed separately.
+     */
+    protected <T> void execute(List<PendingSearch> searches, Class<T> documentClass) {
+        List<PendingSearch> sentSearches = new ArrayList<>(searches.size());
+        List<RequestItem> items = new ArrayList<>(searches.size());
+        JsonpMapper mapper = client._transport().jsonpMapper();
+
+        for (PendingSearch search : searches) {
+            try {
+                items.add(toRequestItem(search.request, mapper));
+                sentSearches.add(search);
+            } catch (RuntimeException e) {
+                logger.debug("Request can't be sent with _msearch, executing it separately", e);
+                try {
+                    search.future.complete(new SearchResponseItem<>(client.search(search.request, documentClass)));
+                } catch (IOException | RuntimeException ex) {
+                    search.future.complete(new SearchResponseItem<T>(toOpenSearchException(ex)));
+                }
+            }
+        }
+
+        if (sentSearches.isEmpty()) {
+            return;
+        }
+
+        logger.debug("Executing _msearch with {} requests", items.size());
+        try {
+            MsearchResponse<T> response = client.msearch(m -> m.searches(items), documentClass);
+            batches.increment();
+            batchedSearches.add(sentSearches.size());
+
+            List<MultiSearchResponseItem<T>> responses = response.responses();
+            for (int i = 0; i < sentSearches.size(); i++) {
+                CompletableFuture<SearchResponseItem<?>> future = sentSearches.get(i).future;
+                if (i >= responses.size()) {
+                    future.complete(new SearchResponseItem<T>(
+                            new OpenSearchException(null, "Missing response in _msearch")));
+                } else if (responses.get(i).isFailure()) {
+                    future.complete(new SearchResponseItem<T>(getError(responses.get(i).failure())));
+                } else {
+                    future.complete(new SearchResponseItem<>(responses.get(i).result()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            OpenSearchException error = toOpenSearchException(e);
+            sentSearches.forEach(search -> search.future.complete(new SearchResponseItem<T>(error)));
+        }
+    }
+
+    /**
+     * Converts the request to an {@code _msearch} item. The body is copied through its JSON, and the request is
+     * rejected if any of its properties is not supported by {@code _msearch} bodies, so it's executed separately
+     * instead of being sent without them.
+     *
+     * @throws IllegalArgumentException if the body of the request has properties not supported by {@code _msearch}
+     */
+    protected RequestItem toRequestItem(SearchRequest request, JsonpMapper mapper) {
+        MultisearchHeader.Builder header = new MultisearchHeader.Builder()
+                .allowNoIndices(request.allowNoIndices())
+                .ignoreUnavailable(request.ignoreUnavailable())
+                .preference(request.preference())
+                .requestCache(request.requestCache())
+                .routing(request.routing())
+                .searchType(request.searchType());
+        if (ApiTypeHelper.isDefined(request.index())) {
+            header.index(request.index());
+        }
+        if (ApiTypeHelper.isDefined(request.expandWildcards())) {
+            header.expandWildcards(request.expandWildcards());
+        }
+
+        byte[] json = toJson(request, mapper);
+        MultisearchBody body;
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(json))) {
+            body = MultisearchBody._DESERIALIZER.deserialize(parser, mapper);
+        }
+
+        // Unknown properties are silently ignored by the deserializer
+        Set<String> unsupportedProperties = getPropertyNames(json, mapper);
+        unsupportedProperties.removeAll(getPropertyNames(toJson(body, mapper), mapper));
+        if (!unsupportedProperties.isEmpty()) {
+            throw new IllegalArgumentException("Properties " + unsupportedProperties + " are not supported by " +
+                                               "_msearch");
+        }
+
+        return RequestItem.of(i -> i.header(header.build()).body(body));
+    }
+
+    protected byte[] toJson(JsonpSerializable value, JsonpMapper mapper) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(output)) {
+            value.serialize(generator, mapper);
+        }
+        return output.toByteArray();
+    }
+
+    protected Set<String> getPropertyNames(byte[] json, JsonpMapper mapper) {
+        try (JsonReader reader = mapper.jsonProvider().createReader(new ByteArrayInputStream(json))) {
+            return new HashSet<>(reader.readObject().keySet());
+        }
+    }
+
+    protected OpenSearchException toOpenSearchException(Exception e) {
+        if (e instanceof OpenSearchException) {
+            return (OpenSearchException) e;
+        }
+        return new OpenSearchException(null, "Error executing search", e);
+    }
+
+    /**
+     * Returns the exception for a failed {@code _msearch} item. The client exception for the item is kept as the
+     * cause, so its status and error type can be used to detect rejections and cluster failures.
+     */
+    protected OpenSearchException getError(ErrorResponse errorResponse) {
+        ErrorCause error = errorResponse.error();
+        String type = error.type();
+        if (CollectionUtils.isNotEmpty(error.rootCause())) {
+            type = error.rootCause().get(0).type();
+        }
+
+        String message = String.format("Error executing search [status=%s, type=%s]: %s", errorResponse.status(),
+                                       error.type(), error.reason());
+        var cause = new org.opensearch.client.opensearch._types.OpenSearchException(errorResponse);
+        if (AbstractOpenSearchClientWrapper.TOO_MANY_NESTED_CLAUSES_ERROR.equalsIgnoreCase(type)) {
+            return new TooManyNestedClausesSearchException(null, message, cause);
+        }
+        return new OpenSearchException(null, message, cause);
+    }
+
+    /**
+     * A request waiting for its result
+     */
+    protected static class PendingSearch {
+
+        protected final SearchRequest request;
+
+        protected final CompletableFuture<SearchResponseItem<?>> future = new CompletableFuture<>();
+
+        protected PendingSearch(SearchRequest request) {
+            this.request = request;
+        }
+
+    }
+
+    /**
+     * The requests collected for a single {@code _msearch} call
+     */
+    protected static class Batch {
+
+        protected final List<PendingSearch> searches = new ArrayList<>();
+
+        protected boolean closed;
+
+    }
+
+}
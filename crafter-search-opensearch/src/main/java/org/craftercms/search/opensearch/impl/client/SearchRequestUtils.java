@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import jakarta.json.stream.JsonGenerator;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.opensearch.core.SearchRequest;
+
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.collections4.MapUtils.isNotEmpty;
+import static org.craftercms.search.opensearch.impl.client.AbstractOpenSearchClientWrapper.PARAM_NAME_INDEX;
+
+/**
+ * Utility methods to identify search requests
+ *
+ * @since 4.2.0
+ */
+public abstract class SearchRequestUtils {
+
+    /**
+     * Returns the indices that will be searched, using the same rules as {@link AbstractOpenSearchClientWrapper}
+     *
+     * @param request the search request
+     * @param parameters the additional parameters
+     * @return the names of the indices, empty for all indices
+     */
+    public static List<String> getIndices(SearchRequest request, Map<String, Object> parameters) {
+        if (isNotEmpty(parameters) && parameters.containsKey(PARAM_NAME_INDEX)) {
+            return Stream.of(parameters.get(PARAM_NAME_INDEX).toString().split(",")).collect(toList());
+        }
+        return request.index();
+    }
+
+    /**
+     * Builds a key that is the same for equivalent requests: the JSON of the body plus all the properties sent in the
+     * URL, the additional parameters and the document class. Scroll requests are not supported.
+     *
+     * @param request the search request
+     * @param documentClass the class of the documents
+     * @param parameters the additional parameters
+     * @param mapper the mapper used to serialize the body
+     * @return the key
+     */
+    public static String getKey(SearchRequest request, Class<?> documentClass, Map<String, Object> parameters,
+                                JsonpMapper mapper) {
+        StringWriter writer = new StringWriter();
+        writer.append(documentClass.getName()).append('|')
+              .append(String.valueOf(isNotEmpty(parameters) ? new TreeMap<>(parameters) : null)).append('|');
+
+        // All the properties sent in the URL, including the null ones so each value keeps its position
+        for (Object value : Arrays.asList(request.index(), request.routing(), request.preference(),
+                                          request.searchType(), request.ignoreUnavailable(),
+                                          request.allowNoIndices(), request.expandWildcards(), request.q(),
+                                          request.df(), request.analyzer(), request.analyzeWildcard(),
+                                          request.defaultOperator(), request.lenient(), request.requestCache(),
+                                          request.allowPartialSearchResults(), request.batchedReduceSize(),
+                                          request.ccsMinimizeRoundtrips(), request.ignoreThrottled(),
+                                          request.maxConcurrentShardRequests(), request.minCompatibleShardNode(),
+                                          request.preFilterShardSize(), request.timeout(),
+                                          request.terminateAfter())) {
+            writer.append(String.valueOf(value)).append('|');
+        }
+
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(writer)) {
+            request.serialize(generator, mapper);
+        }
+
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache for serialized search responses. Entries are evicted in LRU order when the max number of
+ * entries or the max weight (an estimate of the memory used by the keys and the responses) is exceeded, and expire
+ * after a fixed time to live. Each entry keeps the generation of the searched indices at the time of the search, so
+ * entries become stale as soon as any of those indices is written to.
+ *
+ * @since 4.2.0
+ */
+public class SearchResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    public static final long DEFAULT_MAX_WEIGHT = 64 * 1024 * 1024;
+
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(1);
+
+    public static final long DEFAULT_STALE_TIME_TO_LIVE = 0;
+
+    /**
+     * Estimate of the memory used by each entry besides the key and the response
+     */
+    protected static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * The max number of entries
+     */
+    protected int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /**
+     * The max weight of all the entries in bytes
+     */
+    protected long maxWeight = DEFAULT_MAX_WEIGHT;
+
+    /**
+     * The time to live of each entry in milliseconds
+     */
+    protected long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    /**
+     * The time in milliseconds that entries are kept after they expire or their indices change, to be returned by
+     * {@link #getStale(String)} when the cluster can't be used
+     */
+    protected long staleTimeToLive = DEFAULT_STALE_TIME_TO_LIVE;
+
+    /**
+     * The entries in access order
+     */
+    protected final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    protected long weight;
+
+    protected final LongAdder hits = new LongAdder();
+
+    protected final LongAdder misses = new LongAdder();
+
+    protected final LongAdder evictions = new LongAdder();
+
+    protected final LongAdder staleHits = new LongAdder();
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public void setStaleTimeToLive(long staleTimeToLive) {
+        this.staleTimeToLive = staleTimeToLive;
+    }
+
+    /**
+     * Returns the cached response for the given key
+     *
+     * @param key the key of the request
+     * @param generation the current generation of the searched indices
+     * @return the serialized response, or null if there is no valid entry
+     */
+    public byte[] get(String key, long generation) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                long now = System.currentTimeMillis();
+                if (entry.generation == generation && entry.expiresAt > now) {
+                    hits.increment();
+                    return entry.response;
+                }
+                if (entry.expiresAt + staleTimeToLive <= now || staleTimeToLive <= 0) {
+                    remove(key, entry);
+                }
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the cached response for the given key even if it's expired or its indices changed, as long as it's
+     * still under the stale time to live. Should only be used when the search can't be executed.
+     *
+     * @param key the key of the request
+     * @return the serialized response, or null if there is no entry
+     */
+    public byte[] getStale(String key) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && entry.expiresAt + staleTimeToLive > System.currentTimeMillis()) {
+                staleHits.increment();
+                return entry.response;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a response to the cache, evicting the least recently used entries if needed
+     *
+     * @param key the key of the request
+     * @param generation the generation of the searched indices before the search was executed
+     * @param response the serialized response
+     */
+    public void put(String key, long generation, byte[] response) {
+        CacheEntry entry = new CacheEntry(generation, System.currentTimeMillis() + timeToLive, response,
+                                          getWeight(key, response));
+        if (entry.weight > maxWeight) {
+            return;
+        }
+
+        synchronized (entries) {
+            CacheEntry previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (iterator.hasNext() && (entries.size() > maxEntries || weight > maxWeight)) {
+                CacheEntry eldest = iterator.next();
+                iterator.remove();
+                weight -= eldest.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the estimated memory used by the entries in bytes
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of stale responses returned
+     */
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    /**
+     * Returns the ratio of requests that were found in the cache
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long requests = hits + getMisses();
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    /**
+     * Returns the statistics of the cache, for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", getSize());
+        stats.put("weight", getWeight());
+        stats.put("hits", getHits());
+        stats.put("misses", getMisses());
+        stats.put("evictions", getEvictions());
+        stats.put("staleHits", getStaleHits());
+        stats.put("hitRate", getHitRate());
+        return stats;
+    }
+
+    protected void remove(String key, CacheEntry entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+
+    protected long getWeight(String key, byte[] response) {
+        return ENTRY_OVERHEAD + 2L * key.length() + response.length;
+    }
+
+    protected static class CacheEntry {
+
+        protected final long generation;
+
+        protected final long expiresAt;
+
+        protected final byte[] response;
+
+        protected final long weight;
+
+        protected CacheEntry(long generation, long expiresAt, byte[] response, long weight) {
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+            this.response = response;
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.jackson;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Map used to build the documents to index, that can hold a single value or a list for a given key, just like
+ * {@link MixedMultivaluedMap} but designed for the indexing path:
+ * <ul>
+ *     <li>The entries are kept in insertion order in two arrays, indexed by an open addressing hash table</li>
+ *     <li>Putting a key that already exists appends the value to a {@link Values} list backed by an array, the
+ *     existing values are never copied</li>
+ *     <li>It's serialized directly by {@link CompactMultivaluedMapSerializer}</li>
+ * </ul>
+ * Removing entries is supported but costs O(n), since documents are usually only added to.
+ *
+ * <p>Not thread safe.</p>
+ *
+ * @since 4.2.0
+ */
+@JsonSerialize(using = CompactMultivaluedMapSerializer.class)
+public class CompactMultivaluedMap extends AbstractMap<String, Object> {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    private String[] keys;
+
+    private Object[] values;
+
+    /**
+     * Open addressing table with the position of each entry plus one, 0 means the slot is empty
+     */
+    private int[] table;
+
+    private int size;
+
+    private int modCount;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    public CompactMultivaluedMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public CompactMultivaluedMap(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 2);
+        keys = new String[capacity];
+        values = new Object[capacity];
+        table = new int[tableSizeFor(capacity)];
+    }
+
+    /**
+     * Returns the key of the entry at the given position, in insertion order
+     */
+    public String keyAt(int position) {
+        Objects.checkIndex(position, size);
+        return keys[position];
+    }
+
+    /**
+     * Returns the value of the entry at the given position, in insertion order
+     */
+    public Object valueAt(int position) {
+        Objects.checkIndex(position, size);
+        return values[position];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && find((String) key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        int position = find((String) key);
+        return position >= 0 ? values[position] : null;
+    }
+
+    /**
+     * Adds the value for the given key. If the key already has a value, the new value is appended to the existing
+     * ones instead of replacing them.
+     *
+     * @return the previous value, which is the same instance that now includes the new value if the key already had
+     * several values
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object put(String key, Object value) {
+        Objects.requireNonNull(key, "Document field names can't be null");
+
+        // This is needed because of the way Jackson parses XML elements with attributes.
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            if (map.containsKey(StringUtils.EMPTY)) {
+                value = map.get(StringUtils.EMPTY);
+            }
+        }
+
+        int position = find(key);
+        if (position < 0) {
+            append(key, value);
+            return null;
+        }
+
+        Object currentValue = values[position];
+        if (currentValue instanceof Values) {
+            ((Values) currentValue).add(value);
+        } else if (currentValue instanceof List) {
+            // Lists from other sources are copied only once, so they are never modified
+            Values newValues = new Values((List<Object>) currentValue);
+            newValues.add(value);
+            values[position] = newValues;
+        } else {
+            values[position] = new Values(currentValue, value);
+        }
+
+        return currentValue;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        int position = find((String) key);
+        if (position < 0) {
+            return null;
+        }
+
+        Object value = values[position];
+        removeAt(position);
+
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private int find(String key) {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int position = table[slot] - 1;
+            if (key.equals(keys[position])) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    private void append(String key, Object value) {
+        if (size == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            table = new int[tableSizeFor(capacity)];
+            for (int i = 0; i < size; i++) {
+                index(i);
+            }
+        }
+
+        keys[size] = key;
+        values[size] = value;
+        index(size);
+        size++;
+        modCount++;
+    }
+
+    private void index(int position) {
+        int mask = table.length - 1;
+        int slot = hash(keys[position]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position + 1;
+    }
+
+    private void removeAt(int position) {
+        int moved = size - position - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, position + 1, keys, position, moved);
+            System.arraycopy(values, position + 1, values, position, moved);
+        }
+
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+
+        // Positions after the removed entry changed, so the whole table needs to be rebuilt
+        Arrays.fill(table, 0);
+        for (int i = 0; i < size; i++) {
+            index(i);
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns a power of two table size that keeps the load factor under 0.5
+     */
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next;
+
+        private int last = -1;
+
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+
+            last = next++;
+
+            return new MapEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+    }
+
+    private class MapEntry implements Entry<String, Object> {
+
+        private final int position;
+
+        private MapEntry(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public String getKey() {
+            return keys[position];
+        }
+
+        @Override
+        public Object getValue() {
+            return values[position];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object oldValue = values[position];
+            values[position] = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return Objects.equals(getKey(), entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+
+    }
+
+    /**
+     * The values of a multivalued field, backed by an array that starts small
+     */
+    public static final class Values extends AbstractList<Object> implements RandomAccess {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private Object[] items;
+
+        private int size;
+
+        public Values(Object first, Object second) {
+            items = new Object[INITIAL_CAPACITY];
+            items[0] = first;
+            items[1] = second;
+            size = 2;
+        }
+
+        public Values(Collection<?> values) {
+            items = values.toArray(new Object[Math.max(values.size() + 1, INITIAL_CAPACITY)]);
+            size = values.size();
+        }
+
+        @Override
+        public Object get(int index) {
+            Objects.checkIndex(index, size);
+            return items[index];
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            Objects.checkIndex(index, size);
+            Object oldValue = items[index];
+            items[index] = element;
+            return oldValue;
+        }
+
+        @Override
+        public boolean add(Object value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+            modCount++;
+            return true;
+        }
+
+        @Override
+        public Object remove(int index) {
+            Objects.checkIndex(index, size);
+            Object oldValue = items[index];
+            System.arraycopy(items, index + 1, items, index, size - index - 1);
+            items[--size] = null;
+            modCount++;
+            return oldValue;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Serializer for {@link CompactMultivaluedMap} that writes the entries in insertion order, without the lookups and
+ * iterators used by the generic map serializer. Strings and multiple values are written directly, any other value
+ * is delegated to the provider.
+ *
+ * @since 4.2.0
+ */
+public class CompactMultivaluedMapSerializer extends StdSerializer<CompactMultivaluedMap> {
+
+    public CompactMultivaluedMapSerializer() {
+        super(CompactMultivaluedMap.class);
+    }
+
+    @Override
+    public boolean isEmpty(SerializerProvider provider, CompactMultivaluedMap value) {
+        return value.isEmpty();
+    }
+
+    @Override
+    public void serialize(CompactMultivaluedMap map, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        generator.writeStartObject(map);
+        for (int i = 0; i < map.size(); i++) {
+            generator.writeFieldName(map.keyAt(i));
+            writeValue(map.valueAt(i), generator, provider);
+        }
+        generator.writeEndObject();
+    }
+
+    protected void writeValue(Object value, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof CompactMultivaluedMap.Values) {
+            CompactMultivaluedMap.Values values = (CompactMultivaluedMap.Values) value;
+            generator.writeStartArray(values, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                writeValue(values.get(i), generator, provider);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof CompactMultivaluedMap) {
+            serialize((CompactMultivaluedMap) value, generator, provider);
+        } else {
+            provider.defaultSerializeValue(value, generator);
+        }
+    }
+
+}
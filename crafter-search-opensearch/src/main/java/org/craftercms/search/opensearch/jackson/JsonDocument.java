@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.jackson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A document already serialized as UTF-8 JSON. When it's serialized by Jackson (for example by the
+ * {@code JacksonJsonpMapper} of the OpenSearch client) the bytes are copied unchanged to the output, so a document
+ * can be sent several times (retries, multiple clusters) while being serialized only once.
+ *
+ * @since 4.2.0
+ */
+@JsonSerialize(using = JsonDocumentSerializer.class)
+public class JsonDocument implements SerializableString {
+
+    private final byte[] bytes;
+
+    /**
+     * The JSON as a string, only needed for char based outputs
+     */
+    private String value;
+
+    public JsonDocument(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the size of the document in bytes
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public String getValue() {
+        if (value == null) {
+            value = new String(bytes, UTF_8);
+        }
+        return value;
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return JsonStringEncoder.getInstance().quoteAsString(getValue());
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return bytes;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return append(asQuotedUTF8(), buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        return append(asQuotedChars(), buffer, offset);
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        return append(bytes, buffer, offset);
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        String value = getValue();
+        int length = value.length();
+        if (offset + length > buffer.length) {
+            return -1;
+        }
+
+        value.getChars(0, length, buffer, offset);
+
+        return length;
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        byte[] quoted = asQuotedUTF8();
+        out.write(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+        return put(asQuotedUTF8(), buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) {
+        return put(bytes, buffer);
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+
+    private static int append(byte[] source, byte[] buffer, int offset) {
+        if (offset + source.length > buffer.length) {
+            return -1;
+        }
+
+        System.arraycopy(source, 0, buffer, offset, source.length);
+
+        return source.length;
+    }
+
+    private static int append(char[] source, char[] buffer, int offset) {
+        if (offset + source.length > buffer.length) {
+            return -1;
+        }
+
+        System.arraycopy(source, 0, buffer, offset, source.length);
+
+        return source.length;
+    }
+
+    private static int put(byte[] source, ByteBuffer buffer) {
+        if (source.length > buffer.remaining()) {
+            return -1;
+        }
+
+        buffer.put(source);
+
+        return source.length;
+    }
+
+}
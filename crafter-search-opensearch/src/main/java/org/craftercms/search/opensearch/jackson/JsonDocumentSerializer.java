@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Serializer for {@link JsonDocument} that writes its bytes as a raw value.
+ *
+ * @since 4.2.0
+ */
+public class JsonDocumentSerializer extends StdSerializer<JsonDocument> {
+
+    public JsonDocumentSerializer() {
+        super(JsonDocument.class);
+    }
+
+    @Override
+    public void serialize(JsonDocument document, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        generator.writeRawValue(document);
+    }
+
+}
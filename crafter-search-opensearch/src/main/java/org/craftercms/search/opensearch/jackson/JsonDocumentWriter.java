@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.jackson;
+
+import java.beans.ConstructorProperties;
+import java.io.IOException;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serializes documents to {@link JsonDocument}s. Each thread writes to its own buffer, which is reused for all the
+ * documents so only the final array is allocated.
+ *
+ * @since 4.2.0
+ */
+public class JsonDocumentWriter {
+
+    /**
+     * The object mapper used to write the documents, should have the same configuration as the one used by the client
+     */
+    protected final ObjectMapper objectMapper;
+
+    protected final ThreadLocal<ByteArrayBuilder> buffers = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    @ConstructorProperties({"objectMapper"})
+    public JsonDocumentWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serializes the given document.
+     *
+     * @param doc the document
+     * @return the serialized document
+     * @throws IOException if the document can't be serialized
+     */
+    public JsonDocument write(Map<String, Object> doc) throws IOException {
+        ByteArrayBuilder buffer = buffers.get();
+        buffer.reset();
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            objectMapper.writeValue(generator, doc);
+        }
+
+        return new JsonDocument(buffer.toByteArray());
+    }
+
+}
@@ -16,8 +16,8 @@
 
 package org.craftercms.search.opensearch.jackson;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -27,7 +27,9 @@ import org.apache.commons.lang3.StringUtils;
  * Implementation of {@link Map} that can hold a single value or a list for a given key.
  *
  * @author joseross
+ * @deprecated use {@link CompactMultivaluedMap} instead
  */
+@Deprecated
 public class MixedMultivaluedMap extends HashMap<String, Object> {
 
     @Override
@@ -47,11 +49,11 @@ public class MixedMultivaluedMap extends HashMap<String, Object> {
         }
         Object currentValue = get(key);
         if (currentValue instanceof List) {
-            List<Object> original = new LinkedList<>((List<Object>) currentValue);
+            // The list is not copied, copying it on every put made adding n values O(n^2)
             ((List) currentValue).add(value);
-            return original;
+            return currentValue;
         }
-        List<Object> list = new LinkedList<>();
+        List<Object> list = new ArrayList<>();
         list.add(currentValue);
         list.add(value);
         return super.put(key, list);
@@ -17,43 +17,22 @@ package org.craftercms.search.opensearch.spring;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.ssl.DefaultHostnameVerifier;
-import org.apache.http.conn.util.PublicSuffixMatcher;
-import org.apache.http.conn.util.PublicSuffixMatcherLoader;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
-import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import org.apache.http.impl.nio.reactor.IOReactorConfig;
-import org.apache.http.nio.conn.NoopIOSessionStrategy;
-import org.apache.http.nio.conn.SchemeIOSessionStrategy;
-import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.nio.reactor.IOReactorException;
-import org.apache.http.nio.reactor.IOReactorExceptionHandler;
-import org.apache.http.ssl.SSLContexts;
+import org.craftercms.search.opensearch.impl.client.LatencyAwareNodeSelector;
 import org.opensearch.client.RestClient;
-import org.opensearch.client.RestClientBuilder;
 import org.opensearch.client.json.jackson.JacksonJsonpMapper;
 import org.opensearch.client.opensearch.OpenSearchClient;
-import org.opensearch.client.transport.OpenSearchTransport;
 import org.opensearch.client.transport.rest_client.RestClientTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.AbstractFactoryBean;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLContext;
 import java.beans.ConstructorProperties;
-import java.io.IOException;
-import java.util.stream.Stream;
 
 /**
- * Implementation of {@link AbstractFactoryBean} to create instances of {@link OpenSearchClient}
+ * Implementation of {@link AbstractFactoryBean} to create instances of {@link OpenSearchClient}. The client can have
+ * its own connections or use a {@link RestClient} shared with other clients, see {@link RestClientFactory}
  * @author joseross
  * @since 4.0.0
  */
@@ -96,9 +75,26 @@ public class OpenSearchClientFactory extends AbstractFactoryBean<OpenSearchClien
      */
     protected boolean socketKeepAlive = false;
 
+    /**
+     * The selector used to route the requests based on the latency of the nodes, optional
+     */
+    protected LatencyAwareNodeSelector nodeSelector;
+
+    /**
+     * The low level client shared with other clients, if set all the connection properties are ignored
+     */
+    protected final RestClient restClient;
+
     @ConstructorProperties({"serverUrls"})
     public OpenSearchClientFactory(final String[] serverUrls) {
         this.serverUrls = serverUrls;
+        this.restClient = null;
+    }
+
+    @ConstructorProperties({"restClient"})
+    public OpenSearchClientFactory(final RestClient restClient) {
+        this.serverUrls = null;
+        this.restClient = restClient;
     }
 
     public void setUsername(final String username) {
@@ -125,117 +121,49 @@ public class OpenSearchClientFactory extends AbstractFactoryBean<OpenSearchClien
         this.socketKeepAlive = socketKeepAlive;
     }
 
+    public void setNodeSelector(LatencyAwareNodeSelector nodeSelector) {
+        this.nodeSelector = nodeSelector;
+    }
+
+    /**
+     * @deprecated use {@link RestClientFactory#createConnectionManager(int, int, int, boolean)}
+     */
+    @Deprecated
     public static PoolingNHttpClientConnectionManager createConnectionManager(int connectionTimeout, int socketTimeout,
                                                                               int threadCount, boolean socketKeepAlive)
             throws IOReactorException {
-        // Setup with everything just as the builder would do it
-        SSLContext sslcontext = SSLContexts.createDefault();
-        PublicSuffixMatcher publicSuffixMatcher = PublicSuffixMatcherLoader.getDefault();
-        HostnameVerifier hostnameVerifier = new DefaultHostnameVerifier(publicSuffixMatcher);
-        SchemeIOSessionStrategy sslStrategy = new SSLIOSessionStrategy(sslcontext, null, null, hostnameVerifier);
-
-        // Create the custom reactor
-        IOReactorConfig.Builder configBuilder = IOReactorConfig.custom();
-
-        if (threadCount > 0) {
-            logger.debug("Using custom thread count: {}", threadCount);
-            configBuilder.setIoThreadCount(threadCount);
-        } else {
-            logger.debug("Using default thread count");
-        }
-
-        if (connectionTimeout >= 0) {
-            logger.debug("Using custom connect timeout: {}", connectionTimeout);
-            configBuilder.setConnectTimeout(connectionTimeout);
-        } else {
-            logger.debug("Using default connect timeout");
-        }
-
-        if (socketTimeout >= 0) {
-            logger.debug("Using custom socket timeout: {}", socketTimeout);
-            configBuilder.setSoTimeout(socketTimeout);
-        } else {
-            logger.debug("Using default socket timeout");
-        }
-
-        if (socketKeepAlive) {
-            logger.debug("Using socket keep alive");
-            configBuilder.setSoKeepAlive(true);
-        }
-
-        DefaultConnectingIOReactor reactor = new DefaultConnectingIOReactor(configBuilder.build());
-
-        // Set up a generic exception handler that just logs everything to prevent the client from shutting down
-        reactor.setExceptionHandler(new IOReactorExceptionHandler() {
-            @Override
-            public boolean handle(IOException e) {
-                logger.error("Error executing request", e);
-                return true;
-            }
-
-            @Override
-            public boolean handle(RuntimeException e) {
-                logger.error("Error executing request", e);
-                return true;
-            }
-        });
-
-        return new PoolingNHttpClientConnectionManager(
-                reactor,
-                RegistryBuilder.<SchemeIOSessionStrategy>create()
-                        .register("http", NoopIOSessionStrategy.INSTANCE)
-                        .register("https", sslStrategy)
-                        .build());
+        return RestClientFactory.createConnectionManager(connectionTimeout, socketTimeout, threadCount,
+                                                         socketKeepAlive);
     }
 
     public static OpenSearchClient createClient(String[] serverUrls, String username, String password,
                                                    int connectTimeout, int socketTimeout, int threadCount,
                                                    boolean socketKeepAlive) {
-        logger.debug("Building client for urls: {}", (Object) serverUrls);
-        HttpHost[] hosts = Stream.of(serverUrls).map(HttpHost::create).toArray(HttpHost[]::new);
-        RestClientBuilder clientBuilder = RestClient.builder(hosts);
-        RestClientBuilder.RequestConfigCallback requestConfigCallback = builder -> {
-            if (connectTimeout >= 0) {
-                logger.debug("Using custom connect timeout: {}", connectTimeout);
-                builder.setConnectTimeout(connectTimeout);
-            } else {
-                logger.debug("Using default connect timeout");
-            }
-            if (socketTimeout >= 0) {
-                logger.debug("Using custom socket timeout: {}", socketTimeout);
-                builder.setSocketTimeout(socketTimeout);
-            } else {
-                logger.debug("Using default socket timeout");
-            }
-            return builder;
-        };
-        RestClientBuilder.HttpClientConfigCallback httpClientConfigCallback = builder -> {
-            if (StringUtils.isNoneEmpty(username, password)) {
-                logger.debug("Using basic auth with user: {}", username);
-                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-                credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-                builder.setDefaultCredentialsProvider(credentialsProvider);
-            } else {
-                logger.debug("No credentials provided");
-            }
+        return createClient(serverUrls, username, password, connectTimeout, socketTimeout, threadCount,
+                            socketKeepAlive, null);
+    }
 
-            try {
-                builder.setConnectionManager(
-                        createConnectionManager(connectTimeout, socketTimeout, threadCount, socketKeepAlive));
-            } catch (IOReactorException e) {
-                logger.warn("Error setting up custom exception handler", e);
-            }
+    public static OpenSearchClient createClient(String[] serverUrls, String username, String password,
+                                                int connectTimeout, int socketTimeout, int threadCount,
+                                                boolean socketKeepAlive, LatencyAwareNodeSelector nodeSelector) {
+        RestClient restClient = RestClientFactory.createClientBuilder(serverUrls, username, password, connectTimeout,
+                                                                      socketTimeout, threadCount, socketKeepAlive,
+                                                                      -1, -1, nodeSelector).build();
+        return new OpenSearchClient(new RestClientTransport(restClient, createJsonpMapper()));
+    }
 
-            return builder;
-        };
-        clientBuilder.setRequestConfigCallback(requestConfigCallback);
-        clientBuilder.setHttpClientConfigCallback(httpClientConfigCallback);
+    /**
+     * Creates a client that uses the given low level client, which is not closed when the client is closed
+     */
+    public static OpenSearchClient createClient(RestClient restClient) {
+        return new OpenSearchClient(new SharedRestClientTransport(restClient, createJsonpMapper()));
+    }
+
+    protected static JacksonJsonpMapper createJsonpMapper() {
         ObjectMapper mapper = new ObjectMapper()
                 .findAndRegisterModules()
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        OpenSearchTransport transport = new RestClientTransport(clientBuilder.build(),
-                                                                    new JacksonJsonpMapper(mapper));
-        return new OpenSearchClient(transport);
+        return new JacksonJsonpMapper(mapper);
     }
 
     @Override
@@ -245,8 +173,25 @@ public class OpenSearchClientFactory extends AbstractFactoryBean<OpenSearchClien
 
     @Override
     protected OpenSearchClient createInstance() {
+        if (restClient != null) {
+            if (hasConnectionProperties()) {
+                logger.warn("Using shared low level client, the connection properties and node selector of the " +
+                            "factory are ignored");
+            } else {
+                logger.debug("Using shared low level client");
+            }
+            return createClient(restClient);
+        }
         return createClient(serverUrls, username, password, connectTimeout, socketTimeout, threadCount,
-                socketKeepAlive);
+                socketKeepAlive, nodeSelector);
+    }
+
+    /**
+     * Indicates if any of the connection properties has been set, which are ignored when using a shared client
+     */
+    protected boolean hasConnectionProperties() {
+        return username != null || password != null || connectTimeout >= 0 || socketTimeout >= 0 ||
+               threadCount > 0 || socketKeepAlive || nodeSelector != null;
     }
 
     @Override
@@ -254,4 +199,20 @@ public class OpenSearchClientFactory extends AbstractFactoryBean<OpenSearchClien
         instance._transport().close();
     }
 
+    /**
+     * Transport for a low level client shared with other clients, that is closed by its own factory
+     */
+    protected static class SharedRestClientTransport extends RestClientTransport {
+
+        public SharedRestClientTransport(RestClient restClient, JacksonJsonpMapper mapper) {
+            super(restClient, mapper);
+        }
+
+        @Override
+        public void close() {
+            // The low level client is closed by its own factory
+        }
+
+    }
+
 }
@@ -16,40 +16,20 @@
 
 package org.craftercms.search.opensearch.spring;
 
-import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.ssl.DefaultHostnameVerifier;
-import org.apache.http.conn.util.PublicSuffixMatcher;
-import org.apache.http.conn.util.PublicSuffixMatcherLoader;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
-import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import org.apache.http.impl.nio.reactor.IOReactorConfig;
-import org.apache.http.nio.conn.NoopIOSessionStrategy;
-import org.apache.http.nio.conn.SchemeIOSessionStrategy;
-import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.nio.reactor.IOReactorException;
-import org.apache.http.nio.reactor.IOReactorExceptionHandler;
-import org.apache.http.ssl.SSLContexts;
 import org.opensearch.client.RestClient;
-import org.opensearch.client.RestClientBuilder;
 import org.opensearch.client.RestHighLevelClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.AbstractFactoryBean;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLContext;
 import java.beans.ConstructorProperties;
-import java.io.IOException;
-import java.util.stream.Stream;
+import java.util.Collections;
 
 /**
- * Factory class for the OpenSearch rest client
+ * Factory class for the OpenSearch rest client. The client can have its own connections or use a {@link RestClient}
+ * shared with other clients, see {@link RestClientFactory}
  * @author joseross
  */
 public class RestHighLevelClientFactory extends AbstractFactoryBean<RestHighLevelClient> {
@@ -91,9 +71,21 @@ public class RestHighLevelClientFactory extends AbstractFactoryBean<RestHighLeve
      */
     protected boolean socketKeepAlive = false;
 
+    /**
+     * The low level client shared with other clients, if set all the connection properties are ignored
+     */
+    protected final RestClient restClient;
+
     @ConstructorProperties({"serverUrls"})
     public RestHighLevelClientFactory(final String[] serverUrls) {
         this.serverUrls = serverUrls;
+        this.restClient = null;
+    }
+
+    @ConstructorProperties({"restClient"})
+    public RestHighLevelClientFactory(final RestClient restClient) {
+        this.serverUrls = null;
+        this.restClient = restClient;
     }
 
     public void setUsername(final String username) {
@@ -120,120 +112,55 @@ public class RestHighLevelClientFactory extends AbstractFactoryBean<RestHighLeve
         this.socketKeepAlive = socketKeepAlive;
     }
 
+    /**
+     * @deprecated use {@link RestClientFactory#createConnectionManager(int, int, int, boolean)}
+     */
+    @Deprecated
     public static PoolingNHttpClientConnectionManager createConnectionManager(int connectionTimeout, int socketTimeout,
                                                                               int threadCount, boolean socketKeepAlive)
             throws IOReactorException {
-        // Setup with everything just as the builder would do it
-        SSLContext sslcontext = SSLContexts.createDefault();
-        PublicSuffixMatcher publicSuffixMatcher = PublicSuffixMatcherLoader.getDefault();
-        HostnameVerifier hostnameVerifier = new DefaultHostnameVerifier(publicSuffixMatcher);
-        SchemeIOSessionStrategy sslStrategy = new SSLIOSessionStrategy(sslcontext, null, null, hostnameVerifier);
-
-        // Create the custom reactor
-        IOReactorConfig.Builder configBuilder = IOReactorConfig.custom();
-
-        if (threadCount > 0) {
-            logger.debug("Using custom thread count: {}", threadCount);
-            configBuilder.setIoThreadCount(threadCount);
-        } else {
-            logger.debug("Using default thread count");
-        }
-
-        if (connectionTimeout >= 0) {
-            logger.debug("Using custom connect timeout: {}", connectionTimeout);
-            configBuilder.setConnectTimeout(connectionTimeout);
-        } else {
-            logger.debug("Using default connect timeout");
-        }
-
-        if (socketTimeout >= 0) {
-            logger.debug("Using custom socket timeout: {}", socketTimeout);
-            configBuilder.setSoTimeout(socketTimeout);
-        } else {
-            logger.debug("Using default socket timeout");
-        }
-
-        if (socketKeepAlive) {
-            logger.debug("Using socket keep alive");
-            configBuilder.setSoKeepAlive(true);
-        }
-
-        DefaultConnectingIOReactor reactor = new DefaultConnectingIOReactor(configBuilder.build());
-
-        // Set up a generic exception handler that just logs everything to prevent the client from shutting down
-        reactor.setExceptionHandler(new IOReactorExceptionHandler() {
-            @Override
-            public boolean handle(IOException e) {
-                logger.error("Error executing request", e);
-                return true;
-            }
-
-            @Override
-            public boolean handle(RuntimeException e) {
-                logger.error("Error executing request", e);
-                return true;
-            }
-        });
-
-        return new PoolingNHttpClientConnectionManager(
-                reactor,
-                RegistryBuilder.<SchemeIOSessionStrategy>create()
-                        .register("http", NoopIOSessionStrategy.INSTANCE)
-                        .register("https", sslStrategy)
-                        .build());
+        return RestClientFactory.createConnectionManager(connectionTimeout, socketTimeout, threadCount,
+                                                         socketKeepAlive);
     }
 
     public static RestHighLevelClient createClient(String[] serverUrls, String username, String password,
                                                    int connectTimeout, int socketTimeout, int threadCount,
                                                    boolean socketKeepAlive) {
-        logger.debug("Building client for urls: {}", (Object) serverUrls);
-        HttpHost[] hosts = Stream.of(serverUrls).map(HttpHost::create).toArray(HttpHost[]::new);
-        RestClientBuilder clientBuilder = RestClient.builder(hosts);
-        RestClientBuilder.RequestConfigCallback requestConfigCallback = builder -> {
-            if (connectTimeout >= 0) {
-                logger.debug("Using custom connect timeout: {}", connectTimeout);
-                builder.setConnectTimeout(connectTimeout);
-            } else {
-                logger.debug("Using default connect timeout");
-            }
-            if (socketTimeout >= 0) {
-                logger.debug("Using custom socket timeout: {}", socketTimeout);
-                builder.setSocketTimeout(socketTimeout);
-            } else {
-                logger.debug("Using default socket timeout");
-            }
-            return builder;
-        };
-        RestClientBuilder.HttpClientConfigCallback httpClientConfigCallback = builder -> {
-            if (StringUtils.isNoneEmpty(username, password)) {
-                logger.debug("Using basic auth with user: {}", username);
-                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-                credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-                builder.setDefaultCredentialsProvider(credentialsProvider);
-            } else {
-                logger.debug("No credentials provided");
-            }
-
-            try {
-                builder.setConnectionManager(
-                        createConnectionManager(connectTimeout, socketTimeout, threadCount, socketKeepAlive));
-            } catch (IOReactorException e) {
-                logger.warn("Error setting up custom exception handler", e);
-            }
+        return new RestHighLevelClient(RestClientFactory.createClientBuilder(serverUrls, username, password,
+                                                                             connectTimeout, socketTimeout,
+                                                                             threadCount, socketKeepAlive, -1, -1,
+                                                                             null));
+    }
 
-            return builder;
-        };
-        clientBuilder.setRequestConfigCallback(requestConfigCallback);
-        clientBuilder.setHttpClientConfigCallback(httpClientConfigCallback);
-        return new RestHighLevelClient(clientBuilder);
+    /**
+     * Creates a client that uses the given low level client, which is not closed when the client is closed
+     */
+    public static RestHighLevelClient createClient(RestClient restClient) {
+        return new SharedRestHighLevelClient(restClient);
     }
 
     @Override
     protected RestHighLevelClient createInstance() {
+        if (restClient != null) {
+            if (hasConnectionProperties()) {
+                logger.warn("Using shared low level client, the connection properties of the factory are ignored");
+            } else {
+                logger.debug("Using shared low level client");
+            }
+            return createClient(restClient);
+        }
         return createClient(serverUrls, username, password, connectTimeout, socketTimeout, threadCount,
                 socketKeepAlive);
     }
 
+    /**
+     * Indicates if any of the connection properties has been set, which are ignored when using a shared client
+     */
+    protected boolean hasConnectionProperties() {
+        return username != null || password != null || connectTimeout >= 0 || socketTimeout >= 0 ||
+               threadCount > 0 || socketKeepAlive;
+    }
+
     @Override
     protected void destroyInstance(final RestHighLevelClient instance) throws Exception {
         instance.close();
@@ -244,4 +171,17 @@ public class RestHighLevelClientFactory extends AbstractFactoryBean<RestHighLeve
         return RestHighLevelClient.class;
     }
 
+    /**
+     * Client for a low level client shared with other clients, that is closed by its own factory
+     */
+    protected static class SharedRestHighLevelClient extends RestHighLevelClient {
+
+        public SharedRestHighLevelClient(RestClient restClient) {
+            super(restClient, client -> {
+                // The low level client is closed by its own factory
+            }, Collections.emptyList());
+        }
+
+    }
+
 }
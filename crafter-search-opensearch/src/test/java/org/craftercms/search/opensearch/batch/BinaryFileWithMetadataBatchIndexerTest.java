@@ -19,10 +19,15 @@ package org.craftercms.search.opensearch.batch;
 import org.craftercms.core.exception.PathNotFoundException;
 import org.craftercms.core.service.Content;
 import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.DeadLetterLog;
 import org.craftercms.search.batch.UpdateSet;
 import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.batch.impl.FileDeadLetterLog;
+import org.craftercms.search.opensearch.exception.OpenSearchException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -48,6 +53,9 @@ public class BinaryFileWithMetadataBatchIndexerTest extends BatchIndexerTestBase
     private static final String BINARY_FILENAME2 = "crafter-wp-wem-v2.pdf";
     private static final String BINARY_FILENAME3 = "notes.txt";
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     private OpenSearchBinaryFileWithMetadataBatchIndexer batchIndexer;
 
     @Before
@@ -157,6 +165,42 @@ public class BinaryFileWithMetadataBatchIndexerTest extends BatchIndexerTestBase
         verify(searchService).indexBinary(eq(INDEX_ID), eq(SITE_NAME), eq(BINARY_FILENAME3), any(Content.class), any());
     }
 
+    @Test
+    public void testReplayFailedBinary() throws Exception {
+        DeadLetterLog deadLetterLog = new FileDeadLetterLog(tmpFolder.getRoot().getAbsolutePath());
+        batchIndexer.setDeadLetterLog(deadLetterLog);
+
+        doThrow(new OpenSearchException(INDEX_ID, "Invalid document")).when(searchService).indexBinary(
+            eq(INDEX_ID), eq(SITE_NAME), eq(BINARY_FILENAME1), any(Content.class), any());
+
+        UpdateSet updateSet = new UpdateSet(Collections.singletonList(METADATA_XML_FILENAME), Collections.emptyList());
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.updateIndex(INDEX_ID, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        // The failure is reported with the same path used in the log
+        assertEquals(List.of(METADATA_XML_FILENAME), updateStatus.getFailedUpdates());
+        assertEquals(List.of(METADATA_XML_FILENAME),
+                     deadLetterLog.getUpdateSet(INDEX_ID, SITE_NAME).getUpdatePaths());
+
+        // The replay fails again, so the metadata file should still be in the log
+        updateStatus = deadLetterLog.replay(INDEX_ID, SITE_NAME, contentStoreService, context, List.of(batchIndexer));
+
+        assertEquals(List.of(METADATA_XML_FILENAME), updateStatus.getFailedUpdates());
+        assertEquals(List.of(METADATA_XML_FILENAME),
+                     deadLetterLog.getUpdateSet(INDEX_ID, SITE_NAME).getUpdatePaths());
+
+        // The replay succeeds, so the metadata file should be removed from the log
+        doNothing().when(searchService).indexBinary(
+            eq(INDEX_ID), eq(SITE_NAME), eq(BINARY_FILENAME1), any(Content.class), any());
+
+        updateStatus = deadLetterLog.replay(INDEX_ID, SITE_NAME, contentStoreService, context, List.of(batchIndexer));
+
+        assertEquals(0, updateStatus.getFailedUpdatesAndDeletes());
+        assertTrue(updateStatus.getSuccessfulUpdates().contains(BINARY_FILENAME1));
+        assertTrue(deadLetterLog.getUpdateSet(INDEX_ID, SITE_NAME).getUpdatePaths().isEmpty());
+    }
+
     protected void setupBinariesSearchResults() {
         when(searchService.searchField(eq(INDEX_ID), eq("localId"), any()))
                 .thenReturn(List.of(BINARY_FILENAME1, BINARY_FILENAME2, BINARY_FILENAME3));
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.batch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.UpdateSet;
+import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+import org.craftercms.search.batch.impl.CoalescingBatchIndexer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link CoalescingBatchIndexer}.
+ */
+public class CoalescingBatchIndexerTest {
+
+    private static final String SITE_NAME = "test";
+    private static final String INDEX_ID = SITE_NAME;
+    private static final String METADATA_PATH = "/metadata.xml";
+    private static final String DERIVED_BINARY_PATH = "/binary.pdf";
+    private static final String FAILING_PATH = "/failing.xml";
+    private static final long WINDOW_MILLIS = 10000;
+
+    private ContentStoreService contentStoreService;
+    private Context context;
+    private List<UpdateSet> updateSets;
+    private List<Context> contexts;
+    private AtomicInteger calls;
+    private CountDownLatch firstUpdateStarted;
+    private CountDownLatch firstUpdateReleased;
+    private List<Thread> threads;
+    private CoalescingBatchIndexer batchIndexer;
+
+    @Before
+    public void setUp() {
+        contentStoreService = mock(ContentStoreService.class);
+        context = mock(Context.class);
+        updateSets = new CopyOnWriteArrayList<>();
+        contexts = new CopyOnWriteArrayList<>();
+        calls = new AtomicInteger();
+        firstUpdateStarted = new CountDownLatch(1);
+        firstUpdateReleased = new CountDownLatch(0);
+        threads = new CopyOnWriteArrayList<>();
+
+        batchIndexer = new CoalescingBatchIndexer((id, site, store, ctx, updateSet, updateStatus) -> {
+            updateSets.add(updateSet);
+            contexts.add(ctx);
+
+            if (calls.incrementAndGet() == 1) {
+                firstUpdateStarted.countDown();
+                try {
+                    firstUpdateReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            List<String> updatePaths = updateSet.getUpdatePaths();
+            if (updatePaths.contains(FAILING_PATH)) {
+                throw new BatchIndexingException("Unable to update index");
+            }
+
+            updatePaths.forEach(updateStatus::addSuccessfulUpdate);
+            updateSet.getDeletePaths().forEach(updateStatus::addSuccessfulDelete);
+
+            // Simulates a binary indexed through a metadata file
+            if (updatePaths.contains(METADATA_PATH)) {
+                updateStatus.addSuccessfulUpdate(DERIVED_BINARY_PATH);
+            }
+        });
+        batchIndexer.setWindowMillis(WINDOW_MILLIS);
+    }
+
+    @Test
+    public void testUpdateIsNotDelayedWhenIdle() throws Exception {
+        UpdateSet updateSet = new UpdateSet(List.of(METADATA_PATH), Collections.emptyList());
+        UpdateStatus updateStatus = new UpdateStatus();
+        long start = System.currentTimeMillis();
+
+        batchIndexer.updateIndex(INDEX_ID, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertTrue(System.currentTimeMillis() - start < WINDOW_MILLIS / 2);
+        assertEquals(1, updateSets.size());
+        assertSame(updateSet, updateSets.get(0));
+        assertEquals(List.of(METADATA_PATH, DERIVED_BINARY_PATH), updateStatus.getSuccessfulUpdates());
+    }
+
+    @Test
+    public void testMergeUpdatesReceivedWhileRunning() throws Exception {
+        firstUpdateReleased = new CountDownLatch(1);
+
+        FutureTask<UpdateStatus> first = startUpdate(context, List.of("/first.xml"), Collections.emptyList());
+        firstUpdateStarted.await();
+
+        FutureTask<UpdateStatus> second = startUpdate(context, List.of(METADATA_PATH, "/page.xml"),
+                                                      Collections.emptyList());
+        awaitWaiting(threads.get(1));
+
+        FutureTask<UpdateStatus> third = startUpdate(context, List.of("/other.xml"), List.of("/page.xml"));
+        awaitWaiting(threads.get(2));
+
+        firstUpdateReleased.countDown();
+
+        assertEquals(List.of("/first.xml"), first.get().getSuccessfulUpdates());
+
+        // Each caller gets all the results of the merged update, including the derived paths
+        for (UpdateStatus updateStatus : List.of(second.get(), third.get())) {
+            assertEquals(List.of(METADATA_PATH, "/other.xml", DERIVED_BINARY_PATH),
+                         updateStatus.getSuccessfulUpdates());
+            assertEquals(List.of("/page.xml"), updateStatus.getSuccessfulDeletes());
+        }
+
+        // The second and third update sets are sent together, the last operation of each path wins
+        assertEquals(2, updateSets.size());
+        assertEquals(List.of(METADATA_PATH, "/other.xml"), updateSets.get(1).getUpdatePaths());
+        assertEquals(List.of("/page.xml"), updateSets.get(1).getDeletePaths());
+    }
+
+    @Test
+    public void testUpdatesWithDifferentContextsAreNotMerged() throws Exception {
+        Context otherContext = mock(Context.class);
+        firstUpdateReleased = new CountDownLatch(1);
+
+        FutureTask<UpdateStatus> first = startUpdate(context, List.of("/first.xml"), Collections.emptyList());
+        firstUpdateStarted.await();
+
+        FutureTask<UpdateStatus> second = startUpdate(context, List.of("/second.xml"), Collections.emptyList());
+        awaitWaiting(threads.get(1));
+
+        // No update is running for the other context, so it's sent right away
+        FutureTask<UpdateStatus> third = startUpdate(otherContext, List.of("/third.xml"), Collections.emptyList());
+        assertEquals(List.of("/third.xml"), third.get(WINDOW_MILLIS / 2, TimeUnit.MILLISECONDS)
+                                                 .getSuccessfulUpdates());
+        assertSame(otherContext, contexts.get(1));
+
+        firstUpdateReleased.countDown();
+
+        assertEquals(List.of("/first.xml"), first.get().getSuccessfulUpdates());
+        assertEquals(List.of("/second.xml"), second.get().getSuccessfulUpdates());
+        assertEquals(3, updateSets.size());
+        assertSame(context, contexts.get(2));
+    }
+
+    @Test
+    public void testErrorIsReportedToAllMergedCallers() throws Exception {
+        firstUpdateReleased = new CountDownLatch(1);
+
+        FutureTask<UpdateStatus> first = startUpdate(context, List.of("/first.xml"), Collections.emptyList());
+        firstUpdateStarted.await();
+
+        FutureTask<UpdateStatus> second = startUpdate(context, List.of(FAILING_PATH), Collections.emptyList());
+        awaitWaiting(threads.get(1));
+
+        FutureTask<UpdateStatus> third = startUpdate(context, List.of("/other.xml"), Collections.emptyList());
+        awaitWaiting(threads.get(2));
+
+        firstUpdateReleased.countDown();
+
+        assertEquals(List.of("/first.xml"), first.get().getSuccessfulUpdates());
+        assertFailed(second);
+        assertFailed(third);
+        assertEquals(2, updateSets.size());
+    }
+
+    private FutureTask<UpdateStatus> startUpdate(Context context, List<String> updatePaths,
+                                                 List<String> deletePaths) {
+        FutureTask<UpdateStatus> task = new FutureTask<>(() -> {
+            UpdateStatus updateStatus = new UpdateStatus();
+            batchIndexer.updateIndex(INDEX_ID, SITE_NAME, contentStoreService, context,
+                                     new UpdateSet(updatePaths, deletePaths), updateStatus);
+            return updateStatus;
+        });
+
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+
+        return task;
+    }
+
+    /**
+     * Waits until the given thread is blocked waiting for the running update
+     */
+    private void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WINDOW_MILLIS / 2;
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Thread " + thread.getName() + " is not waiting for the running update");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void assertFailed(FutureTask<UpdateStatus> task) throws InterruptedException {
+        try {
+            task.get();
+            fail("The update should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BatchIndexingException);
+        }
+    }
+
+}
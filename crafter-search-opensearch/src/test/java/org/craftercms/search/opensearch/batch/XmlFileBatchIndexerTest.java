@@ -20,18 +20,35 @@ import org.craftercms.core.processors.ItemProcessor;
 import org.craftercms.core.processors.impl.AttributeAddingProcessor;
 import org.craftercms.core.processors.impl.FieldRenamingProcessor;
 import org.craftercms.core.processors.impl.PageAwareIncludeDescriptorsProcessor;
+import org.craftercms.search.batch.BatchCheckpoint;
+import org.craftercms.search.batch.BatchCheckpointStore;
+import org.craftercms.search.batch.StreamingUpdateSet;
 import org.craftercms.search.batch.UpdateSet;
 import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.batch.exception.BatchIndexingException;
+import org.craftercms.search.batch.impl.FileBatchCheckpointStore;
+import org.craftercms.search.batch.impl.FileDeadLetterLog;
+import org.craftercms.search.opensearch.exception.OpenSearchException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for {@link OpenSearchXmlFileBatchIndexer}.
@@ -72,6 +89,9 @@ public class XmlFileBatchIndexerTest extends BatchIndexerTestBase {
             "<include>test.xml</include>" +
             "</page>";
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     private OpenSearchXmlFileBatchIndexer batchIndexer;
 
     @Before
@@ -96,6 +116,164 @@ public class XmlFileBatchIndexerTest extends BatchIndexerTestBase {
         verify(searchService).delete(indexId, SITE_NAME, DELETE_FILENAME);
     }
 
+    @Test
+    public void testUpdateIndexWithStreamingUpdateSet() {
+        String indexId = SITE_NAME;
+        UpdateSet updateSet = new StreamingUpdateSet(Arrays.asList(UPDATE_FILENAME, UPDATE_FILENAME),
+                                                     Collections.singletonList(DELETE_FILENAME));
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.setBatchSize(1);
+        batchIndexer.updateIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertEquals(3, updateStatus.getAttemptedUpdatesAndDeletes());
+        verify(searchService, times(2)).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+        verify(searchService).delete(indexId, SITE_NAME, DELETE_FILENAME);
+    }
+
+    @Test
+    public void testUpdateIndexWithBulkIndexing() {
+        String indexId = SITE_NAME;
+        Map<String, Object> doc = Collections.singletonMap("title", "Test");
+        UpdateSet updateSet = new UpdateSet(Collections.singletonList(UPDATE_FILENAME), Collections.singletonList(DELETE_FILENAME));
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        when(searchService.buildDocument(SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null)).thenReturn(doc);
+        when(searchService.bulk(indexId, SITE_NAME, Collections.singletonMap(UPDATE_FILENAME, doc),
+                                Collections.emptyList())).thenReturn(Collections.emptyMap());
+        when(searchService.bulk(indexId, SITE_NAME, Collections.emptyMap(),
+                                Collections.singletonList(DELETE_FILENAME)))
+                .thenReturn(Collections.singletonMap(DELETE_FILENAME, "error"));
+
+        batchIndexer.setBulkIndexing(true);
+        batchIndexer.updateIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertEquals(UPDATE_FILENAME, updateStatus.getSuccessfulUpdates().get(0));
+        assertEquals(DELETE_FILENAME, updateStatus.getFailedDeletes().get(0));
+        verify(searchService, never()).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+    }
+
+    @Test
+    public void testRetriesAndDeadLetterLog() throws Exception {
+        String indexId = SITE_NAME;
+        FileDeadLetterLog deadLetterLog = new FileDeadLetterLog(tmpFolder.getRoot().getPath());
+        UpdateSet updateSet = new UpdateSet(Collections.singletonList(UPDATE_FILENAME), Collections.singletonList(DELETE_FILENAME));
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        // The update fails once with a transient error, the delete always fails with a permanent error
+        doThrow(new OpenSearchException(indexId, "Timeout", new SocketTimeoutException()))
+                .doNothing()
+                .when(searchService).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+        doThrow(new OpenSearchException(indexId, "Mapping error"))
+                .when(searchService).delete(indexId, SITE_NAME, DELETE_FILENAME);
+
+        batchIndexer.setRetryDelay(1);
+        batchIndexer.setDeadLetterLog(deadLetterLog);
+        batchIndexer.updateIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertEquals(UPDATE_FILENAME, updateStatus.getSuccessfulUpdates().get(0));
+        assertEquals(DELETE_FILENAME, updateStatus.getFailedDeletes().get(0));
+        verify(searchService, times(2)).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+        verify(searchService).delete(indexId, SITE_NAME, DELETE_FILENAME);
+
+        UpdateSet failedSet = deadLetterLog.getUpdateSet(indexId, SITE_NAME);
+        assertEquals(Collections.emptyList(), failedSet.getUpdatePaths());
+        assertEquals(Collections.singletonList(DELETE_FILENAME), failedSet.getDeletePaths());
+    }
+
+    @Test
+    public void testResumeIndex() throws Exception {
+        String indexId = SITE_NAME;
+        String skippedFilename = "skipped.xml";
+        FileBatchCheckpointStore checkpointStore = new FileBatchCheckpointStore(tmpFolder.getRoot().getPath());
+
+        BatchCheckpoint checkpoint = new BatchCheckpoint(indexId, "xml");
+        checkpoint.addProcessedUpdates(Collections.singletonList(skippedFilename));
+        checkpointStore.save(checkpoint);
+
+        UpdateSet updateSet = new UpdateSet(Arrays.asList(skippedFilename, UPDATE_FILENAME),
+                                            Collections.singletonList(DELETE_FILENAME));
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.setBatchSize(1);
+        batchIndexer.setCheckpointStore(checkpointStore);
+        batchIndexer.setIndexerName("xml");
+        batchIndexer.resumeIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertEquals(2, updateStatus.getAttemptedUpdatesAndDeletes());
+        verify(searchService, never()).index(indexId, SITE_NAME, skippedFilename, EXPECTED_XML, null);
+        verify(searchService).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+        verify(searchService).delete(indexId, SITE_NAME, DELETE_FILENAME);
+        assertTrue(checkpointStore.load(indexId, "xml").isCompleted());
+
+        batchIndexer.clearCheckpoint(indexId);
+
+        assertNull(checkpointStore.load(indexId, "xml"));
+    }
+
+    @Test
+    public void testResumeSkipsCompletedIndexer() throws Exception {
+        String indexId = SITE_NAME;
+        UpdateSet updateSet = new UpdateSet(Collections.singletonList(UPDATE_FILENAME),
+                                            Collections.singletonList(DELETE_FILENAME));
+
+        batchIndexer.setCheckpointStore(new FileBatchCheckpointStore(tmpFolder.getRoot().getPath()));
+        batchIndexer.setIndexerName("xml");
+        batchIndexer.updateIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, new UpdateStatus());
+
+        UpdateStatus updateStatus = new UpdateStatus();
+        batchIndexer.resumeIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertEquals(0, updateStatus.getAttemptedUpdatesAndDeletes());
+        verify(searchService, times(1)).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+    }
+
+    @Test
+    public void testResumeWithCheckpointOfOtherUpdateSet() throws Exception {
+        String indexId = SITE_NAME;
+        FileBatchCheckpointStore checkpointStore = new FileBatchCheckpointStore(tmpFolder.getRoot().getPath());
+
+        BatchCheckpoint checkpoint = new BatchCheckpoint(indexId, "xml");
+        checkpoint.addProcessedUpdates(Collections.singletonList("other.xml"));
+        checkpointStore.save(checkpoint);
+
+        UpdateSet updateSet = new UpdateSet(Collections.singletonList(UPDATE_FILENAME),
+                                            Collections.singletonList(DELETE_FILENAME));
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.setCheckpointStore(checkpointStore);
+        batchIndexer.setIndexerName("xml");
+        batchIndexer.resumeIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        // The checkpoint is for other paths, so nothing is skipped
+        assertEquals(2, updateStatus.getAttemptedUpdatesAndDeletes());
+        verify(searchService).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+        verify(searchService).delete(indexId, SITE_NAME, DELETE_FILENAME);
+    }
+
+    @Test
+    public void testCheckpointErrorsDontAbortUpdate() throws Exception {
+        String indexId = SITE_NAME;
+        BatchCheckpointStore checkpointStore = mock(BatchCheckpointStore.class);
+        doThrow(new BatchIndexingException("Unable to delete checkpoint")).when(checkpointStore).delete(indexId, "xml");
+        when(checkpointStore.load(indexId, "xml")).thenThrow(new BatchIndexingException("Corrupted checkpoint"));
+
+        UpdateSet updateSet = new UpdateSet(Collections.singletonList(UPDATE_FILENAME),
+                                            Collections.singletonList(DELETE_FILENAME));
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.setCheckpointStore(checkpointStore);
+        batchIndexer.setIndexerName("xml");
+        batchIndexer.updateIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+        // The checkpoint can't be loaded, so the whole update is performed again
+        batchIndexer.resumeIndex(indexId, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertEquals(4, updateStatus.getAttemptedUpdatesAndDeletes());
+        verify(searchService, times(2)).index(indexId, SITE_NAME, UPDATE_FILENAME, EXPECTED_XML, null);
+        verify(searchService, times(2)).delete(indexId, SITE_NAME, DELETE_FILENAME);
+        verify(checkpointStore).delete(indexId, "xml");
+    }
+
     protected List<ItemProcessor> getDocumentProcessors() {
         PageAwareIncludeDescriptorsProcessor proc1 = new PageAwareIncludeDescriptorsProcessor();
         proc1.setIncludeElementXPathQuery("//include");
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.batch.authoring;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.craftercms.core.exception.PathNotFoundException;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.Context;
+import org.craftercms.search.batch.UpdateSet;
+import org.craftercms.search.batch.UpdateStatus;
+import org.craftercms.search.opensearch.batch.BatchIndexerTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer}.
+ */
+public class AuthoringBinaryFileWithMetadataBatchIndexerTest extends BatchIndexerTestBase {
+
+    private static final String SITE_NAME = "test";
+    private static final String INDEX_ID = SITE_NAME;
+    private static final String METADATA_XML_FILENAME = "metadata.xml";
+    private static final String METADATA_WITH_REMOVED_BINARIES_XML_FILENAME = "metadata-with-removed-binaries.xml";
+    private static final String BINARY_FILENAME1 = "crafter-wp-7-reasons.pdf";
+    private static final String BINARY_FILENAME2 = "crafter-wp-wem-v2.pdf";
+    private static final String BINARY_FILENAME3 = "notes.txt";
+
+    private AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer batchIndexer;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        when(contentStoreService.findContent(any(Context.class), anyString())).thenAnswer(
+                invocationOnMock -> {
+                    Content content = findContent(invocationOnMock.getArgument(1));
+                    if (content != null) {
+                        return content;
+                    }
+                    throw new PathNotFoundException();
+                }
+        );
+
+        batchIndexer = new AuthoringOpenSearchBinaryFileWithMetadataBatchIndexer(searchService);
+        batchIndexer.setMetadataPathPatterns(Collections.singletonList(".*metadata.*\\.xml$"));
+        batchIndexer.setBinaryPathPatterns(List.of(".*\\.pdf$", ".*\\.txt$"));
+        batchIndexer.setChildBinaryPathPatterns(Collections.singletonList(".*\\.pdf$"));
+        batchIndexer.setReferenceXPaths(Collections.singletonList("//file"));
+        // Each path is processed in a different chunk
+        batchIndexer.setBatchSize(1);
+    }
+
+    @Test
+    public void testUpdateMetadataAndBinaryInDifferentChunks() {
+        UpdateSet updateSet = new UpdateSet(List.of(METADATA_XML_FILENAME, BINARY_FILENAME1), Collections.emptyList());
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.updateIndex(INDEX_ID, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertTrue(updateStatus.getSuccessfulUpdates().contains(BINARY_FILENAME1));
+        assertTrue(updateStatus.getSuccessfulUpdates().contains(BINARY_FILENAME2));
+        assertTrue(updateStatus.getSuccessfulUpdates().contains(BINARY_FILENAME3));
+        // The binary was already indexed with the metadata in the first chunk
+        verify(searchService, times(1)).indexBinary(
+            eq(INDEX_ID), eq(SITE_NAME), eq(BINARY_FILENAME1), any(Content.class), any());
+    }
+
+    @Test
+    public void testUpdateMetadataWithRemovedBinaryInDifferentChunks() {
+        when(searchService.searchField(eq(INDEX_ID), eq("localId"), any()))
+                .thenReturn(List.of(BINARY_FILENAME1, BINARY_FILENAME2, BINARY_FILENAME3));
+
+        UpdateSet updateSet = new UpdateSet(List.of(METADATA_WITH_REMOVED_BINARIES_XML_FILENAME, BINARY_FILENAME2),
+                                            Collections.emptyList());
+        UpdateStatus updateStatus = new UpdateStatus();
+
+        batchIndexer.updateIndex(INDEX_ID, SITE_NAME, contentStoreService, context, updateSet, updateStatus);
+
+        assertTrue(updateStatus.getSuccessfulDeletes().contains(BINARY_FILENAME2));
+        // The child binary was deleted in the first chunk, so it shouldn't be indexed again
+        verify(searchService).delete(eq(INDEX_ID), eq(SITE_NAME), eq(BINARY_FILENAME2));
+        verify(searchService, never()).indexBinary(
+            eq(INDEX_ID), eq(SITE_NAME), eq(BINARY_FILENAME2), any(Content.class), any());
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl;
+
+import java.io.IOException;
+
+import org.craftercms.search.opensearch.exception.RejectedSearchException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link AdaptiveSearchLimiter}.
+ */
+public class AdaptiveSearchLimiterTest {
+
+    @Test
+    public void testConcurrencyLimit() {
+        AdaptiveSearchLimiter limiter = new AdaptiveSearchLimiter();
+        limiter.setInitialLimit(1);
+        AdaptiveSearchLimiter.Permit permit = limiter.acquire(null);
+
+        assertRejected(limiter, RejectedSearchException.Reason.CONCURRENCY_LIMIT);
+
+        permit.onSuccess();
+        limiter.acquire(null).onSuccess();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCircuitBreaker() {
+        AdaptiveSearchLimiter limiter = new AdaptiveSearchLimiter();
+        limiter.setMinCalls(2);
+        limiter.setOpenDuration(0);
+        limiter.acquire(null).onError(new IllegalArgumentException("Invalid query"));
+        limiter.acquire(null).onError(new IOException("Read timed out"));
+
+        assertEquals(AdaptiveSearchLimiter.State.CLOSED, limiter.getState());
+
+        limiter.acquire(null).onError(new IOException("Read timed out"));
+
+        assertEquals(AdaptiveSearchLimiter.State.OPEN, limiter.getState());
+
+        AdaptiveSearchLimiter.Permit probe = limiter.acquire(null);
+
+        assertRejected(limiter, RejectedSearchException.Reason.CIRCUIT_OPEN);
+
+        probe.onSuccess();
+
+        assertEquals(AdaptiveSearchLimiter.State.CLOSED, limiter.getState());
+    }
+
+    @Test
+    public void testAbandonedProbeIsReplaced() {
+        AdaptiveSearchLimiter limiter = new AdaptiveSearchLimiter();
+        limiter.setMinCalls(1);
+        limiter.setOpenDuration(0);
+        limiter.acquire(null).onError(new IOException("Read timed out"));
+
+        AdaptiveSearchLimiter.Permit probe = limiter.acquire(null);
+
+        assertRejected(limiter, RejectedSearchException.Reason.CIRCUIT_OPEN);
+
+        // Once the probe times out its permit is released and the next search is the new probe
+        limiter.setProbeTimeout(0);
+        AdaptiveSearchLimiter.Permit newProbe = limiter.acquire(null);
+
+        assertEquals(1, limiter.getInFlight());
+
+        // The late result of the abandoned probe is ignored
+        probe.onError(new IOException("Read timed out"));
+
+        assertEquals(AdaptiveSearchLimiter.State.HALF_OPEN, limiter.getState());
+        assertEquals(1, limiter.getInFlight());
+
+        newProbe.onSuccess();
+
+        assertEquals(AdaptiveSearchLimiter.State.CLOSED, limiter.getState());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testPermitIsReleasedOnce() {
+        AdaptiveSearchLimiter limiter = new AdaptiveSearchLimiter();
+        AdaptiveSearchLimiter.Permit permit = limiter.acquire(null);
+        permit.onSuccess();
+        permit.onError(new IOException("Read timed out"));
+
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private void assertRejected(AdaptiveSearchLimiter limiter, RejectedSearchException.Reason reason) {
+        try {
+            limiter.acquire(null);
+            fail("Search should have been rejected");
+        } catch (RejectedSearchException e) {
+            assertEquals(reason, e.getReason());
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link AdaptiveWriteController}.
+ */
+public class AdaptiveWriteControllerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void testAsyncPermitHandoff() throws Exception {
+        AdaptiveWriteController controller = new AdaptiveWriteController();
+        controller.setInitialInFlightRequests(1);
+
+        CompletableFuture<Void> first = controller.acquireAsync(1);
+        CompletableFuture<Thread> second = controller.acquireAsync(1).thenApply(permit -> Thread.currentThread());
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        controller.release();
+
+        // The permit goes directly to the waiting request, which is resumed by the executor and not by the thread
+        // that released the permit
+        assertNotSame(Thread.currentThread(), second.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, controller.inFlightRequests);
+
+        controller.release();
+
+        assertEquals(0, controller.inFlightRequests);
+    }
+
+    @Test
+    public void testRateLimitStartsFull() {
+        AdaptiveWriteController controller = new AdaptiveWriteController();
+        controller.setMaxDocsPerSecond(10);
+
+        // The first request can use the docs of a whole second, the next one has to wait for them
+        assertTrue(controller.acquireAsync(10).isDone());
+        controller.release();
+        assertFalse(controller.acquireAsync(10).isDone());
+    }
+
+    @Test
+    public void testBulkRequestIsSizedWhenSent() {
+        AdaptiveWriteController controller = new AdaptiveWriteController();
+        controller.setInitialInFlightRequests(1);
+        controller.setMaxInFlightRequests(1);
+        controller.setInitialBulkSize(100);
+        controller.setBulkSizeIncrement(50);
+
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> firstResponse = new CompletableFuture<>();
+        CompletableFuture<String> first = controller.executeBulkAsync(1000, size -> {
+            sizes.add(size);
+            return () -> firstResponse;
+        });
+        CompletableFuture<String> second = controller.executeBulkAsync(1000, size -> {
+            sizes.add(size);
+            return () -> CompletableFuture.completedFuture("second");
+        });
+
+        // The second request is waiting for the in-flight limit, so it hasn't been sized yet
+        assertEquals(List.of(100), sizes);
+
+        firstResponse.complete("first");
+
+        assertEquals("first", first.join());
+        assertEquals("second", second.join());
+        assertEquals(List.of(100, 150), sizes);
+    }
+
+    @Test
+    public void testBulkRequestIsLimitedToTheRemainingDocs() {
+        AdaptiveWriteController controller = new AdaptiveWriteController();
+
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        controller.executeBulkAsync(5, size -> {
+            sizes.add(size);
+            return () -> CompletableFuture.completedFuture(size);
+        }).join();
+
+        assertEquals(List.of(5), sizes);
+    }
+
+    @Test
+    public void testRejectedAsyncRequestIsRetried() {
+        AdaptiveWriteController controller = new AdaptiveWriteController();
+        controller.setInitialBackoff(1);
+
+        AtomicInteger attempts = new AtomicInteger();
+        String result = controller.executeAsync(1, () -> {
+            if (attempts.getAndIncrement() == 0) {
+                return CompletableFuture.failedFuture(new OpenSearchException(ErrorResponse.of(r -> r
+                        .status(429)
+                        .error(e -> e
+                                .type("es_rejected_execution_exception")
+                                .reason("rejected execution")
+                        )
+                )));
+            }
+            return CompletableFuture.completedFuture("indexed");
+        }).join();
+
+        assertEquals("indexed", result);
+        assertEquals(2, attempts.get());
+        assertEquals(0, controller.inFlightRequests);
+    }
+
+}
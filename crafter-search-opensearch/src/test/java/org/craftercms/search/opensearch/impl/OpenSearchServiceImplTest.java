@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.DeleteRequest;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.opensearch.client.opensearch.core.bulk.OperationType;
+import org.opensearch.client.transport.OpenSearchTransport;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the write operations of {@link OpenSearchServiceImpl}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OpenSearchServiceImplTest {
+
+    private static final String INDEX_ID = "test";
+    private static final String SITE_NAME = "test";
+
+    @Mock
+    private OpenSearchTransport transport;
+
+    private OpenSearchClient client;
+
+    private AdaptiveWriteController writeController;
+
+    private OpenSearchServiceImpl service;
+
+    private final List<Object> requests = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        client = new OpenSearchClient(transport);
+
+        writeController = new AdaptiveWriteController();
+        writeController.setInitialBackoff(1);
+
+        service = new OpenSearchServiceImpl(null, null, client);
+        service.setWriteController(writeController);
+    }
+
+    @Test
+    public void testBulkRequestsAreSizedWhenSent() {
+        writeController.setInitialInFlightRequests(1);
+        writeController.setMaxInFlightRequests(1);
+        writeController.setInitialBulkSize(2);
+        writeController.setBulkSizeIncrement(2);
+        answerBulk(0);
+
+        Map<String, String> failures = service.bulkAsync(INDEX_ID, SITE_NAME, getDocs(6), emptyList()).join();
+
+        assertTrue(failures.isEmpty());
+        // The second request is sized after the response of the first one increased the bulk size
+        assertEquals(List.of(2, 4), getBulkSizes());
+    }
+
+    @Test
+    public void testRejectedBulkItemsAreRetried() {
+        answerBulk(1);
+
+        Map<String, String> failures = service.bulk(INDEX_ID, SITE_NAME, getDocs(3), emptyList());
+
+        assertTrue(failures.isEmpty());
+        assertEquals(List.of(3, 1), getBulkSizes());
+    }
+
+    @Test
+    public void testFailedBulkRequest() {
+        when(transport.performRequestAsync(any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Connection refused")));
+
+        Map<String, String> failures = service.bulkAsync(INDEX_ID, SITE_NAME, getDocs(2), List.of("/deleted.xml"))
+                                              .join();
+
+        assertEquals(List.of("/deleted.xml", "/doc0.xml", "/doc1.xml"), new ArrayList<>(failures.keySet()));
+        assertEquals("Connection refused", failures.get("/doc0.xml"));
+    }
+
+    @Test
+    public void testIndexAsync() {
+        when(transport.performRequestAsync(any(), any(), any())).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        service.indexAsync(INDEX_ID, SITE_NAME, "/doc.xml", Map.of("content", "test")).join();
+
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(0) instanceof DeleteRequest);
+        assertTrue(requests.get(1) instanceof IndexRequest);
+    }
+
+    @Test
+    public void testFailedIndexAsync() {
+        when(transport.performRequestAsync(any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Connection refused")));
+
+        try {
+            service.indexAsync(INDEX_ID, SITE_NAME, "/doc.xml", Map.of("content", "test")).join();
+            fail("The index operation should have failed");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof OpenSearchException);
+        }
+    }
+
+    @Test
+    public void testEachClusterHasItsOwnWriteController() {
+        OpenSearchTransport otherTransport = mock(OpenSearchTransport.class);
+        OpenSearchClient otherClient = new OpenSearchClient(otherTransport);
+
+        MultiOpenSearchServiceImpl multiService = new MultiOpenSearchServiceImpl(null, null, client,
+                new OpenSearchClient[] { client, otherClient });
+
+        assertNotSame(multiService.getWriteController(transport), multiService.getWriteController(otherTransport));
+    }
+
+    @Test
+    public void testDocumentIsSerializedOnceForAllClusters() {
+        OpenSearchTransport otherTransport = mock(OpenSearchTransport.class);
+        List<Object> otherRequests = Collections.synchronizedList(new ArrayList<>());
+        when(transport.performRequestAsync(any(), any(), any())).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+        when(otherTransport.performRequestAsync(any(), any(), any())).thenAnswer(invocation -> {
+            otherRequests.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        MultiOpenSearchServiceImpl multiService = new MultiOpenSearchServiceImpl(null, null, client,
+                new OpenSearchClient[] { client, new OpenSearchClient(otherTransport) });
+        multiService.indexAsync(INDEX_ID, SITE_NAME, "/doc.xml", Map.of("content", "test")).join();
+
+        assertEquals(2, requests.size());
+        assertEquals(2, otherRequests.size());
+        assertSame(((IndexRequest<?>) requests.get(1)).document(), ((IndexRequest<?>) otherRequests.get(1)).document());
+    }
+
+    /**
+     * Answers all the bulk requests, the given number of items of the first request are rejected
+     */
+    private void answerBulk(int rejectedItems) {
+        when(transport.performRequestAsync(any(), any(), any())).thenAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            int rejected = requests.isEmpty() ? rejectedItems : 0;
+            requests.add(request);
+
+            List<BulkResponseItem> items = new ArrayList<>();
+            for (int i = 0; i < request.operations().size(); i++) {
+                items.add(getItem(i < rejected));
+            }
+            return CompletableFuture.completedFuture(BulkResponse.of(r -> r
+                    .took(1)
+                    .errors(rejected > 0)
+                    .items(items)
+            ));
+        });
+    }
+
+    private BulkResponseItem getItem(boolean rejected) {
+        if (rejected) {
+            return BulkResponseItem.of(i -> i
+                    .operationType(OperationType.Index)
+                    .index(INDEX_ID)
+                    .status(429)
+                    .error(e -> e
+                            .type("es_rejected_execution_exception")
+                            .reason("rejected execution")
+                    )
+            );
+        }
+        return BulkResponseItem.of(i -> i
+                .operationType(OperationType.Index)
+                .index(INDEX_ID)
+                .status(201)
+        );
+    }
+
+    private Map<String, Map<String, Object>> getDocs(int count) {
+        Map<String, Map<String, Object>> docs = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            docs.put("/doc" + i + ".xml", Map.of("content", "test " + i));
+        }
+        return docs;
+    }
+
+    private List<Integer> getBulkSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        synchronized (requests) {
+            for (Object request : requests) {
+                sizes.add(((BulkRequest) request).operations().size());
+            }
+        }
+        return sizes;
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.transport.OpenSearchTransport;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the search coalescing of {@link AbstractOpenSearchClientWrapper}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AbstractOpenSearchClientWrapperTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Mock
+    private OpenSearchTransport transport;
+
+    private AbstractOpenSearchClientWrapper wrapper;
+
+    private final CompletableFuture<Object> pendingResponse = new CompletableFuture<>();
+
+    @Before
+    public void setUp() {
+        when(transport.jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+
+        wrapper = new AbstractOpenSearchClientWrapper(new OpenSearchClient(transport)) { };
+        wrapper.setCoalesceSearches(true);
+    }
+
+    @Test
+    public void testIdenticalSearchesAreCoalesced() throws Exception {
+        CountDownLatch searchStarted = new CountDownLatch(1);
+        CountDownLatch searchReleased = new CountDownLatch(1);
+        SearchResponse<Object> response = response();
+        when(transport.performRequest(any(), any(), any())).thenAnswer(invocation -> {
+            searchStarted.countDown();
+            searchReleased.await();
+            return response;
+        });
+
+        FutureTask<SearchResponse<Object>> first = startSearch(request("news"), emptyMap());
+        searchStarted.await();
+
+        FutureTask<SearchResponse<Object>> second = new FutureTask<>(() -> wrapper.search(request("news"),
+                                                                                            Object.class));
+        awaitWaiting(startThread(second));
+
+        searchReleased.countDown();
+
+        assertSame(response, first.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertSame(response, second.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, wrapper.getCoalescedSearches());
+        verify(transport, times(1)).performRequest(any(), any(), any());
+    }
+
+    @Test
+    public void testDifferentSearchesAreNotCoalesced() throws Exception {
+        CountDownLatch searchesStarted = new CountDownLatch(3);
+        CountDownLatch searchesReleased = new CountDownLatch(1);
+        when(transport.performRequest(any(), any(), any())).thenAnswer(invocation -> {
+            searchesStarted.countDown();
+            searchesReleased.await();
+            return response();
+        });
+
+        List<FutureTask<SearchResponse<Object>>> searches = List.of(
+                startSearch(request("news"), emptyMap()),
+                startSearch(request("sports"), emptyMap()),
+                startSearch(request("news"), Map.of("index", "other"))
+        );
+
+        // All the searches are sent at the same time, none of them waits for another
+        assertTrue(searchesStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        searchesReleased.countDown();
+
+        for (FutureTask<SearchResponse<Object>> search : searches) {
+            search.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, wrapper.getCoalescedSearches());
+    }
+
+    @Test
+    public void testAsyncSearchesAreCoalesced() {
+        when(transport.performRequestAsync(any(), any(), any())).thenReturn(pendingResponse);
+
+        CompletableFuture<SearchResponse<Object>> first = wrapper.searchAsync(request("news"), Object.class);
+        CompletableFuture<SearchResponse<Object>> second = wrapper.searchAsync(request("news"), Object.class);
+
+        SearchResponse<Object> response = response();
+        pendingResponse.complete(response);
+
+        assertSame(response, first.join());
+        assertSame(response, second.join());
+        assertEquals(1, wrapper.getCoalescedSearches());
+        verify(transport, times(1)).performRequestAsync(any(), any(), any());
+
+        // Once the search completes a new one is sent
+        wrapper.searchAsync(request("news"), Object.class).join();
+
+        verify(transport, times(2)).performRequestAsync(any(), any(), any());
+    }
+
+    @Test
+    public void testAsyncErrorIsSharedWithCoalescedSearches() {
+        when(transport.performRequestAsync(any(), any(), any())).thenReturn(pendingResponse);
+
+        CompletableFuture<SearchResponse<Object>> first = wrapper.searchAsync(request("news"), Object.class);
+        CompletableFuture<SearchResponse<Object>> second = wrapper.searchAsync(request("news"), Object.class);
+
+        pendingResponse.completeExceptionally(new IOException("Connection refused"));
+
+        assertFailed(first);
+        assertFailed(second);
+    }
+
+    @Test
+    public void testUncoalescedSearchIsAlwaysSent() {
+        when(transport.performRequestAsync(any(), any(), any())).thenReturn(pendingResponse);
+
+        wrapper.searchAsync(request("news"), Object.class);
+        wrapper.searchAsyncUncoalesced(request("news"), Object.class, emptyMap());
+
+        verify(transport, times(2)).performRequestAsync(any(), any(), any());
+    }
+
+    private SearchRequest request(String text) {
+        return SearchRequest.of(r -> r
+                .index("test")
+                .query(q -> q.match(m -> m.field("title").query(v -> v.stringValue(text))))
+        );
+    }
+
+    private SearchResponse<Object> response() {
+        return new SearchResponse.Builder<Object>()
+                .took(1)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(List.of()))
+                .build();
+    }
+
+    private FutureTask<SearchResponse<Object>> startSearch(SearchRequest request, Map<String, Object> parameters) {
+        FutureTask<SearchResponse<Object>> search = new FutureTask<>(() -> wrapper.search(request, Object.class,
+                                                                                            parameters));
+        startThread(search);
+        return search;
+    }
+
+    private Thread startThread(Runnable task) {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Waits until the given thread is blocked waiting for the identical search
+     */
+    private void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Thread " + thread.getName() + " is not waiting for the identical search");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void assertFailed(CompletableFuture<SearchResponse<Object>> future) {
+        try {
+            future.join();
+            fail("The search should have failed");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof OpenSearchException);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.craftercms.search.opensearch.client.OpenSearchClientWrapper;
+import org.craftercms.search.opensearch.client.SearchResponseItem;
+import org.craftercms.search.opensearch.exception.RejectedSearchException;
+import org.craftercms.search.opensearch.impl.IndexGenerationTracker;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.transport.OpenSearchTransport;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link CachingOpenSearchClientWrapper}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CachingOpenSearchClientWrapperTest {
+
+    private static final String INDEX = "test";
+
+    @Mock
+    private OpenSearchTransport transport;
+
+    @Mock
+    private OpenSearchClientWrapper delegate;
+
+    private SearchResultCache cache;
+
+    private IndexGenerationTracker generationTracker;
+
+    private CachingOpenSearchClientWrapper wrapper;
+
+    @Before
+    public void setUp() {
+        when(transport.jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+
+        cache = new SearchResultCache();
+        generationTracker = new IndexGenerationTracker();
+        wrapper = new CachingOpenSearchClientWrapper(delegate, new OpenSearchClient(transport), cache,
+                                                     generationTracker);
+    }
+
+    @Test
+    public void testAsyncSearchUsesCache() {
+        SearchRequest request = request("news");
+        CompletableFuture<SearchResponse<Object>> pendingResponse = new CompletableFuture<>();
+        when(delegate.searchAsync(request, Object.class, emptyMap())).thenReturn(pendingResponse);
+
+        CompletableFuture<SearchResponse<Object>> first = wrapper.searchAsync(request, Object.class);
+        assertFalse(first.isDone());
+
+        pendingResponse.complete(response(3));
+        assertEquals(3, first.join().took());
+
+        // The response is cached when the search completes
+        CompletableFuture<SearchResponse<Object>> second = wrapper.searchAsync(request, Object.class);
+        assertTrue(second.isDone());
+        assertEquals(3, second.join().took());
+        verify(delegate, times(1)).searchAsync(request, Object.class, emptyMap());
+    }
+
+    @Test
+    public void testUncoalescedSearchUsesCache() {
+        SearchRequest request = request("news");
+        cacheResponse(request, response(3));
+
+        assertEquals(3, wrapper.searchAsyncUncoalesced(request, Object.class, emptyMap()).join().took());
+        verify(delegate, never()).searchAsyncUncoalesced(any(), any(), any());
+    }
+
+    @Test
+    public void testSearchAllOnlySendsUncachedRequests() {
+        SearchRequest cachedRequest = request("news");
+        SearchRequest uncachedRequest = request("sports");
+        cacheResponse(cachedRequest, response(3));
+        when(delegate.searchAll(List.of(uncachedRequest), Object.class, emptyMap()))
+                .thenReturn(List.of(new SearchResponseItem<>(response(5))));
+
+        List<SearchResponseItem<Object>> items = wrapper.searchAll(List.of(cachedRequest, uncachedRequest),
+                                                                   Object.class);
+
+        assertEquals(2, items.size());
+        assertEquals(3, items.get(0).getResponse().took());
+        assertEquals(5, items.get(1).getResponse().took());
+
+        // The uncached response is now cached too
+        assertEquals(5, wrapper.searchAsync(uncachedRequest, Object.class).join().took());
+    }
+
+    @Test
+    public void testRejectedAsyncSearchReturnsStaleResponse() {
+        SearchRequest request = request("news");
+        cache.setStaleTimeToLive(60000);
+        cacheResponse(request, response(3));
+        generationTracker.increment(INDEX);
+
+        RejectedSearchException error = new RejectedSearchException(INDEX, "Too many searches",
+                                                                    RejectedSearchException.Reason.CONCURRENCY_LIMIT);
+        when(delegate.searchAsync(request, Object.class, emptyMap())).thenReturn(CompletableFuture.failedFuture(error));
+
+        assertEquals(3, wrapper.searchAsync(request, Object.class).join().took());
+    }
+
+    private void cacheResponse(SearchRequest request, SearchResponse<Object> response) {
+        when(delegate.searchAsync(request, Object.class, emptyMap()))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        wrapper.searchAsync(request, Object.class).join();
+    }
+
+    private SearchRequest request(String text) {
+        return SearchRequest.of(r -> r
+                .index(INDEX)
+                .query(q -> q.match(m -> m.field("title").query(v -> v.stringValue(text))))
+        );
+    }
+
+    private SearchResponse<Object> response(long took) {
+        return new SearchResponse.Builder<Object>()
+                .took(took)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(List.of()))
+                .build();
+    }
+
+}
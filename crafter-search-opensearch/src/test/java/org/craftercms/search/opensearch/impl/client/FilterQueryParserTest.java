@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch._types.query_dsl.RangeQuery;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link FilterQueryParser}.
+ */
+public class FilterQueryParserTest {
+
+    private final FilterQueryParser parser = new FilterQueryParser();
+
+    @Test
+    public void testTerm() {
+        Query query = parser.parse("-disabled:\"true\"");
+
+        assertTrue(query.isBool());
+        BoolQuery bool = query.bool();
+        assertTrue(bool.filter().isEmpty());
+        assertEquals(1, bool.mustNot().size());
+        assertEquals("disabled", bool.mustNot().get(0).term().field());
+        assertEquals("true", bool.mustNot().get(0).term().value().stringValue());
+
+        query = parser.parse("content-type:\"/page/article\"");
+
+        assertTrue(query.isTerm());
+        assertEquals("/page/article", query.term().value().stringValue());
+    }
+
+    @Test
+    public void testTerms() {
+        Query query = parser.parse("tags_smv:(news OR \"blog post\")");
+
+        assertTrue(query.isTerms());
+        assertEquals("tags_smv", query.terms().field());
+        assertEquals(List.of("news", "blog post"), query.terms().terms().value().stream()
+                                                        .map(FieldValue::stringValue)
+                                                        .collect(toList()));
+    }
+
+    @Test
+    public void testRange() {
+        Query query = parser.parse("-expired_dt:[* TO now]");
+
+        RangeQuery range = query.bool().mustNot().get(0).range();
+        assertEquals("expired_dt", range.field());
+        assertNull(range.gte());
+        assertEquals("now", range.lte().to(String.class));
+
+        query = parser.parse("price_i:{10 TO 20] AND NOT disabled:true");
+
+        BoolQuery bool = query.bool();
+        assertEquals(1, bool.filter().size());
+        assertEquals("10", bool.filter().get(0).range().gt().to(String.class));
+        assertEquals("20", bool.filter().get(0).range().lte().to(String.class));
+        assertTrue(bool.mustNot().get(0).isTerm());
+    }
+
+    @Test
+    public void testExists() {
+        Query query = parser.parse("title_t:*");
+
+        assertTrue(query.isExists());
+        assertEquals("title_t", query.exists().field());
+    }
+
+    @Test
+    public void testFallback() {
+        for (String filterQuery : List.of("title_t:crafter", "tags_smv:news*", "a_s:x OR b_s:y", "tags_smv:AND",
+                                          "content-type:/page/article")) {
+            Query query = parser.parse(filterQuery);
+
+            assertTrue(filterQuery, query.isQueryString());
+            assertEquals(filterQuery, query.queryString().query());
+        }
+    }
+
+}
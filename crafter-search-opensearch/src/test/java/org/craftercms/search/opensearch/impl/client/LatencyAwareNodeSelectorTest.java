@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpHost;
+import org.opensearch.client.Node;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link LatencyAwareNodeSelector}.
+ */
+public class LatencyAwareNodeSelectorTest {
+
+    private static final HttpHost FAST_HOST = new HttpHost("fast", 9200);
+    private static final HttpHost SLOW_HOST = new HttpHost("slow", 9200);
+    private static final HttpHost NEW_HOST = new HttpHost("new", 9200);
+
+    @Test
+    public void testSlowNodeIsSkipped() {
+        LatencyAwareNodeSelector selector = new LatencyAwareNodeSelector();
+        selector.record(FAST_HOST, 10);
+        selector.record(SLOW_HOST, 500);
+
+        List<Node> nodes = select(selector, FAST_HOST, SLOW_HOST, NEW_HOST);
+
+        assertEquals(List.of(FAST_HOST, NEW_HOST), nodes.stream().map(Node::getHost).toList());
+        assertEquals(1, selector.getSkippedNodes());
+    }
+
+    @Test
+    public void testSlowNodeIsProbed() {
+        LatencyAwareNodeSelector selector = new LatencyAwareNodeSelector();
+        selector.setProbeRequests(3);
+        selector.record(FAST_HOST, 10);
+        selector.record(SLOW_HOST, 500);
+
+        assertEquals(1, select(selector, FAST_HOST, SLOW_HOST).size());
+        assertEquals(1, select(selector, FAST_HOST, SLOW_HOST).size());
+
+        // Every third request can go to the slow node, so its latency keeps being measured
+        assertEquals(2, select(selector, FAST_HOST, SLOW_HOST).size());
+        assertEquals(2, selector.getSkippedNodes());
+    }
+
+    @Test
+    public void testLatencyIsAveraged() {
+        LatencyAwareNodeSelector selector = new LatencyAwareNodeSelector();
+        selector.setDecay(0.5);
+        selector.record(FAST_HOST, 10);
+        selector.record(FAST_HOST, 30);
+
+        assertEquals(20, selector.getLatency(FAST_HOST), 0);
+    }
+
+    @Test
+    public void testLatencyExpires() {
+        LatencyAwareNodeSelector selector = new LatencyAwareNodeSelector();
+        selector.setProbeInterval(-1);
+        selector.record(FAST_HOST, 10);
+        selector.record(SLOW_HOST, 500);
+
+        assertEquals(2, select(selector, FAST_HOST, SLOW_HOST).size());
+    }
+
+    private List<Node> select(LatencyAwareNodeSelector selector, HttpHost... hosts) {
+        List<Node> nodes = new ArrayList<>();
+        for (HttpHost host : hosts) {
+            nodes.add(new Node(host));
+        }
+        selector.select(nodes);
+        return nodes;
+    }
+
+}
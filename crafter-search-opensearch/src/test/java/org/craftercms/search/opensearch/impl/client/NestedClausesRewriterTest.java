@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch._types.SortOptions;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link NestedClausesRewriter}.
+ */
+public class NestedClausesRewriterTest {
+
+    private final NestedClausesRewriter rewriter = new NestedClausesRewriter();
+
+    @Test
+    public void testRewriteTerms() {
+        Query query = Query.of(q -> q.bool(b -> b
+                .filter(f -> f.term(t -> t.field("site").value(v -> v.stringValue("editorial"))))
+                .should(terms("tags", 3))
+                .should(terms("roles", 1))
+        ));
+
+        Query rewrittenQuery = rewriter.rewriteTerms(query);
+        List<Query> should = rewrittenQuery.bool().should();
+
+        assertEquals(2, should.size());
+        assertTrue(should.get(0).isTerms());
+        assertEquals(3, should.get(0).terms().terms().value().size());
+        assertTrue(should.get(1).isTerm());
+        assertTrue(rewrittenQuery.bool().filter().get(0).isTerm());
+    }
+
+    @Test
+    public void testRewriteWithMinimumShouldMatch() {
+        Query query = Query.of(q -> q.bool(b -> b.should(terms("tags", 3)).minimumShouldMatch("2")));
+
+        assertSame(query, rewriter.rewriteTerms(query));
+    }
+
+    @Test
+    public void testSplit() {
+        rewriter.setMaxClausesPerSearch(2);
+        Query disjunction = Query.of(q -> q.bool(b -> b
+                .should(terms("tags", 3))
+                .should(s -> s.match(m -> m.field("title").query(v -> v.stringValue("news"))))
+        ));
+        Query query = Query.of(q -> q.bool(b -> b
+                .filter(disjunction)
+                .mustNot(n -> n.term(t -> t.field("disabled").value(v -> v.booleanValue(true))))
+        ));
+
+        List<Query> queries = rewriter.split(query, true);
+
+        assertEquals(2, queries.size());
+        assertEquals(2, queries.get(0).bool().filter().get(0).bool().should().size());
+        assertEquals(2, queries.get(1).bool().filter().get(0).bool().should().size());
+        assertEquals(1, queries.get(1).bool().mustNot().size());
+    }
+
+    @Test
+    public void testOptionalShouldIsNotSplit() {
+        rewriter.setMaxClausesPerSearch(2);
+        Query query = Query.of(q -> q.bool(b -> b
+                .must(m -> m.matchAll(a -> a))
+                .should(terms("tags", 3))
+        ));
+
+        assertTrue(rewriter.split(query, false).isEmpty());
+    }
+
+    @Test
+    public void testScoredDisjunctionIsOnlySplitWithoutScores() {
+        rewriter.setMaxClausesPerSearch(2);
+        Query query = Query.of(q -> q.bool(b -> b
+                .must(m -> m.bool(d -> d.should(terms("tags", 3))))
+        ));
+
+        assertTrue(rewriter.split(query, true).isEmpty());
+        assertEquals(2, rewriter.split(query, false).size());
+    }
+
+    @Test
+    public void testNeedsScores() {
+        assertTrue(rewriter.needsScores(SearchRequest.of(r -> r)));
+        assertTrue(rewriter.needsScores(SearchRequest.of(r -> r.sort(s -> s.field(f -> f.field("_score"))))));
+        assertTrue(rewriter.needsScores(SearchRequest.of(r -> r.sort(s -> s.field(f -> f.field("title")))
+                                                               .minScore(1.0))));
+        assertFalse(rewriter.needsScores(SearchRequest.of(r -> r.sort(s -> s.field(f -> f.field("title"))))));
+    }
+
+    @Test
+    public void testPageBeyondMaxResultWindowIsNotMerged() {
+        rewriter.setMaxResultWindow(100);
+
+        assertTrue(rewriter.canMerge(SearchRequest.of(r -> r.from(90).size(10))));
+        assertFalse(rewriter.canMerge(SearchRequest.of(r -> r.from(91).size(10))));
+    }
+
+    @Test
+    public void testDescendingSortWithMissingValues() {
+        List<List<?>> values = sortValues("b", null, "c", "a");
+
+        values.sort(rewriter.getSortValuesComparator(List.of(SortOptions.of(s -> s
+                .field(f -> f.field("title").order(SortOrder.Desc))))));
+
+        assertEquals(sortValues("c", "b", "a", null), values);
+
+        values.sort(rewriter.getSortValuesComparator(List.of(SortOptions.of(s -> s
+                .field(f -> f.field("title").order(SortOrder.Desc).missing(FieldValue.of("_first")))))));
+
+        assertEquals(sortValues(null, "c", "b", "a"), values);
+
+        values.sort(rewriter.getSortValuesComparator(List.of(SortOptions.of(s -> s
+                .field(f -> f.field("title").order(SortOrder.Asc))))));
+
+        assertEquals(sortValues("a", "b", "c", null), values);
+    }
+
+    @Test
+    public void testMixedSortValueTypes() {
+        Comparator<List<?>> comparator = rewriter.getSortValuesComparator(List.of(SortOptions.of(s -> s
+                .field(f -> f.field("code")))));
+        List<List<?>> values = sortValues("9", 20.5, "10", 5L, "abc", true, null, "1e3");
+
+        values.sort(comparator);
+
+        // Numbers compare numerically, strings lexically even if they look like numbers
+        assertEquals(sortValues(5L, 20.5, true, "10", "1e3", "9", "abc", null), values);
+
+        // The comparison must be transitive for any combination of types
+        for (List<?> a : values) {
+            for (List<?> b : values) {
+                assertEquals(Integer.signum(comparator.compare(a, b)), -Integer.signum(comparator.compare(b, a)));
+                for (List<?> c : values) {
+                    if (comparator.compare(a, b) <= 0 && comparator.compare(b, c) <= 0) {
+                        assertTrue(comparator.compare(a, c) <= 0);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<List<?>> sortValues(Object... values) {
+        List<List<?>> sortValues = new ArrayList<>();
+        for (Object value : values) {
+            sortValues.add(Arrays.asList(value));
+        }
+        return sortValues;
+    }
+
+    private List<Query> terms(String field, int count) {
+        List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String value = field + i;
+            queries.add(Query.of(q -> q.term(t -> t.field(field).value(v -> v.stringValue(value)))));
+        }
+        return queries;
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import jakarta.json.stream.JsonGenerator;
+import org.craftercms.search.opensearch.client.SearchResponseItem;
+import org.craftercms.search.opensearch.exception.OpenSearchException;
+import org.craftercms.search.opensearch.exception.TooManyNestedClausesSearchException;
+import org.craftercms.search.opensearch.impl.AdaptiveSearchLimiter;
+import org.craftercms.search.opensearch.impl.AdaptiveWriteController;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.JsonpSerializable;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.MsearchResponse;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchItem;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.transport.OpenSearchTransport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SearchBatcher}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SearchBatcherTest {
+
+    @Mock
+    private OpenSearchTransport transport;
+
+    private SearchBatcher batcher;
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        when(transport.jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+        batcher = new SearchBatcher(new OpenSearchClient(transport));
+    }
+
+    @Test
+    public void testConcurrentSearchesAreBatched() throws Exception {
+        answerMsearch();
+        batcher.setBatchWindow(10000);
+        batcher.setMaxBatchSize(2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SearchResponse<Object>> first = executor.submit(() -> batcher.search(request(1), Object.class));
+            Future<SearchResponse<Object>> second = executor.submit(() -> batcher.search(request(2), Object.class));
+
+            // Each caller gets the response for its own request, the batch is sent once it's full
+            assertEquals(1, first.get().took());
+            assertEquals(2, second.get().took());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(transport, times(1)).performRequest(any(), any(), any());
+        assertEquals(List.of(2), batchSizes);
+        assertEquals(1, batcher.getBatches());
+        assertEquals(2, batcher.getBatchedSearches());
+    }
+
+    @Test
+    public void testSearchAllIsSplitInBatches() throws Exception {
+        answerMsearch();
+        batcher.setMaxBatchSize(2);
+
+        List<SearchRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(request(i));
+        }
+        List<SearchResponseItem<Object>> items = batcher.searchAll(requests, Object.class);
+
+        assertEquals(List.of(2, 2, 1), batchSizes);
+        assertEquals(5, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(i, items.get(i).getResponse().took());
+        }
+    }
+
+    @Test
+    public void testFailedItemsKeepTheirStatus() throws Exception {
+        when(transport.performRequest(any(), any(), any())).thenReturn(msearchResponse(List.of(
+                failure(429, "es_rejected_execution_exception"),
+                failure(503, "unavailable_shards_exception"),
+                failure(400, "parsing_exception"),
+                result(3)
+        )));
+
+        List<SearchResponseItem<Object>> items = batcher.searchAll(
+                List.of(request(0), request(1), request(2), request(3)), Object.class);
+
+        assertTrue(AdaptiveWriteController.isRejection(items.get(0).getError()));
+        assertTrue(AdaptiveSearchLimiter.isClusterFailure(items.get(0).getError()));
+        assertTrue(AdaptiveSearchLimiter.isClusterFailure(items.get(1).getError()));
+        assertFalse(AdaptiveSearchLimiter.isClusterFailure(items.get(2).getError()));
+        assertTrue(items.get(3).isSuccessful());
+    }
+
+    @Test
+    public void testTooManyNestedClausesItem() throws Exception {
+        ErrorResponse error = ErrorResponse.of(r -> r
+                .status(400)
+                .error(e -> e
+                        .type("search_phase_execution_exception")
+                        .reason("all shards failed")
+                        .rootCause(c -> c.type("too_many_nested_clauses").reason("too many clauses"))
+                )
+        );
+        when(transport.performRequest(any(), any(), any())).thenReturn(msearchResponse(List.of(
+                new MultiSearchResponseItem.Builder<Object>().failure(error).build()
+        )));
+
+        List<SearchResponseItem<Object>> items = batcher.searchAll(List.of(request(0)), Object.class);
+
+        assertTrue(items.get(0).getError() instanceof TooManyNestedClausesSearchException);
+    }
+
+    @Test
+    public void testFailedMsearch() throws Exception {
+        when(transport.performRequest(any(), any(), any())).thenThrow(new IOException("Connection refused"));
+
+        List<SearchResponseItem<Object>> items = batcher.searchAll(List.of(request(0), request(1)), Object.class);
+
+        for (SearchResponseItem<Object> item : items) {
+            assertFalse(item.isSuccessful());
+            assertTrue(item.getError() instanceof OpenSearchException);
+        }
+        assertTrue(AdaptiveSearchLimiter.isClusterFailure(items.get(0).getError()));
+    }
+
+    @Test
+    public void testBodyPropertiesAreNeverDropped() throws Exception {
+        List<String> sentBodies = new ArrayList<>();
+        when(transport.performRequest(any(), any(), any())).thenAnswer(invocation -> {
+            Object request = invocation.getArgument(0);
+            if (request instanceof MsearchRequest) {
+                for (RequestItem item : ((MsearchRequest) request).searches()) {
+                    sentBodies.add(toJson(item.body()));
+                }
+                return msearchResponse(List.of(result(1)));
+            }
+
+            // Requests with properties not supported by _msearch are sent on their own
+            sentBodies.add(toJson((SearchRequest) request));
+            return new SearchResponse.Builder<Object>()
+                    .took(1)
+                    .timedOut(false)
+                    .shards(s -> s.total(1).successful(1).failed(0))
+                    .hits(h -> h.hits(List.of()))
+                    .build();
+        });
+
+        SearchRequest request = SearchRequest.of(r -> r
+                .index("test")
+                .query(q -> q.matchAll(m -> m))
+                .collapse(c -> c.field("category"))
+                .rescore(s -> s.windowSize(10).query(q -> q.query(rq -> rq.matchAll(m -> m))))
+                .storedFields("title")
+        );
+        List<SearchResponseItem<Object>> items = batcher.searchAll(List.of(request), Object.class);
+
+        assertTrue(items.get(0).isSuccessful());
+        assertEquals(1, sentBodies.size());
+        for (String property : List.of("\"collapse\"", "\"rescore\"", "\"stored_fields\"")) {
+            assertTrue(sentBodies.get(0).contains(property));
+        }
+    }
+
+    /**
+     * Answers each {@code _msearch} with a response for each request, the took of the response is the number of
+     * the request
+     */
+    private void answerMsearch() throws IOException {
+        when(transport.performRequest(any(), any(), any())).thenAnswer(invocation -> {
+            MsearchRequest request = invocation.getArgument(0);
+            synchronized (batchSizes) {
+                batchSizes.add(request.searches().size());
+            }
+
+            List<MultiSearchResponseItem<Object>> items = new ArrayList<>();
+            for (RequestItem item : request.searches()) {
+                items.add(result(item.body().from()));
+            }
+            return msearchResponse(items);
+        });
+    }
+
+    /**
+     * Returns a request that can be identified by its {@code from}
+     */
+    private SearchRequest request(int number) {
+        return SearchRequest.of(r -> r
+                .index("test")
+                .from(number)
+                .query(q -> q.matchAll(m -> m))
+        );
+    }
+
+    private MultiSearchResponseItem<Object> result(long took) {
+        MultiSearchItem<Object> item = new MultiSearchItem.Builder<Object>()
+                .took(took)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(List.of()))
+                .status(200)
+                .build();
+        return new MultiSearchResponseItem.Builder<Object>().result(item).build();
+    }
+
+    private MultiSearchResponseItem<Object> failure(int status, String type) {
+        return new MultiSearchResponseItem.Builder<Object>()
+                .failure(ErrorResponse.of(r -> r
+                        .status(status)
+                        .error(e -> e.type(type).reason("Search failed"))
+                ))
+                .build();
+    }
+
+    private String toJson(JsonpSerializable value) {
+        StringWriter writer = new StringWriter();
+        JsonpMapper mapper = new JacksonJsonpMapper();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(writer)) {
+            value.serialize(generator, mapper);
+        }
+        return writer.toString();
+    }
+
+    private MsearchResponse<Object> msearchResponse(List<MultiSearchResponseItem<Object>> items) {
+        return new MsearchResponse.Builder<Object>()
+                .took(1)
+                .responses(items)
+                .build();
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch._types.query_dsl.Operator;
+import org.opensearch.client.opensearch.core.SearchRequest;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Unit tests for {@link SearchRequestUtils}.
+ */
+public class SearchRequestUtilsTest {
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+
+    @Test
+    public void testGetIndices() {
+        SearchRequest request = SearchRequest.of(r -> r.index("test"));
+
+        assertEquals(List.of("test"), SearchRequestUtils.getIndices(request, emptyMap()));
+        assertEquals(List.of("a", "b"), SearchRequestUtils.getIndices(request, Map.of("index", "a,b")));
+    }
+
+    @Test
+    public void testKeyIsTheSameForEquivalentRequests() {
+        assertEquals(getKey(SearchRequest.of(r -> r.index("test").q("news").lenient(true))),
+                     getKey(SearchRequest.of(r -> r.index("test").q("news").lenient(true))));
+    }
+
+    @Test
+    public void testKeyIncludesUrlProperties() {
+        String key = getKey(SearchRequest.of(r -> r.index("test").q("news")));
+
+        List<SearchRequest> requests = List.of(
+                SearchRequest.of(r -> r.index("test").q("news").df("title")),
+                SearchRequest.of(r -> r.index("test").q("news").analyzer("english")),
+                SearchRequest.of(r -> r.index("test").q("news").defaultOperator(Operator.And)),
+                SearchRequest.of(r -> r.index("test").q("news").lenient(true)),
+                SearchRequest.of(r -> r.index("test").q("news").analyzeWildcard(true)),
+                SearchRequest.of(r -> r.index("test").q("news").requestCache(false)),
+                SearchRequest.of(r -> r.index("test").q("news").terminateAfter(10L))
+        );
+
+        for (SearchRequest request : requests) {
+            assertNotEquals(key, getKey(request));
+        }
+    }
+
+    private String getKey(SearchRequest request) {
+        return SearchRequestUtils.getKey(request, Object.class, emptyMap(), mapper);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.search.opensearch.impl.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link SearchResultCache}.
+ */
+public class SearchResultCacheTest {
+
+    private static final byte[] RESPONSE = new byte[100];
+
+    @Test
+    public void testGeneration() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.put("key", 1, RESPONSE);
+
+        assertArrayEquals(RESPONSE, cache.get("key", 1));
+        assertNull(cache.get("key", 2));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void testTimeToLive() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.setTimeToLive(-1);
+        cache.put("key", 1, RESPONSE);
+
+        assertNull(cache.get("key", 1));
+    }
+
+    @Test
+    public void testEviction() {
+        SearchResultCache cache = new SearchResultCache();
+        cache.setMaxEntries(2);
+        cache.put("key1", 1, RESPONSE);
+        cache.put("key2", 1, RESPONSE);
+        cache.get("key1", 1);
+        cache.put("key3", 1, RESPONSE);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("key2", 1));
+
+        long entryWeight = cache.getWeight() / 2;
+        cache.setMaxWeight(entryWeight);
+        cache.put("key4", 1, RESPONSE);
+
+        assertEquals(1, cache.getSize());
+        assertEquals(entryWeight, cache.getWeight());
+        assertArrayEquals(RESPONSE, cache.get("key4", 1));
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2007-2023 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.craftercms.search.opensearch.jackson;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link CompactMultivaluedMap}.
+ */
+public class CompactMultivaluedMapTest {
+
+    @Test
+    public void testPut() {
+        CompactMultivaluedMap map = new CompactMultivaluedMap(2);
+        for (int i = 0; i < 100; i++) {
+            assertNull(map.put("field" + i, "value" + i));
+        }
+
+        map.put("field1", "value1b");
+        map.put("field1", "value1c");
+        map.put("field2", Collections.singletonMap("", "value2b"));
+
+        List<String> list = Arrays.asList("a", "b");
+        map.put("list", list);
+        map.put("list", "c");
+
+        assertEquals(101, map.size());
+        assertEquals("value0", map.get("field0"));
+        assertEquals(Arrays.asList("value1", "value1b", "value1c"), map.get("field1"));
+        assertEquals(Arrays.asList("value2", "value2b"), map.get("field2"));
+        assertEquals(Arrays.asList("a", "b", "c"), map.get("list"));
+        assertEquals(Arrays.asList("a", "b"), list);
+        assertEquals("value99", map.get("field99"));
+
+        assertEquals("value50", map.remove("field50"));
+        assertFalse(map.containsKey("field50"));
+        assertEquals("value51", map.get("field51"));
+        assertEquals(100, map.size());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        CompactMultivaluedMap nested = new CompactMultivaluedMap();
+        nested.put("name", "nested");
+
+        CompactMultivaluedMap map = new CompactMultivaluedMap();
+        map.put("title", "Test");
+        map.put("tags", "a");
+        map.put("tags", "b");
+        map.put("item", nested);
+        map.put("count", 1);
+
+        assertEquals("{\"title\":\"Test\",\"tags\":[\"a\",\"b\"],\"item\":{\"name\":\"nested\"},\"count\":1}",
+                     new ObjectMapper().writeValueAsString(map));
+    }
+
+}